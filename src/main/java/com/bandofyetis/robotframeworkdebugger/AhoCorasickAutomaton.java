@@ -0,0 +1,229 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton over a set of literal strings.
+ *
+ * Every literal carries an integer id.  Scanning a text reports the ids of all literals that occur
+ * anywhere in the text, in time proportional to the length of the text plus the number of
+ * occurrences, no matter how many literals were added.
+ *
+ * All states live in one int array so that a transition usually touches a single cache line.
+ * The automaton is immutable once built and may be shared between threads.
+ *
+ * @author nspilka
+ *
+ */
+class AhoCorasickAutomaton {
+
+	// Lowest output of a state no literal ends at
+	static final int NO_MATCH = Integer.MAX_VALUE;
+
+	// Number of characters covered by the dense transition table of the root state
+	private static final int ROOT_TABLE_SIZE = 128;
+
+	// Layout of a state in the states array: header fields followed by (label, target) edge pairs
+	// sorted by label.  States are addressed by their offset in the array, the root is at offset 0
+	private static final int EDGE_COUNT = 0;
+	private static final int FAILURE = 1;
+	private static final int LOWEST_OUTPUT = 2;
+	private static final int OUTPUTS = 3;
+	private static final int DICTIONARY = 4;
+	private static final int HEADER_SIZE = 5;
+
+	// Value of OUTPUTS and DICTIONARY when there is none
+	private static final int NONE = -1;
+
+	// All states of the automaton
+	private final int[] states;
+
+	// The ids of the literals ending at each state, as runs of a count followed by the ids.  The
+	// OUTPUTS field of a state points at its run, DICTIONARY at the next state on its failure chain
+	// that has a run.  Only needed to report all matches
+	private final int[] outputIds;
+
+	// Number of states in the automaton
+	private final int stateCount;
+
+	// Dense goto table of the root state for ASCII characters, most characters of a scan end up here.
+	// Zero means there is no edge
+	private final int[] rootTable;
+
+	/**
+	 * Build an automaton
+	 * @param literals the literal strings, must not be empty strings
+	 * @param ids the id reported for each literal (same length as literals)
+	 */
+	AhoCorasickAutomaton(List<String> literals, int[] ids) {
+		// Build the trie with temporary sorted edge maps
+		List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+		List<Integer> outputs = new ArrayList<Integer>();
+		List<List<Integer>> ownOutputs = new ArrayList<List<Integer>>();
+		trie.add(new TreeMap<Character, Integer>());
+		outputs.add(NO_MATCH);
+		ownOutputs.add(null);
+
+		for (int i = 0; i < literals.size(); i++){
+			String literal = literals.get(i);
+			int state = 0;
+			for (int c = 0; c < literal.length(); c++){
+				Integer next = trie.get(state).get(literal.charAt(c));
+				if (next == null){
+					next = trie.size();
+					trie.add(new TreeMap<Character, Integer>());
+					outputs.add(NO_MATCH);
+					ownOutputs.add(null);
+					trie.get(state).put(literal.charAt(c), next);
+				}
+				state = next;
+			}
+			outputs.set(state, Math.min(outputs.get(state), ids[i]));
+			if (ownOutputs.get(state) == null){
+				ownOutputs.set(state, new ArrayList<Integer>());
+			}
+			ownOutputs.get(state).add(ids[i]);
+		}
+		stateCount = trie.size();
+
+		// Lay the trie out in a single array
+		int[] offsets = new int[stateCount];
+		int size = 0;
+		for (int s = 0; s < stateCount; s++){
+			offsets[s] = size;
+			size += HEADER_SIZE + 2 * trie.get(s).size();
+		}
+		states = new int[size];
+		List<Integer> outputRuns = new ArrayList<Integer>();
+		for (int s = 0; s < stateCount; s++){
+			int offset = offsets[s];
+			states[offset + EDGE_COUNT] = trie.get(s).size();
+			states[offset + LOWEST_OUTPUT] = outputs.get(s);
+			states[offset + DICTIONARY] = NONE;
+			states[offset + OUTPUTS] = NONE;
+			if (ownOutputs.get(s) != null){
+				states[offset + OUTPUTS] = outputRuns.size();
+				outputRuns.add(ownOutputs.get(s).size());
+				outputRuns.addAll(ownOutputs.get(s));
+			}
+			int edge = offset + HEADER_SIZE;
+			for (Map.Entry<Character, Integer> entry : trie.get(s).entrySet()){
+				states[edge++] = entry.getKey();
+				states[edge++] = offsets[entry.getValue()];
+			}
+		}
+
+		int[] table = new int[ROOT_TABLE_SIZE];
+		for (int edge = 0; edge < states[EDGE_COUNT]; edge++){
+			int label = states[HEADER_SIZE + 2 * edge];
+			if (label < ROOT_TABLE_SIZE){
+				table[label] = states[HEADER_SIZE + 2 * edge + 1];
+			}
+		}
+		rootTable = table;
+		outputIds = new int[outputRuns.size()];
+		for (int i = 0; i < outputIds.length; i++){
+			outputIds[i] = outputRuns.get(i);
+		}
+
+		// Breadth first pass to compute failure links, folding outputs down the failure chain
+		Queue<Integer> queue = new LinkedList<Integer>();
+		for (int edge = 0; edge < states[EDGE_COUNT]; edge++){
+			int target = states[HEADER_SIZE + 2 * edge + 1];
+			states[target + FAILURE] = 0;
+			queue.add(target);
+		}
+		while (!queue.isEmpty()){
+			int state = queue.remove();
+			for (int edge = 0; edge < states[state + EDGE_COUNT]; edge++){
+				char label = (char) states[state + HEADER_SIZE + 2 * edge];
+				int target = states[state + HEADER_SIZE + 2 * edge + 1];
+				int fallback = states[state + FAILURE];
+				int next = step(fallback, label);
+				while (next < 0 && fallback != 0){
+					fallback = states[fallback + FAILURE];
+					next = step(fallback, label);
+				}
+				int failureTarget = (next < 0) ? 0 : next;
+				states[target + FAILURE] = failureTarget;
+				states[target + LOWEST_OUTPUT] = Math.min(states[target + LOWEST_OUTPUT], states[failureTarget + LOWEST_OUTPUT]);
+				states[target + DICTIONARY] = (states[failureTarget + OUTPUTS] != NONE) ? failureTarget : states[failureTarget + DICTIONARY];
+				queue.add(target);
+			}
+		}
+	}
+
+	/**
+	 * Scan a text for all literals
+	 * @param text the text to scan
+	 * @param found the ids of all literals occurring in the text are set in this bit set
+	 */
+	void findAll(String text, BitSet found) {
+		int state = 0;
+		for (int i = 0; i < text.length(); i++){
+			char c = text.charAt(i);
+			int next = step(state, c);
+			while (next < 0 && state != 0){
+				state = states[state + FAILURE];
+				next = step(state, c);
+			}
+			state = (next < 0) ? 0 : next;
+			if (states[state + LOWEST_OUTPUT] == NO_MATCH){
+				continue;
+			}
+			// report the literals ending here, then those that are suffixes of them
+			int s = (states[state + OUTPUTS] != NONE) ? state : states[state + DICTIONARY];
+			for (; s != NONE; s = states[s + DICTIONARY]){
+				int run = states[s + OUTPUTS];
+				for (int k = 1; k <= outputIds[run]; k++){
+					found.set(outputIds[run + k]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the number of states in the automaton.  Package level access for testing
+	 * @return the number of states
+	 */
+	int getStateCount() {
+		return stateCount;
+	}
+
+	/**
+	 * Follow the goto edge of a state
+	 * @param state the offset of the state
+	 * @param c the character to follow
+	 * @return the offset of the target state or -1 if there is no edge
+	 */
+	private int step(int state, char c) {
+		if (state == 0 && c < ROOT_TABLE_SIZE){
+			int next = rootTable[c];
+			return (next == 0) ? -1 : next;
+		}
+		// binary search over the sorted edge labels
+		int low = 0;
+		int high = states[state + EDGE_COUNT] - 1;
+		int base = state + HEADER_SIZE;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			int label = states[base + 2 * mid];
+			if (label < c){
+				low = mid + 1;
+			}
+			else if (label > c){
+				high = mid - 1;
+			}
+			else{
+				return states[base + 2 * mid + 1];
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,115 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Restricts a breakpoint to calls with matching arguments, written after the keyword pattern:
+ *
+ *   Open Connection | args: db-replica-7       stop when any argument contains db-replica-7
+ *   Open Connection | arg2: ^port=54\d\d$      stop when the second argument matches
+ *
+ * Arguments are matched the way keyword names are: a pattern without regular expression
+ * metacharacters is a plain substring, anything else is a LinearRegex found anywhere in the argument.
+ * The arguments are the ones Robot Framework passes to the listener, as written in the test data.
+ *
+ * @author nspilka
+ *
+ */
+public final class ArgumentCondition {
+
+	// Position of a condition that any argument can satisfy
+	public static final int ANY = 0;
+
+	// The argument that must match, starting at 1, or ANY
+	private final int position;
+
+	// The argument pattern
+	private final String pattern;
+
+	// The compiled pattern, null for plain literals
+	private final LinearRegex regex;
+
+	/**
+	 * Create an argument condition
+	 * @param position the argument that must match, starting at 1, or ANY
+	 * @param pattern the argument pattern
+	 * @throws PatternSyntaxException if the pattern is not valid for LinearRegex
+	 */
+	public ArgumentCondition(int position, String pattern) throws PatternSyntaxException {
+		if (position < ANY){
+			throw new IllegalArgumentException("Invalid argument position " + position);
+		}
+		this.position = position;
+		this.pattern = pattern;
+		this.regex = BreakpointMatcher.isLiteral(pattern) ? null : LinearRegex.compile(pattern);
+	}
+
+	/**
+	 * Parse the value of an args: or argN: qualifier
+	 * @param position the argument that must match, starting at 1, or ANY for args:
+	 * @param value the text after the colon
+	 * @param breakpointText the whole breakpoint text, for error messages
+	 * @return the argument condition
+	 * @throws PatternSyntaxException if the value is empty or not a valid pattern
+	 */
+	static ArgumentCondition parse(int position, String value, String breakpointText) throws PatternSyntaxException {
+		String argumentPattern = value.trim();
+		if (argumentPattern.isEmpty()){
+			throw new PatternSyntaxException("Missing argument pattern", breakpointText, -1);
+		}
+		return new ArgumentCondition(position, argumentPattern);
+	}
+
+	/**
+	 * Check the arguments of a keyword call.  The arguments are not copied or formatted
+	 * @param arguments the args attribute of the keyword, may be null
+	 * @return true if the condition holds
+	 */
+	public boolean matches(List<?> arguments) {
+		if (arguments == null){
+			return false;
+		}
+		if (position != ANY){
+			return position <= arguments.size() && matches(arguments.get(position - 1));
+		}
+		for (int i = 0; i < arguments.size(); i++){
+			if (matches(arguments.get(i))){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Match a single argument
+	 */
+	private boolean matches(Object argument) {
+		if (argument == null){
+			return false;
+		}
+		String text = argument.toString();
+		return (regex == null) ? text.contains(pattern) : regex.find(text);
+	}
+
+	/**
+	 * Get the argument that must match
+	 * @return the argument position, starting at 1, or ANY
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+	/**
+	 * Get the argument pattern
+	 * @return the pattern
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	@Override
+	public String toString() {
+		return ((position == ANY) ? "args" : "arg" + position) + ": " + pattern;
+	}
+}
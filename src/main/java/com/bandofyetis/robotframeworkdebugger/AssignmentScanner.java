@@ -0,0 +1,116 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+/**
+ * Recognizes the log messages Robot Framework writes when a keyword assigns a variable:
+ *
+ *   ${name} = value
+ *   @{list} = [ a | b ]
+ *   &{dict} = { a=1 }
+ *
+ * scan() looks at each character at most once and does not allocate.  Most log messages are not
+ * assignments and are rejected by the first two characters.  The name ends at the brace that closes
+ * the opening one (names like ${a_${b}} nest), the value starts after the first = that follows, so
+ * values may contain = themselves.  White space around the = and at the end of the value is not part
+ * of name or value.  name() and value() cut the strings only when the assignment is kept.
+ *
+ * A scanner keeps the positions of the last message it scanned, so one scanner must not be shared
+ * between threads.
+ *
+ * @author nspilka
+ *
+ */
+final class AssignmentScanner {
+
+	// The last message scanned
+	private String message;
+
+	// End of the name, and start and end of the value, in the last message scanned
+	private int nameEnd;
+	private int valueStart;
+	private int valueEnd;
+
+	/**
+	 * Scan a log message
+	 * @param message the message, may be null
+	 * @return true if the message is an assignment, then name() and value() return its parts
+	 */
+	boolean scan(String message) {
+		this.message = null;
+		if (message == null || message.length() < 4){
+			return false;
+		}
+		char sigil = message.charAt(0);
+		if ((sigil != '$' && sigil != '@' && sigil != '&') || message.charAt(1) != '{'){
+			return false;
+		}
+
+		// find the brace that closes the name
+		int length = message.length();
+		int depth = 1;
+		int i = 2;
+		for (; i < length; i++){
+			char c = message.charAt(i);
+			if (c == '{'){
+				depth++;
+			}
+			else if (c == '}' && --depth == 0){
+				break;
+			}
+		}
+		if (i == length || i == 2){
+			// unterminated or empty name
+			return false;
+		}
+		int end = i + 1;
+
+		// the = may have white space around it
+		i = skipWhitespace(message, end);
+		if (i == length || message.charAt(i) != '='){
+			return false;
+		}
+		int start = skipWhitespace(message, i + 1);
+		int last = length;
+		while (last > start && Character.isWhitespace(message.charAt(last - 1))){
+			last--;
+		}
+
+		this.message = message;
+		this.nameEnd = end;
+		this.valueStart = start;
+		this.valueEnd = last;
+		return true;
+	}
+
+	/**
+	 * Get the name of the variable assigned in the last message scanned
+	 * @return the name, including ${ } or @{ } or &{ }
+	 * @throws IllegalStateException if the last message was not an assignment
+	 */
+	String name() {
+		checkScanned();
+		return message.substring(0, nameEnd);
+	}
+
+	/**
+	 * Get the value assigned in the last message scanned
+	 * @return the value, everything after the first = without surrounding white space
+	 * @throws IllegalStateException if the last message was not an assignment
+	 */
+	String value() {
+		checkScanned();
+		return message.substring(valueStart, valueEnd);
+	}
+
+	private void checkScanned() {
+		if (message == null){
+			throw new IllegalStateException("The last message scanned was not an assignment");
+		}
+	}
+
+	private static int skipWhitespace(String s, int i) {
+		while (i < s.length() && Character.isWhitespace(s.charAt(i))){
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,171 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A breakpoint registered with the debugger.
+ *
+ * The id is given out by the BreakpointRegistry and never changes, so a breakpoint can be tracked
+ * while its position in the sorted breakpoint list moves as other breakpoints come and go.
+ *
+ * Every breakpoint counts the keywords that matched it and for which its library, argument and
+ * variable conditions, if any, held.  The count is only incremented by the Robot Framework thread,
+ * with an atomic increment that neither locks nor allocates, and can be read from any thread.
+ *
+ * @author nspilka
+ *
+ */
+public class Breakpoint {
+
+	// Stable identity of the breakpoint
+	private final long id;
+
+	// The breakpoint text, as entered by the user
+	private final String text;
+
+	// The keyword name pattern part of the text
+	private final String pattern;
+
+	// When to stop, null to stop on every hit
+	private final HitCondition hitCondition;
+
+	// Condition on the variables, null to stop regardless of variables
+	private final BreakpointCondition condition;
+
+	// Conditions on the keyword arguments, null if there are none
+	private final ArgumentCondition[] argumentConditions;
+
+	// The part of the test run the breakpoint applies to, null if it applies everywhere
+	private final BreakpointScope scope;
+
+	// Number of keywords that matched this breakpoint
+	private final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * Create a breakpoint.  Breakpoints are created by the BreakpointRegistry
+	 * @param id the id of the breakpoint
+	 * @param text the breakpoint text
+	 * @throws PatternSyntaxException if the qualifiers of the text are invalid
+	 */
+	Breakpoint(long id, String text) throws PatternSyntaxException {
+		this.id = id;
+		this.text = text;
+		BreakpointText parts = BreakpointText.parse(text);
+		this.pattern = parts.pattern;
+		this.hitCondition = parts.hitCondition;
+		this.condition = parts.condition;
+		this.argumentConditions = parts.argumentConditions;
+		this.scope = parts.scope;
+	}
+
+	/**
+	 * Get the id of the breakpoint
+	 * @return the id, unique within its registry
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Get the breakpoint text
+	 * @return the text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Get the keyword name pattern of the breakpoint, without qualifiers
+	 * @return the pattern
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Get the hit condition of the breakpoint
+	 * @return the hit condition, or null if the breakpoint stops on every hit
+	 */
+	public HitCondition getHitCondition() {
+		return hitCondition;
+	}
+
+	/**
+	 * Get the condition of the breakpoint
+	 * @return the condition, or null if the breakpoint does not depend on variables
+	 */
+	public BreakpointCondition getCondition() {
+		return condition;
+	}
+
+	/**
+	 * Get the conditions on the keyword arguments
+	 * @return the argument conditions, empty if the breakpoint does not depend on arguments
+	 */
+	public List<ArgumentCondition> getArgumentConditions() {
+		if (argumentConditions == null){
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(Arrays.asList(argumentConditions));
+	}
+
+	/**
+	 * Get the part of the test run the breakpoint applies to
+	 * @return the scope, or null if the breakpoint applies everywhere
+	 */
+	public BreakpointScope getScope() {
+		return scope;
+	}
+
+	/**
+	 * Get the number of keywords that matched this breakpoint
+	 * @return the hit count
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Set the hit count back to zero
+	 */
+	public void resetHitCount() {
+		hits.set(0);
+	}
+
+	/**
+	 * Count a keyword that matched this breakpoint.  Called by the Robot Framework thread.
+	 * A keyword of another library, whose arguments do not match, or for which the condition does not
+	 * hold is not counted
+	 * @param attrs the attributes of the keyword, may be null
+	 * @param variables the variables visible at the keyword, used only if the breakpoint has a condition
+	 * @return true if the breakpoint stops on this hit
+	 */
+	boolean registerHit(ItemAttributes attrs, BreakpointCondition.Variables variables) {
+		if (scope != null && scope.getLibrary() != null
+				&& !scope.matchesLibrary((attrs == null) ? null : attrs.getLibName())){
+			return false;
+		}
+		if (argumentConditions != null){
+			List<?> arguments = (attrs == null) ? null : attrs.getArgs();
+			for (ArgumentCondition argumentCondition : argumentConditions){
+				if (!argumentCondition.matches(arguments)){
+					return false;
+				}
+			}
+		}
+		if (condition != null && !condition.evaluate(variables)){
+			return false;
+		}
+		long count = hits.incrementAndGet();
+		return hitCondition == null || hitCondition.isMet(count);
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
@@ -0,0 +1,501 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The condition of a conditional breakpoint, written after the keyword pattern:
+ *
+ *   Retry Request | if: ${retries} > 3
+ *   Check Status | if: '${status}' == 'ERROR' and not ${ignored}
+ *
+ * A condition compares variables, quoted strings and numbers with == != &lt; &lt;= &gt; &gt;=, and
+ * combines comparisons with and, or, not and parentheses.  Inside quotes ${name} is replaced by the
+ * value of the variable, like Robot Framework does before it evaluates a Run Keyword If condition.
+ * Two values that are both numbers are compared as numbers, anything else as strings.  A value on its
+ * own is true unless it is empty, 0, false, none, no or off.  A condition that uses a variable that is
+ * not defined is false.
+ *
+ * The text is parsed once, when the breakpoint is created, into a tree of nodes that is evaluated
+ * every time the keyword pattern matches.
+ *
+ * @author nspilka
+ *
+ */
+public abstract class BreakpointCondition {
+
+	/**
+	 * Looks up the value of a variable
+	 */
+	public interface Variables {
+		/**
+		 * Get the value of a variable
+		 * @param name the variable name with its decoration, e.g. ${retries}
+		 * @return the value, or null if the variable is not defined
+		 */
+		String get(String name);
+	}
+
+	// The condition text
+	private String text;
+
+	/**
+	 * Evaluate the condition
+	 * @param variables the variables visible at the keyword
+	 * @return true if the breakpoint should stop
+	 */
+	public abstract boolean evaluate(Variables variables);
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	/**
+	 * Parse the value of an if: qualifier
+	 * @param expression the condition text
+	 * @param breakpointText the whole breakpoint text, for error messages
+	 * @return the parsed condition
+	 * @throws PatternSyntaxException if the condition is not valid
+	 */
+	static BreakpointCondition parse(String expression, String breakpointText) throws PatternSyntaxException {
+		BreakpointCondition condition = new Parser(expression, breakpointText).parse();
+		condition.text = expression.trim();
+		return condition;
+	}
+
+	/**
+	 * Check if a value counts as true
+	 */
+	static boolean isTrue(String value) {
+		if (value == null){
+			return false;
+		}
+		String v = value.trim();
+		return !(v.isEmpty() || v.equals("0") || v.equalsIgnoreCase("false") || v.equalsIgnoreCase("none")
+				|| v.equalsIgnoreCase("no") || v.equalsIgnoreCase("off"));
+	}
+
+	/**
+	 * Parse a number
+	 * @return the number, or NaN if the value is not a number
+	 */
+	static double toNumber(String value) {
+		String v = value.trim();
+		if (v.isEmpty()){
+			return Double.NaN;
+		}
+		char c = v.charAt(0);
+		if (!((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.')){
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(v);
+		}
+		catch (NumberFormatException e){
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Both sides must hold
+	 */
+	static final class And extends BreakpointCondition {
+		private final BreakpointCondition left;
+		private final BreakpointCondition right;
+
+		And(BreakpointCondition left, BreakpointCondition right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean evaluate(Variables variables) {
+			return left.evaluate(variables) && right.evaluate(variables);
+		}
+	}
+
+	/**
+	 * Either side must hold
+	 */
+	static final class Or extends BreakpointCondition {
+		private final BreakpointCondition left;
+		private final BreakpointCondition right;
+
+		Or(BreakpointCondition left, BreakpointCondition right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public boolean evaluate(Variables variables) {
+			return left.evaluate(variables) || right.evaluate(variables);
+		}
+	}
+
+	/**
+	 * The operand must not hold
+	 */
+	static final class Not extends BreakpointCondition {
+		private final BreakpointCondition operand;
+
+		Not(BreakpointCondition operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public boolean evaluate(Variables variables) {
+			return !operand.evaluate(variables);
+		}
+	}
+
+	/**
+	 * A single value, true unless it is empty or one of the false words
+	 */
+	static final class Truth extends BreakpointCondition {
+		private final Operand operand;
+
+		Truth(Operand operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public boolean evaluate(Variables variables) {
+			return isTrue(operand.value(variables));
+		}
+	}
+
+	/**
+	 * A comparison of two values
+	 */
+	static final class Comparison extends BreakpointCondition {
+		private final Operand left;
+		private final String operator;
+		private final Operand right;
+
+		Comparison(Operand left, String operator, Operand right) {
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		public boolean evaluate(Variables variables) {
+			String leftValue = left.value(variables);
+			String rightValue = right.value(variables);
+			if (leftValue == null || rightValue == null){
+				return false;
+			}
+			double leftNumber = left.number(leftValue);
+			double rightNumber = right.number(rightValue);
+			int c;
+			if (!Double.isNaN(leftNumber) && !Double.isNaN(rightNumber)){
+				c = Double.compare(leftNumber, rightNumber);
+				if (leftNumber == rightNumber){
+					c = 0;
+				}
+			}
+			else{
+				c = leftValue.compareTo(rightValue);
+			}
+			if (operator.equals("==")){
+				return c == 0;
+			}
+			if (operator.equals("!=")){
+				return c != 0;
+			}
+			if (operator.equals("<")){
+				return c < 0;
+			}
+			if (operator.equals("<=")){
+				return c <= 0;
+			}
+			if (operator.equals(">")){
+				return c > 0;
+			}
+			return c >= 0;
+		}
+	}
+
+	/**
+	 * A value in a condition
+	 */
+	abstract static class Operand {
+		/**
+		 * Get the value
+		 * @return the value, or null if it uses an undefined variable
+		 */
+		abstract String value(Variables variables);
+
+		/**
+		 * Get the value as a number
+		 * @param value the value returned by value()
+		 * @return the number, or NaN
+		 */
+		double number(String value) {
+			return toNumber(value);
+		}
+	}
+
+	/**
+	 * A variable
+	 */
+	static final class Variable extends Operand {
+		private final String name;
+
+		Variable(String name) {
+			this.name = name;
+		}
+
+		@Override
+		String value(Variables variables) {
+			return variables.get(name);
+		}
+	}
+
+	/**
+	 * A number or a quoted string without variables.  Its numeric value is computed once
+	 */
+	static final class Literal extends Operand {
+		private final String value;
+		private final double number;
+
+		Literal(String value) {
+			this.value = value;
+			this.number = toNumber(value);
+		}
+
+		@Override
+		String value(Variables variables) {
+			return value;
+		}
+
+		@Override
+		double number(String ignored) {
+			return number;
+		}
+	}
+
+	/**
+	 * A quoted string with variables in it
+	 */
+	static final class Template extends Operand {
+		// literal text and variable names, alternating, starting with literal text
+		private final String[] parts;
+
+		Template(List<String> parts) {
+			this.parts = parts.toArray(new String[parts.size()]);
+		}
+
+		@Override
+		String value(Variables variables) {
+			StringBuilder value = new StringBuilder();
+			for (int i = 0; i < parts.length; i++){
+				if (i % 2 == 0){
+					value.append(parts[i]);
+				}
+				else{
+					String variable = variables.get(parts[i]);
+					if (variable == null){
+						return null;
+					}
+					value.append(variable);
+				}
+			}
+			return value.toString();
+		}
+	}
+
+	/**
+	 * Recursive descent parser for conditions
+	 */
+	private static final class Parser {
+		private final String expression;
+		private final String breakpointText;
+		private int pos;
+
+		Parser(String expression, String breakpointText) {
+			this.expression = expression;
+			this.breakpointText = breakpointText;
+		}
+
+		BreakpointCondition parse() {
+			skipSpaces();
+			if (pos == expression.length()){
+				throw error("Empty condition");
+			}
+			BreakpointCondition condition = parseOr();
+			skipSpaces();
+			if (pos < expression.length()){
+				throw error("Unexpected '" + expression.substring(pos) + "'");
+			}
+			return condition;
+		}
+
+		private BreakpointCondition parseOr() {
+			BreakpointCondition left = parseAnd();
+			while (acceptWord("or")){
+				left = new Or(left, parseAnd());
+			}
+			return left;
+		}
+
+		private BreakpointCondition parseAnd() {
+			BreakpointCondition left = parseNot();
+			while (acceptWord("and")){
+				left = new And(left, parseNot());
+			}
+			return left;
+		}
+
+		private BreakpointCondition parseNot() {
+			if (acceptWord("not")){
+				return new Not(parseNot());
+			}
+			return parseComparison();
+		}
+
+		private BreakpointCondition parseComparison() {
+			skipSpaces();
+			if (peek() == '('){
+				pos++;
+				BreakpointCondition inner = parseOr();
+				skipSpaces();
+				if (peek() != ')'){
+					throw error("Missing ')'");
+				}
+				pos++;
+				return inner;
+			}
+			Operand left = parseOperand();
+			skipSpaces();
+			String operator = parseOperator();
+			if (operator == null){
+				return new Truth(left);
+			}
+			return new Comparison(left, operator, parseOperand());
+		}
+
+		private String parseOperator() {
+			String[] operators = {"==", "!=", "<=", ">=", "<", ">"};
+			for (String operator : operators){
+				if (expression.startsWith(operator, pos)){
+					pos += operator.length();
+					return operator;
+				}
+			}
+			return null;
+		}
+
+		private Operand parseOperand() {
+			skipSpaces();
+			char c = peek();
+			if (isVariableStart(pos)){
+				return new Variable(parseVariableName());
+			}
+			if (c == '\'' || c == '"'){
+				return parseString(c);
+			}
+			int start = pos;
+			while (pos < expression.length() && isWordChar(expression.charAt(pos))){
+				pos++;
+			}
+			if (start == pos){
+				throw error((pos < expression.length()) ? "Unexpected '" + c + "'" : "Missing value");
+			}
+			String word = expression.substring(start, pos);
+			if (Double.isNaN(toNumber(word)) && !word.equalsIgnoreCase("true") && !word.equalsIgnoreCase("false")
+					&& !word.equalsIgnoreCase("none")){
+				pos = start;
+				throw error("Unknown word '" + word + "', quote strings");
+			}
+			return new Literal(word);
+		}
+
+		private Operand parseString(char quote) {
+			pos++;
+			List<String> parts = new ArrayList<String>();
+			StringBuilder literal = new StringBuilder();
+			while (true){
+				if (pos >= expression.length()){
+					throw error("Unterminated string");
+				}
+				char c = expression.charAt(pos);
+				if (c == quote){
+					pos++;
+					break;
+				}
+				if (c == '\\' && pos + 1 < expression.length()){
+					literal.append(expression.charAt(pos + 1));
+					pos += 2;
+				}
+				else if (isVariableStart(pos)){
+					parts.add(literal.toString());
+					literal.setLength(0);
+					parts.add(parseVariableName());
+				}
+				else{
+					literal.append(c);
+					pos++;
+				}
+			}
+			if (parts.isEmpty()){
+				return new Literal(literal.toString());
+			}
+			parts.add(literal.toString());
+			return new Template(parts);
+		}
+
+		private String parseVariableName() {
+			int start = pos;
+			int depth = 0;
+			pos++;
+			while (pos < expression.length()){
+				char c = expression.charAt(pos++);
+				if (c == '{'){
+					depth++;
+				}
+				else if (c == '}' && --depth == 0){
+					return expression.substring(start, pos);
+				}
+			}
+			pos = start;
+			throw error("Unterminated variable");
+		}
+
+		private boolean isVariableStart(int at) {
+			return at + 1 < expression.length() && "$@&%".indexOf(expression.charAt(at)) >= 0
+					&& expression.charAt(at + 1) == '{';
+		}
+
+		private boolean acceptWord(String word) {
+			skipSpaces();
+			int end = pos + word.length();
+			if (expression.regionMatches(true, pos, word, 0, word.length())
+					&& (end == expression.length() || !isWordChar(expression.charAt(end)))){
+				pos = end;
+				return true;
+			}
+			return false;
+		}
+
+		private static boolean isWordChar(char c) {
+			return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-' || c == '+';
+		}
+
+		private char peek() {
+			return (pos < expression.length()) ? expression.charAt(pos) : 0;
+		}
+
+		private void skipSpaces() {
+			while (pos < expression.length() && Character.isWhitespace(expression.charAt(pos))){
+				pos++;
+			}
+		}
+
+		private PatternSyntaxException error(String description) {
+			return new PatternSyntaxException(description + " in condition '" + expression.trim() + "'", breakpointText, -1);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+
+/**
+ * A cache of breakpoint decisions, indexed by the symbol of the keyword name in SymbolTable.NAMES.
+ *
+ * Long runs call the same few thousand keywords over and over, so instead of matching every name
+ * again the debugger remembers the breakpoints a name matched (or that it matched none).  The name of
+ * a keyword is interned when its frame is named, so a lookup is two array reads by its id, without
+ * hashing or comparing the name.  The arrays grow with the highest id stored, and symbols are only
+ * given to keyword names and the documentation and libraries of keywords, so the cache is bounded by
+ * the size of the suite like the symbol table, at 12 bytes per symbol.
+ *
+ * Entries are tagged with a generation.  Changing the breakpoints bumps the generation, which
+ * invalidates every entry at once without touching the arrays.
+ *
+ * Lookups and stores are only done by the Robot Framework thread.  invalidate() may be called from
+ * any thread.  The hit and miss counters are written by the Robot Framework thread only, so values
+ * read from other threads may be slightly behind.
+ *
+ * @author nspilka
+ *
+ */
+public class BreakpointDecisionCache {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	// Bumped whenever the breakpoints change
+	private volatile int generation;
+
+	// The matching breakpoints by symbol, null for a symbol never stored
+	private Breakpoint[][] matches = new Breakpoint[INITIAL_CAPACITY][];
+
+	// The generation each decision was made in, by symbol
+	private int[] generations = new int[INITIAL_CAPACITY];
+
+	// Number of symbols with a decision, including invalidated ones
+	private int size;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Get the current generation.  Read it before computing a decision and pass it to store()
+	 * @return the current generation
+	 */
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Invalidate all entries.  Called after the breakpoints have changed
+	 */
+	public void invalidate() {
+		generation++;
+	}
+
+	/**
+	 * Look up the decision for a keyword name
+	 * @param symbol the symbol of the keyword name in SymbolTable.NAMES
+	 * @return the matching breakpoints (empty if none match), or null if the decision must be computed
+	 */
+	public Breakpoint[] lookup(int symbol) {
+		if (symbol < matches.length){
+			Breakpoint[] decision = matches[symbol];
+			if (decision != null && generations[symbol] == generation){
+				hits++;
+				return decision;
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Remember the decision for a keyword name
+	 * @param symbol the symbol of the keyword name in SymbolTable.NAMES
+	 * @param decision the matching breakpoints, empty if none match.  The array must not be modified afterwards
+	 * @param decisionGeneration the generation read before the decision was computed
+	 */
+	public void store(int symbol, Breakpoint[] decision, int decisionGeneration) {
+		if (symbol >= matches.length){
+			int capacity = Math.max(matches.length * 2, symbol + 1);
+			matches = Arrays.copyOf(matches, capacity);
+			generations = Arrays.copyOf(generations, capacity);
+		}
+		if (matches[symbol] == null){
+			size++;
+		}
+		matches[symbol] = decision;
+		generations[symbol] = decisionGeneration;
+	}
+
+	/**
+	 * Get the number of lookups answered from the cache
+	 * @return the hit count
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of lookups that had to be computed
+	 * @return the miss count
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the number of names currently held
+	 * @return the number of entries, including invalidated ones
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -0,0 +1,127 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes breakpoint files.
+ *
+ * A breakpoint file is UTF-8 text with one breakpoint per line.  Blank lines and lines starting with
+ * # are ignored.  A breakpoint that itself starts with # or \ is written with a leading \, which is
+ * dropped again when the file is read.
+ *
+ * @author nspilka
+ *
+ */
+public class BreakpointFile {
+
+	// Encoding of breakpoint files
+	public static final Charset CHARSET = Charset.forName("UTF-8");
+
+	// Lines starting with this are comments
+	static final char COMMENT = '#';
+
+	// Escapes a breakpoint that starts with COMMENT or ESCAPE
+	static final char ESCAPE = '\\';
+
+	/**
+	 * Class contains only static methods, make it impossible to instantiate
+	 */
+	private BreakpointFile(){}
+
+	/**
+	 * Read the breakpoints in a file
+	 * @param file the file to read
+	 * @return the breakpoints, in file order
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<String> read(Path file) throws IOException {
+		Reader reader = Files.newBufferedReader(file, CHARSET);
+		try {
+			return read(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read breakpoints
+	 * @param reader the breakpoint file contents
+	 * @return the breakpoints, in file order
+	 * @throws IOException if the reader fails
+	 */
+	public static List<String> read(Reader reader) throws IOException {
+		BufferedReader in = (reader instanceof BufferedReader) ? (BufferedReader) reader : new BufferedReader(reader);
+		List<String> breakpoints = new ArrayList<String>();
+		String line;
+		while ((line = in.readLine()) != null){
+			if (line.trim().isEmpty() || line.charAt(0) == COMMENT){
+				continue;
+			}
+			if (line.charAt(0) == ESCAPE){
+				line = line.substring(1);
+			}
+			breakpoints.add(line);
+		}
+		return breakpoints;
+	}
+
+	/**
+	 * Write breakpoints to a file.  The file is written next to the target and moved into place, so a
+	 * watcher never sees it half written
+	 * @param file the file to write
+	 * @param breakpoints the breakpoints to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path file, List<String> breakpoints) throws IOException {
+		Path absolute = file.toAbsolutePath();
+		Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try {
+			Writer writer = Files.newBufferedWriter(temp, CHARSET);
+			try {
+				write(writer, breakpoints);
+			}
+			finally {
+				writer.close();
+			}
+			try {
+				Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (AtomicMoveNotSupportedException e){
+				Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Write breakpoints
+	 * @param writer where to write the breakpoints
+	 * @param breakpoints the breakpoints to write
+	 * @throws IOException if the writer fails
+	 */
+	public static void write(Writer writer, List<String> breakpoints) throws IOException {
+		BufferedWriter out = (writer instanceof BufferedWriter) ? (BufferedWriter) writer : new BufferedWriter(writer);
+		for (String breakpoint : breakpoints){
+			if (breakpoint.trim().isEmpty() || breakpoint.charAt(0) == COMMENT || breakpoint.charAt(0) == ESCAPE){
+				out.write(ESCAPE);
+			}
+			out.write(breakpoint);
+			out.newLine();
+		}
+		out.flush();
+	}
+}
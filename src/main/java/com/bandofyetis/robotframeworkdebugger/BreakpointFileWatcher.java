@@ -0,0 +1,185 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Keeps the debugger's breakpoints in step with a breakpoint file.
+ *
+ * The directory of the file is watched with a WatchService.  When the file changes it is read again
+ * and compared with the contents last loaded: breakpoints that appeared are added and breakpoints that
+ * disappeared are removed, in one step.  Breakpoints added or removed in the breakpoints tab are left
+ * alone unless the file itself mentions them.  A file that cannot be read or that contains an invalid
+ * breakpoint is reported in the log and leaves the breakpoints unchanged.
+ *
+ * @author nspilka
+ *
+ */
+public class BreakpointFileWatcher implements Runnable {
+
+	// logger
+	static final Logger log = Logger.getLogger(BreakpointFileWatcher.class);
+
+	// How long to wait for more events after a change, so an editor saving in several writes
+	// causes one reload
+	static final long SETTLE_MILLIS = 100;
+
+	// The debugger whose breakpoints follow the file
+	private final RobotFrameworkDebugger debugger;
+
+	// The watched file
+	private final Path file;
+
+	// The breakpoints the file contained when it was last loaded
+	private Set<String> loaded = Collections.<String>emptySet();
+
+	// The watch service, null until started
+	private WatchService watchService;
+
+	/**
+	 * Create a watcher
+	 * @param debugger the debugger whose breakpoints should follow the file
+	 * @param file the breakpoint file
+	 */
+	public BreakpointFileWatcher(RobotFrameworkDebugger debugger, Path file) {
+		this.debugger = debugger;
+		this.file = file.toAbsolutePath();
+	}
+
+	/**
+	 * Load the file, if it exists, and start watching it on a daemon thread
+	 * @throws IOException if the directory of the file cannot be watched
+	 */
+	public synchronized void start() throws IOException {
+		reload();
+		watchService = FileSystems.getDefault().newWatchService();
+		file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+		Thread thread = new Thread(this, "Breakpoint file watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stop watching the file
+	 */
+	public synchronized void stop() {
+		if (watchService != null){
+			try {
+				watchService.close();
+			}
+			catch (IOException e){
+				log.warn("Could not close the watch service for " + file, e);
+			}
+			watchService = null;
+		}
+	}
+
+	/**
+	 * Watch loop.  Runs until stop() is called
+	 */
+	public void run() {
+		WatchService service;
+		synchronized (this) {
+			service = watchService;
+		}
+		if (service == null){
+			return;
+		}
+		try {
+			while (true){
+				WatchKey key = service.take();
+				boolean changed = pollEvents(key);
+
+				// let a burst of writes settle before reading the file
+				while (changed){
+					key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+					if (key == null){
+						reload();
+						break;
+					}
+					pollEvents(key);
+				}
+			}
+		}
+		catch (ClosedWatchServiceException e){
+			// stopped
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Read the file again and apply the difference to the last loaded contents.  A missing file counts
+	 * as an empty one.  Package level access for testing
+	 * @return true if the file could be applied, false if it was rejected
+	 */
+	synchronized boolean reload() {
+		List<String> contents;
+		try {
+			contents = Files.exists(file) ? BreakpointFile.read(file) : Collections.<String>emptyList();
+		}
+		catch (IOException e){
+			log.error("Could not read breakpoint file " + file, e);
+			return false;
+		}
+
+		Set<String> current = new HashSet<String>(contents);
+		List<String> added = new ArrayList<String>();
+		for (String breakpoint : current){
+			if (!loaded.contains(breakpoint)){
+				added.add(breakpoint);
+			}
+		}
+		List<String> removed = new ArrayList<String>();
+		for (String breakpoint : loaded){
+			if (!current.contains(breakpoint)){
+				removed.add(breakpoint);
+			}
+		}
+
+		try {
+			debugger.applyBreakpointChanges(added, removed);
+		}
+		catch (PatternSyntaxException e){
+			log.error("Breakpoint file " + file + " not applied: " + e.getMessage());
+			return false;
+		}
+		loaded = current;
+		log.info("Breakpoint file " + file + " loaded: " + added.size() + " added, " + removed.size() + " removed");
+		return true;
+	}
+
+	/**
+	 * Drain the events of a key
+	 * @param key the signalled key
+	 * @return true if one of the events concerns the watched file
+	 */
+	private boolean pollEvents(WatchKey key) {
+		boolean changed = false;
+		for (WatchEvent<?> event : key.pollEvents()){
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())){
+				changed = true;
+			}
+		}
+		key.reset();
+		return changed;
+	}
+}
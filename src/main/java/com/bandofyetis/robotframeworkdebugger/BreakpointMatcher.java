@@ -0,0 +1,250 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A class that matches keyword names against the list of breakpoints.
+ *
+ * Every breakpoint is compiled once, when it is added, instead of once per keyword.
+ * Breakpoints without regular expression metacharacters are plain literals.  All literals are combined
+ * into a single Aho-Corasick automaton, so checking them costs one pass over the keyword name no matter
+ * how many there are.  Regular expression breakpoints are compiled with LinearRegex, which never
+ * backtracks, and combined into one NFA program that is also matched in a single pass.  The steps of
+ * that pass are cached as a DFA, so a keyword name that was checked before costs one cached step per
+ * character however many regular expressions there are.  A name whose steps are not cached yet costs
+ * O(name length * total size of the regular expressions), once.
+ *
+ * Only the keyword name pattern of a breakpoint is matched here, qualifiers such as hit counts are
+ * left to the caller.  findAllMatches() reports every matching breakpoint.  A matcher is immutable with
+ * respect to the breakpoint list it was built from, and is only ever used for matching on the Robot
+ * Framework thread, which lets it keep scratch space for matching.
+ *
+ * @author nspilka
+ *
+ */
+public class BreakpointMatcher {
+
+	// Characters that make a breakpoint a regular expression rather than a plain literal
+	static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+	// Returned by findAllMatches() when no breakpoint matches
+	static final Breakpoint[] NO_MATCHES = new Breakpoint[0];
+
+	// The breakpoints, in display order
+	private final Breakpoint[] breakpoints;
+
+	// The compiled breakpoint patterns, in the same order as the breakpoint list
+	private final CompiledBreakpoint[] compiled;
+
+	// All non empty literals, combined.  Null if there are none
+	private final AhoCorasickAutomaton literals;
+
+	// Lowest index of an empty breakpoint (which matches everything), or NO_MATCH
+	private final int emptyIndex;
+
+	// All regular expressions, combined into one program.  Null if there are none
+	private final LinearRegex regexes;
+
+	// The breakpoints found by the current findAllMatches() call, by index
+	private final BitSet found;
+
+	/**
+	 * Build a matcher for a list of breakpoints
+	 * @param breakpoints the breakpoint list, in display order
+	 * @param previous the matcher built for the previous breakpoint list (may be null).  Patterns it
+	 * already compiled are reused instead of being compiled again
+	 * @throws PatternSyntaxException if a breakpoint is not a valid pattern for LinearRegex
+	 */
+	public BreakpointMatcher(List<Breakpoint> breakpoints, BreakpointMatcher previous) throws PatternSyntaxException {
+		Map<String, CompiledBreakpoint> reusable = new HashMap<String, CompiledBreakpoint>();
+		if (previous != null){
+			for (CompiledBreakpoint cb : previous.compiled){
+				reusable.put(cb.text, cb);
+			}
+		}
+
+		this.breakpoints = breakpoints.toArray(new Breakpoint[breakpoints.size()]);
+		compiled = new CompiledBreakpoint[this.breakpoints.length];
+		int i = 0;
+		for (Breakpoint breakpoint : this.breakpoints){
+			CompiledBreakpoint cb = reusable.get(breakpoint.getPattern());
+			if (cb == null){
+				cb = new CompiledBreakpoint(breakpoint.getPattern());
+				reusable.put(cb.text, cb);
+			}
+			compiled[i++] = cb;
+		}
+
+		// Split into literals and regular expressions
+		List<String> literalTexts = new ArrayList<String>();
+		List<Integer> literalIds = new ArrayList<Integer>();
+		List<LinearRegex> regexList = new ArrayList<LinearRegex>();
+		List<Integer> regexIds = new ArrayList<Integer>();
+		int firstEmpty = AhoCorasickAutomaton.NO_MATCH;
+		for (i = 0; i < compiled.length; i++){
+			if (compiled[i].regex != null){
+				regexList.add(compiled[i].regex);
+				regexIds.add(i);
+			}
+			else if (compiled[i].text.isEmpty()){
+				firstEmpty = Math.min(firstEmpty, i);
+			}
+			else{
+				literalTexts.add(compiled[i].text);
+				literalIds.add(i);
+			}
+		}
+		emptyIndex = firstEmpty;
+		literals = literalTexts.isEmpty() ? null : new AhoCorasickAutomaton(literalTexts, toIntArray(literalIds));
+		regexes = regexList.isEmpty() ? null : LinearRegex.combine(regexList, toIntArray(regexIds));
+		found = new BitSet(compiled.length);
+	}
+
+	/**
+	 * Check that breakpoint text can be compiled, without building a matcher
+	 * @param text the breakpoint text
+	 * @throws PatternSyntaxException with a description of the problem if it cannot be compiled
+	 */
+	public static void checkSyntax(String text) throws PatternSyntaxException {
+		String pattern = BreakpointText.parse(text).pattern;
+		if (!isLiteral(pattern)){
+			LinearRegex.compile(pattern);
+		}
+	}
+
+	/**
+	 * Check that the regular expressions of a breakpoint list can be combined into one program
+	 * @param patterns the keyword name patterns of the breakpoints
+	 * @param previous a matcher whose compiled patterns are reused (may be null)
+	 * @throws PatternSyntaxException if a pattern cannot be compiled, or the combined program would be
+	 * larger than LinearRegex.MAX_COMBINED_PROGRAM_SIZE
+	 */
+	static void checkCombinedSize(Collection<String> patterns, BreakpointMatcher previous) throws PatternSyntaxException {
+		Map<String, LinearRegex> compiledRegexes = new HashMap<String, LinearRegex>();
+		if (previous != null){
+			for (CompiledBreakpoint cb : previous.compiled){
+				if (cb.regex != null){
+					compiledRegexes.put(cb.text, cb.regex);
+				}
+			}
+		}
+		long size = 0;
+		for (String pattern : patterns){
+			if (isLiteral(pattern)){
+				continue;
+			}
+			LinearRegex regex = compiledRegexes.get(pattern);
+			size += (regex != null) ? regex.getProgramSize() : LinearRegex.compile(pattern).getProgramSize();
+			if (size > LinearRegex.MAX_COMBINED_PROGRAM_SIZE){
+				throw new PatternSyntaxException("The regular expression breakpoints are too large to be matched together once repetitions are expanded", pattern, -1);
+			}
+		}
+	}
+
+	/**
+	 * Find all breakpoints that match a keyword name.  Only allocates the array it returns, which the
+	 * caller may keep
+	 * @param name the keyword name to check
+	 * @return the matching breakpoints in display order, or NO_MATCHES.  The array must not be modified
+	 */
+	public Breakpoint[] findAllMatches(String name) {
+		found.clear();
+		if (emptyIndex != AhoCorasickAutomaton.NO_MATCH){
+			for (int i = emptyIndex; i < compiled.length; i++){
+				if (compiled[i].regex == null && compiled[i].text.isEmpty()){
+					found.set(i);
+				}
+			}
+		}
+		if (literals != null){
+			literals.findAll(name, found);
+		}
+		if (regexes != null){
+			regexes.findAll(name, found);
+		}
+		if (found.isEmpty()){
+			return NO_MATCHES;
+		}
+		Breakpoint[] matches = new Breakpoint[found.cardinality()];
+		int m = 0;
+		for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)){
+			matches[m++] = breakpoints[i];
+		}
+		return matches;
+	}
+
+	/**
+	 * Get a breakpoint of this matcher
+	 * @param index the index of the breakpoint
+	 * @return the breakpoint
+	 */
+	public Breakpoint getBreakpoint(int index) {
+		return breakpoints[index];
+	}
+
+	/**
+	 * Get the number of breakpoints in this matcher
+	 * @return the number of breakpoints
+	 */
+	public int size() {
+		return compiled.length;
+	}
+
+	/**
+	 * Check whether a breakpoint was compiled as a plain literal.  Package level access for testing
+	 * @param index the index of the breakpoint
+	 * @return true if the breakpoint is matched with a substring search
+	 */
+	boolean isLiteral(int index) {
+		return compiled[index].regex == null;
+	}
+
+	/**
+	 * Check if breakpoint text contains no regular expression metacharacters
+	 * @param text the breakpoint text
+	 * @return true if the text can be matched with a plain substring search
+	 */
+	static boolean isLiteral(String text) {
+		for (int i = 0; i < text.length(); i++){
+			if (REGEX_METACHARACTERS.indexOf(text.charAt(i)) >= 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Convert a list of Integers to an int array
+	 * @param list the list to convert
+	 * @return an array with the same values
+	 */
+	private static int[] toIntArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++){
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * A single breakpoint pattern, compiled once
+	 */
+	private static class CompiledBreakpoint {
+		// the pattern text
+		final String text;
+
+		// null for plain literals
+		final LinearRegex regex;
+
+		CompiledBreakpoint(String text) throws PatternSyntaxException {
+			this.text = text;
+			this.regex = isLiteral(text) ? null : LinearRegex.compile(text);
+		}
+	}
+}
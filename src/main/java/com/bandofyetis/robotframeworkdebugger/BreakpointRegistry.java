@@ -0,0 +1,276 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The set of breakpoints, kept sorted the way the breakpoints tab shows them.
+ *
+ * Breakpoints are held in a PersistentSortedMap keyed by their text, so inserting, removing and
+ * finding the position of a breakpoint are O(log n), and a hash map gives O(1) lookup by id.  The
+ * breakpoints are a set of texts: adding text that is already registered returns the existing
+ * breakpoint, with its hit count, instead of adding a second one.  Bulk adds and removes rebuild the
+ * tree once in O(n + m log m) instead of doing m separate updates.
+ *
+ * Changes are synchronized.  Reads do not lock: the tree is an immutable snapshot replaced on every
+ * change, and the id map is concurrent.  The lists returned by getBreakpoints() and getTexts() are
+ * snapshots that never change, so they may be handed to the ui thread while the registry keeps changing.
+ *
+ * @author nspilka
+ *
+ */
+public class BreakpointRegistry {
+
+	// Display order of the breakpoints: case insensitive, with case only breaking ties
+	public static final Comparator<String> ORDER = CollectionHelpers.caseInsensitiveOrder();
+
+	// The breakpoints, sorted by text
+	private volatile PersistentSortedMap<String, Breakpoint> byText;
+
+	// The breakpoints by id, read without locking
+	private final Map<Long, Breakpoint> byId;
+
+	// Id of the next breakpoint created
+	private long nextId = 1;
+
+	/**
+	 * Create an empty registry
+	 */
+	public BreakpointRegistry() {
+		byText = new PersistentSortedMap<String, Breakpoint>(ORDER);
+		byId = new ConcurrentHashMap<Long, Breakpoint>();
+	}
+
+	/**
+	 * Add a breakpoint
+	 * @param text the breakpoint text
+	 * @return the new breakpoint, or the existing breakpoint with the same text
+	 * @throws PatternSyntaxException if the text is not a valid breakpoint
+	 */
+	public synchronized Breakpoint add(String text) {
+		Breakpoint breakpoint = byText.get(text);
+		if (breakpoint == null){
+			breakpoint = new Breakpoint(nextId, text);
+			nextId++;
+			byId.put(breakpoint.getId(), breakpoint);
+			byText = byText.put(text, breakpoint);
+		}
+		return breakpoint;
+	}
+
+	/**
+	 * Add several breakpoints at once
+	 * @param texts the breakpoint texts, in any order, duplicates allowed
+	 * @return the breakpoint for each text, new or existing, in the order of texts
+	 */
+	public synchronized List<Breakpoint> addAll(Collection<String> texts) {
+		return update(texts, Collections.<Breakpoint>emptyList());
+	}
+
+	/**
+	 * Remove a breakpoint
+	 * @param id the id of the breakpoint
+	 * @return the removed breakpoint, or null if there was no breakpoint with the id
+	 */
+	public synchronized Breakpoint remove(long id) {
+		Breakpoint breakpoint = byId.remove(id);
+		if (breakpoint != null){
+			byText = byText.remove(breakpoint.getText());
+		}
+		return breakpoint;
+	}
+
+	/**
+	 * Remove several breakpoints at once
+	 * @param breakpoints the breakpoints to remove.  Breakpoints that are not registered are ignored
+	 */
+	public synchronized void removeAll(Collection<Breakpoint> breakpoints) {
+		update(Collections.<String>emptyList(), breakpoints);
+	}
+
+	/**
+	 * Add and remove breakpoints in one step.  Readers of getBreakpoints() and getTexts() see either
+	 * the old or the new set, never a mix.  A few changes are applied to the tree one by one, many
+	 * changes rebuild it once
+	 * @param added the breakpoint texts to add, in any order, duplicates allowed
+	 * @param removed the breakpoints to remove.  Breakpoints that are not registered are ignored
+	 * @return the breakpoint for each added text, new or existing, in the order of added
+	 * @throws PatternSyntaxException if an added text is not a valid breakpoint.  Nothing is changed in that case
+	 */
+	public synchronized List<Breakpoint> update(Collection<String> added, Collection<Breakpoint> removed) {
+		PersistentSortedMap<String, Breakpoint> current = byText;
+
+		Map<Long, Breakpoint> removedById = new HashMap<Long, Breakpoint>();
+		for (Breakpoint breakpoint : removed){
+			if (byId.get(breakpoint.getId()) == breakpoint){
+				removedById.put(breakpoint.getId(), breakpoint);
+			}
+		}
+
+		// create the breakpoints that are really new.  Text that is removed and added again keeps its breakpoint.
+		// Nothing is changed until all of them are created, so an invalid text leaves the registry as it was
+		List<Breakpoint> result = new ArrayList<Breakpoint>(added.size());
+		Map<String, Breakpoint> created = new HashMap<String, Breakpoint>();
+		long id = nextId;
+		for (String text : added){
+			Breakpoint breakpoint = current.get(text);
+			if (breakpoint != null){
+				removedById.remove(breakpoint.getId());
+			}
+			else{
+				breakpoint = created.get(text);
+				if (breakpoint == null){
+					breakpoint = new Breakpoint(id++, text);
+					created.put(text, breakpoint);
+				}
+			}
+			result.add(breakpoint);
+		}
+		if (created.isEmpty() && removedById.isEmpty()){
+			return result;
+		}
+		nextId = id;
+		byId.keySet().removeAll(removedById.keySet());
+		for (Breakpoint breakpoint : created.values()){
+			byId.put(breakpoint.getId(), breakpoint);
+		}
+
+		int size = current.size();
+		int changes = created.size() + removedById.size();
+		if (changes * (32 - Integer.numberOfLeadingZeros(size)) < size){
+			for (Breakpoint breakpoint : removedById.values()){
+				current = current.remove(breakpoint.getText());
+			}
+			for (Map.Entry<String, Breakpoint> entry : created.entrySet()){
+				current = current.put(entry.getKey(), entry.getValue());
+			}
+			byText = current;
+			return result;
+		}
+
+		// merge the sorted new texts into the kept ones and rebuild the tree once
+		List<String> newTexts = new ArrayList<String>(created.keySet());
+		Collections.sort(newTexts, ORDER);
+		List<String> mergedTexts = new ArrayList<String>(size + newTexts.size());
+		List<Breakpoint> merged = new ArrayList<Breakpoint>(size + newTexts.size());
+		int n = 0;
+		for (Breakpoint existing : current.values()){
+			if (removedById.containsKey(existing.getId())){
+				continue;
+			}
+			while (n < newTexts.size() && ORDER.compare(newTexts.get(n), existing.getText()) < 0){
+				mergedTexts.add(newTexts.get(n));
+				merged.add(created.get(newTexts.get(n)));
+				n++;
+			}
+			mergedTexts.add(existing.getText());
+			merged.add(existing);
+		}
+		for (; n < newTexts.size(); n++){
+			mergedTexts.add(newTexts.get(n));
+			merged.add(created.get(newTexts.get(n)));
+		}
+		byText = PersistentSortedMap.fromSorted(ORDER, mergedTexts, merged);
+		return result;
+	}
+
+	/**
+	 * Remove the breakpoints at several positions at once
+	 * @param indices the positions to remove, in any order
+	 * @return the removed breakpoints
+	 * @throws IndexOutOfBoundsException if a position is outside the list
+	 */
+	public synchronized List<Breakpoint> removeAt(int[] indices) {
+		PersistentSortedMap<String, Breakpoint> current = byText;
+		List<Breakpoint> removed = new ArrayList<Breakpoint>(indices.length);
+		for (int index : indices){
+			removed.add(current.valueAt(index));
+		}
+		removeAll(removed);
+		return removed;
+	}
+
+	/**
+	 * Get a breakpoint by id
+	 * @param id the id of the breakpoint
+	 * @return the breakpoint, or null if there is none with the id
+	 */
+	public Breakpoint getById(long id) {
+		return byId.get(id);
+	}
+
+	/**
+	 * Get the breakpoint at a position
+	 * @param index the position in the sorted list
+	 * @return the breakpoint
+	 * @throws IndexOutOfBoundsException if the position is outside the list
+	 */
+	public Breakpoint getAt(int index) {
+		return byText.valueAt(index);
+	}
+
+	/**
+	 * Find the breakpoint with a given text
+	 * @param text the breakpoint text
+	 * @return the breakpoint, or null if there is none with the text
+	 */
+	public Breakpoint find(String text) {
+		return byText.get(text);
+	}
+
+	/**
+	 * Get the position of a breakpoint text
+	 * @param text the breakpoint text
+	 * @return the position in the sorted list, or -1 if the text is not registered
+	 */
+	public int indexOf(String text) {
+		return byText.indexOf(text);
+	}
+
+	/**
+	 * Get the current position of a breakpoint
+	 * @param breakpoint the breakpoint (may be null)
+	 * @return the position in the sorted list, or -1 if the breakpoint is not registered
+	 */
+	public int indexOf(Breakpoint breakpoint) {
+		if (breakpoint == null){
+			return -1;
+		}
+		PersistentSortedMap<String, Breakpoint> current = byText;
+		if (current.get(breakpoint.getText()) != breakpoint){
+			return -1;
+		}
+		return current.indexOf(breakpoint.getText());
+	}
+
+	/**
+	 * Get the number of breakpoints
+	 * @return the number of breakpoints
+	 */
+	public int size() {
+		return byText.size();
+	}
+
+	/**
+	 * Get the breakpoints in display order
+	 * @return a snapshot of the breakpoints, which is not affected by later changes
+	 */
+	public List<Breakpoint> getBreakpoints() {
+		return byText.values();
+	}
+
+	/**
+	 * Get the breakpoint texts in display order
+	 * @return a snapshot of the breakpoint texts, which is not affected by later changes
+	 */
+	public List<String> getTexts() {
+		return byText.keys();
+	}
+}
@@ -0,0 +1,183 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Collection;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Restricts a breakpoint to part of the test run, written after the keyword pattern:
+ *
+ *   Open Connection | suite: Database      only in suite Database (or a suite below it)
+ *   Open Connection | test: Failover       only in test Failover
+ *   Open Connection | tag: smoke           only in tests tagged smoke
+ *   Open Connection | lib: DatabaseLibrary only for keywords of DatabaseLibrary
+ *
+ * Suites are given by name or full name (Top.Database), tests by name or full name.  Names are
+ * compared ignoring case, tags ignoring case and spaces, like Robot Framework compares them.  A
+ * breakpoint with several scope qualifiers applies where all of them hold.
+ *
+ * The suite, test and tag qualifiers are decided once when a suite or test starts, the library
+ * qualifier for every keyword whose name matched.
+ *
+ * @author nspilka
+ *
+ */
+public final class BreakpointScope {
+
+	// Normalized suite name or full name, null if the breakpoint is not restricted to a suite
+	private final String suite;
+
+	// Normalized test name or full name, null if the breakpoint is not restricted to a test
+	private final String test;
+
+	// Normalized tag, null if the breakpoint is not restricted to a tag
+	private final String tag;
+
+	// Normalized library name, null if the breakpoint is not restricted to a library
+	private final String library;
+
+	/**
+	 * Create a scope
+	 * @param suite the suite name or full name, or null
+	 * @param test the test name or full name, or null
+	 * @param tag the tag, or null
+	 * @param library the library name, or null
+	 */
+	public BreakpointScope(String suite, String test, String tag, String library) {
+		this.suite = (suite == null) ? null : normalizeName(suite);
+		this.test = (test == null) ? null : normalizeName(test);
+		this.tag = (tag == null) ? null : normalizeTag(tag);
+		this.library = (library == null) ? null : normalizeName(library);
+	}
+
+	/**
+	 * Check the value of a scope qualifier
+	 * @param value the text after the colon
+	 * @param breakpointText the whole breakpoint text, for error messages
+	 * @return the trimmed value
+	 * @throws PatternSyntaxException if the value is empty
+	 */
+	static String parseValue(String value, String breakpointText) throws PatternSyntaxException {
+		String name = value.trim();
+		if (name.isEmpty()){
+			throw new PatternSyntaxException("Missing name in scope qualifier", breakpointText, -1);
+		}
+		return name;
+	}
+
+	/**
+	 * Normalize a suite, test or library name for comparison
+	 * @param name the name
+	 * @return the name in lower case
+	 */
+	static String normalizeName(String name) {
+		return name.trim().toLowerCase();
+	}
+
+	/**
+	 * Normalize a tag for comparison
+	 * @param tag the tag
+	 * @return the tag in lower case, without spaces
+	 */
+	static String normalizeTag(String tag) {
+		StringBuilder normalized = new StringBuilder(tag.length());
+		for (int i = 0; i < tag.length(); i++){
+			char c = tag.charAt(i);
+			if (!Character.isWhitespace(c)){
+				normalized.append(Character.toLowerCase(c));
+			}
+		}
+		return normalized.toString();
+	}
+
+	/**
+	 * Check if the breakpoint applies to a test, ignoring the library qualifier
+	 * @param suiteName the normalized name of the running suite, may be null
+	 * @param suiteLongName the normalized full name of the running suite, may be null
+	 * @param testName the normalized name of the running test, null between tests
+	 * @param testLongName the normalized full name of the running test, null between tests
+	 * @param tags the normalized tags of the running test, empty between tests
+	 * @return true if the suite, test and tag qualifiers hold
+	 */
+	boolean appliesTo(String suiteName, String suiteLongName, String testName, String testLongName, Collection<String> tags) {
+		if (suite != null && !suite.equals(suiteName) && !isSameOrParent(suite, suiteLongName)){
+			return false;
+		}
+		if (test != null && !test.equals(testName) && !test.equals(testLongName)){
+			return false;
+		}
+		return tag == null || tags.contains(tag);
+	}
+
+	/**
+	 * Check if the breakpoint applies to a keyword of a library
+	 * @param libraryName the library of the keyword, may be null
+	 * @return true if the library qualifier holds
+	 */
+	public boolean matchesLibrary(String libraryName) {
+		return library == null || (libraryName != null && library.equals(normalizeName(libraryName)));
+	}
+
+	/**
+	 * Check if a suite full name is a suite or one of its parents
+	 */
+	private static boolean isSameOrParent(String name, String longName) {
+		return longName != null && longName.startsWith(name)
+				&& (longName.length() == name.length() || longName.charAt(name.length()) == '.');
+	}
+
+	/**
+	 * Check if the breakpoint has a suite, test or tag qualifier
+	 * @return true if the breakpoint only applies to some tests
+	 */
+	public boolean isTestScoped() {
+		return suite != null || test != null || tag != null;
+	}
+
+	/**
+	 * Get the normalized suite qualifier
+	 * @return the suite, or null
+	 */
+	public String getSuite() {
+		return suite;
+	}
+
+	/**
+	 * Get the normalized test qualifier
+	 * @return the test, or null
+	 */
+	public String getTest() {
+		return test;
+	}
+
+	/**
+	 * Get the normalized tag qualifier
+	 * @return the tag, or null
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * Get the normalized library qualifier
+	 * @return the library, or null
+	 */
+	public String getLibrary() {
+		return library;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		append(text, BreakpointText.SUITE, suite);
+		append(text, BreakpointText.TEST, test);
+		append(text, BreakpointText.TAG, tag);
+		append(text, BreakpointText.LIB, library);
+		return text.toString();
+	}
+
+	private static void append(StringBuilder text, String qualifier, String value) {
+		if (value != null){
+			text.append((text.length() > 0) ? BreakpointText.SEPARATOR : "").append(qualifier).append(": ").append(value);
+		}
+	}
+}
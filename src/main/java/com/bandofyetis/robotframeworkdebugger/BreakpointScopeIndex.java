@@ -0,0 +1,225 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The breakpoints indexed by the suites, tests and tags they are restricted to.
+ *
+ * Breakpoints that apply to every test are kept in one bitset.  Every breakpoint with a suite, test
+ * or tag qualifier is filed under one of them - the test if it has one, otherwise the tag, otherwise
+ * the suite - in a map from the normalized name to a bitset of breakpoint positions.  When a suite or
+ * test starts, select() looks up the names of the running suite, test and tags, checks the few
+ * candidates it finds against all of their qualifiers and sets the positions of the breakpoints that
+ * apply.  The debugger matches keyword names against all breakpoints and drops the matches of the
+ * breakpoints that do not apply with isSelected(), so starting a test never invalidates the decisions
+ * cached for the names.
+ *
+ * An index is built again whenever the breakpoints change.  Only the scratch bitset used by select()
+ * changes after that, so an index must only be used by one thread at a time.  The Selection returned
+ * by selection() is immutable, so it can be published once and read by any thread without locking.
+ *
+ * @author nspilka
+ *
+ */
+final class BreakpointScopeIndex {
+
+	// The breakpoints, in display order
+	private final Breakpoint[] breakpoints;
+
+	// Positions of the breakpoints that apply to every test
+	private final BitSet unscoped;
+
+	// Positions of the test scoped breakpoints, by the normalized name they are filed under
+	private final Map<String, BitSet> byTest = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> byTag = new HashMap<String, BitSet>();
+	private final Map<String, BitSet> bySuite = new HashMap<String, BitSet>();
+
+	// Positions of the test scoped breakpoints
+	private final Map<Breakpoint, Integer> scopedPositions = new IdentityHashMap<Breakpoint, Integer>();
+
+	// The candidates of the last select() call
+	private final BitSet candidates = new BitSet();
+
+	/**
+	 * Index a list of breakpoints
+	 * @param breakpoints the breakpoints, in display order
+	 */
+	BreakpointScopeIndex(List<Breakpoint> breakpoints) {
+		this.breakpoints = breakpoints.toArray(new Breakpoint[breakpoints.size()]);
+		unscoped = new BitSet(this.breakpoints.length);
+		for (int i = 0; i < this.breakpoints.length; i++){
+			BreakpointScope scope = this.breakpoints[i].getScope();
+			if (scope == null || !scope.isTestScoped()){
+				unscoped.set(i);
+				continue;
+			}
+			scopedPositions.put(this.breakpoints[i], i);
+			if (scope.getTest() != null){
+				file(byTest, scope.getTest(), i);
+			}
+			else if (scope.getTag() != null){
+				file(byTag, scope.getTag(), i);
+			}
+			else{
+				file(bySuite, scope.getSuite(), i);
+			}
+		}
+	}
+
+	/**
+	 * Check if some breakpoints only apply to some tests
+	 * @return true if select() can return less than all breakpoints
+	 */
+	boolean hasTestScoped() {
+		return unscoped.cardinality() < breakpoints.length;
+	}
+
+	/**
+	 * Select the breakpoints that apply to a test.  All names must be normalized with BreakpointScope
+	 * @param suiteName the name of the running suite, may be null
+	 * @param suiteLongName the full name of the running suite, may be null
+	 * @param testName the name of the running test, null between tests
+	 * @param testLongName the full name of the running test, null between tests
+	 * @param tags the tags of the running test, empty between tests
+	 * @param selected set to the positions of the breakpoints that apply, in display order
+	 */
+	void select(String suiteName, String suiteLongName, String testName, String testLongName, Collection<String> tags, BitSet selected) {
+		selected.clear();
+		selected.or(unscoped);
+		if (scopedPositions.isEmpty()){
+			return;
+		}
+		candidates.clear();
+		lookup(byTest, testName, candidates);
+		lookup(byTest, testLongName, candidates);
+		for (String tag : tags){
+			lookup(byTag, tag, candidates);
+		}
+		lookup(bySuite, suiteName, candidates);
+		if (suiteLongName != null){
+			// a breakpoint for a suite applies to the suites below it too
+			for (int dot = suiteLongName.indexOf('.'); dot >= 0; dot = suiteLongName.indexOf('.', dot + 1)){
+				lookup(bySuite, suiteLongName.substring(0, dot), candidates);
+			}
+			lookup(bySuite, suiteLongName, candidates);
+		}
+
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)){
+			if (breakpoints[i].getScope().appliesTo(suiteName, suiteLongName, testName, testLongName, tags)){
+				selected.set(i);
+			}
+		}
+	}
+
+	/**
+	 * Select the breakpoints that apply to a test.  All names must be normalized with BreakpointScope
+	 * @param suiteName the name of the running suite, may be null
+	 * @param suiteLongName the full name of the running suite, may be null
+	 * @param testName the name of the running test, null between tests
+	 * @param testLongName the full name of the running test, null between tests
+	 * @param tags the tags of the running test, empty between tests
+	 * @return the breakpoints that apply, in display order
+	 */
+	List<Breakpoint> select(String suiteName, String suiteLongName, String testName, String testLongName, Collection<String> tags) {
+		BitSet selected = new BitSet(breakpoints.length);
+		select(suiteName, suiteLongName, testName, testLongName, tags, selected);
+		return toList(selected);
+	}
+
+	/**
+	 * Select the breakpoints that apply to a test into a new, immutable selection.  All names must be
+	 * normalized with BreakpointScope
+	 * @param suiteName the name of the running suite, may be null
+	 * @param suiteLongName the full name of the running suite, may be null
+	 * @param testName the name of the running test, null between tests
+	 * @param testLongName the full name of the running test, null between tests
+	 * @param tags the tags of the running test, empty between tests
+	 * @return the selection
+	 */
+	Selection selection(String suiteName, String suiteLongName, String testName, String testLongName, Collection<String> tags) {
+		BitSet selected = new BitSet(breakpoints.length);
+		select(suiteName, suiteLongName, testName, testLongName, tags, selected);
+		return new Selection(this, selected);
+	}
+
+	/**
+	 * Check if a breakpoint was selected
+	 * @param breakpoint a breakpoint of the index
+	 * @param selected the positions set by select()
+	 * @return true if the breakpoint applies to every test or its position is selected
+	 */
+	boolean isSelected(Breakpoint breakpoint, BitSet selected) {
+		Integer position = scopedPositions.get(breakpoint);
+		return position == null || selected.get(position);
+	}
+
+	/**
+	 * Get the breakpoints at a set of positions
+	 * @param positions positions set by select()
+	 * @return the breakpoints, in display order
+	 */
+	List<Breakpoint> toList(BitSet positions) {
+		List<Breakpoint> result = new ArrayList<Breakpoint>(positions.cardinality());
+		for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)){
+			result.add(breakpoints[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * The breakpoints selected for a test.  Immutable
+	 */
+	static final class Selection {
+		// The index the positions refer to
+		private final BreakpointScopeIndex index;
+
+		// Positions of the selected breakpoints, never changed after the constructor
+		private final BitSet selected;
+
+		private Selection(BreakpointScopeIndex index, BitSet selected) {
+			this.index = index;
+			this.selected = selected;
+		}
+
+		/**
+		 * Check if a breakpoint was selected
+		 * @param breakpoint a breakpoint
+		 * @return true if the breakpoint applies to every test, is not in the index, or was selected
+		 */
+		boolean isSelected(Breakpoint breakpoint) {
+			return index.isSelected(breakpoint, selected);
+		}
+
+		/**
+		 * Get the selected breakpoints
+		 * @return the breakpoints, in display order
+		 */
+		List<Breakpoint> toList() {
+			return index.toList(selected);
+		}
+	}
+
+	private static void file(Map<String, BitSet> index, String name, int position) {
+		BitSet positions = index.get(name);
+		if (positions == null){
+			positions = new BitSet();
+			index.put(name, positions);
+		}
+		positions.set(position);
+	}
+
+	private static void lookup(Map<String, BitSet> index, String name, BitSet candidates) {
+		if (name != null){
+			BitSet positions = index.get(name);
+			if (positions != null){
+				candidates.or(positions);
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The parts of a breakpoint text.
+ *
+ * A breakpoint is a keyword name pattern, optionally followed by qualifiers separated by " | ":
+ *
+ *   Open Connection | hit: every 100
+ *   Retry Request | if: ${retries} > 3
+ *   Open Connection | args: db-replica-7 | arg2: port=5432
+ *   Open Connection | suite: Database | tag: smoke
+ *
+ * The pattern ends at the first " | " that is followed by a qualifier name and a colon, so regular
+ * expressions such as "Open | Close" keep working.  Every segment after that must be a known qualifier.
+ *
+ * @author nspilka
+ *
+ */
+final class BreakpointText {
+
+	// Separates the pattern and the qualifiers
+	static final String SEPARATOR = " | ";
+
+	// Qualifier names
+	static final String HIT = "hit";
+	static final String IF = "if";
+	static final String ARGS = "args";
+	static final String SUITE = "suite";
+	static final String TEST = "test";
+	static final String TAG = "tag";
+	static final String LIB = "lib";
+
+	// The qualifier for a single argument, e.g. arg2
+	private static final Pattern ARG_N = Pattern.compile("arg([1-9][0-9]{0,8})");
+
+	// A segment that starts with a qualifier name and a colon
+	private static final Pattern QUALIFIER = Pattern.compile("^\\s*([A-Za-z][A-Za-z0-9]*)\\s*:(.*)$", Pattern.DOTALL);
+
+	// The keyword name pattern
+	final String pattern;
+
+	// When the breakpoint stops, null to stop on every hit
+	final HitCondition hitCondition;
+
+	// The condition on variables, null to stop regardless of variables
+	final BreakpointCondition condition;
+
+	// The conditions on the keyword arguments, null if there are none
+	final ArgumentCondition[] argumentConditions;
+
+	// The part of the test run the breakpoint applies to, null if it applies everywhere
+	final BreakpointScope scope;
+
+	private BreakpointText(String pattern, HitCondition hitCondition, BreakpointCondition condition,
+			ArgumentCondition[] argumentConditions, BreakpointScope scope) {
+		this.pattern = pattern;
+		this.hitCondition = hitCondition;
+		this.condition = condition;
+		this.argumentConditions = argumentConditions;
+		this.scope = scope;
+	}
+
+	/**
+	 * Split a breakpoint text into its pattern and qualifiers.  The pattern itself is not compiled
+	 * @param text the breakpoint text
+	 * @return the parts of the breakpoint
+	 * @throws PatternSyntaxException if a qualifier is unknown, repeated or invalid
+	 */
+	static BreakpointText parse(String text) throws PatternSyntaxException {
+		int end = findQualifiers(text);
+		if (end < 0){
+			return new BreakpointText(text, null, null, null, null);
+		}
+
+		HitCondition hitCondition = null;
+		BreakpointCondition condition = null;
+		List<ArgumentCondition> argumentConditions = new ArrayList<ArgumentCondition>();
+		String suite = null;
+		String test = null;
+		String tag = null;
+		String library = null;
+		Set<String> seen = new HashSet<String>();
+		int start = end + SEPARATOR.length();
+		while (start >= 0){
+			int next = text.indexOf(SEPARATOR, start);
+			String segment = (next < 0) ? text.substring(start) : text.substring(start, next);
+			Matcher m = QUALIFIER.matcher(segment);
+			if (!m.matches()){
+				throw new PatternSyntaxException("Expected a qualifier such as 'hit: 10'", text, start);
+			}
+			String name = m.group(1).toLowerCase();
+			if (!seen.add(name)){
+				throw new PatternSyntaxException("Repeated qualifier '" + name + "'", text, start);
+			}
+			Matcher argument = ARG_N.matcher(name);
+			if (name.equals(HIT)){
+				hitCondition = HitCondition.parse(m.group(2), text);
+			}
+			else if (name.equals(IF)){
+				condition = BreakpointCondition.parse(m.group(2), text);
+			}
+			else if (name.equals(ARGS)){
+				argumentConditions.add(ArgumentCondition.parse(ArgumentCondition.ANY, m.group(2), text));
+			}
+			else if (argument.matches()){
+				argumentConditions.add(ArgumentCondition.parse(Integer.parseInt(argument.group(1)), m.group(2), text));
+			}
+			else if (name.equals(SUITE)){
+				suite = BreakpointScope.parseValue(m.group(2), text);
+			}
+			else if (name.equals(TEST)){
+				test = BreakpointScope.parseValue(m.group(2), text);
+			}
+			else if (name.equals(TAG)){
+				tag = BreakpointScope.parseValue(m.group(2), text);
+			}
+			else if (name.equals(LIB)){
+				library = BreakpointScope.parseValue(m.group(2), text);
+			}
+			else{
+				throw new PatternSyntaxException("Unknown qualifier '" + name + "'", text, start);
+			}
+			start = (next < 0) ? -1 : next + SEPARATOR.length();
+		}
+		BreakpointScope scope = (suite == null && test == null && tag == null && library == null) ? null
+				: new BreakpointScope(suite, test, tag, library);
+		return new BreakpointText(text.substring(0, end), hitCondition, condition, argumentConditions.isEmpty() ? null
+				: argumentConditions.toArray(new ArgumentCondition[argumentConditions.size()]), scope);
+	}
+
+	/**
+	 * Find where the qualifiers of a breakpoint text begin
+	 * @param text the breakpoint text
+	 * @return the position of the separator in front of the first qualifier, or -1 if there are none
+	 */
+	private static int findQualifiers(String text) {
+		int separator = text.indexOf(SEPARATOR);
+		while (separator >= 0){
+			int next = text.indexOf(SEPARATOR, separator + SEPARATOR.length());
+			String segment = (next < 0) ? text.substring(separator + SEPARATOR.length())
+					: text.substring(separator + SEPARATOR.length(), next);
+			if (QUALIFIER.matcher(segment).matches()){
+				return separator;
+			}
+			separator = next;
+		}
+		return -1;
+	}
+}
@@ -1,7 +1,10 @@
 package com.bandofyetis.robotframeworkdebugger;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -10,11 +13,35 @@ import java.util.Map.Entry;
 
 public class CollectionHelpers {
 
+	// Orders strings ignoring case, with case only breaking ties so that no two strings are equal
+	private static final Comparator<String> CASE_INSENSITIVE_ORDER = new Comparator<String>() {
+		public int compare(String a, String b) {
+			int c = String.CASE_INSENSITIVE_ORDER.compare(a, b);
+			return (c != 0) ? c : a.compareTo(b);
+		}
+	};
+
+	// Orders comparable objects by their natural order
+	@SuppressWarnings("rawtypes")
+	private static final Comparator NATURAL_ORDER = new Comparator<Comparable<Object>>() {
+		public int compare(Comparable<Object> a, Comparable<Object> b) {
+			return a.compareTo(b);
+		}
+	};
+
 	/**
 	 * Standard constructor.  Class contains only static classes, make it impossible to instantiate
 	 */
 	private CollectionHelpers(){}
-	
+
+	/**
+	 * Sort the entries of a map by key
+	 * @param map the map to sort
+	 * @return a list of the entries, sorted by key, or null if the map is null
+	 * @deprecated copies and sorts the whole map on every call.  Keep the entries in a
+	 * {@link #newSortedMap()} instead, which stays sorted as entries are added or updated
+	 */
+	@Deprecated
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public static List<Set<Entry<String,Object>>> sortMapByKey(Map<String, ? extends Object> map){
 		if (map == null){
@@ -29,4 +56,236 @@ public class CollectionHelpers {
 	     });
 	     return returnlist;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Get the natural order of a comparable type
+	 * @return a comparator that orders by compareTo()
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K extends Comparable<? super K>> Comparator<K> naturalOrder(){
+		return (Comparator<K>)NATURAL_ORDER;
+	}
+
+	/**
+	 * Get an order of strings that ignores case.  Strings that only differ in case are ordered by
+	 * their natural order, so the order is consistent with equals
+	 * @return the comparator
+	 */
+	public static Comparator<String> caseInsensitiveOrder(){
+		return CASE_INSENSITIVE_ORDER;
+	}
+
+	/**
+	 * Create an empty sorted map ordered by the natural order of its keys
+	 * @return the map
+	 */
+	public static <K extends Comparable<? super K>, V> RankedMap<K, V> newSortedMap(){
+		return new RankedMap<K, V>(CollectionHelpers.<K>naturalOrder());
+	}
+
+	/**
+	 * Create an empty sorted map with string keys ordered ignoring case
+	 * @return the map
+	 */
+	public static <V> RankedMap<String, V> newCaseInsensitiveSortedMap(){
+		return new RankedMap<String, V>(CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Create an empty sorted map
+	 * @param comparator the order of the keys
+	 * @return the map
+	 */
+	public static <K, V> RankedMap<K, V> newSortedMap(Comparator<? super K> comparator){
+		return new RankedMap<K, V>(comparator);
+	}
+
+	/**
+	 * A map that keeps its keys sorted as entries are added, updated or removed, and can find the
+	 * entry at a position (its rank) and the position of a key.  Lookups, updates and rank queries are
+	 * O(log n), iteration is in key order.  This is what a virtual table needs to fill a row.
+	 *
+	 * The entries are held in an immutable balanced tree that every change replaces, so snapshot()
+	 * hands out the current entries in O(1) and they never change afterwards.  Subclasses can watch
+	 * changes through entryChanged() and entriesCleared().  Null keys are not supported.
+	 *
+	 * @param <K> the key type
+	 * @param <V> the value type
+	 */
+	public static class RankedMap<K, V> extends AbstractMap<K, V> {
+
+		// The entries.  Replaced on every change
+		private PersistentSortedMap<K, V> entries;
+
+		/**
+		 * Create an empty map
+		 * @param comparator the order of the keys
+		 */
+		public RankedMap(Comparator<? super K> comparator) {
+			this.entries = new PersistentSortedMap<K, V>(comparator);
+		}
+
+		/**
+		 * Get the order of the keys
+		 * @return the comparator
+		 */
+		public Comparator<? super K> comparator() {
+			return entries.comparator();
+		}
+
+		@Override
+		public int size() {
+			return entries.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return entries.isEmpty();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(Object key) {
+			try {
+				return (key == null) ? null : entries.get((K)key);
+			}
+			catch (ClassCastException e){
+				return null;
+			}
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOfKey(key) >= 0;
+		}
+
+		@Override
+		public V put(K key, V value) {
+			if (key == null){
+				throw new NullPointerException("key");
+			}
+			V old = entries.get(key);
+			entries = entries.put(key, value);
+			entryChanged(key);
+			return old;
+		}
+
+		@Override
+		public V remove(Object key) {
+			int index = indexOfKey(key);
+			if (index < 0){
+				return null;
+			}
+			K k = entries.keyAt(index);
+			V old = entries.valueAt(index);
+			entries = entries.remove(k);
+			entryChanged(k);
+			return old;
+		}
+
+		@Override
+		public void clear() {
+			if (!entries.isEmpty()){
+				entries = new PersistentSortedMap<K, V>(entries.comparator());
+			}
+			entriesCleared();
+		}
+
+		/**
+		 * Get the position of a key in sorted order
+		 * @param key the key to look up
+		 * @return the position, or -1 if the key is not in the map
+		 */
+		public int indexOf(K key) {
+			return entries.indexOf(key);
+		}
+
+		/**
+		 * Get the key at a position in sorted order
+		 * @param index the position
+		 * @return the key
+		 * @throws IndexOutOfBoundsException if the position is outside the map
+		 */
+		public K keyAt(int index) {
+			return entries.keyAt(index);
+		}
+
+		/**
+		 * Get the value at a position in sorted order
+		 * @param index the position
+		 * @return the value
+		 * @throws IndexOutOfBoundsException if the position is outside the map
+		 */
+		public V valueAt(int index) {
+			return entries.valueAt(index);
+		}
+
+		/**
+		 * Get the current entries.  Later changes to this map do not affect them
+		 * @return the immutable entries
+		 */
+		PersistentSortedMap<K, V> snapshot() {
+			return entries;
+		}
+
+		@Override
+		public Set<Map.Entry<K, V>> entrySet() {
+			return new AbstractSet<Map.Entry<K, V>>() {
+				@Override
+				public Iterator<Map.Entry<K, V>> iterator() {
+					final Iterator<Map.Entry<K, V>> it = entries.asMap().entrySet().iterator();
+					return new Iterator<Map.Entry<K, V>>() {
+						private K last;
+
+						public boolean hasNext() {
+							return it.hasNext();
+						}
+
+						public Map.Entry<K, V> next() {
+							Map.Entry<K, V> entry = it.next();
+							last = entry.getKey();
+							return entry;
+						}
+
+						public void remove() {
+							if (last == null){
+								throw new IllegalStateException();
+							}
+							// the iterator walks the entries it started with, so removing is safe
+							RankedMap.this.remove(last);
+							last = null;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return entries.size();
+				}
+			};
+		}
+
+		/**
+		 * Called after an entry was added, updated or removed
+		 * @param key the key of the entry
+		 */
+		protected void entryChanged(K key) {
+		}
+
+		/**
+		 * Called after all entries were removed
+		 */
+		protected void entriesCleared() {
+		}
+
+		@SuppressWarnings("unchecked")
+		private int indexOfKey(Object key) {
+			try {
+				return (key == null) ? -1 : entries.indexOf((K)key);
+			}
+			catch (ClassCastException e){
+				return -1;
+			}
+		}
+	}
+}
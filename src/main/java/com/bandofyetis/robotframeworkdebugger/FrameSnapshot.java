@@ -0,0 +1,218 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.List;
+import java.util.Map;
+
+import com.bandofyetis.robotframeworkdebugger.RobotFrameworkDebugContext.ContextType;
+
+/**
+ * An immutable copy of a debug context, as it was when the Robot Framework thread published it.
+ *
+ * Every frame snapshot links to the snapshot of the frame below it, so a snapshot of the stack is
+ * the snapshot of its top frame.  Frames that did not change since the last publication keep their
+ * snapshot, so consecutive stack snapshots share everything below the lowest changed frame.
+ *
+ * Every snapshot also holds the variables visible from its frame: the visible variables of the frame
+ * below with the frame's own variables on top, shadowing variables of the same name.  Both maps are
+ * immutable sorted maps that share their nodes with the previous snapshot of the frame, and when only
+ * a few variables of the frame changed the visible variables are updated from the previous snapshot
+ * with one O(log n) step per changed variable.
+ *
+ * Values stored off the heap appear in the variables as their preview.  The snapshot shares the
+ * context's map of these values, getFullVariable() reads them back.
+ *
+ * @author nspilka
+ *
+ */
+public final class FrameSnapshot {
+
+	// The snapshot of the frame below, null for the bottom frame
+	private final FrameSnapshot parent;
+
+	// Position in the stack, 0 is the bottom
+	private final int depth;
+
+	// The copied state of the context
+	private final int itemSymbol;
+	private final String itemName;
+	private final ContextType contextType;
+	private final ItemAttributes itemAttributes;
+	private final int lineNumber;
+
+	// The variables of the context
+	private final PersistentSortedMap<String, String> variables;
+
+	// The variables visible from the context, by name
+	private final PersistentSortedMap<String, String> visibleVariables;
+
+	// The variables of the context whose value is stored off the heap, by name
+	private final PersistentSortedMap<String, OffHeapValue> largeValues;
+
+	/**
+	 * Copy a context
+	 * @param context the context to copy
+	 * @param parent the snapshot of the frame below, may be null
+	 */
+	FrameSnapshot(RobotFrameworkDebugContext context, FrameSnapshot parent) {
+		this(context, parent, null);
+	}
+
+	/**
+	 * Copy a context that was published before
+	 * @param context the context to copy
+	 * @param parent the snapshot of the frame below, may be null
+	 * @param previous the last snapshot of the context, null if there is none.  The changes the context
+	 * noted since then are applied to its visible variables
+	 */
+	FrameSnapshot(RobotFrameworkDebugContext context, FrameSnapshot parent, FrameSnapshot previous) {
+		this.parent = parent;
+		this.depth = (parent == null) ? 0 : parent.depth + 1;
+		this.itemSymbol = context.getItemSymbol();
+		this.itemName = (context.getContextType() == ContextType.KEYWORD) ? null : context.getItemName();
+		this.contextType = context.getContextType();
+		this.itemAttributes = context.getItemAttributes();
+		this.lineNumber = context.getLineNumber();
+		this.variables = context.getVariableMap();
+		this.largeValues = context.getLargeValueMap();
+
+		PersistentSortedMap<String, String> inherited = (parent == null) ? RobotFrameworkDebugContext.NO_VARIABLES : parent.visibleVariables;
+		List<String> changed = context.getChangedVariables();
+		if (previous != null && previous.parent == parent && changed != null){
+			this.visibleVariables = update(previous.visibleVariables, inherited, variables, changed);
+		}
+		else{
+			this.visibleVariables = shadow(inherited, variables);
+		}
+	}
+
+	/**
+	 * Put the variables of a frame over the variables it inherits
+	 */
+	private static PersistentSortedMap<String, String> shadow(PersistentSortedMap<String, String> inherited, PersistentSortedMap<String, String> own) {
+		if (inherited.isEmpty()){
+			return own;
+		}
+		PersistentSortedMap<String, String> visible = inherited;
+		for (int i = 0; i < own.size(); i++){
+			visible = visible.put(own.keyAt(i), own.valueAt(i));
+		}
+		return visible;
+	}
+
+	/**
+	 * Apply the changed variables of a frame to its previous visible variables.  A variable the frame no
+	 * longer defines shows the inherited value again, if there is one
+	 */
+	private static PersistentSortedMap<String, String> update(PersistentSortedMap<String, String> visible,
+			PersistentSortedMap<String, String> inherited, PersistentSortedMap<String, String> own, List<String> changed) {
+		for (String name : changed){
+			if (own.containsKey(name)){
+				visible = visible.put(name, own.get(name));
+			}
+			else if (inherited.containsKey(name)){
+				visible = visible.put(name, inherited.get(name));
+			}
+			else{
+				visible = visible.remove(name);
+			}
+		}
+		return visible;
+	}
+
+	/**
+	 * Get the snapshot of the frame below this one
+	 * @return the parent frame, or null for the bottom frame
+	 */
+	public FrameSnapshot getParent() {
+		return parent;
+	}
+
+	/**
+	 * Get the position of the frame in the stack
+	 * @return the depth, 0 for the bottom frame
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the name of this context item
+	 * @return a string representing the item name
+	 */
+	public String getItemName() {
+		return (itemName != null) ? itemName : SymbolTable.NAMES.name(itemSymbol);
+	}
+
+	/**
+	 * Get the symbol of the name of this context item
+	 * @return the id of the name in SymbolTable.NAMES, EMPTY for a suite or test
+	 */
+	int getItemSymbol() {
+		return itemSymbol;
+	}
+
+	/**
+	 * Get the context type of this debug context
+	 * @return a ContextType enumeration object representing this context type
+	 */
+	public ContextType getContextType() {
+		return contextType;
+	}
+
+	/**
+	 * Get the context type in a human readable format
+	 * @return a string indicating the context type
+	 */
+	public String getContextTypeString() {
+		return RobotFrameworkDebugContext.getContextTypeString(contextType);
+	}
+
+	/**
+	 * Get the attributes of this debug context.  They are immutable, so they are shared rather than copied
+	 * @return the attributes, may be null
+	 */
+	public ItemAttributes getItemAttributes() {
+		return itemAttributes;
+	}
+
+	/**
+	 * Get the line number
+	 * @return an integer representing the line number
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Get the variables defined in this context
+	 * @return a read only map of variable names and values, sorted by name
+	 */
+	public Map<String, String> getVariables() {
+		return variables.asMap();
+	}
+
+	/**
+	 * Get the variables visible from this context: its own and those of the frames below that it does
+	 * not shadow
+	 * @return the immutable map of visible variables, sorted by name
+	 */
+	PersistentSortedMap<String, String> getVisibleVariables() {
+		return visibleVariables;
+	}
+
+	/**
+	 * Get the full value of a variable visible from this context, reading it back if it is stored off
+	 * the heap
+	 * @param name the name of the variable
+	 * @return the value, or null if the variable is not visible from this context
+	 */
+	String getFullVariable(String name) {
+		for (FrameSnapshot frame = this; frame != null; frame = frame.parent){
+			if (frame.variables.containsKey(name)){
+				OffHeapValue large = frame.largeValues.get(name);
+				return (large != null) ? large.read() : frame.variables.get(name);
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,208 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+
+import com.bandofyetis.robotframeworkdebugger.RobotFrameworkDebugContext.ContextType;
+
+/**
+ * The stack of debug contexts (frames) that mirrors the running suite, test and keywords.
+ *
+ * The stack is an array of frames with a size.  Nothing is synchronized: the stack is confined to
+ * the Robot Framework thread, which is the only thread that may push, pop or modify frames.  Other
+ * threads must not read the live frames, they get immutable StackSnapshots from publish().
+ *
+ * Frames above the top are kept in the array after a pop, and pushFrame() resets and reuses them,
+ * so running keywords does not allocate frames once the stack has been as deep before.  A frame
+ * returned by pop() is only valid until the next pushFrame().
+ *
+ * publish() only copies the frames that changed since the last publication.  Frames report their
+ * changes with frameChanged(), and everything below the lowest changed frame keeps its snapshot, so
+ * publishing after a step copies one or two frames however deep the stack is.  A frame's snapshot is
+ * built from the previous snapshot in its slot, so the variables visible from it are updated rather
+ * than collected again.
+ *
+ * @author nspilka
+ *
+ */
+final class FrameStack {
+
+	// Initial number of frame slots
+	private static final int INITIAL_CAPACITY = 32;
+
+	// The frames.  Slots at and above size hold frames kept for reuse, or null
+	private RobotFrameworkDebugContext[] frames = new RobotFrameworkDebugContext[INITIAL_CAPACITY];
+
+	// Number of frames on the stack
+	private int size;
+
+	// The last published snapshot of every frame.  Valid below cleanDepth
+	private FrameSnapshot[] snapshots = new FrameSnapshot[INITIAL_CAPACITY];
+
+	// Number of bottom frames that did not change since the last publication
+	private int cleanDepth;
+
+	// Number of frames allocated by pushFrame()
+	private long allocated;
+
+	// Number of frames pushed by pushFrame()
+	private long pushed;
+
+	/**
+	 * Push a frame, reusing the frame kept in the next slot if there is one
+	 * @param contextType the type of the frame
+	 * @return the frame, in the state of a new one
+	 */
+	RobotFrameworkDebugContext pushFrame(ContextType contextType) {
+		ensureCapacity();
+		pushed++;
+		RobotFrameworkDebugContext frame = frames[size];
+		if (frame == null){
+			allocated++;
+			frame = new RobotFrameworkDebugContext();
+			frame.setContextType(contextType);
+			frames[size] = frame;
+			frame.attach(this, size);
+		}
+		else{
+			frame.reset(contextType);
+		}
+		size++;
+		return frame;
+	}
+
+	/**
+	 * Push a frame created by the caller.  It replaces the frame kept in the slot
+	 * @param frame the frame to push
+	 * @return the frame
+	 */
+	RobotFrameworkDebugContext push(RobotFrameworkDebugContext frame) {
+		ensureCapacity();
+		if (frames[size] != null && frames[size] != frame){
+			frames[size].attach(null, 0);
+		}
+		frames[size] = frame;
+		frame.attach(this, size);
+		// the snapshot kept for the slot may be of another frame
+		frame.variablesReplaced();
+		frameChanged(size);
+		size++;
+		return frame;
+	}
+
+	/**
+	 * Pop the top frame.  The frame stays in its slot for reuse
+	 * @return the frame that was on top
+	 * @throws EmptyStackException if the stack is empty
+	 */
+	RobotFrameworkDebugContext pop() {
+		if (size == 0){
+			throw new EmptyStackException();
+		}
+		size--;
+		cleanDepth = Math.min(cleanDepth, size);
+		return frames[size];
+	}
+
+	/**
+	 * Get the top frame
+	 * @return the frame on top of the stack
+	 * @throws EmptyStackException if the stack is empty
+	 */
+	RobotFrameworkDebugContext peek() {
+		if (size == 0){
+			throw new EmptyStackException();
+		}
+		return frames[size - 1];
+	}
+
+	/**
+	 * Get the frame at a depth
+	 * @param depth the depth of the frame, 0 is the bottom of the stack
+	 * @return the frame
+	 * @throws IndexOutOfBoundsException if there is no frame at the depth
+	 */
+	RobotFrameworkDebugContext frameAt(int depth) {
+		if (depth < 0 || depth >= size){
+			throw new IndexOutOfBoundsException("Depth: " + depth + ", Size: " + size);
+		}
+		return frames[depth];
+	}
+
+	/**
+	 * Get the number of frames on the stack
+	 * @return the size of the stack
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Check if the stack is empty
+	 * @return true if there are no frames on the stack
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all frames, and forget the frames kept for reuse
+	 */
+	void clear() {
+		for (int i = 0; i < frames.length && frames[i] != null; i++){
+			frames[i].attach(null, 0);
+		}
+		Arrays.fill(frames, null);
+		Arrays.fill(snapshots, null);
+		size = 0;
+		cleanDepth = 0;
+	}
+
+	/**
+	 * Called by a frame on this stack when it changes
+	 * @param depth the position of the frame
+	 */
+	void frameChanged(int depth) {
+		if (depth < cleanDepth){
+			cleanDepth = depth;
+		}
+	}
+
+	/**
+	 * Take an immutable snapshot of the stack.  Only frames that changed since the last call are copied
+	 * @return the snapshot
+	 */
+	StackSnapshot publish() {
+		FrameSnapshot top = (cleanDepth == 0) ? null : snapshots[cleanDepth - 1];
+		for (int i = cleanDepth; i < size; i++){
+			top = new FrameSnapshot(frames[i], top, snapshots[i]);
+			frames[i].variablesPublished();
+			snapshots[i] = top;
+		}
+		cleanDepth = size;
+		return (top == null) ? StackSnapshot.EMPTY : new StackSnapshot(top);
+	}
+
+	/**
+	 * Get the number of frames pushFrame() had to allocate
+	 * @return the number of allocations
+	 */
+	long getAllocated() {
+		return allocated;
+	}
+
+	/**
+	 * Get the number of frames pushed with pushFrame()
+	 * @return the number of pushes
+	 */
+	long getPushed() {
+		return pushed;
+	}
+
+	private void ensureCapacity() {
+		if (size == frames.length){
+			frames = Arrays.copyOf(frames, size * 2);
+			snapshots = Arrays.copyOf(snapshots, size * 2);
+		}
+	}
+}
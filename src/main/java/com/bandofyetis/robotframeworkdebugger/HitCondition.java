@@ -0,0 +1,116 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides on which hits a breakpoint stops, written after the keyword pattern of a breakpoint:
+ *
+ *   Open Connection | hit: 3000        stop on the 3000th hit only
+ *   Open Connection | hit: every 100   stop on every 100th hit
+ *   Open Connection | hit: after 10    stop on every hit after the 10th
+ *
+ * @author nspilka
+ *
+ */
+public final class HitCondition {
+
+	// The kinds of hit conditions
+	public enum Kind{
+		ON,
+		EVERY,
+		AFTER
+	}
+
+	// The kind of condition
+	private final Kind kind;
+
+	// The hit count the condition refers to
+	private final long count;
+
+	/**
+	 * Create a hit condition
+	 * @param kind the kind of condition
+	 * @param count the hit count, at least 1 (at least 0 for AFTER)
+	 */
+	public HitCondition(Kind kind, long count) {
+		if (count < ((kind == Kind.AFTER) ? 0 : 1)){
+			throw new IllegalArgumentException("Invalid hit count " + count + " for " + kind);
+		}
+		this.kind = kind;
+		this.count = count;
+	}
+
+	/**
+	 * Parse the value of a hit: qualifier
+	 * @param value the text after "hit:", e.g. "3000", "every 100" or "after 10"
+	 * @param breakpointText the whole breakpoint text, for error messages
+	 * @return the hit condition
+	 * @throws PatternSyntaxException if the value is not a valid hit condition
+	 */
+	static HitCondition parse(String value, String breakpointText) throws PatternSyntaxException {
+		String[] words = value.trim().split("\\s+");
+		Kind kind = Kind.ON;
+		String number = words[0];
+		if (words.length == 2 && words[0].equalsIgnoreCase("every")){
+			kind = Kind.EVERY;
+			number = words[1];
+		}
+		else if (words.length == 2 && words[0].equalsIgnoreCase("after")){
+			kind = Kind.AFTER;
+			number = words[1];
+		}
+		else if (words.length != 1){
+			throw new PatternSyntaxException("Hit condition must be N, every N or after N", breakpointText, -1);
+		}
+		try {
+			return new HitCondition(kind, Long.parseLong(number));
+		}
+		catch (IllegalArgumentException e){
+			throw new PatternSyntaxException("Invalid hit count '" + number + "'", breakpointText, -1);
+		}
+	}
+
+	/**
+	 * Check if the breakpoint should stop
+	 * @param hits the number of hits so far, including the current one
+	 * @return true if the breakpoint stops on this hit
+	 */
+	public boolean isMet(long hits) {
+		switch (kind){
+		case ON:
+			return hits == count;
+		case EVERY:
+			return hits % count == 0;
+		default:
+			return hits > count;
+		}
+	}
+
+	/**
+	 * Get the kind of condition
+	 * @return the kind
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Get the hit count of the condition
+	 * @return the hit count
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		switch (kind){
+		case ON:
+			return Long.toString(count);
+		case EVERY:
+			return "every " + count;
+		default:
+			return "after " + count;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The attributes of a suite, test or keyword that the debugger uses, copied out of the attribute map
+ * Robot Framework passes to the listener.
+ *
+ * Under Jython the attribute map is a proxy for a Python dict: every get() crosses into Python, and
+ * keeping the map keeps the whole Python attribute graph alive.  of() reads each field the debugger
+ * uses once, at callback time, converts it to plain Java strings and drops the map.  The documentation
+ * and the library name of a keyword repeat from call to call and come from the test sources and
+ * libraries, so of() interns them in SymbolTable.NAMES: a keyword run a million times keeps one copy of
+ * its documentation, and the table only grows with the keywords the run has.  Suites and tests run once
+ * each, so ofSuiteOrTest() does not intern their documentation: the table never shrinks and would grow
+ * with the number of tests.  Long names, tags and arguments are never interned and are collected with
+ * their frame.  endTest only needs the status and elapsed time, statusOf() and elapsedMillisOf() read
+ * them without copying the rest.
+ *
+ * of() interns, so it is only called by the Robot Framework thread, the one writer of the symbol
+ * table.  The attributes are immutable and can be shared with other threads.
+ *
+ * @author nspilka
+ *
+ */
+public final class ItemAttributes {
+
+	// Keys of the attribute map, as defined by the Robot Framework listener API
+	static final String ARGS = "args";
+	static final String DOC = "doc";
+	static final String TAGS = "tags";
+	static final String STATUS = "status";
+	static final String ELAPSED_TIME = "elapsedtime";
+	static final String LIBNAME = "libname";
+	static final String LONGNAME = "longname";
+
+	private static final String[] NO_STRINGS = new String[0];
+
+	// The arguments of a keyword, as text
+	private final String[] args;
+
+	// The documentation, interned
+	private final String doc;
+
+	// The tags of a test
+	private final String[] tags;
+
+	// The status of an ended test or keyword, PASS, FAIL or SKIP, null before it ended
+	private final String status;
+
+	// Time the item took in milliseconds, -1 before it ended
+	private final int elapsedMillis;
+
+	// The library of a keyword, interned
+	private final String libName;
+
+	// The full name of a suite or test
+	private final String longName;
+
+	private ItemAttributes(String[] args, String doc, String[] tags, String status, int elapsedMillis, String libName, String longName) {
+		this.args = args;
+		this.doc = doc;
+		this.tags = tags;
+		this.status = status;
+		this.elapsedMillis = elapsedMillis;
+		this.libName = libName;
+		this.longName = longName;
+	}
+
+	/**
+	 * Copy the attributes the debugger uses out of the attribute map of a keyword, interning its
+	 * documentation and library name.  Only called by the Robot Framework thread
+	 * @param attrs the attribute map passed to the listener, may be null
+	 * @return the attributes, or null if the map is null
+	 */
+	public static ItemAttributes of(Map<String, Object> attrs) {
+		return of(attrs, true);
+	}
+
+	/**
+	 * Copy the attributes the debugger uses out of the attribute map of a suite or test.  Nothing is interned
+	 * @param attrs the attribute map passed to the listener, may be null
+	 * @return the attributes, or null if the map is null
+	 */
+	public static ItemAttributes ofSuiteOrTest(Map<String, Object> attrs) {
+		return of(attrs, false);
+	}
+
+	private static ItemAttributes of(Map<String, Object> attrs, boolean intern) {
+		if (attrs == null){
+			return null;
+		}
+		return new ItemAttributes(
+				toStrings(attrs.get(ARGS)),
+				intern ? intern(attrs.get(DOC)) : toString(attrs.get(DOC)),
+				toStrings(attrs.get(TAGS)),
+				toString(attrs.get(STATUS)),
+				elapsedMillisOf(attrs),
+				intern ? intern(attrs.get(LIBNAME)) : toString(attrs.get(LIBNAME)),
+				toString(attrs.get(LONGNAME)));
+	}
+
+	/**
+	 * Read the status of an ended test or keyword from its attribute map
+	 * @param attrs the attribute map passed to the listener, may be null
+	 * @return the status as reported by Robot Framework, or null if there is none
+	 */
+	public static String statusOf(Map<String, Object> attrs) {
+		return (attrs == null) ? null : toString(attrs.get(STATUS));
+	}
+
+	/**
+	 * Read the time an ended test or keyword took from its attribute map
+	 * @param attrs the attribute map passed to the listener, may be null
+	 * @return the elapsed time in milliseconds, or -1 if there is none
+	 */
+	public static int elapsedMillisOf(Map<String, Object> attrs) {
+		Object elapsed = (attrs == null) ? null : attrs.get(ELAPSED_TIME);
+		return (elapsed instanceof Number) ? ((Number)elapsed).intValue() : -1;
+	}
+
+	/**
+	 * Get the arguments of a keyword
+	 * @return the arguments as text, empty if there are none
+	 */
+	public List<String> getArgs() {
+		return Collections.unmodifiableList(Arrays.asList(args));
+	}
+
+	/**
+	 * Get the documentation
+	 * @return the documentation, or null if there is none
+	 */
+	public String getDoc() {
+		return doc;
+	}
+
+	/**
+	 * Get the tags of a test
+	 * @return the tags, empty if there are none
+	 */
+	public List<String> getTags() {
+		return Collections.unmodifiableList(Arrays.asList(tags));
+	}
+
+	/**
+	 * Get the status of an ended test or keyword
+	 * @return the status as reported by Robot Framework, or null if there is none
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Get the time an ended test or keyword took
+	 * @return the elapsed time in milliseconds, or -1 if there is none
+	 */
+	public int getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * Get the library of a keyword
+	 * @return the library name, or null if there is none
+	 */
+	public String getLibName() {
+		return libName;
+	}
+
+	/**
+	 * Get the full name of a suite or test, with the names of its parent suites
+	 * @return the long name, or null if there is none
+	 */
+	public String getLongName() {
+		return longName;
+	}
+
+	private static String toString(Object value) {
+		return (value == null) ? null : value.toString();
+	}
+
+	private static String[] toStrings(Object values) {
+		if (!(values instanceof Collection) || ((Collection<?>)values).isEmpty()){
+			return NO_STRINGS;
+		}
+		Collection<?> collection = (Collection<?>)values;
+		String[] strings = new String[collection.size()];
+		int i = 0;
+		for (Object value : collection){
+			strings[i++] = toString(value);
+		}
+		return strings;
+	}
+
+	/**
+	 * Get the one copy of the text of a value, kept in SymbolTable.NAMES
+	 */
+	private static String intern(Object value) {
+		if (value == null){
+			return null;
+		}
+		return SymbolTable.NAMES.name(SymbolTable.NAMES.intern(value.toString()));
+	}
+}
@@ -0,0 +1,1471 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A regular expression engine that never backtracks.
+ *
+ * Patterns are compiled into a Thompson NFA and matched by simulating all NFA states in lock step,
+ * so matching a text of length n against a program of size m costs at most O(n*m) no matter what
+ * the pattern looks like.  Several patterns can be combined into one program, each with its own id,
+ * and a single pass over the text then reports the lowest id of all patterns that match, or the
+ * ids of all of them.
+ *
+ * findAll() caches the steps of the simulation as a DFA, built lazily: a DFA state is the set of NFA
+ * instructions waiting for the next character, and a transition records the state a character leads
+ * to and the patterns that matched before it.  A transition is computed with the NFA once, in O(m),
+ * and afterwards costs one hash table probe, so checking a text whose steps are cached costs O(n)
+ * however many patterns were combined.  Keyword names repeat during a run, so nearly all of them are
+ * matched from the cache.  The cache is bounded by DFA_CACHE_LIMIT and dropped when it is full.  $ and
+ * \Z look ahead up to two characters, so the last two characters of a text are always simulated.
+ *
+ * The supported syntax is the subset of java.util.regex that can be matched without backtracking:
+ * literals and escapes (including \0 octal escapes), ., character classes, the predefined classes \d \w \s (and their negations),
+ * ^ $ \A \z \Z \b \B, groups (capturing, non-capturing and named), alternation, greedy and lazy
+ * quantifiers including {m,n}, \Q...\E quoting and the (?i) flag.  Back references, look-around,
+ * atomic groups and possessive quantifiers are rejected with a PatternSyntaxException.
+ * Like java.util.regex without flags, . matches no line terminator (\n, \r, \u0085, \u2028,
+ * \u2029), and $ and \Z also match before a line terminator that ends the text.
+ *
+ * Matching is unanchored (like Matcher.find()).  A compiled program is immutable, but the scratch
+ * space used while matching is not, so an instance must only be used for matching by one thread
+ * (the Robot Framework thread).
+ *
+ * @author nspilka
+ *
+ */
+final class LinearRegex {
+
+	// Value reported when no pattern matches
+	static final int NO_MATCH = Integer.MAX_VALUE;
+
+	// Largest program a single pattern may expand to (counted repetitions are expanded)
+	static final int MAX_PROGRAM_SIZE = 20000;
+
+	// Largest program combine() builds out of several patterns.  The scratch space of a program takes
+	// about 24 bytes per instruction
+	static final int MAX_COMBINED_PROGRAM_SIZE = 500000;
+
+	// Instruction opcodes
+	private static final int CHAR = 0;
+	private static final int ANY = 1;
+	private static final int CLASS = 2;
+	private static final int SPLIT = 3;
+	private static final int JMP = 4;
+	private static final int ASSERT = 5;
+	private static final int MATCH = 6;
+
+	// Zero width assertions
+	private static final int BEGIN = 0;
+	private static final int END = 1;
+	private static final int WORD_BOUNDARY = 2;
+	private static final int NOT_WORD_BOUNDARY = 3;
+	private static final int END_OF_INPUT = 4;
+
+	// The pattern text, or a description of the combined patterns
+	private final String pattern;
+
+	// The parsed patterns this program was built from, kept so programs can be combined
+	private final Node[] trees;
+
+	// The program: opcode and up to two operands per instruction
+	private final int[] op;
+	private final int[] arg1;
+	private final int[] arg2;
+
+	// Character classes used by CLASS instructions, as sorted inclusive [low, high] range pairs
+	private final char[][] classes;
+
+	// For each instruction the id of the pattern it belongs to
+	private final int[] owner;
+
+	// Start instruction and id of each pattern, sorted by id
+	private final int[] starts;
+	private final int[] ids;
+
+	// Number of characters covered by the first character index.  Characters above it share one slot
+	private static final int FIRST_CHAR_SLOTS = 128;
+
+	// For every character slot, the patterns (indices into starts) whose match can begin with that
+	// character, so a position only starts the patterns that can match there
+	private final int[][] startsByFirstChar;
+
+	// Patterns that can match the empty string, these are started at every position
+	private final int[] startsAlways;
+
+	// Scratch space for the simulation - only ever touched by the matching thread
+	private int[] currentList;
+	private int[] nextList;
+	private int[] onList;
+	private int[] stack;
+	private int generation;
+
+	// size of the list after the last addThread call
+	private int nextSize;
+
+	// What the current position looks like, for zero width assertions
+	private static final int AT_BEGIN = 1;
+	private static final int AT_END = 2;
+	private static final int AT_END_OF_INPUT = 4;
+	private static final int AFTER_WORD_CHAR = 8;
+	private static final int BEFORE_WORD_CHAR = 16;
+
+	// Default size of the DFA cache, in ints of state and transition data
+	static final int DFA_CACHE_LIMIT = 1 << 20;
+
+	// The DFA cache - only ever touched by the matching thread.  State 0 is the start state
+	private int dfaCacheLimit = DFA_CACHE_LIMIT;
+	private int dfaCacheSize;
+	private Map<DfaState, Integer> dfaStateIds;
+	private List<DfaState> dfaStates;
+
+	// Open addressing hash table of the transitions: key (state << 16 | character), -1 for a free slot,
+	// the target state and the ids of the patterns that matched before the character, null if none
+	private long[] transitionKeys;
+	private int[] transitionTargets;
+	private int[][] transitionMatches;
+	private int transitionCount;
+
+	// Scratch set of the patterns that matched while a transition is computed
+	private final BitSet transitionMatched = new BitSet();
+
+	/**
+	 * Compile a single pattern
+	 * @param pattern the regular expression
+	 * @return the compiled pattern
+	 * @throws PatternSyntaxException if the pattern is invalid or needs backtracking
+	 */
+	static LinearRegex compile(String pattern) throws PatternSyntaxException {
+		Node tree = new Parser(pattern).parse();
+		return new LinearRegex(pattern, new Node[] {tree}, new int[] {0});
+	}
+
+	/**
+	 * Combine already compiled patterns into one program
+	 * @param regexes single pattern programs created by compile()
+	 * @param ids the id reported for each pattern, in ascending order
+	 * @return a program that matches all patterns in one pass
+	 * @throws PatternSyntaxException if the combined program would be larger than MAX_COMBINED_PROGRAM_SIZE
+	 */
+	static LinearRegex combine(List<LinearRegex> regexes, int[] ids) throws PatternSyntaxException {
+		Node[] trees = new Node[regexes.size()];
+		StringBuilder description = new StringBuilder();
+		long size = 0;
+		for (int i = 0; i < trees.length; i++){
+			trees[i] = regexes.get(i).trees[0];
+			description.append(i > 0 ? "|" : "").append(regexes.get(i).pattern);
+			size += regexes.get(i).getProgramSize();
+		}
+		if (size > MAX_COMBINED_PROGRAM_SIZE){
+			throw new PatternSyntaxException("Patterns are too large to be matched together once repetitions are expanded", description.toString(), -1);
+		}
+		return new LinearRegex(description.toString(), trees, ids);
+	}
+
+	/**
+	 * Generate the program for a list of parsed patterns
+	 */
+	private LinearRegex(String pattern, Node[] trees, int[] ids) {
+		this.pattern = pattern;
+		this.trees = trees;
+		this.ids = ids.clone();
+
+		Emitter emitter = new Emitter();
+		starts = new int[trees.length];
+		for (int i = 0; i < trees.length; i++){
+			starts[i] = emitter.size;
+			emitter.currentOwner = ids[i];
+			trees[i].emit(emitter);
+			emitter.emit(MATCH, ids[i], 0);
+		}
+		// index the patterns by the characters their matches can begin with
+		List<List<Integer>> byChar = new ArrayList<List<Integer>>();
+		for (int slot = 0; slot <= FIRST_CHAR_SLOTS; slot++){
+			byChar.add(new ArrayList<Integer>());
+		}
+		List<Integer> always = new ArrayList<Integer>();
+		for (int i = 0; i < trees.length; i++){
+			boolean[] first = new boolean[FIRST_CHAR_SLOTS + 1];
+			if (trees[i].first(first)){
+				always.add(i);
+				continue;
+			}
+			for (int slot = 0; slot <= FIRST_CHAR_SLOTS; slot++){
+				if (first[slot]){
+					byChar.get(slot).add(i);
+				}
+			}
+		}
+		startsByFirstChar = new int[FIRST_CHAR_SLOTS + 1][];
+		for (int slot = 0; slot <= FIRST_CHAR_SLOTS; slot++){
+			startsByFirstChar[slot] = toIntArray(byChar.get(slot));
+		}
+		startsAlways = toIntArray(always);
+
+		op = Arrays.copyOf(emitter.op, emitter.size);
+		arg1 = Arrays.copyOf(emitter.arg1, emitter.size);
+		arg2 = Arrays.copyOf(emitter.arg2, emitter.size);
+		owner = Arrays.copyOf(emitter.owner, emitter.size);
+		classes = emitter.classes.toArray(new char[emitter.classes.size()][]);
+	}
+
+	/**
+	 * Check if the pattern occurs anywhere in the text
+	 * @param text the text to search
+	 * @return true if any pattern of this program matches
+	 */
+	boolean find(CharSequence text) {
+		return findLowest(text, NO_MATCH) != NO_MATCH;
+	}
+
+	/**
+	 * Find the lowest id of all patterns that occur in the text
+	 * @param text the text to search
+	 * @param limit only patterns with an id below this limit are considered
+	 * @return the lowest matching id, or NO_MATCH
+	 */
+	int findLowest(CharSequence text, int limit) {
+		ensureScratch();
+		int best = limit;
+		int length = text.length();
+		int currentSize = 0;
+		for (int pos = 0; pos <= length; pos++){
+			nextGeneration();
+			int context = context(text, pos);
+
+			// carry over the threads that survived the last character
+			int size = 0;
+			for (int t = 0; t < currentSize; t++){
+				int pc = currentList[t];
+				if (owner[pc] < best){
+					best = addThread(nextList, size, pc, context, best);
+					size = nextSize;
+				}
+			}
+			// start a new attempt of every pattern that could begin here and still improve the result
+			for (int p : startsAlways){
+				if (ids[p] < best){
+					best = addThread(nextList, size, starts[p], context, best);
+					size = nextSize;
+				}
+			}
+			if (pos < length){
+				char next = text.charAt(pos);
+				for (int p : startsByFirstChar[Math.min(next, FIRST_CHAR_SLOTS)]){
+					if (ids[p] < best){
+						best = addThread(nextList, size, starts[p], context, best);
+						size = nextSize;
+					}
+				}
+			}
+
+			if (pos == length || size == 0 && (starts.length == 0 || ids[0] >= best)){
+				break;
+			}
+
+			// step over the character at pos
+			char c = text.charAt(pos);
+			currentSize = 0;
+			for (int t = 0; t < size; t++){
+				int pc = nextList[t];
+				if (owner[pc] >= best){
+					continue;
+				}
+				if (consumes(pc, c)){
+					currentList[currentSize++] = pc + 1;
+				}
+			}
+		}
+		return (best == limit) ? NO_MATCH : best;
+	}
+
+	/**
+	 * Find the ids of all patterns that occur in the text.  The steps are taken from the DFA cache,
+	 * and added to it when they are not cached yet
+	 * @param text the text to search
+	 * @param found the ids of all matching patterns are set in this bit set
+	 */
+	void findAll(CharSequence text, BitSet found) {
+		ensureScratch();
+		if (dfaStates == null){
+			resetDfa();
+		}
+		int length = text.length();
+		// $ and \Z look ahead up to two characters, the positions where they can hold are simulated
+		int dfaEnd = length - 2;
+		int state = 0;
+		int pos = 0;
+		for (; pos < dfaEnd; pos++){
+			char c = text.charAt(pos);
+			int slot = findTransition(state, c);
+			if (slot < 0){
+				slot = addTransition(state, c);
+			}
+			int[] matched = transitionMatches[slot];
+			if (matched != null){
+				for (int id : matched){
+					found.set(id);
+				}
+			}
+			state = transitionTargets[slot];
+		}
+		int[] pcs = dfaStates.get(state).pcs;
+		System.arraycopy(pcs, 0, currentList, 0, pcs.length);
+		simulateAll(text, pos, pcs.length, found);
+	}
+
+	/**
+	 * Simulate the program from a position on, recording every pattern that matches
+	 * @param text the text to search
+	 * @param from the position to start at
+	 * @param currentSize the number of instructions in currentList waiting for the character at from
+	 * @param found the ids of all matching patterns are set in this bit set.  Patterns whose id is
+	 * already set are not run
+	 */
+	private void simulateAll(CharSequence text, int from, int currentSize, BitSet found) {
+		int length = text.length();
+		for (int pos = from; pos <= length; pos++){
+			nextGeneration();
+			int context = context(text, pos);
+
+			int size = 0;
+			for (int t = 0; t < currentSize; t++){
+				int pc = currentList[t];
+				if (!found.get(owner[pc])){
+					size = addThreadAll(nextList, size, pc, context, found);
+				}
+			}
+			for (int p : startsAlways){
+				if (!found.get(ids[p])){
+					size = addThreadAll(nextList, size, starts[p], context, found);
+				}
+			}
+			if (pos == length){
+				break;
+			}
+			char c = text.charAt(pos);
+			for (int p : startsByFirstChar[Math.min(c, FIRST_CHAR_SLOTS)]){
+				if (!found.get(ids[p])){
+					size = addThreadAll(nextList, size, starts[p], context, found);
+				}
+			}
+
+			// step over the character at pos
+			currentSize = 0;
+			for (int t = 0; t < size; t++){
+				int pc = nextList[t];
+				if (!found.get(owner[pc]) && consumes(pc, c)){
+					currentList[currentSize++] = pc + 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find a cached transition
+	 * @return the slot of the transition, or -1 if it is not cached
+	 */
+	private int findTransition(int state, char c) {
+		long key = ((long) state << 16) | c;
+		int mask = transitionKeys.length - 1;
+		for (int slot = hash(key) & mask; transitionKeys[slot] != -1; slot = (slot + 1) & mask){
+			if (transitionKeys[slot] == key){
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compute a transition with the NFA and cache it.  A character in the middle of the text, so
+	 * $, \Z and \z do not hold
+	 * @return the slot of the transition
+	 */
+	private int addTransition(int state, char c) {
+		DfaState from = dfaStates.get(state);
+		if (dfaCacheSize > dfaCacheLimit){
+			resetDfa();
+			state = stateId(from);
+		}
+
+		nextGeneration();
+		int context = (from.begin ? AT_BEGIN : 0) | (from.afterWordChar ? AFTER_WORD_CHAR : 0) | (isWordChar(c) ? BEFORE_WORD_CHAR : 0);
+		BitSet matched = transitionMatched;
+		matched.clear();
+		int size = 0;
+		for (int pc : from.pcs){
+			size = addThreadAll(nextList, size, pc, context, matched);
+		}
+		for (int p : startsAlways){
+			size = addThreadAll(nextList, size, starts[p], context, matched);
+		}
+		for (int p : startsByFirstChar[Math.min(c, FIRST_CHAR_SLOTS)]){
+			size = addThreadAll(nextList, size, starts[p], context, matched);
+		}
+		int count = 0;
+		for (int t = 0; t < size; t++){
+			int pc = nextList[t];
+			if (consumes(pc, c)){
+				currentList[count++] = pc + 1;
+			}
+		}
+		int[] pcs = Arrays.copyOf(currentList, count);
+		Arrays.sort(pcs);
+		int target = stateId(new DfaState(pcs, false, isWordChar(c)));
+
+		int[] matchedIds = null;
+		if (!matched.isEmpty()){
+			matchedIds = new int[matched.cardinality()];
+			int m = 0;
+			for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)){
+				matchedIds[m++] = id;
+			}
+		}
+
+		if (transitionCount * 2 >= transitionKeys.length){
+			growTransitions();
+		}
+		long key = ((long) state << 16) | c;
+		int mask = transitionKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (transitionKeys[slot] != -1){
+			slot = (slot + 1) & mask;
+		}
+		transitionKeys[slot] = key;
+		transitionTargets[slot] = target;
+		transitionMatches[slot] = matchedIds;
+		transitionCount++;
+		dfaCacheSize += 4 + ((matchedIds == null) ? 0 : matchedIds.length);
+		return slot;
+	}
+
+	/**
+	 * Get the id of a DFA state, adding it if it is new
+	 */
+	private int stateId(DfaState state) {
+		Integer id = dfaStateIds.get(state);
+		if (id == null){
+			id = dfaStates.size();
+			dfaStates.add(state);
+			dfaStateIds.put(state, id);
+			dfaCacheSize += 8 + state.pcs.length;
+		}
+		return id;
+	}
+
+	/**
+	 * Drop the DFA cache, keeping only the start state
+	 */
+	private void resetDfa() {
+		dfaStateIds = new HashMap<DfaState, Integer>();
+		dfaStates = new ArrayList<DfaState>();
+		transitionKeys = new long[256];
+		Arrays.fill(transitionKeys, -1);
+		transitionTargets = new int[256];
+		transitionMatches = new int[256][];
+		transitionCount = 0;
+		dfaCacheSize = 0;
+		stateId(new DfaState(new int[0], true, false));
+	}
+
+	private void growTransitions() {
+		long[] oldKeys = transitionKeys;
+		int[] oldTargets = transitionTargets;
+		int[][] oldMatches = transitionMatches;
+		transitionKeys = new long[oldKeys.length * 2];
+		Arrays.fill(transitionKeys, -1);
+		transitionTargets = new int[oldKeys.length * 2];
+		transitionMatches = new int[oldKeys.length * 2][];
+		int mask = transitionKeys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++){
+			if (oldKeys[i] != -1){
+				int slot = hash(oldKeys[i]) & mask;
+				while (transitionKeys[slot] != -1){
+					slot = (slot + 1) & mask;
+				}
+				transitionKeys[slot] = oldKeys[i];
+				transitionTargets[slot] = oldTargets[i];
+				transitionMatches[slot] = oldMatches[i];
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Set the size of the DFA cache.  Package level access for testing
+	 * @param limit the number of ints of state and transition data kept before the cache is dropped
+	 */
+	void setDfaCacheLimit(int limit) {
+		dfaCacheLimit = limit;
+	}
+
+	/**
+	 * Get the number of cached DFA states.  Package level access for testing
+	 * @return the number of states, including the start state
+	 */
+	int getDfaStateCount() {
+		return (dfaStates == null) ? 0 : dfaStates.size();
+	}
+
+	/**
+	 * Check if an instruction consumes a character
+	 */
+	private boolean consumes(int pc, char c) {
+		switch (op[pc]){
+		case CHAR:
+			return c == arg1[pc];
+		case ANY:
+			return !isLineTerminator(c);
+		case CLASS:
+			return inClass(classes[arg1[pc]], c);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Allocate the scratch space of the simulation
+	 */
+	private void ensureScratch() {
+		if (onList == null){
+			currentList = new int[op.length];
+			nextList = new int[op.length];
+			onList = new int[op.length];
+			stack = new int[2 * op.length + 1];
+		}
+	}
+
+	/**
+	 * Add an instruction and everything reachable from it without consuming a character, recording
+	 * every MATCH reached
+	 * @return the new list size
+	 */
+	private int addThreadAll(int[] list, int size, int start, int context, BitSet found) {
+		int sp = 0;
+		stack[sp++] = start;
+		while (sp > 0){
+			int pc = stack[--sp];
+			if (onList[pc] == generation){
+				continue;
+			}
+			onList[pc] = generation;
+			switch (op[pc]){
+			case SPLIT:
+				stack[sp++] = arg2[pc];
+				stack[sp++] = arg1[pc];
+				break;
+			case JMP:
+				stack[sp++] = arg1[pc];
+				break;
+			case ASSERT:
+				if (holds(arg1[pc], context)){
+					stack[sp++] = pc + 1;
+				}
+				break;
+			case MATCH:
+				found.set(arg1[pc]);
+				break;
+			default:
+				list[size++] = pc;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Add an instruction and everything reachable from it without consuming a character
+	 * @return the new best id
+	 */
+	private int addThread(int[] list, int size, int start, int context, int best) {
+		int sp = 0;
+		stack[sp++] = start;
+		while (sp > 0){
+			int pc = stack[--sp];
+			if (onList[pc] == generation || owner[pc] >= best){
+				continue;
+			}
+			onList[pc] = generation;
+			switch (op[pc]){
+			case SPLIT:
+				stack[sp++] = arg2[pc];
+				stack[sp++] = arg1[pc];
+				break;
+			case JMP:
+				stack[sp++] = arg1[pc];
+				break;
+			case ASSERT:
+				if (holds(arg1[pc], context)){
+					stack[sp++] = pc + 1;
+				}
+				break;
+			case MATCH:
+				best = Math.min(best, arg1[pc]);
+				break;
+			default:
+				list[size++] = pc;
+			}
+		}
+		nextSize = size;
+		return best;
+	}
+
+	/**
+	 * Start a new generation of list membership marks
+	 */
+	private void nextGeneration() {
+		if (generation == Integer.MAX_VALUE){
+			Arrays.fill(onList, 0);
+			generation = 0;
+		}
+		generation++;
+	}
+
+	/**
+	 * Describe a position of a text for the zero width assertions
+	 */
+	private static int context(CharSequence text, int pos) {
+		int context = 0;
+		if (pos == 0){
+			context |= AT_BEGIN;
+		}
+		if (isAtEnd(text, pos)){
+			context |= AT_END;
+		}
+		if (pos == text.length()){
+			context |= AT_END_OF_INPUT;
+		}
+		if (pos > 0 && isWordChar(text.charAt(pos - 1))){
+			context |= AFTER_WORD_CHAR;
+		}
+		if (pos < text.length() && isWordChar(text.charAt(pos))){
+			context |= BEFORE_WORD_CHAR;
+		}
+		return context;
+	}
+
+	/**
+	 * Check a zero width assertion at a position
+	 * @param context the position, as described by context()
+	 */
+	private static boolean holds(int assertion, int context) {
+		switch (assertion){
+		case BEGIN:
+			return (context & AT_BEGIN) != 0;
+		case END:
+			return (context & AT_END) != 0;
+		case END_OF_INPUT:
+			return (context & AT_END_OF_INPUT) != 0;
+		default:
+			boolean before = (context & AFTER_WORD_CHAR) != 0;
+			boolean after = (context & BEFORE_WORD_CHAR) != 0;
+			return (before != after) == (assertion == WORD_BOUNDARY);
+		}
+	}
+
+	/**
+	 * Check for the end of the text, or a line terminator that ends it, like $ in java.util.regex
+	 * without MULTILINE.  A final \r\n counts as one terminator, so the position between \r and \n
+	 * is not an end
+	 */
+	private static boolean isAtEnd(CharSequence text, int pos) {
+		int length = text.length();
+		if (pos == length){
+			return true;
+		}
+		if (pos == length - 2){
+			return text.charAt(pos) == '\r' && text.charAt(pos + 1) == '\n';
+		}
+		if (pos == length - 1){
+			char c = text.charAt(pos);
+			return isLineTerminator(c) && !(c == '\n' && pos > 0 && text.charAt(pos - 1) == '\r');
+		}
+		return false;
+	}
+
+	/**
+	 * Check for a character that . does not match, the line terminators of java.util.regex
+	 */
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	/**
+	 * Binary search a sorted range list
+	 */
+	private static boolean inClass(char[] ranges, char c) {
+		int low = 0;
+		int high = ranges.length / 2 - 1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			if (c < ranges[2 * mid]){
+				high = mid - 1;
+			}
+			else if (c > ranges[2 * mid + 1]){
+				low = mid + 1;
+			}
+			else{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int[] toIntArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++){
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/**
+	 * Mark the first character slots of a set of ranges
+	 */
+	private static void markRanges(char[] ranges, boolean[] first) {
+		for (int i = 0; i < ranges.length; i += 2){
+			for (int c = ranges[i]; c <= ranges[i + 1] && c < FIRST_CHAR_SLOTS; c++){
+				first[c] = true;
+			}
+			if (ranges[i + 1] >= FIRST_CHAR_SLOTS){
+				first[FIRST_CHAR_SLOTS] = true;
+			}
+		}
+	}
+
+	/**
+	 * Get the number of instructions in the program.  Package level access for testing
+	 * @return the program size
+	 */
+	int getProgramSize() {
+		return op.length;
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+
+	/**
+	 * A state of the DFA: the instructions waiting for the next character, sorted, and what the
+	 * assertions need to know about the characters read so far
+	 */
+	private static final class DfaState {
+		final int[] pcs;
+		// true before the first character
+		final boolean begin;
+		// true if the last character read is a word character
+		final boolean afterWordChar;
+		private final int hash;
+
+		DfaState(int[] pcs, boolean begin, boolean afterWordChar) {
+			this.pcs = pcs;
+			this.begin = begin;
+			this.afterWordChar = afterWordChar;
+			this.hash = Arrays.hashCode(pcs) * 4 + (begin ? 2 : 0) + (afterWordChar ? 1 : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof DfaState)){
+				return false;
+			}
+			DfaState state = (DfaState)other;
+			return hash == state.hash && begin == state.begin && afterWordChar == state.afterWordChar && Arrays.equals(pcs, state.pcs);
+		}
+	}
+
+	/**
+	 * Collects instructions while a program is generated
+	 */
+	private static class Emitter {
+		int[] op = new int[16];
+		int[] arg1 = new int[16];
+		int[] arg2 = new int[16];
+		int[] owner = new int[16];
+		int size;
+		int currentOwner;
+		List<char[]> classes = new ArrayList<char[]>();
+
+		int emit(int opcode, int a, int b) {
+			if (size == op.length){
+				op = Arrays.copyOf(op, size * 2);
+				arg1 = Arrays.copyOf(arg1, size * 2);
+				arg2 = Arrays.copyOf(arg2, size * 2);
+				owner = Arrays.copyOf(owner, size * 2);
+			}
+			op[size] = opcode;
+			arg1[size] = a;
+			arg2[size] = b;
+			owner[size] = currentOwner;
+			return size++;
+		}
+
+		int addClass(char[] ranges) {
+			classes.add(ranges);
+			return classes.size() - 1;
+		}
+	}
+
+	/**
+	 * A node of a parsed pattern
+	 */
+	private abstract static class Node {
+		// number of instructions the node emits, used to reject patterns that expand too much
+		abstract int size();
+
+		abstract void emit(Emitter e);
+
+		// mark the characters a match of this node can begin with, and return true if it can match
+		// the empty string (in which case the characters that follow it can begin a match too)
+		abstract boolean first(boolean[] first);
+	}
+
+	private static class CharNode extends Node {
+		final char c;
+		CharNode(char c) { this.c = c; }
+		int size() { return 1; }
+		void emit(Emitter e) { e.emit(CHAR, c, 0); }
+		boolean first(boolean[] first) {
+			first[Math.min(c, FIRST_CHAR_SLOTS)] = true;
+			return false;
+		}
+	}
+
+	private static class AnyNode extends Node {
+		int size() { return 1; }
+		void emit(Emitter e) { e.emit(ANY, 0, 0); }
+		boolean first(boolean[] first) {
+			Arrays.fill(first, true);
+			return false;
+		}
+	}
+
+	private static class ClassNode extends Node {
+		final char[] ranges;
+		ClassNode(char[] ranges) { this.ranges = ranges; }
+		int size() { return 1; }
+		void emit(Emitter e) { e.emit(CLASS, e.addClass(ranges), 0); }
+		boolean first(boolean[] first) {
+			markRanges(ranges, first);
+			return false;
+		}
+	}
+
+	private static class AssertNode extends Node {
+		final int assertion;
+		AssertNode(int assertion) { this.assertion = assertion; }
+		int size() { return 1; }
+		void emit(Emitter e) { e.emit(ASSERT, assertion, 0); }
+		boolean first(boolean[] first) { return true; }
+	}
+
+	private static class ConcatNode extends Node {
+		final List<Node> parts;
+		ConcatNode(List<Node> parts) { this.parts = parts; }
+		int size() {
+			int size = 0;
+			for (Node part : parts){
+				size += part.size();
+			}
+			return size;
+		}
+		void emit(Emitter e) {
+			for (Node part : parts){
+				part.emit(e);
+			}
+		}
+		boolean first(boolean[] first) {
+			for (Node part : parts){
+				if (!part.first(first)){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class AlternationNode extends Node {
+		final List<Node> branches;
+		AlternationNode(List<Node> branches) { this.branches = branches; }
+		int size() {
+			int size = 0;
+			for (Node branch : branches){
+				size += branch.size() + 2;
+			}
+			return size;
+		}
+		void emit(Emitter e) {
+			int[] jumps = new int[branches.size() - 1];
+			for (int i = 0; i < branches.size() - 1; i++){
+				int split = e.emit(SPLIT, 0, 0);
+				e.arg1[split] = e.size;
+				branches.get(i).emit(e);
+				jumps[i] = e.emit(JMP, 0, 0);
+				e.arg2[split] = e.size;
+			}
+			branches.get(branches.size() - 1).emit(e);
+			for (int jump : jumps){
+				e.arg1[jump] = e.size;
+			}
+		}
+		boolean first(boolean[] first) {
+			boolean nullable = false;
+			for (Node branch : branches){
+				nullable |= branch.first(first);
+			}
+			return nullable;
+		}
+	}
+
+	private static class RepeatNode extends Node {
+		final Node body;
+		final int min;
+		// -1 for unbounded
+		final int max;
+		RepeatNode(Node body, int min, int max) {
+			this.body = body;
+			this.min = min;
+			this.max = max;
+		}
+		int size() {
+			int copies = (max < 0) ? min + 1 : max;
+			return copies * (body.size() + 2);
+		}
+		void emit(Emitter e) {
+			for (int i = 0; i < min; i++){
+				body.emit(e);
+			}
+			if (max < 0){
+				// loop: SPLIT body, out; body; JMP loop
+				int split = e.emit(SPLIT, 0, 0);
+				e.arg1[split] = e.size;
+				body.emit(e);
+				e.emit(JMP, split, 0);
+				e.arg2[split] = e.size;
+			}
+			else{
+				// nested optional copies, each one can skip to the end
+				int[] splits = new int[max - min];
+				for (int i = 0; i < splits.length; i++){
+					splits[i] = e.emit(SPLIT, 0, 0);
+					e.arg1[splits[i]] = e.size;
+					body.emit(e);
+				}
+				for (int split : splits){
+					e.arg2[split] = e.size;
+				}
+			}
+		}
+		boolean first(boolean[] first) {
+			return body.first(first) || min == 0;
+		}
+	}
+
+	/**
+	 * Recursive descent parser for the supported regular expression syntax
+	 */
+	private static class Parser {
+		private final String pattern;
+		private int pos;
+		private boolean caseInsensitive;
+
+		Parser(String pattern) {
+			this.pattern = pattern;
+		}
+
+		Node parse() {
+			Node tree = parseAlternation();
+			if (pos < pattern.length()){
+				throw error("Unmatched closing ')'", pos);
+			}
+			if (tree.size() > MAX_PROGRAM_SIZE){
+				throw error("Pattern is too large once repetitions are expanded", 0);
+			}
+			return tree;
+		}
+
+		private Node parseAlternation() {
+			List<Node> branches = new ArrayList<Node>();
+			branches.add(parseConcatenation());
+			while (more() && peek() == '|'){
+				pos++;
+				branches.add(parseConcatenation());
+			}
+			return (branches.size() == 1) ? branches.get(0) : new AlternationNode(branches);
+		}
+
+		private Node parseConcatenation() {
+			List<Node> parts = new ArrayList<Node>();
+			while (more() && peek() != '|' && peek() != ')'){
+				if (pattern.startsWith("\\Q", pos)){
+					parseQuoted(parts);
+					continue;
+				}
+				Node atom = parseAtom();
+				if (atom != null){
+					parts.add(parseQuantifiers(atom));
+				}
+			}
+			return (parts.size() == 1) ? parts.get(0) : new ConcatNode(parts);
+		}
+
+		private Node parseQuantifiers(Node atom) {
+			while (more()){
+				int quantifierStart = pos;
+				char c = peek();
+				int min;
+				int max;
+				if (c == '*'){
+					min = 0;
+					max = -1;
+					pos++;
+				}
+				else if (c == '+'){
+					min = 1;
+					max = -1;
+					pos++;
+				}
+				else if (c == '?'){
+					min = 0;
+					max = 1;
+					pos++;
+				}
+				else if (c == '{'){
+					pos++;
+					min = parseNumber(quantifierStart);
+					max = min;
+					if (more() && peek() == ','){
+						pos++;
+						max = (more() && peek() == '}') ? -1 : parseNumber(quantifierStart);
+					}
+					if (!more() || peek() != '}'){
+						throw error("Unclosed counted closure", pos);
+					}
+					pos++;
+					if (max >= 0 && max < min){
+						throw error("Illegal repetition range", quantifierStart);
+					}
+				}
+				else{
+					return atom;
+				}
+				if (more() && peek() == '?'){
+					// lazy quantifiers match the same texts when only a yes/no answer is needed
+					pos++;
+				}
+				else if (more() && peek() == '+'){
+					throw error("Possessive quantifiers need backtracking and are not supported in breakpoints", pos);
+				}
+				atom = new RepeatNode(atom, min, max);
+				if (atom.size() > MAX_PROGRAM_SIZE){
+					throw error("Pattern is too large once repetitions are expanded", quantifierStart);
+				}
+			}
+			return atom;
+		}
+
+		private int parseNumber(int quantifierStart) {
+			int start = pos;
+			while (more() && Character.isDigit(peek())){
+				pos++;
+			}
+			if (start == pos || pos - start > 5){
+				throw error("Illegal repetition", quantifierStart);
+			}
+			return Integer.parseInt(pattern.substring(start, pos));
+		}
+
+		/**
+		 * Parse one atom.  Returns null for constructs that only change parser state, like (?i)
+		 */
+		private Node parseAtom() {
+			int start = pos;
+			char c = pattern.charAt(pos++);
+			switch (c){
+			case '(':
+				return parseGroup(start);
+			case '[':
+				return new ClassNode(parseClass());
+			case '.':
+				return new AnyNode();
+			case '^':
+				return new AssertNode(BEGIN);
+			case '$':
+				return new AssertNode(END);
+			case '\\':
+				return parseEscape();
+			case '*':
+			case '+':
+			case '?':
+				throw error("Dangling meta character '" + c + "'", start);
+			case '{':
+				throw error("Illegal repetition", start);
+			default:
+				return literal(c);
+			}
+		}
+
+		private Node parseGroup(int start) {
+			boolean savedCaseInsensitive = caseInsensitive;
+			if (pattern.startsWith("?", pos)){
+				pos++;
+				if (!more()){
+					throw error("Unknown group type", pos);
+				}
+				char kind = pattern.charAt(pos);
+				if (kind == ':'){
+					pos++;
+				}
+				else if (pattern.startsWith("<=", pos) || pattern.startsWith("<!", pos) || kind == '=' || kind == '!'){
+					throw error("Look-ahead and look-behind need backtracking and are not supported in breakpoints", start);
+				}
+				else if (kind == '>'){
+					throw error("Atomic groups need backtracking and are not supported in breakpoints", start);
+				}
+				else if (kind == '<'){
+					// named group, the name is not needed since nothing is captured
+					int close = pattern.indexOf('>', pos);
+					if (close < 0){
+						throw error("Named group is missing trailing '>'", pos);
+					}
+					pos = close + 1;
+				}
+				else{
+					// inline flags: (?i) changes the enclosing group, (?i:...) only its own content
+					boolean value = true;
+					while (more() && peek() != ')' && peek() != ':'){
+						char flag = pattern.charAt(pos++);
+						if (flag == '-'){
+							value = false;
+						}
+						else if (flag == 'i'){
+							caseInsensitive = value;
+						}
+						else{
+							throw error("Flag '" + flag + "' is not supported in breakpoints", pos - 1);
+						}
+					}
+					if (!more()){
+						throw error("Unclosed group", start);
+					}
+					if (pattern.charAt(pos++) == ')'){
+						return null;
+					}
+				}
+			}
+			Node body = parseAlternation();
+			if (!more() || peek() != ')'){
+				throw error("Unclosed group", start);
+			}
+			pos++;
+			caseInsensitive = savedCaseInsensitive;
+			return body;
+		}
+
+		private void parseQuoted(List<Node> parts) {
+			pos += 2;
+			int end = pattern.indexOf("\\E", pos);
+			if (end < 0){
+				end = pattern.length();
+			}
+			for (int i = pos; i < end; i++){
+				parts.add(literal(pattern.charAt(i)));
+			}
+			pos = Math.min(end + 2, pattern.length());
+		}
+
+		private Node parseEscape() {
+			if (!more()){
+				throw error("Unexpected internal error", pos);
+			}
+			int start = pos - 1;
+			char c = pattern.charAt(pos++);
+			switch (c){
+			case 'b':
+				return new AssertNode(WORD_BOUNDARY);
+			case 'B':
+				return new AssertNode(NOT_WORD_BOUNDARY);
+			case 'A':
+				return new AssertNode(BEGIN);
+			case 'z':
+				return new AssertNode(END_OF_INPUT);
+			case 'Z':
+				return new AssertNode(END);
+			case 'k':
+				throw error("Back references need backtracking and are not supported in breakpoints", start);
+			default:
+				if (c >= '1' && c <= '9'){
+					throw error("Back references need backtracking and are not supported in breakpoints", start);
+				}
+				char[] predefined = predefinedClass(c);
+				if (predefined != null){
+					return new ClassNode(predefined);
+				}
+				return literal(escapedChar(c, start));
+			}
+		}
+
+		/**
+		 * Parse a character class, the opening '[' has been consumed
+		 * @return sorted range pairs
+		 */
+		private char[] parseClass() {
+			int start = pos - 1;
+			boolean negated = false;
+			if (more() && peek() == '^'){
+				negated = true;
+				pos++;
+			}
+			List<char[]> parts = new ArrayList<char[]>();
+			boolean first = true;
+			while (true){
+				if (!more()){
+					throw error("Unclosed character class", start);
+				}
+				char c = pattern.charAt(pos++);
+				if (c == ']' && !first){
+					break;
+				}
+				first = false;
+				if (c == '[' || (c == '&' && more() && peek() == '&')){
+					throw error("Nested classes and class intersections are not supported in breakpoints", pos - 1);
+				}
+				char low;
+				if (c == '\\'){
+					if (!more()){
+						throw error("Unclosed character class", start);
+					}
+					char escaped = pattern.charAt(pos++);
+					char[] predefined = predefinedClass(escaped);
+					if (predefined != null){
+						parts.add(predefined);
+						continue;
+					}
+					low = escapedChar(escaped, pos - 2);
+				}
+				else{
+					low = c;
+				}
+				char high = low;
+				if (more() && peek() == '-' && pos + 1 < pattern.length() && pattern.charAt(pos + 1) != ']'){
+					pos++;
+					char h = pattern.charAt(pos++);
+					if (h == '\\'){
+						if (!more()){
+							throw error("Unclosed character class", start);
+						}
+						h = escapedChar(pattern.charAt(pos++), pos - 2);
+					}
+					if (h < low){
+						throw error("Illegal character range", pos - 1);
+					}
+					high = h;
+				}
+				parts.add(new char[] {low, high});
+			}
+			char[] ranges = normalize(parts);
+			if (caseInsensitive){
+				ranges = foldCase(ranges);
+			}
+			return negated ? complement(ranges) : ranges;
+		}
+
+		private Node literal(char c) {
+			if (caseInsensitive && isAsciiLetter(c)){
+				return new ClassNode(foldCase(new char[] {c, c}));
+			}
+			return new CharNode(c);
+		}
+
+		private char escapedChar(char c, int start) {
+			switch (c){
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case 'r':
+				return '\r';
+			case 'f':
+				return '\f';
+			case 'a':
+				return '\u0007';
+			case 'e':
+				return '\u001B';
+			case 'x':
+				return (char) parseHex(2, start);
+			case 'u':
+				return (char) parseHex(4, start);
+			case '0':
+				return (char) parseOctal(start);
+			default:
+				if (Character.isLetterOrDigit(c)){
+					throw error("Escape sequence \\" + c + " is not supported in breakpoints", start);
+				}
+				return c;
+			}
+		}
+
+		/**
+		 * Parse the digits of a \0 escape like java.util.regex: \0n, \0nn or \0mnn with m at most 3
+		 */
+		private int parseOctal(int start) {
+			if (!more() || !isOctalDigit(peek())){
+				throw error("Illegal octal escape sequence", start);
+			}
+			int value = pattern.charAt(pos++) - '0';
+			for (int digits = 1; digits < 3 && more() && isOctalDigit(peek()); digits++){
+				if (digits == 2 && value > 3 * 8 + 7){
+					break;
+				}
+				value = value * 8 + pattern.charAt(pos++) - '0';
+			}
+			return value;
+		}
+
+		private boolean isOctalDigit(char c) {
+			return c >= '0' && c <= '7';
+		}
+
+		private int parseHex(int digits, int start) {
+			if (pos + digits > pattern.length()){
+				throw error("Illegal hexadecimal escape sequence", start);
+			}
+			try {
+				int value = Integer.parseInt(pattern.substring(pos, pos + digits), 16);
+				pos += digits;
+				return value;
+			}
+			catch (NumberFormatException e){
+				throw error("Illegal hexadecimal escape sequence", start);
+			}
+		}
+
+		private boolean more() {
+			return pos < pattern.length();
+		}
+
+		private char peek() {
+			return pattern.charAt(pos);
+		}
+
+		private PatternSyntaxException error(String description, int index) {
+			return new PatternSyntaxException(description, pattern, index);
+		}
+	}
+
+	/**
+	 * The ranges of the predefined classes \d \w \s and their negations
+	 * @return the ranges or null if c does not name a predefined class
+	 */
+	private static char[] predefinedClass(char c) {
+		switch (c){
+		case 'd':
+			return new char[] {'0', '9'};
+		case 'D':
+			return complement(new char[] {'0', '9'});
+		case 'w':
+			return new char[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+		case 'W':
+			return complement(new char[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'});
+		case 's':
+			return new char[] {'\t', '\r', ' ', ' '};
+		case 'S':
+			return complement(new char[] {'\t', '\r', ' ', ' '});
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Sort and merge range pairs
+	 */
+	private static char[] normalize(List<char[]> parts) {
+		List<int[]> ranges = new ArrayList<int[]>();
+		for (char[] part : parts){
+			for (int i = 0; i < part.length; i += 2){
+				ranges.add(new int[] {part[i], part[i + 1]});
+			}
+		}
+		Collections.sort(ranges, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b) {
+				return a[0] - b[0];
+			}
+		});
+		List<int[]> merged = new ArrayList<int[]>();
+		for (int[] range : ranges){
+			int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+			if (last != null && range[0] <= last[1] + 1){
+				last[1] = Math.max(last[1], range[1]);
+			}
+			else{
+				merged.add(range);
+			}
+		}
+		char[] result = new char[merged.size() * 2];
+		for (int i = 0; i < merged.size(); i++){
+			result[2 * i] = (char) merged.get(i)[0];
+			result[2 * i + 1] = (char) merged.get(i)[1];
+		}
+		return result;
+	}
+
+	/**
+	 * Complement sorted, merged ranges over the whole char range
+	 */
+	private static char[] complement(char[] ranges) {
+		List<char[]> parts = new ArrayList<char[]>();
+		int next = 0;
+		for (int i = 0; i < ranges.length; i += 2){
+			if (ranges[i] > next){
+				parts.add(new char[] {(char) next, (char) (ranges[i] - 1)});
+			}
+			next = ranges[i + 1] + 1;
+		}
+		if (next <= Character.MAX_VALUE){
+			parts.add(new char[] {(char) next, Character.MAX_VALUE});
+		}
+		return normalize(parts);
+	}
+
+	/**
+	 * Add the other ASCII case of every letter in the ranges (like java.util.regex's CASE_INSENSITIVE)
+	 */
+	private static char[] foldCase(char[] ranges) {
+		List<char[]> parts = new ArrayList<char[]>();
+		parts.add(ranges);
+		for (int i = 0; i < ranges.length; i += 2){
+			for (int c = ranges[i]; c <= ranges[i + 1] && c <= 'z'; c++){
+				if (isAsciiLetter((char) c)){
+					char other = (char) (c ^ 0x20);
+					parts.add(new char[] {other, other});
+				}
+			}
+		}
+		return normalize(parts);
+	}
+
+	private static boolean isAsciiLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+}
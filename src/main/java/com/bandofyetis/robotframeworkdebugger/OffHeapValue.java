@@ -0,0 +1,278 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A variable value too large to keep as a String, stored as UTF-8 in a direct buffer outside the heap.
+ *
+ * Only a short preview of the value stays on the heap; it is what the variables table shows.  The full
+ * value is decoded again when somebody asks for it: the value viewer, or a breakpoint condition on the
+ * variable.  The value is written straight into the buffer, without an intermediate copy on the heap.
+ *
+ * Every value has a direct buffer of its own, allocated for it with ByteBuffer.allocateDirect; the
+ * values do not share a region and buffers are not pooled.  The memory of a value is released when the
+ * last frame and snapshot holding the value are collected.  It cannot be released earlier: the snapshots
+ * the gui shows share the values of the frames.  Instead the memory of the values that were not collected
+ * yet is bounded, by default by DEFAULT_MEMORY_LIMIT, which can be overridden with the system property
+ * robotframeworkdebugger.largeValueMemory.  A value that does not fit is not kept, only its preview.
+ * The same happens when the JVM has less direct memory left than the bound allows, for example when
+ * -XX:MaxDirectMemorySize is set lower: the allocation fails and the value is not kept.
+ * The values are immutable and can be read from any thread.
+ *
+ * @author nspilka
+ *
+ */
+final class OffHeapValue {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// Default length above which values are stored off the heap, can be overridden with the system
+	// property robotframeworkdebugger.largeValueThreshold
+	static final int DEFAULT_THRESHOLD = 8192;
+
+	// Number of characters of the value kept in the preview
+	static final int PREVIEW_LENGTH = 200;
+
+	// Length above which values are stored off the heap
+	private static final int THRESHOLD = Integer.getInteger("robotframeworkdebugger.largeValueThreshold", DEFAULT_THRESHOLD);
+
+	// Default number of bytes all values may take outside the heap
+	static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+	// The memory of all values stored with store(String)
+	static final Memory MEMORY = new Memory(Long.getLong("robotframeworkdebugger.largeValueMemory", DEFAULT_MEMORY_LIMIT));
+
+	// The value as UTF-8, read only
+	private final ByteBuffer bytes;
+
+	// Number of characters of the value
+	private final int length;
+
+	// The start of the value and its length, shown instead of it
+	private final String preview;
+
+	private OffHeapValue(ByteBuffer bytes, int length, String preview) {
+		this.bytes = bytes;
+		this.length = length;
+		this.preview = preview;
+	}
+
+	/**
+	 * Check if a value is large enough to be stored off the heap
+	 * @param value the value, may be null
+	 * @return true if the value is longer than the threshold
+	 */
+	static boolean isLarge(String value) {
+		return value != null && value.length() > THRESHOLD;
+	}
+
+	/**
+	 * Store a value off the heap
+	 * @param value the value
+	 * @return the stored value, or null if it does not fit in the memory left
+	 */
+	static OffHeapValue store(String value) {
+		return MEMORY.store(value);
+	}
+
+	/**
+	 * Encode a value into a buffer of its UTF-8 size
+	 */
+	private static OffHeapValue encode(String value, ByteBuffer buffer) {
+		CharsetEncoder encoder = UTF8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		encoder.encode(CharBuffer.wrap(value), buffer, true);
+		encoder.flush(buffer);
+		buffer.flip();
+		return new OffHeapValue(buffer.asReadOnlyBuffer(), value.length(), preview(value));
+	}
+
+	/**
+	 * Read the full value
+	 * @return the value, decoded from the buffer
+	 */
+	String read() {
+		try {
+			return UTF8.newDecoder().decode(bytes.duplicate()).toString();
+		}
+		catch (CharacterCodingException e){
+			// the buffer holds what the encoder wrote, which is valid UTF-8
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Get the preview of the value
+	 * @return the first characters of the value and its length
+	 */
+	String getPreview() {
+		return preview;
+	}
+
+	/**
+	 * Get the length of the value
+	 * @return the number of characters
+	 */
+	int length() {
+		return length;
+	}
+
+	/**
+	 * Get the memory the value takes outside the heap
+	 * @return the number of bytes
+	 */
+	int byteSize() {
+		return bytes.capacity();
+	}
+
+	/**
+	 * Build the preview of a value, without cutting a surrogate pair in two
+	 */
+	static String preview(String value) {
+		int end = Math.min(PREVIEW_LENGTH, value.length());
+		if (end > 0 && end < value.length() && Character.isHighSurrogate(value.charAt(end - 1))){
+			end--;
+		}
+		return value.substring(0, end) + "... (" + value.length() + " characters)";
+	}
+
+	/**
+	 * Build the preview of a value that was not kept
+	 */
+	static String droppedPreview(String value) {
+		String preview = preview(value);
+		return preview.substring(0, preview.length() - 1) + ", too large to keep)";
+	}
+
+	/**
+	 * Count the bytes of the UTF-8 encoding of a value.  Unpaired surrogates are replaced by the
+	 * encoder with one byte, they are counted with three
+	 */
+	private static int utf8Length(String value) {
+		int bytes = 0;
+		int length = value.length();
+		for (int i = 0; i < length; i++){
+			char c = value.charAt(i);
+			if (c < 0x80){
+				bytes++;
+			}
+			else if (c < 0x800){
+				bytes += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))){
+				bytes += 4;
+				i++;
+			}
+			else{
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Bounds the memory taken by the values that were not collected yet.  The buffer of a value is
+	 * counted until the value is found collected, which is checked when the next value is stored
+	 */
+	static class Memory {
+
+		// Number of bytes the values may take
+		private final long limit;
+
+		// Number of bytes taken by the values not found collected yet
+		private long used;
+
+		// Receives the allocations of the collected values
+		private final ReferenceQueue<OffHeapValue> collected = new ReferenceQueue<OffHeapValue>();
+
+		// The allocations of the values not found collected yet, kept so the references stay registered
+		private final Set<Allocation> live = new HashSet<Allocation>();
+
+		/**
+		 * Create a memory bound
+		 * @param limit the number of bytes the values may take
+		 */
+		Memory(long limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * Store a value off the heap, if it fits
+		 * @param value the value
+		 * @return the stored value, or null if it does not fit in the memory left
+		 */
+		synchronized OffHeapValue store(String value) {
+			int byteSize = utf8Length(value);
+			release();
+			if (used + byteSize > limit){
+				return null;
+			}
+			ByteBuffer buffer;
+			try {
+				buffer = allocate(byteSize);
+			}
+			catch (OutOfMemoryError e){
+				// the JVM has no direct memory left, allocateDirect already collected and retried
+				return null;
+			}
+			OffHeapValue stored = encode(value, buffer);
+			live.add(new Allocation(stored, byteSize, collected));
+			used += byteSize;
+			return stored;
+		}
+
+		/**
+		 * Allocate the buffer of a value
+		 * @param byteSize the size of the value as UTF-8
+		 * @return a new direct buffer
+		 * @throws OutOfMemoryError if the JVM has no direct memory left
+		 */
+		ByteBuffer allocate(int byteSize) {
+			return ByteBuffer.allocateDirect(byteSize);
+		}
+
+		/**
+		 * Get the memory taken by the values
+		 * @return the number of bytes of the values not found collected yet
+		 */
+		synchronized long getUsed() {
+			release();
+			return used;
+		}
+
+		/**
+		 * Stop counting the values that were collected
+		 */
+		private void release() {
+			for (Reference<? extends OffHeapValue> ref = collected.poll(); ref != null; ref = collected.poll()){
+				Allocation allocation = (Allocation)ref;
+				if (live.remove(allocation)){
+					used -= allocation.byteSize;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The buffer size of a stored value, enqueued when the value is collected
+	 */
+	private static final class Allocation extends PhantomReference<OffHeapValue> {
+		final int byteSize;
+
+		Allocation(OffHeapValue value, int byteSize, ReferenceQueue<OffHeapValue> queue) {
+			super(value, queue);
+			this.byteSize = byteSize;
+		}
+	}
+}
@@ -0,0 +1,562 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable sorted map, kept as a weight balanced binary tree.
+ *
+ * Every node knows the size of its subtree, so besides O(log n) get, put and remove the map can
+ * find the entry at a position and the position of a key in O(log n).  put and remove return a new
+ * map that shares all untouched nodes with the old one, so a map handed to another thread never
+ * changes underneath it.
+ *
+ * @author nspilka
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+class PersistentSortedMap<K, V> {
+
+	// Balance parameters of the tree: a subtree may be at most DELTA times the size of its sibling.
+	// RATIO decides between a single and a double rotation
+	private static final int DELTA = 3;
+	private static final int RATIO = 2;
+
+	// The order of the keys
+	private final Comparator<? super K> comparator;
+
+	// The root of the tree, null for an empty map
+	private final Node<K, V> root;
+
+	/**
+	 * Create an empty map
+	 * @param comparator the order of the keys
+	 */
+	PersistentSortedMap(Comparator<? super K> comparator) {
+		this(comparator, null);
+	}
+
+	private PersistentSortedMap(Comparator<? super K> comparator, Node<K, V> root) {
+		this.comparator = comparator;
+		this.root = root;
+	}
+
+	/**
+	 * Create a map from keys that are already sorted, in O(n)
+	 * @param comparator the order of the keys
+	 * @param keys the keys in ascending order, without duplicates
+	 * @param values the value of each key
+	 * @return the new map
+	 * @throws IllegalArgumentException if the keys are not strictly ascending or the lists differ in length
+	 */
+	static <K, V> PersistentSortedMap<K, V> fromSorted(Comparator<? super K> comparator, List<K> keys, List<V> values) {
+		if (keys.size() != values.size()){
+			throw new IllegalArgumentException("keys and values must have the same length");
+		}
+		for (int i = 1; i < keys.size(); i++){
+			if (comparator.compare(keys.get(i - 1), keys.get(i)) >= 0){
+				throw new IllegalArgumentException("keys must be strictly ascending");
+			}
+		}
+		return new PersistentSortedMap<K, V>(comparator, build(keys, values, 0, keys.size() - 1));
+	}
+
+	/**
+	 * Get the number of entries
+	 * @return the number of entries
+	 */
+	int size() {
+		return size(root);
+	}
+
+	/**
+	 * Check if the map is empty
+	 * @return true if the map has no entries
+	 */
+	boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Get the comparator that orders the keys
+	 * @return the comparator
+	 */
+	Comparator<? super K> comparator() {
+		return comparator;
+	}
+
+	/**
+	 * Get the value of a key
+	 * @param key the key to look up
+	 * @return the value or null if the key is not in the map
+	 */
+	V get(K key) {
+		Node<K, V> node = root;
+		while (node != null){
+			int c = comparator.compare(key, node.key);
+			if (c == 0){
+				return node.value;
+			}
+			node = (c < 0) ? node.left : node.right;
+		}
+		return null;
+	}
+
+	/**
+	 * Check if a key is in the map
+	 * @param key the key to look up
+	 * @return true if the map contains the key
+	 */
+	boolean containsKey(K key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Get the position of a key in sorted order
+	 * @param key the key to look up
+	 * @return the position of the key, or -1 if it is not in the map
+	 */
+	int indexOf(K key) {
+		int index = 0;
+		Node<K, V> node = root;
+		while (node != null){
+			int c = comparator.compare(key, node.key);
+			if (c == 0){
+				return index + size(node.left);
+			}
+			if (c < 0){
+				node = node.left;
+			}
+			else{
+				index += size(node.left) + 1;
+				node = node.right;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the key at a position in sorted order
+	 * @param index the position
+	 * @return the key
+	 * @throws IndexOutOfBoundsException if the position is outside the map
+	 */
+	K keyAt(int index) {
+		return nodeAt(index).key;
+	}
+
+	/**
+	 * Get the value at a position in sorted order
+	 * @param index the position
+	 * @return the value
+	 * @throws IndexOutOfBoundsException if the position is outside the map
+	 */
+	V valueAt(int index) {
+		return nodeAt(index).value;
+	}
+
+	/**
+	 * Add or replace an entry
+	 * @param key the key
+	 * @param value the value
+	 * @return a map with the entry
+	 */
+	PersistentSortedMap<K, V> put(K key, V value) {
+		return new PersistentSortedMap<K, V>(comparator, insert(root, key, value));
+	}
+
+	/**
+	 * Remove an entry
+	 * @param key the key to remove
+	 * @return a map without the key (this map if the key was not there)
+	 */
+	PersistentSortedMap<K, V> remove(K key) {
+		if (!containsKey(key)){
+			return this;
+		}
+		return new PersistentSortedMap<K, V>(comparator, delete(root, key));
+	}
+
+	/**
+	 * Get the keys in sorted order.  The list is a read only view of this map
+	 * @return the keys
+	 */
+	List<K> keys() {
+		return new AbstractList<K>() {
+			@Override
+			public K get(int index) {
+				return keyAt(index);
+			}
+
+			@Override
+			public int size() {
+				return PersistentSortedMap.this.size();
+			}
+
+			@Override
+			public Iterator<K> iterator() {
+				final Iterator<Node<K, V>> nodes = new NodeIterator<K, V>(root);
+				return new Iterator<K>() {
+					public boolean hasNext() {
+						return nodes.hasNext();
+					}
+
+					public K next() {
+						return nodes.next().key;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Get the values in the order of their keys.  The list is a read only view of this map
+	 * @return the values
+	 */
+	List<V> values() {
+		return new AbstractList<V>() {
+			@Override
+			public V get(int index) {
+				return valueAt(index);
+			}
+
+			@Override
+			public int size() {
+				return PersistentSortedMap.this.size();
+			}
+
+			@Override
+			public Iterator<V> iterator() {
+				final Iterator<Node<K, V>> nodes = new NodeIterator<K, V>(root);
+				return new Iterator<V>() {
+					public boolean hasNext() {
+						return nodes.hasNext();
+					}
+
+					public V next() {
+						return nodes.next().value;
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Get a read only java.util.Map view of this map.  Lookups take O(log n), iteration is in key order
+	 * @return the view
+	 */
+	Map<K, V> asMap() {
+		return new AbstractMap<K, V>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public V get(Object key) {
+				try {
+					return PersistentSortedMap.this.get((K)key);
+				}
+				catch (ClassCastException e){
+					return null;
+				}
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public boolean containsKey(Object key) {
+				try {
+					return PersistentSortedMap.this.containsKey((K)key);
+				}
+				catch (ClassCastException e){
+					return false;
+				}
+			}
+
+			@Override
+			public int size() {
+				return PersistentSortedMap.this.size();
+			}
+
+			@Override
+			public Set<Map.Entry<K, V>> entrySet() {
+				return new AbstractSet<Map.Entry<K, V>>() {
+					@Override
+					public Iterator<Map.Entry<K, V>> iterator() {
+						final Iterator<Node<K, V>> nodes = new NodeIterator<K, V>(root);
+						return new Iterator<Map.Entry<K, V>>() {
+							public boolean hasNext() {
+								return nodes.hasNext();
+							}
+
+							public Map.Entry<K, V> next() {
+								return nodes.next();
+							}
+
+							public void remove() {
+								throw new UnsupportedOperationException();
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return PersistentSortedMap.this.size();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Find the node at a position
+	 * @param index the position
+	 * @return the node
+	 */
+	private Node<K, V> nodeAt(int index) {
+		if (index < 0 || index >= size()){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		Node<K, V> node = root;
+		while (true){
+			int leftSize = size(node.left);
+			if (index < leftSize){
+				node = node.left;
+			}
+			else if (index > leftSize){
+				index -= leftSize + 1;
+				node = node.right;
+			}
+			else{
+				return node;
+			}
+		}
+	}
+
+	private Node<K, V> insert(Node<K, V> node, K key, V value) {
+		if (node == null){
+			return new Node<K, V>(key, value, null, null);
+		}
+		int c = comparator.compare(key, node.key);
+		if (c < 0){
+			return balance(node.key, node.value, insert(node.left, key, value), node.right);
+		}
+		if (c > 0){
+			return balance(node.key, node.value, node.left, insert(node.right, key, value));
+		}
+		return new Node<K, V>(key, value, node.left, node.right);
+	}
+
+	private Node<K, V> delete(Node<K, V> node, K key) {
+		int c = comparator.compare(key, node.key);
+		if (c < 0){
+			return balance(node.key, node.value, delete(node.left, key), node.right);
+		}
+		if (c > 0){
+			return balance(node.key, node.value, node.left, delete(node.right, key));
+		}
+		return glue(node.left, node.right);
+	}
+
+	/**
+	 * Join two subtrees whose keys are in order and whose sizes are balanced
+	 */
+	private static <K, V> Node<K, V> glue(Node<K, V> left, Node<K, V> right) {
+		if (left == null){
+			return right;
+		}
+		if (right == null){
+			return left;
+		}
+		if (size(left) > size(right)){
+			Node<K, V> max = left;
+			while (max.right != null){
+				max = max.right;
+			}
+			return balance(max.key, max.value, deleteMax(left), right);
+		}
+		Node<K, V> min = right;
+		while (min.left != null){
+			min = min.left;
+		}
+		return balance(min.key, min.value, left, deleteMin(right));
+	}
+
+	private static <K, V> Node<K, V> deleteMin(Node<K, V> node) {
+		if (node.left == null){
+			return node.right;
+		}
+		return balance(node.key, node.value, deleteMin(node.left), node.right);
+	}
+
+	private static <K, V> Node<K, V> deleteMax(Node<K, V> node) {
+		if (node.right == null){
+			return node.left;
+		}
+		return balance(node.key, node.value, node.left, deleteMax(node.right));
+	}
+
+	/**
+	 * Create a node, rotating once if one side has become too heavy after a single insert or delete
+	 */
+	private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+		int leftSize = size(left);
+		int rightSize = size(right);
+		if (leftSize + rightSize > 1){
+			if (rightSize > DELTA * leftSize){
+				if (size(right.left) < RATIO * size(right.right)){
+					return new Node<K, V>(right.key, right.value, new Node<K, V>(key, value, left, right.left), right.right);
+				}
+				Node<K, V> middle = right.left;
+				return new Node<K, V>(middle.key, middle.value,
+						new Node<K, V>(key, value, left, middle.left),
+						new Node<K, V>(right.key, right.value, middle.right, right.right));
+			}
+			if (leftSize > DELTA * rightSize){
+				if (size(left.right) < RATIO * size(left.left)){
+					return new Node<K, V>(left.key, left.value, left.left, new Node<K, V>(key, value, left.right, right));
+				}
+				Node<K, V> middle = left.right;
+				return new Node<K, V>(middle.key, middle.value,
+						new Node<K, V>(left.key, left.value, left.left, middle.left),
+						new Node<K, V>(key, value, middle.right, right));
+			}
+		}
+		return new Node<K, V>(key, value, left, right);
+	}
+
+	private static <K, V> Node<K, V> build(List<K> keys, List<V> values, int low, int high) {
+		if (low > high){
+			return null;
+		}
+		int mid = (low + high) >>> 1;
+		return new Node<K, V>(keys.get(mid), values.get(mid),
+				build(keys, values, low, mid - 1), build(keys, values, mid + 1, high));
+	}
+
+	private static int size(Node<?, ?> node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	/**
+	 * Check the balance and order invariants of the tree.  Package level access for testing
+	 * @return true if every node is balanced, ordered and has the right size
+	 */
+	boolean isValid() {
+		return isValid(root, null, null);
+	}
+
+	private boolean isValid(Node<K, V> node, K low, K high) {
+		if (node == null){
+			return true;
+		}
+		if ((low != null && comparator.compare(node.key, low) <= 0) || (high != null && comparator.compare(node.key, high) >= 0)){
+			return false;
+		}
+		int leftSize = size(node.left);
+		int rightSize = size(node.right);
+		if (node.size != leftSize + rightSize + 1){
+			return false;
+		}
+		if (leftSize + rightSize > 1 && (leftSize > DELTA * rightSize || rightSize > DELTA * leftSize)){
+			return false;
+		}
+		return isValid(node.left, low, node.key) && isValid(node.right, node.key, high);
+	}
+
+	/**
+	 * A tree node.  Nodes are never modified once built
+	 */
+	private static final class Node<K, V> implements Map.Entry<K, V> {
+		final K key;
+		final V value;
+		final Node<K, V> left;
+		final Node<K, V> right;
+
+		// number of nodes in this subtree
+		final int size;
+
+		Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+			this.key = key;
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.size = size(left) + size(right) + 1;
+		}
+
+		public K getKey() {
+			return key;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public V setValue(V value) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry)){
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+			return (key == null ? e.getKey() == null : key.equals(e.getKey()))
+					&& (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode() {
+			return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+		}
+	}
+
+	/**
+	 * In order iterator over the nodes of a tree, O(1) amortized per step
+	 */
+	private static final class NodeIterator<K, V> implements Iterator<Node<K, V>> {
+		private final List<Node<K, V>> path = new ArrayList<Node<K, V>>();
+
+		NodeIterator(Node<K, V> root) {
+			pushLeft(root);
+		}
+
+		public boolean hasNext() {
+			return !path.isEmpty();
+		}
+
+		public Node<K, V> next() {
+			if (path.isEmpty()){
+				throw new NoSuchElementException();
+			}
+			Node<K, V> node = path.remove(path.size() - 1);
+			pushLeft(node.right);
+			return node;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void pushLeft(Node<K, V> node) {
+			while (node != null){
+				path.add(node);
+				node = node.left;
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands values from the Robot Framework thread to the ui thread, rendering at most a given number
+ * of times per second.
+ *
+ * submit() only stores the value and schedules a refresh if none is scheduled yet, so there is never
+ * more than one refresh waiting in the ui queue however fast values arrive.  The refresh renders the
+ * latest value submitted before it ran; the values it replaced are counted as coalesced and never
+ * rendered.  A refresh submitted less than one frame after the last rendering is delayed until the
+ * frame is over.
+ *
+ * Subclasses say how to run code on the ui thread and how to render a value.
+ *
+ * @author nspilka
+ *
+ * @param <T> the type of the values
+ */
+abstract class RefreshScheduler<T> {
+
+	// The latest value that was submitted but not rendered yet, or null
+	private final AtomicReference<T> pending = new AtomicReference<T>();
+
+	// True from scheduling a refresh until the refresh starts
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	// Minimum time between two renderings
+	private volatile long frameMillis;
+
+	// When the last rendering ended, in milliseconds.  Written on the ui thread only
+	private volatile long lastRendered = Long.MIN_VALUE / 2;
+
+	// Statistics
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong rendered = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+
+	// Renders the pending value on the ui thread
+	private final Runnable refresh = new Runnable() {
+		public void run() {
+			refreshes.incrementAndGet();
+			// clear the flag first: a value submitted from now on schedules another refresh
+			scheduled.set(false);
+			T value = pending.getAndSet(null);
+			if (value != null){
+				rendered.incrementAndGet();
+				render(value);
+				lastRendered = currentTimeMillis();
+			}
+		}
+	};
+
+	/**
+	 * Create a scheduler
+	 * @param maxRate the maximum number of renderings per second
+	 * @throws IllegalArgumentException if the rate is not positive
+	 */
+	RefreshScheduler(int maxRate) {
+		setMaxRate(maxRate);
+	}
+
+	/**
+	 * Submit a value to be rendered.  Can be called from any thread
+	 * @param value the value, replaces any value that was not rendered yet
+	 */
+	void submit(T value) {
+		if (value == null){
+			throw new IllegalArgumentException("value must not be null");
+		}
+		submitted.incrementAndGet();
+		if (pending.getAndSet(value) != null){
+			coalesced.incrementAndGet();
+		}
+		if (scheduled.compareAndSet(false, true)){
+			long wait = lastRendered + frameMillis - currentTimeMillis();
+			schedule((wait > 0) ? (int)wait : 0, refresh);
+		}
+	}
+
+	/**
+	 * Set the maximum rate of renderings
+	 * @param maxRate the maximum number of renderings per second
+	 * @throws IllegalArgumentException if the rate is not positive
+	 */
+	void setMaxRate(int maxRate) {
+		if (maxRate <= 0){
+			throw new IllegalArgumentException("Refresh rate must be positive: " + maxRate);
+		}
+		frameMillis = 1000 / maxRate;
+	}
+
+	/**
+	 * Get the number of submitted values
+	 * @return the number of calls to submit()
+	 */
+	long getSubmitted() {
+		return submitted.get();
+	}
+
+	/**
+	 * Get the number of values that were replaced by a later value before they were rendered
+	 * @return the number of coalesced values
+	 */
+	long getCoalesced() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Get the number of renderings
+	 * @return the number of values rendered
+	 */
+	long getRendered() {
+		return rendered.get();
+	}
+
+	/**
+	 * Get the number of refreshes that ran, including those that found nothing to render
+	 * @return the number of refreshes
+	 */
+	long getRefreshes() {
+		return refreshes.get();
+	}
+
+	/**
+	 * Run a refresh on the ui thread
+	 * @param delayMillis how long to wait before running it, 0 to run it as soon as possible
+	 * @param refresh the refresh
+	 */
+	protected abstract void schedule(int delayMillis, Runnable refresh);
+
+	/**
+	 * Render a value.  Called on the ui thread
+	 * @param value the latest submitted value
+	 */
+	protected abstract void render(T value);
+
+	/**
+	 * Get the current time
+	 * @return the time in milliseconds
+	 */
+	protected long currentTimeMillis() {
+		return System.nanoTime() / 1000000;
+	}
+}
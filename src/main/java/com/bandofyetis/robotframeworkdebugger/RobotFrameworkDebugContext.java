@@ -1,6 +1,8 @@
 package com.bandofyetis.robotframeworkdebugger;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 
@@ -8,6 +10,20 @@ import java.util.Map;
  * A class representing the debug context.  
  * 
  * A debug context can represent a keyword, test case or test suite
+ *
+ * Contexts are reused by the FrameStack.  The variables are kept in a CollectionHelpers.RankedMap,
+ * whose entries are an immutable sorted map replaced on every change, so a snapshot shares them
+ * instead of copying them, and the context notes
+ * which variables changed since it was last published so the snapshot can update the variables
+ * visible from the frame instead of building them again.  A context on a FrameStack tells the
+ * stack when it changes, so the stack only copies changed contexts when it publishes a snapshot.
+ *
+ * Values longer than the OffHeapValue threshold are stored off the heap.  The variables then hold a
+ * short preview of the value, and getFullVariable() reads the whole value back
+ *
+ * The name of a keyword is kept as its symbol in SymbolTable.NAMES, keywords are called again and
+ * again.  Suite and test names are kept as strings: every test has a name of its own, and interning
+ * them would grow the symbol table with every test of the run
  * 
  * @author nspilka
  *
@@ -26,27 +42,71 @@ public class RobotFrameworkDebugContext {
 	static final String TEST_CASE_TEXT = "Test Case";
 	static final String KEYWORD_TEXT = "Keyword";
 	
-	// name of the item that is being represented by the context (ie. keyword name, testcase name, etc)
+	// symbol of the name of the keyword represented by the context, in SymbolTable.NAMES.  EMPTY for
+	// suites and tests
+	private int itemSymbol;
+
+	// name of the suite or test represented by the context, null for keywords
 	private String itemName;
 	private ContextType contextType;	
-	private Map<String, Object> itemAttribs;
+	private ItemAttributes itemAttributes;
 	
-	// A map of variables defined and scoped to this context
-	private Map<String, String> variables;
+	// The order of variable names
+	static final Comparator<String> VARIABLE_ORDER = CollectionHelpers.<String>naturalOrder();
+
+	// The empty variable map, shared by all contexts without variables
+	static final PersistentSortedMap<String, String> NO_VARIABLES = new PersistentSortedMap<String, String>(VARIABLE_ORDER);
+
+	// The empty map of large values
+	static final PersistentSortedMap<String, OffHeapValue> NO_LARGE_VALUES = new PersistentSortedMap<String, OffHeapValue>(VARIABLE_ORDER);
+
+	// Most variable changes noted between two publications, more count as replacing all variables
+	private static final int MAX_NOTED_CHANGES = 16;
+
+	// The variables defined and scoped to this context
+	private final VariableMap variables = new VariableMap();
+
+	// The variables whose value is stored off the heap, by name.  Their entry in variables is the preview
+	private PersistentSortedMap<String, OffHeapValue> largeValues = NO_LARGE_VALUES;
+
+	// Names of the variables set or removed since the last publication, null until the first change.
+	// Not used while variablesReplaced is set
+	private List<String> changedVariables;
+
+	// True if all variables must be considered changed since the last publication
+	private boolean variablesReplaced = true;
 
 	// The line number (if applicable for this context element)
 	private int lineNumber;
+
+	// The stack this context is on and its position there, null if it is not on a stack
+	private FrameStack stack;
+	private int depth;
 		
 	/**
 	 * Standard constructor
 	 */
 	public RobotFrameworkDebugContext() {
 		super();
-		this.itemName = "";
+		this.itemSymbol = SymbolTable.EMPTY;
+		this.itemName = null;
 		this.lineNumber = 0;
 		this.contextType = ContextType.KEYWORD;		
-		this.setItemAttribs(null);
-		variables = new HashMap<String,String>();
+		this.setItemAttributes(null);
+	}
+
+	/**
+	 * Reset the context to the state of a new one, so it can be reused.  The variable view is kept
+	 * @param contextType the context type of the reused context
+	 */
+	void reset(ContextType contextType) {
+		changed();
+		this.itemSymbol = SymbolTable.EMPTY;
+		this.itemName = null;
+		this.lineNumber = 0;
+		this.contextType = contextType;
+		this.itemAttributes = null;
+		variables.clear();
 	}
 	
 	/**
@@ -54,15 +114,39 @@ public class RobotFrameworkDebugContext {
 	 * @return a string representing the item name
 	 */
 	public String getItemName() {
-		return itemName;
+		return (itemName != null) ? itemName : SymbolTable.NAMES.name(itemSymbol);
+	}
+
+	/**
+	 * Get the symbol of the name of this context item
+	 * @return the id of the name in SymbolTable.NAMES, EMPTY for a suite or test
+	 */
+	int getItemSymbol() {
+		return itemSymbol;
 	}
 	
 	/** 
-	 * Sets the name of this context item
-	 * @param itemName the item name for this context
+	 * Sets the name of this context item.  The name of a keyword is interned, so keyword names are
+	 * only set by the Robot Framework thread
+	 * @param itemName the item name for this context, null for no name
 	 */
 	public void setItemName(String itemName) {
-		this.itemName = itemName;
+		changed();
+		storeItemName((itemName == null) ? "" : itemName);
+	}
+
+	/**
+	 * Keep a name as a symbol for a keyword, as a string for a suite or test
+	 */
+	private void storeItemName(String name) {
+		if (contextType == ContextType.KEYWORD){
+			this.itemSymbol = SymbolTable.NAMES.intern(name);
+			this.itemName = null;
+		}
+		else{
+			this.itemSymbol = SymbolTable.EMPTY;
+			this.itemName = name;
+		}
 	}
 	
 	/**
@@ -78,6 +162,15 @@ public class RobotFrameworkDebugContext {
 	 * @return a string indicating the context type
 	 */
 	public String getContextTypeString() {
+		return getContextTypeString(contextType);
+	}
+
+	/**
+	 * Get a context type in a human readable format
+	 * @param contextType the context type
+	 * @return a string indicating the context type
+	 */
+	static String getContextTypeString(ContextType contextType) {
 		if (contextType == ContextType.TEST_SUITE){
 			return TEST_SUITE_TEXT;
 		}
@@ -96,13 +189,17 @@ public class RobotFrameworkDebugContext {
 	 * the context type to set
 	 */
 	public void setContextType(ContextType contextType) {
+		changed();
+		String name = getItemName();
 		this.contextType = contextType;
+		storeItemName(name);
 	}
 
 	/**
 	 * Increment the current line number by one
 	 */
 	public void incrementLineNumber(){
+		changed();
 		lineNumber += 1;
 	}
 	
@@ -115,43 +212,203 @@ public class RobotFrameworkDebugContext {
 	}
 	
 	/**
-	 * Get the attributes map for this debug context
-	 * @return a map of this elements attributes
+	 * Get the attributes of this debug context
+	 * @return the attributes copied from the listener call, may be null
 	 */
-	public Map<String, Object> getItemAttribs() {
-		return itemAttribs;
+	public ItemAttributes getItemAttributes() {
+		return itemAttributes;
 	}
 	
 	/**
-	 * Set the attribute map for this context item
-	 * @param itemAttribs a map of strings to objects representing the debug contexts
-	 * attributes
+	 * Set the attributes of this context item
+	 * @param itemAttributes the attributes copied from the listener call, may be null
 	 */
-	public void setItemAttribs(Map<String, Object> itemAttribs) {
-		this.itemAttribs = itemAttribs;
+	public void setItemAttributes(ItemAttributes itemAttributes) {
+		changed();
+		this.itemAttributes = itemAttributes;
 	}
 
 	/**
 	 * Remove all variables from this context
 	 */
-	public void clearVariables() {		
+	public void clearVariables() {
 		variables.clear();
 	}
 
 	/**
-	 * Update or add a variable to the debug context
+	 * Update or add a variable to the debug context.  A large value is stored off the heap and the
+	 * variables show its preview
 	 * @param name the name of the variable
 	 * @param value the value of this variable
 	 */
 	public void updateVariable(String name, String value) {
-		variables.put(name, value);		
+		variables.put(name, value);
 	}
 
 	/**
 	 * Get all variables from the debug context 
-	 * @return a map of string keys and values representing the variables defined in this context
+	 * @return a map of string keys and values representing the variables defined in this context,
+	 * sorted by name.  Changing the map changes the context
 	 */
 	public Map<String, String> getVariables() {
 		return variables;
 	}
+
+	/**
+	 * Get the value of a variable defined in this context
+	 * @param name the name of the variable
+	 * @return the value, or null if the variable is not defined in this context.  The preview for a
+	 * value stored off the heap
+	 */
+	public String getVariable(String name) {
+		return variables.get(name);
+	}
+
+	/**
+	 * Get the full value of a variable defined in this context, reading it back if it is stored off
+	 * the heap
+	 * @param name the name of the variable
+	 * @return the value, or null if the variable is not defined in this context
+	 */
+	public String getFullVariable(String name) {
+		OffHeapValue large = largeValues.get(name);
+		return (large != null) ? large.read() : variables.get(name);
+	}
+
+	/**
+	 * Get the value of a variable defined in this context that is stored off the heap
+	 * @param name the name of the variable
+	 * @return the stored value, or null if the variable is not defined or not stored off the heap
+	 */
+	OffHeapValue getLargeVariable(String name) {
+		return largeValues.get(name);
+	}
+
+	/**
+	 * Check if variables are defined in this context
+	 * @return true if at least one variable is defined
+	 */
+	public boolean hasVariables() {
+		return !variables.isEmpty();
+	}
+
+	/**
+	 * Get the variables as they are now.  The map never changes, so it can be shared with snapshots
+	 * @return the immutable map of variables
+	 */
+	PersistentSortedMap<String, String> getVariableMap() {
+		return variables.snapshot();
+	}
+
+	/**
+	 * Get the variables stored off the heap as they are now.  The map never changes
+	 * @return the immutable map of large values, by variable name
+	 */
+	PersistentSortedMap<String, OffHeapValue> getLargeValueMap() {
+		return largeValues;
+	}
+
+	/**
+	 * Get the names of the variables changed since the last publication
+	 * @return the names, or null if all variables must be considered changed
+	 */
+	List<String> getChangedVariables() {
+		return variablesReplaced ? null : changedVariables;
+	}
+
+	/**
+	 * Called by the stack when it published the context: start noting changes again
+	 */
+	void variablesPublished() {
+		variablesReplaced = false;
+		if (changedVariables != null){
+			changedVariables.clear();
+		}
+	}
+
+	/**
+	 * Forget the changes noted since the last publication.  The next snapshot of the context
+	 * considers all its variables changed
+	 */
+	void variablesReplaced() {
+		variablesReplaced = true;
+	}
+
+	private void noteVariableChanged(String name) {
+		if (variablesReplaced){
+			return;
+		}
+		if (changedVariables == null){
+			changedVariables = new ArrayList<String>();
+		}
+		if (changedVariables.size() == MAX_NOTED_CHANGES){
+			variablesReplaced = true;
+		}
+		else{
+			changedVariables.add(name);
+		}
+	}
+
+	/**
+	 * Put the context on a stack
+	 * @param stack the stack, null when the context is taken off
+	 * @param depth the position on the stack
+	 */
+	void attach(FrameStack stack, int depth) {
+		this.stack = stack;
+		this.depth = depth;
+	}
+
+	/**
+	 * Tell the stack that this context changed
+	 */
+	private void changed() {
+		if (stack != null){
+			stack.frameChanged(depth);
+		}
+	}
+
+	/**
+	 * The variables of the context.  Every change, through the context or through getVariables(), marks
+	 * the context changed and is noted for the next publication.  Large values put into the map are
+	 * stored off the heap, and put() returns the preview of a large value it replaces
+	 */
+	private final class VariableMap extends CollectionHelpers.RankedMap<String, String> {
+		VariableMap() {
+			super(VARIABLE_ORDER);
+		}
+
+		@Override
+		public String put(String name, String value) {
+			if (!OffHeapValue.isLarge(value)){
+				return super.put(name, value);
+			}
+			OffHeapValue large = OffHeapValue.store(value);
+			if (large == null){
+				// no memory left for large values, keep the start of it
+				return super.put(name, OffHeapValue.droppedPreview(value));
+			}
+			String old = super.put(name, large.getPreview());
+			largeValues = largeValues.put(name, large);
+			return old;
+		}
+
+		@Override
+		protected void entryChanged(String name) {
+			changed();
+			noteVariableChanged(name);
+			// the entry no longer holds the preview of the stored value
+			OffHeapValue large = largeValues.get(name);
+			if (large != null && get(name) != large.getPreview()){
+				largeValues = largeValues.remove(name);
+			}
+		}
+
+		@Override
+		protected void entriesCleared() {
+			changed();
+			variablesReplaced = true;
+			largeValues = NO_LARGE_VALUES;
+		}
+	}
 }
@@ -1,12 +1,18 @@
 package com.bandofyetis.robotframeworkdebugger;
 
 import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
@@ -28,9 +34,14 @@ public class RobotFrameworkDebugger {
 	public enum StepMode{
 		STEP_OVER,
 		STEP_INTO,
+		STEP_OUT,
+		RUN_TO_DEPTH,
 		RUN_TO_BREAKPOINT
 	}
 
+	// The step depth while not stepping over, out or to a depth.  No stack is that small
+	static final int NO_STEP_DEPTH = -1;
+
 	// logger
 	static final Logger log = Logger.getLogger(RobotFrameworkDebugger.class);
 	public static final int ROBOT_LISTENER_API_VERSION = 2;
@@ -41,17 +52,60 @@ public class RobotFrameworkDebugger {
     // The current step mode
     private StepMode stepMode;
 
-    // In Step Over mode the end keyword we are stepping over to...
-    private String stepTarget;
+    // In Step Over, Step Out and Run to Depth mode: the stack size at which the step ends.  When a frame
+    // is popped and the stack is no larger, we go back to STEP_INTO.  NO_STEP_DEPTH in the other modes
+    private int stepDepth = NO_STEP_DEPTH;
 
     // All of the registeRed breakpoints
-    private List<String> breakpoints;
+    private BreakpointRegistry breakpoints;
+
+    // All of the breakpoints, compiled for matching.  Rebuilt whenever the breakpoint list changes
+    private volatile BreakpointMatcher breakpointMatcher;
+
+    // The breakpoints indexed by the suites, tests and tags they are restricted to
+    private BreakpointScopeIndex breakpointScopes;
+
+    // The breakpoints that apply to the running suite and test.  Matches of the other breakpoints are
+    // dropped, so the matcher and the decision cache stay valid when a test starts.  Replaced, never
+    // changed, when a suite or test starts, so matches are checked against it without the lock
+    private volatile BreakpointScopeIndex.Selection activeBreakpoints;
+
+    // The running suites, innermost last, normalized for matching breakpoint scopes
+    private final List<String> scopeSuiteNames = new ArrayList<String>();
+    private final List<String> scopeSuiteLongNames = new ArrayList<String>();
+
+    // The running test, normalized for matching breakpoint scopes
+    private String scopeTestName;
+    private String scopeTestLongName;
+    private final Set<String> scopeTags = new HashSet<String>();
+
+    // Breakpoint decisions by the symbol of the keyword name, invalidated whenever the breakpoint list changes
+    private BreakpointDecisionCache breakpointCache;
+
+    // Keeps the breakpoints in step with a breakpoint file, null if no file was given
+    private BreakpointFileWatcher breakpointFileWatcher;
 
     // Index in the list of the current breakpoint, so we can highlight it
     private int currentBreakpointIndex = -1;
 
     // A stack of debug contexts representing the current execution with respect to suites, tests and keywords
-    private Stack<RobotFrameworkDebugContext> contextStack;
+    // Only used by the Robot Framework thread, the gui gets snapshots
+    private FrameStack contextStack;
+
+    // The last published snapshot of the context stack
+    private volatile StackSnapshot stackSnapshot = StackSnapshot.EMPTY;
+
+    // The results of the tests that ended
+    private final TestResultStore testResults = new TestResultStore();
+
+    // Number of keywords started, for the allocation per keyword metric
+    private long keywordCount;
+
+    // Finds variable assignments in log messages.  Only used by the Robot Framework thread
+    private final AssignmentScanner assignmentScanner = new AssignmentScanner();
+
+    // Looks up variables for breakpoint conditions in the context stack
+    private final BreakpointCondition.Variables stackVariables = new StackVariables();
 
     // The ui thread
 	final RobotFrameworkDebuggerUIThread gui;
@@ -71,17 +125,30 @@ public class RobotFrameworkDebugger {
 		this(true);
 	}
 
+	/**
+	 * Constructor used when a breakpoint file is passed as listener argument, e.g.
+	 * --listener com.bandofyetis.robotframeworkdebugger.RobotFrameworkDebugger:breakpoints.txt
+	 * The breakpoints in the file are loaded, and the file is watched so edits take effect while the tests run
+	 * @param breakpointFile path of the breakpoint file.  It does not have to exist yet
+	 * @throws InterruptedException if the gui thread is interrupted
+	 * @throws IOException if the properties file cannot be loaded, or the breakpoint file cannot be watched
+	 */
+	public RobotFrameworkDebugger(String breakpointFile) throws InterruptedException, IOException {
+		this(true);
+		watchBreakpointFile(Paths.get(breakpointFile));
+	}
+
 	RobotFrameworkDebugger(boolean initGraphics)  throws InterruptedException, IOException{
 		stepLock = new Object();
 		stepMode = StepMode.STEP_INTO;
-		stepTarget = null;
-		breakpoints = new LinkedList<String>();
-		contextStack = new Stack<RobotFrameworkDebugContext>();
+		stepDepth = NO_STEP_DEPTH;
+		breakpoints = new BreakpointRegistry();
+		breakpointCache = new BreakpointDecisionCache();
+		breakpointsChanged(null);
+		contextStack = new FrameStack();
 
 		// push a context for the suite
-		RobotFrameworkDebugContext context = new RobotFrameworkDebugContext();
-		context.setContextType(ContextType.TEST_SUITE);
-		contextStack.push(context);
+		contextStack.pushFrame(ContextType.TEST_SUITE);
 
 		gui = new RobotFrameworkDebuggerUIThread(this, stepLock);
 		this.hasGUI = initGraphics;
@@ -107,14 +174,14 @@ public class RobotFrameworkDebugger {
 		if (context.getContextType() != ContextType.TEST_SUITE){
 			log.error(LOG_EXPECTED_TEST_SUITE_OBJECT);
 		}
+		ItemAttributes attributes = ItemAttributes.ofSuiteOrTest(attrs);
 		context.setItemName(name);
 		context.clearVariables();
-		context.setItemAttribs(attrs);
+		context.setItemAttributes(attributes);
+		enterSuite(name, attributes);
 
 		// push a context for the test case
-		RobotFrameworkDebugContext tcContext = new RobotFrameworkDebugContext();
-		tcContext.setContextType(ContextType.TEST_CASE);
-		contextStack.push(tcContext);
+		contextStack.pushFrame(ContextType.TEST_CASE);
 
 		// we have a context now, so update gui and enable buttons
 		updateGUI();
@@ -134,16 +201,16 @@ public class RobotFrameworkDebugger {
 			log.error(LOG_EXPECTED_TEST_CASE_OBJECT);
 		}
     	// set name and attributes for the test case
+    	ItemAttributes attributes = ItemAttributes.ofSuiteOrTest(attrs);
     	context.setItemName(name);
-    	context.setItemAttribs(attrs);
+    	context.setItemAttributes(attributes);
 
     	// clear variables from the last test
         context.clearVariables();
+        enterTest(name, attributes);
 
         // Now push a new keyword level object for all keywords in this test
-        RobotFrameworkDebugContext kwContext = new RobotFrameworkDebugContext();
-		kwContext.setContextType(ContextType.KEYWORD);
-		contextStack.push(kwContext);
+		contextStack.pushFrame(ContextType.KEYWORD);
 
 		updateGUI();
     }
@@ -156,6 +223,7 @@ public class RobotFrameworkDebugger {
      */
     public void endTest(String name, Map<String, Object> attrs) throws InterruptedException{
     	 currentBreakpointIndex = -1;
+    	 leaveTest();
 
     	// test is over, update the ui.  We may pause on test finishing
     	updateGUI();
@@ -167,16 +235,17 @@ public class RobotFrameworkDebugger {
 		}
     	// pop off the old keyword object, we'll put a new one on when the next test starts
     	contextStack.pop();
+    	frameEnded();
 
-    	// Apply status attribute to the gui
-        String status = attrs.get("status").toString();
+    	// Store the result and let the gui pull it, only the status and time are read from the map
+        testResults.add(name, ItemAttributes.statusOf(attrs), Math.max(ItemAttributes.elapsedMillisOf(attrs), 0));
         if (hasGUI){
-        	gui.setTestResult(name, status);
+        	gui.updateTestResults(testResults);
         }
 
         // if stop at end of test is set, stop when test finishes
     	if (stopAtTestEnd){
-    		stepTarget = null;
+    		stepDepth = NO_STEP_DEPTH;
     		stepMode = StepMode.STEP_INTO;
 
     		if (hasGUI){
@@ -200,6 +269,8 @@ public class RobotFrameworkDebugger {
 		}
     	// pop off old test case object, we'll put a new one on when the next test suite starts
     	contextStack.pop();
+    	frameEnded();
+    	leaveSuite();
 
     }
 
@@ -209,8 +280,16 @@ public class RobotFrameworkDebugger {
      * @throws InterruptedException
      */
     public void close() throws InterruptedException {
+    	if (breakpointFileWatcher != null){
+    		breakpointFileWatcher.stop();
+    	}
+    	log.info("Breakpoint decision cache: " + breakpointCache.getHits() + " hits, "
+    			+ breakpointCache.getMisses() + " misses");
+    	log.info("Debug contexts: " + contextStack.getAllocated() + " allocated for " + keywordCount
+    			+ " keywords (" + getContextAllocationsPerKeyword() + " per keyword)");
 
     	if (hasGUI){
+    		gui.logRefreshStatistics();
     		gui.clearTestData();
     		enableControlButtons(false);
 	    	synchronized (stepLock) {
@@ -228,6 +307,7 @@ public class RobotFrameworkDebugger {
      */
     public void startKeyword(String name, Map<String, Object> attrs) throws InterruptedException{
     	currentBreakpointIndex = -1;
+    	keywordCount++;
 
     	// Check for keyword context, then set
     	RobotFrameworkDebugContext context = contextStack.peek();
@@ -235,11 +315,23 @@ public class RobotFrameworkDebugger {
 			log.error(LOG_EXPECTED_KEYWORD_OBJECT);
 		}
     	context.setItemName(name);
-    	context.setItemAttribs(attrs);
     	context.incrementLineNumber();
 
-    	// If we should break, then wait
-    	if ((stepMode == StepMode.STEP_INTO) || (shouldBreak(name))){
+    	// Nothing can stop us while detached, so only keep the names and line numbers of the stack
+    	if (isDetached()){
+    		context.setItemAttributes(null);
+    		pushKeywordContext();
+    		return;
+    	}
+    	// copy what we use out of the attribute map once, and do not keep the map
+    	ItemAttributes attributes = ItemAttributes.of(attrs);
+    	context.setItemAttributes(attributes);
+
+    	// Check breakpoints first, so hits are counted while stepping too.  If we should break, then wait
+    	// the frame interned the name, only a frame of the wrong type has to intern it here
+    	int symbol = (context.getContextType() == ContextType.KEYWORD) ? context.getItemSymbol() : SymbolTable.NAMES.intern(name);
+    	boolean breakpointHit = shouldBreak(symbol, attributes);
+    	if ((stepMode == StepMode.STEP_INTO) || breakpointHit){
     		// only update if we hit a breakpoint
 
     		if (hasGUI){
@@ -251,10 +343,14 @@ public class RobotFrameworkDebugger {
     	}
 
     	// push on an element for any child keywords
-        RobotFrameworkDebugContext childContext = new RobotFrameworkDebugContext();
-        childContext.setContextType(ContextType.KEYWORD);
-		contextStack.push(childContext);
+    	pushKeywordContext();
+    }
 
+    /**
+     * Push a context for the child keywords of the keyword that is starting
+     */
+    private void pushKeywordContext(){
+		contextStack.pushFrame(ContextType.KEYWORD);
     }
 
 
@@ -270,18 +366,22 @@ public class RobotFrameworkDebugger {
 			log.error(LOG_EXPECTED_KEYWORD_OBJECT);
 		}
 
-		// pop the child context off the stack
+		// pop the child context off the stack, its context can be reused by the next keyword
     	contextStack.pop();
+    	frameEnded();
+    }
 
-
-    	// If we were stepping over, and this was the keyword we were stepping over,
-    	// move back into STEP_INTO mode where we step keyword by keyword
-    	if ((stepMode == StepMode.STEP_OVER) && (name.equals(stepTarget))){
-    		stepTarget = null;
+    /**
+     * Called after a frame was popped.  If we were stepping over, out or to a depth and the stack is back
+     * at the depth we were stepping to, move back into STEP_INTO mode where we step keyword by keyword.
+     * Recursive keywords end deeper in the stack, so they do not end the step.  In the other modes the
+     * step depth is smaller than any stack, so this is one int comparison whatever the mode
+     */
+    private void frameEnded(){
+    	if (contextStack.size() <= stepDepth){
+    		stepDepth = NO_STEP_DEPTH;
     		stepMode = StepMode.STEP_INTO;
     	}
-
-
     }
 
 	/**
@@ -289,39 +389,83 @@ public class RobotFrameworkDebugger {
 	 * @param msg A map of the messages being written to the log
 	 */
     public void logMessage(Map<String, Object> msg){
+    	// Variables are not tracked while detached
+    	if (isDetached()){
+    		return;
+    	}
     	String message = (String) msg.get("message");
 
-    	// If a variable is being logged, get its value
-    	if ((message.startsWith("${")) 	|| (message.startsWith("@{"))){
-            //Split into name and value
-    		String[] variableList = message.split("=");
-    		if (variableList.length >= 2){
-    			// we need to set the variable in the context that is second from the top (ie. not the context of
-    			// this context's child)
-    			RobotFrameworkDebugContext top = contextStack.pop();
-    			contextStack.peek().updateVariable(variableList[0].trim(), variableList[1].trim());
-    			// push the old top back on
-    			contextStack.push(top);
-    		}
+    	// If a variable is being assigned, get its name and value
+    	if (assignmentScanner.scan(message)){
+			// we need to set the variable in the context that is second from the top (ie. not the context of
+			// this context's child)
+			contextStack.frameAt(contextStack.size() - 2).updateVariable(assignmentScanner.name(), assignmentScanner.value());
     	}
     }
 
     /**
-     * Put the debugger in StepOver mode
+     * Put the debugger in StepOver mode: run until the keyword we stopped at ends, and stop at the next
+     * keyword at the same depth or above
      */
     public synchronized void setStepOver (){
-    	stepMode = StepMode.STEP_OVER;
+    	int depth = getSteppableDepth();
+    	setStepDepth(StepMode.STEP_OVER, depth, depth);
+    }
 
-    	// get the keyword name for the top item on the stack.  The child element shouldn't be created yet
-    	RobotFrameworkDebugContext context = contextStack.peek();
+    /**
+     * Put the debugger in StepOut mode: run until the keyword that called the keyword we stopped at ends
+     */
+    public synchronized void setStepOut(){
+    	int depth = getSteppableDepth();
+    	setStepDepth(StepMode.STEP_OUT, depth - 1, depth);
+    }
 
-    	// if this is something we can step over, set it up, otherwise, stay in STEP_INTO mode
-    	if (context.getContextType() == ContextType.KEYWORD && !(context.getItemName().isEmpty())){
-    		stepTarget = contextStack.peek().getItemName();
+    /**
+     * Put the debugger in run to depth mode: run until the frame at a depth of the call stack is on top
+     * of the stack again, and stop at the next keyword started there
+     * @param depth the depth of the frame, 0 is the bottom of the stack.  A depth at or above the keyword
+     * we stopped at steps over that keyword
+     * @throws IllegalArgumentException if the depth is negative
+     */
+    public synchronized void setRunToDepth(int depth){
+    	if (depth < 0){
+    		throw new IllegalArgumentException("Depth must not be negative: " + depth);
     	}
-    	else{
-    		stepMode = StepMode.STEP_INTO;
+    	int current = getSteppableDepth();
+    	setStepDepth(StepMode.RUN_TO_DEPTH, Math.min(depth, current), current);
+    }
+
+    /**
+     * Get the depth of the keyword we stopped at.  The child element shouldn't be created yet.  The gui
+     * only calls this while the Robot Framework thread waits on the step lock, so the stack is not changing
+     * @return the depth, or NO_STEP_DEPTH if the top of the stack is not a keyword we can step from
+     */
+    private int getSteppableDepth(){
+    	if (contextStack.isEmpty()){
+    		return NO_STEP_DEPTH;
     	}
+    	RobotFrameworkDebugContext context = contextStack.peek();
+    	if (context.getContextType() != ContextType.KEYWORD || context.getItemSymbol() == SymbolTable.EMPTY){
+    		return NO_STEP_DEPTH;
+    	}
+    	return contextStack.size() - 1;
+    }
+
+    /**
+     * Run until the frame at a depth is on top of the stack again.  If we cannot step from where we
+     * stopped, stay in STEP_INTO mode
+     * @param mode the step mode
+     * @param depth the depth of the frame
+     * @param current the depth of the keyword we stopped at, NO_STEP_DEPTH if we cannot step
+     */
+    private void setStepDepth(StepMode mode, int depth, int current){
+    	if (current == NO_STEP_DEPTH || depth < 0){
+    		setStepInto();
+    		return;
+    	}
+    	stepMode = mode;
+    	// the frame at depth is on top when the stack holds depth + 1 frames
+    	stepDepth = depth + 1;
     }
 
     /**
@@ -329,7 +473,7 @@ public class RobotFrameworkDebugger {
      */
     public synchronized void setStepInto(){
     	stepMode = StepMode.STEP_INTO;
-    	stepTarget = null;
+    	stepDepth = NO_STEP_DEPTH;
     }
 
     /**
@@ -338,9 +482,20 @@ public class RobotFrameworkDebugger {
 	public synchronized void setRunToBreakpoint() {
 
 		stepMode = StepMode.RUN_TO_BREAKPOINT;
-    	stepTarget = null;
+    	stepDepth = NO_STEP_DEPTH;
 	}
 
+    /**
+     * Check if the debugger is detached - running to a breakpoint with no breakpoints set, so it cannot
+     * stop before the end of the test.  While detached the listener skips matching, attribute capture and
+     * variable tracking, and only keeps the names and line numbers needed to show the stack if it stops
+     * again.  It re-attaches as soon as a breakpoint is added or the step mode changes.
+     * @return true if the debugger is detached
+     */
+    boolean isDetached(){
+    	return stepMode == StepMode.RUN_TO_BREAKPOINT && breakpoints.size() == 0;
+    }
+
     /**
      * Class level method for testing
      * @return the current step mode
@@ -351,20 +506,28 @@ public class RobotFrameworkDebugger {
 
     /**
      * Class level method for testing
-     * @return the current step Target
+     * @return the stack size at which the current step ends, NO_STEP_DEPTH if not stepping over, out or to a depth
      */
-    String getStepTarget(){
-    	return stepTarget;
+    int getStepDepth(){
+    	return stepDepth;
     }
 
     /**
      * Class level method for testing
      * @return context stack
      */
-	Stack<RobotFrameworkDebugContext> getContextStack(){
+	FrameStack getContextStack(){
 		return contextStack;
 	}
 
+	/**
+	 * Gets the snapshot of the context stack published at the last pause point.  Safe to call from any thread
+	 * @return the last published snapshot
+	 */
+	public StackSnapshot getStackSnapshot() {
+		return stackSnapshot;
+	}
+
 	/**
 	 * Gets the index of the breakpoint we are currently stopped on
 	 * @return the currentBreakpointIndex (-1) if there is no index
@@ -375,10 +538,70 @@ public class RobotFrameworkDebugger {
 
 	/**
 	 * Gets the list of all breakpoints
-	 * @return list of all breakpoints
+	 * @return a snapshot of the breakpoint texts in display order
 	 */
 	public List<String> getBreakpoints() {
-		return breakpoints;
+		return breakpoints.getTexts();
+	}
+
+	/**
+	 * Gets all breakpoints, with their hit counts
+	 * @return a snapshot of the breakpoints in display order
+	 */
+	public List<Breakpoint> getRegisteredBreakpoints() {
+		return breakpoints.getBreakpoints();
+	}
+
+	/**
+	 * Set the hit counts of all breakpoints back to zero
+	 */
+	public void resetHitCounts() {
+		for (Breakpoint breakpoint : breakpoints.getBreakpoints()){
+			breakpoint.resetHitCount();
+		}
+	}
+
+	/**
+	 * Gets the breakpoint at a position in the breakpoint list
+	 * @param index the position of the breakpoint
+	 * @return the breakpoint, with its stable id
+	 * @throws IndexOutOfBoundsException if there is no breakpoint at the position
+	 */
+	public Breakpoint getBreakpoint(int index) {
+		return breakpoints.getAt(index);
+	}
+
+	/**
+	 * Gets the results of the tests that ended
+	 * @return the test result store
+	 */
+	TestResultStore getTestResults() {
+		return testResults;
+	}
+
+	/**
+	 * Gets the number of debug contexts allocated per keyword started.  Contexts are reused, so this
+	 * approaches zero in long runs
+	 * @return the number of context allocations per keyword, 0 if no keyword has started
+	 */
+	public double getContextAllocationsPerKeyword() {
+		return (keywordCount == 0) ? 0 : (double)contextStack.getAllocated() / keywordCount;
+	}
+
+	/**
+	 * Gets the number of breakpoint checks answered from the decision cache
+	 * @return the number of cache hits
+	 */
+	public long getBreakpointCacheHits() {
+		return breakpointCache.getHits();
+	}
+
+	/**
+	 * Gets the number of breakpoint checks that had to match the keyword name
+	 * @return the number of cache misses
+	 */
+	public long getBreakpointCacheMisses() {
+		return breakpointCache.getMisses();
 	}
 
 	/**
@@ -390,10 +613,18 @@ public class RobotFrameworkDebugger {
 			return null;
 		}
 		else{
-			return breakpoints.get(currentBreakpointIndex);
+			return breakpoints.getAt(currentBreakpointIndex).getText();
 		}
 	}
 
+	/**
+	 * Get the breakpoint we are currently stopped on
+	 * @return the current breakpoint or null if none exists
+	 */
+	private Breakpoint getCurrentBreakpoint(){
+		return (currentBreakpointIndex == -1) ? null : breakpoints.getAt(currentBreakpointIndex);
+	}
+
 	/**
 	 * Find the index of a breakpoint in the list of breakpoints
 	 * @param breakpointText
@@ -403,13 +634,7 @@ public class RobotFrameworkDebugger {
 		if (breakpointText == null || breakpointText.isEmpty()){
 			return -1;
 		}
-		for (int i = 0; i < breakpoints.size(); i++){
-			String curBreakpoint = breakpoints.get(i);
-			if (curBreakpoint.equals(breakpointText)){
-				return i;
-			}
-		}
-		return -1;
+		return breakpoints.indexOf(breakpointText);
 	}
 
 	/**
@@ -427,13 +652,90 @@ public class RobotFrameworkDebugger {
 	/**
 	 * Add a breakpoint to the list of breakpoint regular expressions
 	 * @param breakpointText the regular expression to add to the breakpoint list
+	 * @throws PatternSyntaxException if the breakpoint is not a valid regular expression, or uses features
+	 * that need backtracking (back references, look-around, possessive quantifiers...)
 	 */
-	public synchronized void addBreakpoint(String breakpointText) {
-		String currentBreakpoint = getCurrentBreakpointAsString();
-		breakpoints.add(breakpointText);
-		Collections.sort(breakpoints, String.CASE_INSENSITIVE_ORDER);
-		currentBreakpointIndex = findBreakpoint(currentBreakpoint);
-		updateBreakpoints();
+	public synchronized void addBreakpoint(String breakpointText) throws PatternSyntaxException {
+		addBreakpoints(Collections.singletonList(breakpointText));
+	}
+
+	/**
+	 * Add several breakpoints at once, recompiling the matcher only once.  Text that is already
+	 * registered is ignored
+	 * @param breakpointTexts the regular expressions to add to the breakpoint list
+	 * @throws PatternSyntaxException if any breakpoint is not a valid regular expression.  No breakpoint
+	 * is added in that case
+	 */
+	public synchronized void addBreakpoints(Collection<String> breakpointTexts) throws PatternSyntaxException {
+		// reject bad patterns before the list is touched
+		for (String breakpointText : breakpointTexts){
+			BreakpointMatcher.checkSyntax(breakpointText);
+		}
+		checkMatcherSize(breakpointTexts, Collections.<Breakpoint>emptyList());
+
+		Breakpoint currentBreakpoint = getCurrentBreakpoint();
+		breakpoints.addAll(breakpointTexts);
+		breakpointsChanged(currentBreakpoint);
+	}
+
+	/**
+	 * Add and remove breakpoints in one step, recompiling only the breakpoints that are new
+	 * @param added the regular expressions to add to the breakpoint list
+	 * @param removed the breakpoint texts to remove.  Texts that are not registered are ignored
+	 * @throws PatternSyntaxException if any added breakpoint is not a valid regular expression.  Nothing
+	 * is changed in that case
+	 */
+	public synchronized void applyBreakpointChanges(Collection<String> added, Collection<String> removed) throws PatternSyntaxException {
+		for (String breakpointText : added){
+			BreakpointMatcher.checkSyntax(breakpointText);
+		}
+
+		List<Breakpoint> removedBreakpoints = new ArrayList<Breakpoint>(removed.size());
+		for (String breakpointText : removed){
+			Breakpoint breakpoint = breakpoints.find(breakpointText);
+			if (breakpoint != null){
+				removedBreakpoints.add(breakpoint);
+			}
+		}
+		if (added.isEmpty() && removedBreakpoints.isEmpty()){
+			return;
+		}
+		checkMatcherSize(added, removedBreakpoints);
+		Breakpoint currentBreakpoint = getCurrentBreakpoint();
+		breakpoints.update(added, removedBreakpoints);
+		breakpointsChanged(currentBreakpoint);
+	}
+
+	/**
+	 * Add the breakpoints in a breakpoint file to the breakpoint list
+	 * @param file the breakpoint file
+	 * @throws IOException if the file cannot be read
+	 * @throws PatternSyntaxException if the file contains an invalid breakpoint.  No breakpoint is added in that case
+	 */
+	public void importBreakpoints(Path file) throws IOException, PatternSyntaxException {
+		addBreakpoints(BreakpointFile.read(file));
+	}
+
+	/**
+	 * Write all breakpoints to a breakpoint file
+	 * @param file the breakpoint file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void exportBreakpoints(Path file) throws IOException {
+		BreakpointFile.write(file, getBreakpoints());
+	}
+
+	/**
+	 * Load the breakpoints in a file and keep following its changes
+	 * @param file the breakpoint file
+	 * @throws IOException if the file cannot be watched
+	 */
+	void watchBreakpointFile(Path file) throws IOException {
+		if (breakpointFileWatcher != null){
+			breakpointFileWatcher.stop();
+		}
+		breakpointFileWatcher = new BreakpointFileWatcher(this, file);
+		breakpointFileWatcher.start();
 	}
 
 	/**
@@ -443,7 +745,7 @@ public class RobotFrameworkDebugger {
 	public synchronized void removeBreakpoints(int[] indices) {
 		if (indices.length == 0) return;
 
-		String currentBreakpoint = getCurrentBreakpointAsString();
+		Breakpoint currentBreakpoint = getCurrentBreakpoint();
 
 		// copy and sort indices
 		int [] newIndices = new int [indices.length];
@@ -457,36 +759,202 @@ public class RobotFrameworkDebugger {
 			}
 		}
 
-		// go backwards to ensure the right elements get deleted as the Breakpoints list is shrunk
-		for (int i = newIndices.length-1; i >= 0; i--){
-			breakpoints.remove(indices[i]);
+		breakpoints.removeAt(newIndices);
+		breakpointsChanged(currentBreakpoint);
+	}
+
+	/**
+	 * Check that the breakpoint list still fits in one matcher after a change, before the list is touched
+	 * @param added the texts of the breakpoints to add.  Texts that are already registered are ignored
+	 * @param removed the breakpoints to remove
+	 * @throws PatternSyntaxException if the regular expressions would be too large to be matched together
+	 */
+	private void checkMatcherSize(Collection<String> added, Collection<Breakpoint> removed) throws PatternSyntaxException {
+		Set<String> texts = new LinkedHashSet<String>();
+		for (Breakpoint breakpoint : breakpoints.getBreakpoints()){
+			texts.add(breakpoint.getText());
+		}
+		for (Breakpoint breakpoint : removed){
+			texts.remove(breakpoint.getText());
+		}
+		texts.addAll(added);
+		List<String> patterns = new ArrayList<String>(texts.size());
+		for (String text : texts){
+			patterns.add(BreakpointText.parse(text).pattern);
 		}
-		currentBreakpointIndex = findBreakpoint(currentBreakpoint);
+		BreakpointMatcher.checkCombinedSize(patterns, breakpointMatcher);
+	}
+
+	/**
+	 * Recompile the matcher after the breakpoint list changed, and follow the current breakpoint to
+	 * its new position
+	 * @param currentBreakpoint the breakpoint we were stopped on before the change (may be null)
+	 */
+	private void breakpointsChanged(Breakpoint currentBreakpoint){
+		List<Breakpoint> all = breakpoints.getBreakpoints();
+		breakpointScopes = new BreakpointScopeIndex(all);
+		breakpointMatcher = new BreakpointMatcher(all, breakpointMatcher);
+		breakpointCache.invalidate();
+		activateBreakpoints();
+		currentBreakpointIndex = breakpoints.indexOf(currentBreakpoint);
 		updateBreakpoints();
 	}
 
 	/**
-	 * Check if the given name matches a breakpoint
-	 * @param name the name to check against the list of breakpoint regular expressions
-	 * @return true if name mathes a regex in the breakpoints list
+	 * Remember the suite that starts and select the breakpoints that apply to it
+	 * @param name the name of the suite
+	 * @param attrs the attributes of the suite
 	 */
-	private boolean shouldBreak(String name) {
-		int ct = 0;
+	private synchronized void enterSuite(String name, ItemAttributes attrs){
+		String suiteName = BreakpointScope.normalizeName(name);
+		String longName = (attrs == null) ? null : attrs.getLongName();
+		scopeSuiteNames.add(suiteName);
+		scopeSuiteLongNames.add((longName == null) ? suiteName : BreakpointScope.normalizeName(longName));
+		leaveTest();
+	}
 
-		// Go through the list of breakpoints
-		for (Iterator<String> it = breakpoints.iterator(); it.hasNext(); ) {
-			String breakpoint = it.next();
-			// add a .* to the front of the regex since we get keyword names as ${a} = the keyword
-			// add a .* to the end since we ask them to enter part of the keyword name to break on
-			if (name.matches(".*"+breakpoint+".*")){
-				currentBreakpointIndex = ct;
-				return true;
+	/**
+	 * Go back to the parent of the suite that ended, for its teardown
+	 */
+	private synchronized void leaveSuite(){
+		if (!scopeSuiteNames.isEmpty()){
+			scopeSuiteNames.remove(scopeSuiteNames.size() - 1);
+			scopeSuiteLongNames.remove(scopeSuiteLongNames.size() - 1);
+		}
+		leaveTest();
+	}
+
+	/**
+	 * Remember the test that starts and select the breakpoints that apply to it
+	 * @param name the name of the test
+	 * @param attrs the attributes of the test
+	 */
+	private synchronized void enterTest(String name, ItemAttributes attrs){
+		scopeTestName = BreakpointScope.normalizeName(name);
+		String longName = (attrs == null) ? null : attrs.getLongName();
+		scopeTestLongName = (longName == null) ? scopeTestName : BreakpointScope.normalizeName(longName);
+		scopeTags.clear();
+		if (attrs != null){
+			for (String tag : attrs.getTags()){
+				scopeTags.add(BreakpointScope.normalizeTag(tag));
+			}
+		}
+		activateBreakpoints();
+	}
+
+	/**
+	 * Forget the test that ended and select the breakpoints that apply outside tests
+	 */
+	private synchronized void leaveTest(){
+		scopeTestName = null;
+		scopeTestLongName = null;
+		scopeTags.clear();
+		activateBreakpoints();
+	}
+
+	/**
+	 * Select the breakpoints that apply to the running suite and test, and publish the selection
+	 */
+	private synchronized void activateBreakpoints(){
+		int suites = scopeSuiteNames.size();
+		activeBreakpoints = breakpointScopes.selection((suites == 0) ? null : scopeSuiteNames.get(suites - 1),
+				(suites == 0) ? null : scopeSuiteLongNames.get(suites - 1), scopeTestName, scopeTestLongName,
+				scopeTags);
+	}
+
+	/**
+	 * Get the breakpoints that apply to the running suite and test.  Package level access for testing
+	 * @return the active breakpoints, in display order
+	 */
+	List<Breakpoint> getActiveBreakpoints(){
+		return Collections.unmodifiableList(activeBreakpoints.toList());
+	}
+
+	/**
+	 * Check if the given name matches one of the breakpoints that apply to the running suite and test.
+	 * Every matching breakpoint whose conditions hold counts the hit, the first one whose hit condition
+	 * is met becomes the current breakpoint
+	 * @param symbol the symbol of the name in SymbolTable.NAMES, the name is checked against the list of
+	 * breakpoint regular expressions
+	 * @param attrs the attributes of the keyword, may be null
+	 * @return true if name matches a breakpoint that stops on this hit
+	 */
+	private boolean shouldBreak(int symbol, ItemAttributes attrs) {
+		// breakpoints are matched unanchored, since we get keyword names as ${a} = the keyword
+		// and we ask them to enter part of the keyword name to break on
+		Breakpoint[] matches = breakpointCache.lookup(symbol);
+		if (matches == null){
+			// read the generation first, so a decision made with an outdated matcher is never served
+			int generation = breakpointCache.getGeneration();
+			matches = breakpointMatcher.findAllMatches(SymbolTable.NAMES.name(symbol));
+			breakpointCache.store(symbol, matches, generation);
+		}
+		Breakpoint stopAt = null;
+		for (Breakpoint breakpoint : matches){
+			if (!isActive(breakpoint)){
+				continue;
+			}
+			if (breakpoint.registerHit(attrs, stackVariables) && stopAt == null){
+				stopAt = breakpoint;
 			}
-			ct++;
+		}
+		if (stopAt != null){
+			currentBreakpointIndex = breakpoints.indexOf(stopAt);
+			return currentBreakpointIndex >= 0;
 		}
 		return false;
 	}
 
+	/**
+	 * Check if a breakpoint applies to the running suite and test, without taking the lock.  Breakpoints
+	 * without a suite, test or tag qualifier apply everywhere, the others are looked up in the published
+	 * selection
+	 */
+	private boolean isActive(Breakpoint breakpoint){
+		BreakpointScope scope = breakpoint.getScope();
+		if (scope == null || !scope.isTestScoped()){
+			return true;
+		}
+		return activeBreakpoints.isSelected(breakpoint);
+	}
+
+	/**
+	 * Variable lookup for breakpoint conditions.  Walks the context stack from the innermost context
+	 * outwards and returns the first value found, the same value the variables tab shows, without
+	 * merging the variable maps of the contexts.
+	 *
+	 * A value stored off the heap is decoded once and kept softly, so conditions evaluated again while
+	 * the variable keeps its value do not decode it again, and the decoded copy can be collected when
+	 * memory runs low.  Only used by the Robot Framework thread
+	 */
+	private class StackVariables implements BreakpointCondition.Variables {
+		// The last large value decoded, and its text
+		private OffHeapValue decodedValue;
+		private SoftReference<String> decodedText;
+
+		public String get(String name) {
+			for (int pos = contextStack.size() - 1; pos >= 0; pos--){
+				RobotFrameworkDebugContext context = contextStack.frameAt(pos);
+				String value = context.getVariable(name);
+				if (value != null){
+					OffHeapValue large = context.getLargeVariable(name);
+					return (large == null) ? value : decode(large);
+				}
+			}
+			return null;
+		}
+
+		private String decode(OffHeapValue large) {
+			String text = (large == decodedValue) ? decodedText.get() : null;
+			if (text == null){
+				text = large.read();
+				decodedValue = large;
+				decodedText = new SoftReference<String>(text);
+			}
+			return text;
+		}
+	}
+
 	/**
 	 * Do a shell sort on an array of integers
 	 *
@@ -509,11 +977,13 @@ public class RobotFrameworkDebugger {
 	}
 
 	/**
-	 * Update the GUI if we have one
+	 * Publish a snapshot of the context stack, and update the GUI with it if we have one
 	 */
 	private void updateGUI(){
+		StackSnapshot snapshot = contextStack.publish();
+		stackSnapshot = snapshot;
 		if (hasGUI){
-			gui.update(contextStack);
+			gui.update(snapshot);
 		}
 	}
 
@@ -522,7 +992,7 @@ public class RobotFrameworkDebugger {
 	 */
 	private void updateBreakpoints(){
 		if (hasGUI){
-			gui.updateBreakpoints(breakpoints);
+			gui.updateBreakpoints(breakpoints.getBreakpoints());
 
 		}
 	}
@@ -1,13 +1,13 @@
 package com.bandofyetis.robotframeworkdebugger;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.Stack;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Logger;
 import org.eclipse.swt.SWT;
@@ -18,8 +18,8 @@ import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.ShellAdapter;
 import org.eclipse.swt.events.ShellEvent;
-import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.layout.RowData;
@@ -28,10 +28,12 @@ import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.MenuItem;
+import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
 import org.eclipse.swt.widgets.TabFolder;
 import org.eclipse.swt.widgets.TabItem;
@@ -67,11 +69,89 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 	private Table 			tblTestResults;
 	private ToolItem 		tltmStepOver;
 	private ToolItem 		tltmStepInto;
+	private ToolItem 		tltmStepOut;
 	private ToolItem 		tltmResume;
 	private MenuItem 		mntmRemoveBreakpoint;
 	private PreferencesDialog prefsDialog;
 	private Image			imgCurrentBreakpoint;
 
+	// How often the hit counts in the breakpoints tab are refreshed
+	private static final int HIT_COUNT_REFRESH_MILLIS = 500;
+
+	// The breakpoints shown in the breakpoints tab and the hit counts last shown for them
+	private List<Breakpoint> displayedBreakpoints = Collections.<Breakpoint>emptyList();
+	private long[] displayedHitCounts = new long[0];
+
+	// Row of the breakpoint shown with the current breakpoint marker, -1 if none
+	private int displayedCurrentBreakpoint = -1;
+
+	// The call stack rows shown, by depth from the bottom of the stack.  The call stack, variables and
+	// test results tables are virtual, their SetData listeners read the rows from these arrays
+	private String[][] displayedCallStack = new String[0][];
+
+	// The variables shown, and the variables shown before them.  Rows whose value differs from the
+	// one shown before are highlighted as changed
+	private PersistentSortedMap<String, String> displayedVariables = RobotFrameworkDebugContext.NO_VARIABLES;
+	private PersistentSortedMap<String, String> previousVariables = RobotFrameworkDebugContext.NO_VARIABLES;
+
+	// The top frame of the stack shown, null if the stack is empty.  The value viewer reads full values from it
+	private FrameSnapshot displayedFrame;
+
+	// The test results, pulled from the store in batches.  Only used on the ui thread: the store and
+	// the number of its results looked at so far
+	private TestResultStore testResults;
+	private int testResultsPulled;
+
+	// The compaction count of the store when its results were pulled.  When it changes the pulled positions are outdated
+	private int testResultsCompactions;
+
+	// Tells how many old results the store dropped, empty while it dropped none
+	private Label lblDroppedResults;
+
+	// The results tab filter, and the store positions of the rows it selected (null when nothing is filtered)
+	private Button btnFailedOnly;
+	private Text textResultFilter;
+	private int[] filteredResults;
+	private int filteredResultCount;
+
+	// Periodically refreshes the hit counts
+	private final Runnable hitCountRefresher = new Runnable() {
+		public void run() {
+			refreshHitCounts();
+		}
+	};
+
+	// Default maximum number of stack refreshes per second, can be overridden with the system property
+	// robotframeworkdebugger.refreshRate
+	static final int DEFAULT_REFRESH_RATE = 30;
+
+	// Coalesces the stack updates of the Robot Framework thread into at most one pending refresh
+	private final RefreshScheduler<StackSnapshot> stackRefresher =
+			new RefreshScheduler<StackSnapshot>(Integer.getInteger("robotframeworkdebugger.refreshRate", DEFAULT_REFRESH_RATE)) {
+		protected void schedule(int delayMillis, Runnable refresh) {
+			scheduleRefresh(delayMillis, refresh);
+		}
+
+		protected void render(StackSnapshot snapshot) {
+			renderSnapshot(snapshot);
+		}
+	};
+
+	// Pulls new test results into the results tab at most as often as the stack is refreshed
+	private final RefreshScheduler<TestResultStore> resultRefresher =
+			new RefreshScheduler<TestResultStore>(Integer.getInteger("robotframeworkdebugger.refreshRate", DEFAULT_REFRESH_RATE)) {
+		protected void schedule(int delayMillis, Runnable refresh) {
+			scheduleRefresh(delayMillis, refresh);
+		}
+
+		protected void render(TestResultStore store) {
+			pullTestResults(store);
+		}
+	};
+
+	// File name filters of the breakpoint file dialogs
+	private static final String[] BREAKPOINT_FILE_EXTENSIONS = {"*.txt", "*.*"};
+
 	/**
 	 * Logger
 	 */
@@ -169,6 +249,17 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		});
 		tltmStepInto.setText("Step Into");
 
+		tltmStepOut = new ToolItem(toolBar, SWT.NONE);
+		tltmStepOut.setEnabled(false);
+		tltmStepOut.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent arg0) {
+				controller.setStepOut();
+				synchronized (stepLock) { stepLock.notify(); }
+			}
+		});
+		tltmStepOut.setText("Step Out");
+
 		tltmResume = new ToolItem(toolBar, SWT.NONE);
 		tltmResume.setEnabled(false);
 		in = getClass().getClassLoader().getResourceAsStream("control_play_blue.png");
@@ -279,11 +370,21 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		TabItem tbtmCallStack = new TabItem(tabFolder, SWT.NONE);
 		tbtmCallStack.setText("Call Stack");
 
-		tblCallStackItem = new Table(tabFolder, SWT.BORDER | SWT.FULL_SELECTION);
+		tblCallStackItem = new Table(tabFolder, SWT.BORDER | SWT.FULL_SELECTION | SWT.VIRTUAL);
 		tblCallStackItem.setHeaderVisible(true);
 		tbtmCallStack.setControl(tblCallStackItem);
 		tblCallStackItem.setLinesVisible(true);
 
+		// Rows are filled from displayedCallStack when they become visible, the top frame first
+		tblCallStackItem.addListener(SWT.SetData, new Listener() {
+			public void handleEvent(Event event) {
+				int depth = displayedCallStack.length - 1 - event.index;
+				if (depth >= 0 && depth < displayedCallStack.length){
+					((TableItem)event.item).setText(displayedCallStack[depth]);
+				}
+			}
+		});
+
 		TableColumn tblclmnCallstackType = new TableColumn(tblCallStackItem, SWT.NONE);
 		tblclmnCallstackType.setText("Type");
 		tblclmnCallstackType.setWidth(100);
@@ -295,6 +396,28 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		TableColumn tblclmnLineNumber = new TableColumn(tblCallStackItem, SWT.LEFT);
 		tblclmnLineNumber.setWidth(90);
 		tblclmnLineNumber.setText("Line Number");
+
+		// Run until the selected frame is on top of the stack again
+		Menu menu = new Menu(shell, SWT.POP_UP);
+		final MenuItem mntmRunToFrame = new MenuItem(menu, SWT.PUSH);
+		mntmRunToFrame.setText("Run to This Frame");
+		mntmRunToFrame.addListener(SWT.Selection, new Listener() {
+				public void handleEvent(Event event) {
+					int[] selection = tblCallStackItem.getSelectionIndices();
+					if (selection.length == 1){
+						controller.setRunToDepth(displayedCallStack.length - 1 - selection[0]);
+						synchronized (stepLock) { stepLock.notify(); }
+					}
+				}
+			});
+		menu.addMenuListener(new MenuAdapter() {
+			@Override
+			public void menuShown(MenuEvent e) {
+				// only while stopped, like the step buttons
+				mntmRunToFrame.setEnabled(tltmStepOver.getEnabled() && tblCallStackItem.getSelectionCount() == 1);
+			}
+		});
+		tblCallStackItem.setMenu(menu);
 	}
 
 	/**
@@ -304,11 +427,35 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		TabItem tbtmVariables = new TabItem(tabFolder, SWT.NONE);
 		tbtmVariables.setText("Variables");
 
-		tblVariables = new Table(tabFolder, SWT.BORDER | SWT.FULL_SELECTION);
+		tblVariables = new Table(tabFolder, SWT.BORDER | SWT.FULL_SELECTION | SWT.VIRTUAL);
 		tblVariables.setHeaderVisible(true);
 		tbtmVariables.setControl(tblVariables);
 		tblVariables.setLinesVisible(true);
 
+		// Rows are filled from the displayed variables when they become visible
+		tblVariables.addListener(SWT.SetData, new Listener() {
+			public void handleEvent(Event event) {
+				int row = event.index;
+				if (row < displayedVariables.size()){
+					TableItem item = (TableItem)event.item;
+					String name = displayedVariables.keyAt(row);
+					String value = displayedVariables.valueAt(row);
+					item.setText(new String[] {name, value});
+					item.setBackground(isChangedVariable(name, value) ? display.getSystemColor(SWT.COLOR_INFO_BACKGROUND) : null);
+				}
+			}
+		});
+
+		// Double click or enter opens the full value of the selected variable
+		tblVariables.addListener(SWT.DefaultSelection, new Listener() {
+			public void handleEvent(Event event) {
+				int[] selection = tblVariables.getSelectionIndices();
+				if (selection.length > 0 && selection[0] < displayedVariables.size()){
+					openValueViewer(displayedVariables.keyAt(selection[0]));
+				}
+			}
+		});
+
 		TableColumn tblclmnVariableName = new TableColumn(tblVariables, SWT.NONE);
 		tblclmnVariableName.setWidth(100);
 		tblclmnVariableName.setText("Variable Name");
@@ -360,9 +507,15 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 
 		TableColumn tblclmnBreakpoints = new TableColumn(tblBreakpoints, SWT.NONE);
 		tblclmnBreakpoints.setResizable(false);
-		tblclmnBreakpoints.setWidth(461);
+		tblclmnBreakpoints.setWidth(391);
 		tblclmnBreakpoints.setText("Breakpoint");
 
+		TableColumn tblclmnHits = new TableColumn(tblBreakpoints, SWT.RIGHT);
+		tblclmnHits.setResizable(false);
+		tblclmnHits.setWidth(70);
+		tblclmnHits.setText("Hits");
+		display.timerExec(HIT_COUNT_REFRESH_MILLIS, hitCountRefresher);
+
 		Menu menu = new Menu(shell, SWT.POP_UP);
 
 		mntmRemoveBreakpoint = new MenuItem(menu, SWT.PUSH);
@@ -380,6 +533,32 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		}
 		mntmRemoveBreakpoint.setText("Delete Breakpoints");
 
+		MenuItem mntmResetHitCounts = new MenuItem(menu, SWT.PUSH);
+		mntmResetHitCounts.setText("Reset Hit Counts");
+		mntmResetHitCounts.addListener(SWT.Selection, new Listener() {
+				public void handleEvent(Event event) {
+					controller.resetHitCounts();
+				}
+			});
+
+		new MenuItem(menu, SWT.SEPARATOR);
+
+		MenuItem mntmImportBreakpoints = new MenuItem(menu, SWT.PUSH);
+		mntmImportBreakpoints.setText("Import Breakpoints...");
+		mntmImportBreakpoints.addListener(SWT.Selection, new Listener() {
+				public void handleEvent(Event event) {
+					importBreakpoints();
+				}
+			});
+
+		MenuItem mntmExportBreakpoints = new MenuItem(menu, SWT.PUSH);
+		mntmExportBreakpoints.setText("Export Breakpoints...");
+		mntmExportBreakpoints.addListener(SWT.Selection, new Listener() {
+				public void handleEvent(Event event) {
+					exportBreakpoints();
+				}
+			});
+
 
 		menu.addMenuListener(new MenuAdapter() {
 			@Override
@@ -413,17 +592,17 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		breakpointEntryComposite.setLayoutData(gd_breakpointEntryComposite);
 
 		textBreakpoint = new Text(breakpointEntryComposite, SWT.BORDER);
-		textBreakpoint.setToolTipText("Enter part of the keyword name to break on");
+		textBreakpoint.setToolTipText("Enter part of the keyword name, or a regular expression, to break on.  Qualifiers may follow:\n"
+				+ "  | hit: N, | hit: every N or | hit: after N  to stop on selected hits only\n"
+				+ "  | if: ${var} > 3  to stop only when a condition on variables holds\n"
+				+ "  | args: text or | arg2: text  to stop only when an argument matches\n"
+				+ "  | suite: name, | test: name, | tag: name or | lib: name  to stop only in part of the run");
 		GridData gd_textBreakpoint = new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1);
 		gd_textBreakpoint.widthHint = 296;
 		textBreakpoint.setLayoutData(gd_textBreakpoint);
 		textBreakpoint.addListener(SWT.DefaultSelection, new Listener() {				
 				public void handleEvent(Event e) {
-		    	  String breakpointText = textBreakpoint.getText();
-		    	  if (breakpointText != null && breakpointText.length() > 0){
-		    		  controller.addBreakpoint(breakpointText);
-		    		  textBreakpoint.setText("");
-		    	  }
+					addBreakpointFromText();
 		        }
 
 
@@ -434,16 +613,79 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		btnAddBreakpoint.addSelectionListener(new SelectionAdapter() {
 			@Override
 			public void widgetSelected(SelectionEvent e) {
-				String breakpointText = textBreakpoint.getText();
-		    	  if (breakpointText != null && breakpointText.length() > 0){
-		    		  controller.addBreakpoint(breakpointText);
-		    		  textBreakpoint.setText("");
-		    	  }
+				addBreakpointFromText();
 			}
 		});
 		btnAddBreakpoint.setText("Add  Breakpoint");
 	}
 
+	/**
+	 * Add the breakpoint typed in the breakpoint text box.  Patterns the debugger cannot match in
+	 * linear time are refused with a message and left in the text box so they can be fixed
+	 */
+	private void addBreakpointFromText(){
+		String breakpointText = textBreakpoint.getText();
+		if (breakpointText != null && breakpointText.length() > 0){
+			try {
+				controller.addBreakpoint(breakpointText);
+				textBreakpoint.setText("");
+			}
+			catch (PatternSyntaxException ex){
+				showError("Invalid Breakpoint", ex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Ask for a breakpoint file and add the breakpoints in it
+	 */
+	private void importBreakpoints(){
+		FileDialog dialog = new FileDialog(shell, SWT.OPEN);
+		dialog.setFilterExtensions(BREAKPOINT_FILE_EXTENSIONS);
+		String fileName = dialog.open();
+		if (fileName != null){
+			try {
+				controller.importBreakpoints(Paths.get(fileName));
+			}
+			catch (IOException ex){
+				showError("Import Failed", ex.getMessage());
+			}
+			catch (PatternSyntaxException ex){
+				showError("Invalid Breakpoint", ex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Ask for a breakpoint file and write all breakpoints to it
+	 */
+	private void exportBreakpoints(){
+		FileDialog dialog = new FileDialog(shell, SWT.SAVE);
+		dialog.setFilterExtensions(BREAKPOINT_FILE_EXTENSIONS);
+		dialog.setOverwrite(true);
+		String fileName = dialog.open();
+		if (fileName != null){
+			try {
+				controller.exportBreakpoints(Paths.get(fileName));
+			}
+			catch (IOException ex){
+				showError("Export Failed", ex.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Show an error message box
+	 * @param title the title of the message box
+	 * @param message the message to show
+	 */
+	private void showError(String title, String message){
+		MessageBox messageBox = new MessageBox(shell, SWT.ICON_ERROR | SWT.OK);
+		messageBox.setText(title);
+		messageBox.setMessage(message);
+		messageBox.open();
+	}
+
 	/**
 	 * Create the test results tab
 	 */
@@ -451,140 +693,290 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 		TabItem tbtmTestresults = new TabItem(tabFolder, SWT.NONE);
 		tbtmTestresults.setText("TestResults");
 
-		tblTestResults = new Table(tabFolder, SWT.BORDER | SWT.FULL_SELECTION);
-		tbtmTestresults.setControl(tblTestResults);
+		Composite resultsComposite = new Composite(tabFolder, SWT.NONE);
+		tbtmTestresults.setControl(resultsComposite);
+		resultsComposite.setLayout(new GridLayout(2, false));
+
+		btnFailedOnly = new Button(resultsComposite, SWT.CHECK);
+		btnFailedOnly.setText("Failed only");
+		btnFailedOnly.addSelectionListener(new SelectionAdapter() {
+			@Override
+			public void widgetSelected(SelectionEvent e) {
+				filterTestResults();
+			}
+		});
+
+		textResultFilter = new Text(resultsComposite, SWT.BORDER);
+		textResultFilter.setToolTipText("Show only the tests whose name starts with this text");
+		textResultFilter.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 1, 1));
+		textResultFilter.addListener(SWT.Modify, new Listener() {
+			public void handleEvent(Event e) {
+				filterTestResults();
+			}
+		});
+
+		lblDroppedResults = new Label(resultsComposite, SWT.NONE);
+		lblDroppedResults.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 2, 1));
+
+		tblTestResults = new Table(resultsComposite, SWT.BORDER | SWT.FULL_SELECTION | SWT.VIRTUAL);
 		tblTestResults.setHeaderVisible(true);
 		tblTestResults.setLinesVisible(true);
+		tblTestResults.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 2, 1));
+
+		// Rows are read from the test result store when they become visible.  The store is locked while a
+		// row is read, so the results cannot be compacted under it
+		tblTestResults.addListener(SWT.SetData, new Listener() {
+			public void handleEvent(Event event) {
+				int row = event.index;
+				int position = (filteredResults == null) ? row : (row < filteredResultCount) ? filteredResults[row] : -1;
+				if (position < 0 || position >= testResultsPulled){
+					return;
+				}
+				synchronized (testResults){
+					if (testResults.getCompactionCount() != testResultsCompactions){
+						// the positions are outdated, the next pull shows the compacted results
+						return;
+					}
+					TableItem item = (TableItem)event.item;
+					item.setText(new String[] {
+							testResults.getName(position),
+							testResults.getStatus(position),
+							formatElapsed(testResults.getElapsedMillis(position))});
+					item.setForeground(display.getSystemColor(testResults.isFailed(position) ? SWT.COLOR_RED : SWT.COLOR_DARK_GREEN));
+				}
+			}
+		});
 
 		TableColumn tblclmTestName = new TableColumn(tblTestResults, SWT.NONE);
-		tblclmTestName.setWidth(395);
+		tblclmTestName.setWidth(335);
 		tblclmTestName.setText("Test Name");
 
 		TableColumn tblclmnResult = new TableColumn(tblTestResults, SWT.NONE);
-		tblclmnResult.setWidth(100);
+		tblclmnResult.setWidth(70);
 		tblclmnResult.setText("Result");
+
+		TableColumn tblclmnElapsed = new TableColumn(tblTestResults, SWT.RIGHT);
+		tblclmnElapsed.setWidth(80);
+		tblclmnElapsed.setText("Time");
 	}
 
 	/**
-	 * Clear all tabs and labels (Don't clear breakpoints or test results -- they persist)
+	 * Format an elapsed time in seconds
 	 */
-	private void clearAll(){
-		lblTestSuiteValue.setText("");
-		lblTestCaseValue.setText("");
-		lblKeywordValue.setText("");
-		lblArgumentsValue.setText("");
-		textDocumentation.setText("");
-
-		tblVariables.removeAll();
-		tblCallStackItem.removeAll();
+	private static String formatElapsed(int millis){
+		return (millis / 1000) + "." + (millis % 1000 / 100) + (millis % 100 / 10) + (millis % 10) + " s";
 	}
 
 	/**
-	 * A hook to clear the data with the thread running in the context of the GUI
+	 * A hook to clear the data with the thread running in the context of the GUI.  Goes through the
+	 * refresh scheduler, so a refresh that is still pending cannot show old data afterwards
 	 */
-	public synchronized void clearTestData()  {
+	public void clearTestData()  {
 		if (display == null || display.isDisposed())
 			return;
-		display.asyncExec(new Runnable() {
-			public void run() {
-				clearAll();
-			}
-		});
+		stackRefresher.submit(StackSnapshot.EMPTY);
 	}
 
 	/**
-	 * Update the GUI based on the model (ie the stack of debug contexts)
-	 * @param contextStack - A stack of debug contexts used to update the gui.  Represents the state of the running test suite
+	 * Update the GUI based on the model (ie the stack of debug contexts).  The snapshot replaces any
+	 * snapshot that was not shown yet, and is shown at the next refresh
+	 * @param snapshot - An immutable snapshot of the stack of debug contexts used to update the gui.  Represents the state of the running test suite
 	 */
-	public synchronized void update(final Stack<RobotFrameworkDebugContext> contextStack)  {
+	public void update(StackSnapshot snapshot)  {
 		if (display == null || display.isDisposed())
 			return;
-		display.asyncExec(new Runnable() {
-			public void run() {
-				clearAll();
+		stackRefresher.submit(snapshot);
+	}
+
+	/**
+	 * Set the maximum number of times per second the stack, variables, labels and test results are redrawn
+	 * @param maxRate the refresh rate in Hz
+	 * @throws IllegalArgumentException if the rate is not positive
+	 */
+	public void setMaxRefreshRate(int maxRate) {
+		stackRefresher.setMaxRate(maxRate);
+		resultRefresher.setMaxRate(maxRate);
+	}
 
-				// A map for variables that handles scoping of variables
-				Map<String, String> variables = new HashMap<String, String>();
+	/**
+	 * Run a refresh of a RefreshScheduler on the ui thread
+	 * @param delayMillis how long to wait before running it
+	 * @param refresh the refresh
+	 */
+	private void scheduleRefresh(final int delayMillis, final Runnable refresh){
+		final Display d = display;
+		if (d == null || d.isDisposed()){
+			return;
+		}
+		if (delayMillis == 0){
+			d.asyncExec(refresh);
+		}
+		else{
+			// timerExec must be called on the ui thread
+			d.asyncExec(new Runnable() {
+				public void run() {
+					d.timerExec(delayMillis, refresh);
+				}
+			});
+		}
+	}
 
-				// Traverse stack from bottom to top
-				for (Iterator<RobotFrameworkDebugContext> it = contextStack.iterator(); it.hasNext(); ) {
+	/**
+	 * Log how many stack updates were shown and how many were coalesced into a later one
+	 */
+	void logRefreshStatistics() {
+		log.info("GUI refreshes: " + stackRefresher.getSubmitted() + " updates, " + stackRefresher.getRendered()
+				+ " rendered, " + stackRefresher.getCoalesced() + " coalesced");
+	}
 
-					RobotFrameworkDebugContext context = it.next();
+	/**
+	 * Show a snapshot of the stack.  Only the labels, rows and cells that differ from the last snapshot
+	 * shown are changed.  Runs on the ui thread
+	 * @param snapshot the snapshot to show
+	 */
+	private void renderSnapshot(StackSnapshot snapshot){
+		if (shell == null || shell.isDisposed()){
+			return;
+		}
+		List<FrameSnapshot> contextStack = snapshot.frames();
+
+		String suiteName = "";
+		String testName = "";
+		String keywordName = "";
+		String strArgs = "";
+		String strDocs = "";
+
+		// Traverse stack from bottom to top
+		int stackSize = contextStack.size();
+		String[][] callStack = new String[stackSize][];
+		for (int depth = 0; depth < stackSize; depth++) {
+
+			FrameSnapshot context = contextStack.get(depth);
+
+			// set labels based on stack
+			if (context.getContextType() == ContextType.TEST_SUITE){
+				suiteName = context.getItemName();
+			}
+			else if (context.getContextType() == ContextType.TEST_CASE){
+				testName = context.getItemName();
+			}
 
-					// set labels based on stack
-					if (context.getContextType() == ContextType.TEST_SUITE){
-						lblTestSuiteValue.setText(context.getItemName());
+			// if it is the last keyword, take the data from it
+			else if (depth == stackSize - 1){
+				// must be a keyword
+				keywordName = context.getItemName();
+				ItemAttributes keywordAttrs = context.getItemAttributes();
+				if (keywordAttrs != null){
+					List<String> args = keywordAttrs.getArgs();
+					for (int i=0; i < args.size(); i++) {
+						strArgs += (i>0?", ":"")+args.get(i);
 					}
-					else if (context.getContextType() == ContextType.TEST_CASE){
-						lblTestCaseValue.setText(context.getItemName());
+					String doc = keywordAttrs.getDoc();
+					if (doc != null){
+						strDocs = doc;
 					}
+				}
+			}
 
-					// if it is the last keyword, take the data from it
-					else if (!it.hasNext()){
-						// must be a keyword
-						lblKeywordValue.setText(context.getItemName());
-						Map<String, Object> keywordAttrs = context.getItemAttribs();
-						String strArgs = "";
-						String strDocs = "";
-						if (keywordAttrs != null){
-							List args = (List)keywordAttrs.get("args");
-					        for (int i=0; i < args.size(); i++) {
-					          	strArgs += (i>0?", ":"")+args.get(i);
-					        }
-							lblArgumentsValue.setText(strArgs);
-
-							strDocs = (String)keywordAttrs.get("doc");
-							if (strDocs != null){
-								textDocumentation.setText(strDocs);
-							}
-							else{
-								textDocumentation.setText("");
-							}
-						}
-					}
+			int lineNumber = context.getLineNumber();
+			callStack[depth] = new String[] {
+					context.getContextTypeString(),
+					context.getItemName(),
+					(lineNumber > 0) ? Integer.toString(lineNumber):""};
+		}
 
-					// Now add the context variables to our variables map - since we are traversing from
-					// bottom to top, if 2 variables have the same name, the scope closest to the top of the stack is
-					// displayed
-					variables.putAll(context.getVariables());
-				}
+		setTextIfChanged(lblTestSuiteValue, suiteName);
+		setTextIfChanged(lblTestCaseValue, testName);
+		setTextIfChanged(lblKeywordValue, keywordName);
+		setTextIfChanged(lblArgumentsValue, strArgs);
+		if (!strDocs.equals(textDocumentation.getText())){
+			textDocumentation.setText(strDocs);
+		}
 
-				// Update callstack table - items are added to table in order listed!  So we can't roll it into the loop
-				// create table items for the callstack table
-				int stackSize = contextStack.size();
-				final TableItem[] callstackItems = new TableItem[stackSize];
-				for (int pos = stackSize -1; pos >= 0; pos--){
-					RobotFrameworkDebugContext context = contextStack.elementAt(pos);
-					// add to the call stack items
-					int lineNumber = context.getLineNumber();
-					callstackItems[pos] = new TableItem(tblCallStackItem,SWT.NONE);
-					callstackItems[pos].setText(
-							new String[] {
-								(String) context.getContextTypeString(),
-								(String) context.getItemName(),
-								(lineNumber > 0) ? Integer.toString(lineNumber):""});
-				}
+		updateCallStack(callStack);
+		// The top frame knows the variables visible from it, with those closest to the top of the stack
+		// shadowing variables of the same name below
+		FrameSnapshot top = snapshot.top();
+		displayedFrame = top;
+		updateVariables((top == null) ? RobotFrameworkDebugContext.NO_VARIABLES : top.getVisibleVariables());
+		updateCurrentBreakpoint();
+	}
 
-				// Update test Variable table
-				List<Set<Entry<String,Object>>> testVarList = CollectionHelpers.sortMapByKey(variables);
-				final TableItem[] items = new TableItem[testVarList.size()];
-
-				int i=0;
-				for (Iterator it = testVarList.iterator(); it.hasNext(); ) {
-					Map.Entry entry = (Map.Entry)it.next();
-					items[i] = new TableItem(tblVariables,SWT.NONE);
-					items[i].setText(
-							new String[] {
-								(String) entry.getKey(),
-								(String) entry.getValue()});
-					i++;
-			    }
+	/**
+	 * Set the text of a label, unless it already shows the text
+	 */
+	private static void setTextIfChanged(Label label, String text){
+		if (!text.equals(label.getText())){
+			label.setText(text);
+		}
+	}
 
-				//Update the breakpoints table
-				updateAllBreakpoints(controller.getBreakpoints());
+	/**
+	 * Bring the call stack table in line with the stack.  The table is virtual: only the row count is
+	 * set and the rows whose text changed are cleared, the SetData listener fills the visible ones.
+	 * The top frame is the first row, so the rows are compared by their position in the table
+	 * @param callStack the texts of the rows, by depth from the bottom of the stack
+	 */
+	private void updateCallStack(String[][] callStack){
+		String[][] oldCallStack = displayedCallStack;
+		int size = callStack.length;
+		int oldSize = oldCallStack.length;
+		displayedCallStack = callStack;
+		if (oldSize != size){
+			// rows added at the end are new and filled when they become visible
+			tblCallStackItem.setItemCount(size);
+		}
+		for (int row : TableRowDiff.changedCallStackRows(oldCallStack, callStack)){
+			tblCallStackItem.clear(row);
+		}
+	}
 
-			}
-		});
+	/**
+	 * Show new variables in the variables table.  The table is virtual and reads its rows from the
+	 * sorted map with O(log n) lookups.  An update sets the row count and clears only the rows whose
+	 * name, value or highlight changed; the SetData listener refills the visible ones
+	 * @param variables the visible variables, sorted by name
+	 */
+	private void updateVariables(PersistentSortedMap<String, String> variables){
+		if (variables == displayedVariables){
+			return;
+		}
+		PersistentSortedMap<String, String> oldVariables = displayedVariables;
+		PersistentSortedMap<String, String> oldPrevious = previousVariables;
+		previousVariables = oldVariables;
+		displayedVariables = variables;
+		if (oldVariables.size() != variables.size()){
+			tblVariables.setItemCount(variables.size());
+		}
+		for (int row : TableRowDiff.changedVariableRows(oldPrevious, oldVariables, variables)){
+			tblVariables.clear(row);
+		}
+	}
+
+	/**
+	 * Show the full value of a variable in a window of its own.  The table shows a preview of values
+	 * stored off the heap, the viewer reads them back
+	 * @param name the name of the variable
+	 */
+	private void openValueViewer(String name){
+		String value = (displayedFrame == null) ? null : displayedFrame.getFullVariable(name);
+		if (value == null){
+			return;
+		}
+		Shell viewer = new Shell(shell, SWT.SHELL_TRIM);
+		viewer.setText(name);
+		viewer.setSize(500, 400);
+		viewer.setLayout(new FillLayout());
+		Text text = new Text(viewer, SWT.MULTI | SWT.READ_ONLY | SWT.WRAP | SWT.V_SCROLL);
+		text.setText(value);
+		viewer.open();
+	}
+
+	/**
+	 * Check if a variable was added or changed by the last update
+	 */
+	private boolean isChangedVariable(String name, String value){
+		return TableRowDiff.isChanged(previousVariables, name, value);
 	}
 
 	/**
@@ -599,43 +991,93 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 			public void run() {
 				tltmStepOver.setEnabled(bEnabled);
 				tltmStepInto.setEnabled(bEnabled);
+				tltmStepOut.setEnabled(bEnabled);
 				tltmResume.setEnabled(bEnabled);
 			}
 		});
 	}
 
 	/**
-	 * Set a new test result in the results tab
+	 * Tell the results tab that tests ended.  The new results are pulled from the store at the next refresh
 	 *
-	 * @param testName name of the test
-	 * @param result a String "PASS" or "FAIL"
+	 * @param store the store the debugger adds the test results to
 	 */
-	public synchronized void setTestResult(final String testName, final String result)  {
-
+	public void updateTestResults(TestResultStore store)  {
 		if (display == null || display.isDisposed())
 			return;
-		display.asyncExec(new Runnable() {
-			public void run() {
-				final Color red = display.getSystemColor(SWT.COLOR_RED);
-				final Color green = display.getSystemColor(SWT.COLOR_DARK_GREEN);
+		resultRefresher.submit(store);
+	}
 
-				final TableItem testResult = new TableItem(tblTestResults, SWT.NONE);
-				testResult.setText(new String[] {testName, result});
-				if (result.equalsIgnoreCase("PASS")){
-					testResult.setForeground(green);
-				}
-				else{
-					testResult.setForeground(red);
-				}
+	/**
+	 * Pull the results added since the last pull and show them.  Runs on the ui thread
+	 * @param store the test result store
+	 */
+	private void pullTestResults(TestResultStore store){
+		if (tblTestResults == null || tblTestResults.isDisposed()){
+			return;
+		}
+		int from;
+		long dropped;
+		synchronized (store){
+			if (store != testResults || store.getCompactionCount() != testResultsCompactions){
+				// a new store, or old results were dropped and the rest moved: pull everything again
+				testResults = store;
+				testResultsCompactions = store.getCompactionCount();
+				testResultsPulled = 0;
+				filteredResultCount = 0;
+				tblTestResults.clearAll();
 			}
-		});
+			from = testResultsPulled;
+			testResultsPulled = store.size();
+			dropped = store.getDroppedCount();
+		}
+		setTextIfChanged(lblDroppedResults, (dropped == 0) ? "" : dropped + " older results were dropped, passed and skipped tests first."
+				+ " At most " + store.getMaxResults() + " results are kept");
+		if (filteredResults == null){
+			tblTestResults.setItemCount(testResultsPulled);
+		}
+		else{
+			appendFilteredResults(store.select(from, testResultsPulled, btnFailedOnly.getSelection(), textResultFilter.getText()));
+			tblTestResults.setItemCount(filteredResultCount);
+		}
+	}
+
+	/**
+	 * Apply the filter of the results tab to all results pulled so far.  Runs on the ui thread
+	 */
+	private void filterTestResults(){
+		boolean failedOnly = btnFailedOnly.getSelection();
+		String prefix = textResultFilter.getText();
+		if (!failedOnly && prefix.isEmpty()){
+			filteredResults = null;
+			filteredResultCount = 0;
+			tblTestResults.setItemCount(testResultsPulled);
+		}
+		else{
+			filteredResults = new int[0];
+			filteredResultCount = 0;
+			if (testResults != null){
+				// only look at the results pulled, newer ones are added by the next pull
+				appendFilteredResults(testResults.select(0, testResultsPulled, failedOnly, prefix));
+			}
+			tblTestResults.setItemCount(filteredResultCount);
+		}
+		tblTestResults.clearAll();
+	}
+
+	private void appendFilteredResults(int[] selected){
+		if (filteredResultCount + selected.length > filteredResults.length){
+			filteredResults = Arrays.copyOf(filteredResults, Math.max(filteredResults.length * 2, filteredResultCount + selected.length));
+		}
+		System.arraycopy(selected, 0, filteredResults, filteredResultCount, selected.length);
+		filteredResultCount += selected.length;
 	}
 
 	/**
 	 * Replace the data in the breakpoints tab with list of breakpoints passed in
 	 * @param breakpoints the breakpoints to update the tab with
 	 */
-	public void updateBreakpoints(final List<String> breakpoints) {
+	public void updateBreakpoints(final List<Breakpoint> breakpoints) {
 		if (display == null || display.isDisposed())
 			return;
 		display.asyncExec(new Runnable() {
@@ -647,30 +1089,97 @@ public class RobotFrameworkDebuggerUIThread implements Runnable{
 	}
 
 	/**
-	 * Private function to handle breakpoint update.  Can be called from update or updateBreakpoints
+	 * Private function to handle breakpoint update.  The table is only rebuilt if the breakpoints differ
+	 * from the ones shown, otherwise only the current breakpoint marker is moved
 	 * @param breakpoints the breakpoints to update the tab with
 	 */
-	private void updateAllBreakpoints(List<String> breakpoints){
+	private void updateAllBreakpoints(List<Breakpoint> breakpoints){
+		if (isDisplayed(breakpoints)){
+			updateCurrentBreakpoint();
+			return;
+		}
 		int currentBreakpointIndex = controller.getCurrentBreakpointIndex();
 		tblBreakpoints.removeAll();
 		final TableItem[] items = new TableItem[breakpoints.size()];
+		displayedBreakpoints = breakpoints;
+		displayedHitCounts = new long[breakpoints.size()];
+		displayedCurrentBreakpoint = -1;
 
 		int i=0;
-		for (Iterator<String> it = breakpoints.iterator(); it.hasNext(); ) {
-			String breakpoint = it.next();
+		for (Iterator<Breakpoint> it = breakpoints.iterator(); it.hasNext(); ) {
+			Breakpoint breakpoint = it.next();
+			displayedHitCounts[i] = breakpoint.getHitCount();
 			items[i] = new TableItem(tblBreakpoints,SWT.NONE);
 			items[i].setText(
 					new String[] {
 						"",
-						(String) breakpoint
+						breakpoint.getText(),
+						Long.toString(displayedHitCounts[i])
 						});
 			if (i == currentBreakpointIndex){
 				if(imgCurrentBreakpoint != null){
 					items[i].setImage(imgCurrentBreakpoint);
 				}
+				displayedCurrentBreakpoint = i;
 			}
 			i++;
 	    }
 	}
 
+	/**
+	 * Check if the breakpoints tab shows a list of breakpoints
+	 */
+	private boolean isDisplayed(List<Breakpoint> breakpoints){
+		if (breakpoints.size() != displayedBreakpoints.size() || tblBreakpoints.getItemCount() != breakpoints.size()){
+			return false;
+		}
+		Iterator<Breakpoint> displayed = displayedBreakpoints.iterator();
+		for (Breakpoint breakpoint : breakpoints){
+			if (breakpoint != displayed.next()){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Move the current breakpoint marker in the breakpoints tab to the breakpoint the debugger stopped at
+	 */
+	private void updateCurrentBreakpoint(){
+		int currentBreakpointIndex = controller.getCurrentBreakpointIndex();
+		if (currentBreakpointIndex == displayedCurrentBreakpoint){
+			return;
+		}
+		int itemCount = tblBreakpoints.getItemCount();
+		if (displayedCurrentBreakpoint >= 0 && displayedCurrentBreakpoint < itemCount){
+			tblBreakpoints.getItem(displayedCurrentBreakpoint).setImage((Image)null);
+		}
+		if (currentBreakpointIndex >= 0 && currentBreakpointIndex < itemCount && imgCurrentBreakpoint != null){
+			tblBreakpoints.getItem(currentBreakpointIndex).setImage(imgCurrentBreakpoint);
+		}
+		displayedCurrentBreakpoint = currentBreakpointIndex;
+	}
+
+	/**
+	 * Refresh the hit counts in the breakpoints tab, then schedule the next refresh.  Only cells whose
+	 * count changed are redrawn.  Runs on the ui thread
+	 */
+	private void refreshHitCounts(){
+		if (tblBreakpoints == null || tblBreakpoints.isDisposed()){
+			return;
+		}
+		if (tblBreakpoints.getItemCount() == displayedHitCounts.length){
+			int i = 0;
+			for (Breakpoint breakpoint : displayedBreakpoints){
+				long hits = breakpoint.getHitCount();
+				if (hits != displayedHitCounts[i]){
+					displayedHitCounts[i] = hits;
+					tblBreakpoints.getItem(i).setText(2, Long.toString(hits));
+				}
+				i++;
+			}
+		}
+		display.timerExec(HIT_COUNT_REFRESH_MILLIS, hitCountRefresher);
+	}
+
 }
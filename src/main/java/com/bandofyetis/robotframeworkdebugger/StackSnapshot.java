@@ -0,0 +1,56 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable view of the context stack, published by the Robot Framework thread for the gui.
+ *
+ * @author nspilka
+ *
+ */
+public final class StackSnapshot {
+
+	// A snapshot of an empty stack
+	static final StackSnapshot EMPTY = new StackSnapshot(null);
+
+	// The snapshot of the top frame, null for an empty stack
+	private final FrameSnapshot top;
+
+	/**
+	 * Create a stack snapshot
+	 * @param top the snapshot of the top frame, null for an empty stack
+	 */
+	StackSnapshot(FrameSnapshot top) {
+		this.top = top;
+	}
+
+	/**
+	 * Get the top frame
+	 * @return the snapshot of the top frame, or null if the stack was empty
+	 */
+	public FrameSnapshot top() {
+		return top;
+	}
+
+	/**
+	 * Get the number of frames
+	 * @return the size of the stack
+	 */
+	public int size() {
+		return (top == null) ? 0 : top.getDepth() + 1;
+	}
+
+	/**
+	 * Get the frames
+	 * @return the frame snapshots, bottom first
+	 */
+	public List<FrameSnapshot> frames() {
+		FrameSnapshot[] frames = new FrameSnapshot[size()];
+		for (FrameSnapshot frame = top; frame != null; frame = frame.getParent()){
+			frames[frame.getDepth()] = frame;
+		}
+		return Collections.unmodifiableList(Arrays.asList(frames));
+	}
+}
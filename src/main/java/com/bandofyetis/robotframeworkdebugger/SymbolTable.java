@@ -0,0 +1,147 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+
+/**
+ * Maps names to dense int ids, assigned on first sight.
+ *
+ * A run calls the same keywords millions of times, and every listener call hands the debugger a fresh
+ * String.  Frames keep the id of their keyword name instead, so the strings of a call can be
+ * collected as soon as the call returns and every name is kept once.  Ids count up from 0 without
+ * gaps, so data kept per name can live in primitive arrays indexed by id.  The empty name always has
+ * id EMPTY.
+ *
+ * Names are never removed, a table lives as long as the JVM.  It is bounded by what is interned:
+ * keyword names and the documentation and library names of keywords, which all come from the test
+ * sources and libraries of the run, so the table grows with the size of the suite and not with the
+ * number of calls.  Texts that differ from test to test (test and suite names and documentation, long
+ * names, tags, arguments) must not be interned; they stay with their frame.  TestResultStore keeps the test names
+ * of its results in a store of its own, which drops them with the results.
+ *
+ * The names are kept in an array indexed by id and found again through an open addressing hash table
+ * of ids.  There is one writer, the Robot Framework thread: intern(), lookup() and size() are only
+ * called by it and do not lock.  name() can be called from any thread: an id reaches another thread
+ * only through something that was safely published after intern() returned it (a snapshot), and the
+ * array that name() reads through a volatile field holds every name interned before it was published.
+ *
+ * @author nspilka
+ *
+ */
+final class SymbolTable {
+
+	// The id of the empty name
+	static final int EMPTY = 0;
+
+	// The table of the names of keywords, and of the documentation and libraries of keywords
+	static final SymbolTable NAMES = new SymbolTable();
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	// The names, by id.  Replaced by a larger copy when full
+	private volatile String[] names = new String[INITIAL_CAPACITY];
+
+	// Number of names, only used by the writer
+	private int size;
+
+	// Open addressing hash table of id + 1, 0 for a free slot.  Kept at most half full.  Only used by the writer
+	private int[] table = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * Create a table that only holds the empty name
+	 */
+	SymbolTable() {
+		intern("");
+	}
+
+	/**
+	 * Get the id of a name, assigning the next id if the name is new.  Only called by the writer
+	 * @param name the name
+	 * @return the id
+	 */
+	int intern(String name) {
+		String[] current = names;
+		int hash = hash(name);
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		for (int id = table[slot] - 1; id >= 0; id = table[slot] - 1){
+			if (current[id].equals(name)){
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = size;
+		if (id == current.length){
+			current = Arrays.copyOf(current, id * 2);
+		}
+		current[id] = name;
+		// publish the name before the id can be used
+		names = current;
+		size++;
+		if (size * 2 > table.length){
+			rehash();
+		}
+		else{
+			table[slot] = id + 1;
+		}
+		return id;
+	}
+
+	/**
+	 * Get the id of a name without assigning one.  Only called by the writer
+	 * @param name the name
+	 * @return the id, or -1 if the name was never interned
+	 */
+	int lookup(String name) {
+		String[] current = names;
+		int mask = table.length - 1;
+		for (int slot = hash(name) & mask; table[slot] != 0; slot = (slot + 1) & mask){
+			if (current[table[slot] - 1].equals(name)){
+				return table[slot] - 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the name of an id
+	 * @param id the id returned by intern()
+	 * @return the name
+	 * @throws IndexOutOfBoundsException if no name has the id
+	 */
+	String name(int id) {
+		String[] current = names;
+		String name = (id >= 0 && id < current.length) ? current[id] : null;
+		if (name == null){
+			throw new IndexOutOfBoundsException("No symbol with id " + id);
+		}
+		return name;
+	}
+
+	/**
+	 * Get the number of names.  Only called by the writer
+	 * @return the number of ids assigned, ids are 0 to size() - 1
+	 */
+	int size() {
+		return size;
+	}
+
+	private void rehash() {
+		int[] newTable = new int[table.length * 2];
+		int mask = newTable.length - 1;
+		for (int id = 0; id < size; id++){
+			int slot = hash(names[id]) & mask;
+			while (newTable[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = id + 1;
+		}
+		table = newTable;
+	}
+
+	private static int hash(String name) {
+		int h = name.hashCode();
+		// spread the bits, the table index uses the low ones
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,88 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Finds the rows of the virtual call stack and variables tables that must be cleared when new data
+ * is shown.  Rows are compared by their position in the table, only the rows both the old and the new
+ * data have are looked at: rows added at the end are filled when they become visible and rows removed
+ * from the end go away with the row count.
+ *
+ * Kept apart from the ui thread so the diff can be tested without a display.
+ *
+ * @author nspilka
+ *
+ */
+final class TableRowDiff {
+
+	private TableRowDiff() {
+	}
+
+	/**
+	 * Get the call stack rows whose text changed.  The top frame is the first row, so the stacks are
+	 * compared from the top down
+	 * @param oldCallStack the texts of the rows shown, by depth from the bottom of the stack
+	 * @param callStack the texts of the rows to show, by depth from the bottom of the stack
+	 * @return the table rows to clear, in ascending order
+	 */
+	static int[] changedCallStackRows(String[][] oldCallStack, String[][] callStack){
+		int size = callStack.length;
+		int oldSize = oldCallStack.length;
+		int[] rows = new int[Math.min(size, oldSize)];
+		int count = 0;
+		for (int row = 0; row < rows.length; row++){
+			if (!Arrays.equals(oldCallStack[oldSize - 1 - row], callStack[size - 1 - row])){
+				rows[count++] = row;
+			}
+		}
+		return (count == rows.length) ? rows : Arrays.copyOf(rows, count);
+	}
+
+	/**
+	 * Get the variables rows whose name, value or change highlight changed.  A row is highlighted
+	 * when its value differs from the variables shown before it, see isChanged()
+	 * @param oldPrevious the variables shown before the old ones
+	 * @param oldVariables the variables shown
+	 * @param variables the variables to show
+	 * @return the table rows to clear, in ascending order
+	 */
+	static int[] changedVariableRows(PersistentSortedMap<String, String> oldPrevious,
+			PersistentSortedMap<String, String> oldVariables, PersistentSortedMap<String, String> variables){
+		// walk both maps in order, looking rows up by position would take O(log n) each
+		Iterator<Map.Entry<String, String>> entries = variables.asMap().entrySet().iterator();
+		Iterator<Map.Entry<String, String>> oldEntries = oldVariables.asMap().entrySet().iterator();
+		int[] rows = new int[Math.min(variables.size(), oldVariables.size())];
+		int count = 0;
+		for (int row = 0; row < rows.length; row++){
+			Map.Entry<String, String> entry = entries.next();
+			Map.Entry<String, String> oldEntry = oldEntries.next();
+			String name = entry.getKey();
+			String value = entry.getValue();
+			String oldName = oldEntry.getKey();
+			String oldValue = oldEntry.getValue();
+			// a row that keeps its name and value is not highlighted any more, it is cleared if it was
+			if (!name.equals(oldName) || !equal(value, oldValue) || isChanged(oldPrevious, oldName, oldValue)){
+				rows[count++] = row;
+			}
+		}
+		return (count == rows.length) ? rows : Arrays.copyOf(rows, count);
+	}
+
+	/**
+	 * Check if a variable was added or changed since the variables shown before.  When nothing was shown
+	 * before, nothing counts as changed: highlighting everything would say nothing
+	 * @param previous the variables shown before
+	 * @param name the name of the variable
+	 * @param value its value
+	 * @return true if the row of the variable is highlighted
+	 */
+	static boolean isChanged(PersistentSortedMap<String, String> previous, String name, String value){
+		return !previous.isEmpty() && !equal(previous.get(name), value);
+	}
+
+	private static boolean equal(String a, String b){
+		return (a == null) ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,505 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The results of the tests that ran, stored by column so that a run of hundreds of thousands of tests
+ * takes tens of bytes per test instead of a row of objects.
+ *
+ * For every test the store keeps the id of its name, its elapsed time and two status bits, 8 bytes.
+ * Names are interned: each distinct name is stored once as UTF-8 in one byte array and found again
+ * through an open addressing hash table of name ids, so no String objects are kept.  A distinct name
+ * costs its UTF-8 bytes plus about 12 bytes of offset and hash table, so a run where every test has a
+ * name of its own takes about 50 bytes per test, and a run that repeats its tests much less.  The
+ * positions of the failed tests are kept in their own column, and the distinct names are sorted on
+ * demand, so the "failed only" and name prefix filters of the ui do not have to look at every name.
+ * The names are not kept in SymbolTable.NAMES: test names are mostly unique, the symbol table never
+ * drops a name and holds Strings, while this store holds UTF-8 bytes and drops the names of the
+ * results it drops.
+ *
+ * The store keeps at most a maximum number of results, by default DEFAULT_MAX_RESULTS, which can be
+ * overridden with the system property robotframeworkdebugger.maxTestResults.  The default holds runs of
+ * a million tests, about 70 MB when every test has a name of its own.  When it is full, the oldest
+ * quarter of the results is dropped, passed and skipped tests first, so failed tests are only dropped
+ * when nearly all results are failures.  The names of dropped tests are dropped too, getDroppedCount()
+ * tells how many results went so the ui can say so.
+ * Dropping moves the remaining results to new positions; getCompactionCount() tells readers that the
+ * positions they pulled are no longer valid.
+ *
+ * Tests are added by the Robot Framework thread and read by the ui thread.  All methods are
+ * synchronized and short, the ui pulls rows in batches with select() and reads the few rows it shows.
+ * Readers that need several values of one row lock the store around the calls.
+ *
+ * @author nspilka
+ *
+ */
+final class TestResultStore {
+
+	// Status strings, as Robot Framework reports them
+	static final String PASS = "PASS";
+	static final String FAIL = "FAIL";
+	static final String SKIP = "SKIP";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	// Default number of results kept
+	static final int DEFAULT_MAX_RESULTS = 1000000;
+
+	// Number of results kept, can be overridden with the system property robotframeworkdebugger.maxTestResults
+	private static final int MAX_RESULTS = Integer.getInteger("robotframeworkdebugger.maxTestResults", DEFAULT_MAX_RESULTS);
+
+	// Number of results kept by this store
+	private final int maxResults;
+
+	// Number of times results were dropped, and the number of results dropped
+	private int compactionCount;
+	private long droppedCount;
+
+	// Per test columns: name id and elapsed milliseconds
+	private int[] nameIds = new int[INITIAL_CAPACITY];
+	private int[] elapsed = new int[INITIAL_CAPACITY];
+
+	// Per test status bits.  A test that is neither failed nor skipped passed
+	private final BitSet failed = new BitSet();
+	private final BitSet skipped = new BitSet();
+
+	// Number of tests
+	private int size;
+
+	// Positions of the failed tests, in run order
+	private int[] failedPositions = new int[INITIAL_CAPACITY];
+	private int failedCount;
+
+	// The distinct names as UTF-8.  Name id i is nameBytes[nameOffsets[i]] to nameBytes[nameOffsets[i + 1]]
+	private byte[] nameBytes = new byte[INITIAL_CAPACITY * 16];
+	private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+	private int nameCount;
+
+	// Open addressing hash table of name id + 1, 0 for a free slot.  Kept at most half full
+	private int[] nameTable = new int[INITIAL_CAPACITY * 2];
+
+	// Name ids in name order, ignoring the case of ASCII letters.  Null when names were added since sorting
+	private int[] sortedNameIds;
+
+	/**
+	 * Create a store that keeps the configured number of results
+	 */
+	TestResultStore() {
+		this(MAX_RESULTS);
+	}
+
+	/**
+	 * Create a store
+	 * @param maxResults the number of results kept, at least 4
+	 */
+	TestResultStore(int maxResults) {
+		if (maxResults < 4){
+			throw new IllegalArgumentException("A test result store must keep at least 4 results");
+		}
+		this.maxResults = maxResults;
+	}
+
+	/**
+	 * Add the result of a test
+	 * @param name the name of the test
+	 * @param status the status reported by Robot Framework, PASS, FAIL or SKIP
+	 * @param elapsedMillis the time the test took, in milliseconds
+	 */
+	synchronized void add(String name, String status, int elapsedMillis) {
+		if (size == maxResults){
+			compact(maxResults / 4);
+		}
+		if (size == nameIds.length){
+			nameIds = Arrays.copyOf(nameIds, size * 2);
+			elapsed = Arrays.copyOf(elapsed, size * 2);
+		}
+		byte[] bytes = name.getBytes(UTF8);
+		nameIds[size] = intern(bytes, 0, bytes.length);
+		elapsed[size] = elapsedMillis;
+		if (SKIP.equalsIgnoreCase(status)){
+			skipped.set(size);
+		}
+		else if (!PASS.equalsIgnoreCase(status)){
+			failed.set(size);
+			if (failedCount == failedPositions.length){
+				failedPositions = Arrays.copyOf(failedPositions, failedCount * 2);
+			}
+			failedPositions[failedCount++] = size;
+		}
+		size++;
+	}
+
+	/**
+	 * Get the number of tests
+	 * @return the number of results added
+	 */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Get the number of results the store keeps
+	 * @return the maximum number of results
+	 */
+	int getMaxResults() {
+		return maxResults;
+	}
+
+	/**
+	 * Get the number of times results were dropped.  Positions read before the count changed are no longer valid
+	 * @return the compaction count
+	 */
+	synchronized int getCompactionCount() {
+		return compactionCount;
+	}
+
+	/**
+	 * Get the number of results dropped to make room for newer ones
+	 * @return the number of results added but no longer kept
+	 */
+	synchronized long getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Get the number of failed tests
+	 * @return the number of results that neither passed nor were skipped
+	 */
+	synchronized int getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * Get the number of distinct test names
+	 * @return the number of names stored
+	 */
+	synchronized int getNameCount() {
+		return nameCount;
+	}
+
+	/**
+	 * Get the name of a test
+	 * @param position the position of the test in run order
+	 * @return the name
+	 */
+	synchronized String getName(int position) {
+		checkPosition(position);
+		int id = nameIds[position];
+		return new String(nameBytes, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id], UTF8);
+	}
+
+	/**
+	 * Get the status of a test
+	 * @param position the position of the test in run order
+	 * @return PASS, FAIL or SKIP
+	 */
+	synchronized String getStatus(int position) {
+		checkPosition(position);
+		return failed.get(position) ? FAIL : skipped.get(position) ? SKIP : PASS;
+	}
+
+	/**
+	 * Check if a test failed
+	 * @param position the position of the test in run order
+	 * @return true if the test neither passed nor was skipped
+	 */
+	synchronized boolean isFailed(int position) {
+		checkPosition(position);
+		return failed.get(position);
+	}
+
+	/**
+	 * Get the time a test took
+	 * @param position the position of the test in run order
+	 * @return the elapsed time in milliseconds
+	 */
+	synchronized int getElapsedMillis(int position) {
+		checkPosition(position);
+		return elapsed[position];
+	}
+
+	/**
+	 * Select the tests in a range of positions that pass a filter.  Called with the size seen last time
+	 * and the current size, this returns the rows to append to a filtered view
+	 * @param from the first position to look at
+	 * @param to the position after the last one to look at
+	 * @param failedOnly true to select failed tests only
+	 * @param namePrefix the start of the names to select, ignoring the case of ASCII letters.  Null or
+	 * empty to select any name
+	 * @return the positions of the selected tests, in run order
+	 */
+	synchronized int[] select(int from, int to, boolean failedOnly, String namePrefix) {
+		to = Math.min(to, size);
+		BitSet names = (namePrefix == null || namePrefix.isEmpty()) ? null : namesStartingWith(namePrefix.getBytes(UTF8));
+		if (names != null && names.isEmpty()){
+			return new int[0];
+		}
+		int[] selected;
+		int count = 0;
+		if (failedOnly){
+			int first = Arrays.binarySearch(failedPositions, 0, failedCount, from);
+			if (first < 0){
+				first = -first - 1;
+			}
+			int last = Arrays.binarySearch(failedPositions, first, failedCount, to);
+			if (last < 0){
+				last = -last - 1;
+			}
+			selected = new int[last - first];
+			for (int i = first; i < last; i++){
+				int position = failedPositions[i];
+				if (names == null || names.get(nameIds[position])){
+					selected[count++] = position;
+				}
+			}
+		}
+		else{
+			selected = new int[Math.max(to - from, 0)];
+			for (int position = from; position < to; position++){
+				if (names == null || names.get(nameIds[position])){
+					selected[count++] = position;
+				}
+			}
+		}
+		return (count == selected.length) ? selected : Arrays.copyOf(selected, count);
+	}
+
+	/**
+	 * Find the ids of the names that start with a prefix, by binary search in the sorted names
+	 */
+	private BitSet namesStartingWith(byte[] prefix) {
+		if (sortedNameIds == null){
+			sortNames();
+		}
+		// first name not below the prefix
+		int low = 0;
+		int high = nameCount;
+		while (low < high){
+			int middle = (low + high) >>> 1;
+			if (compareStart(sortedNameIds[middle], prefix) < 0){
+				low = middle + 1;
+			}
+			else{
+				high = middle;
+			}
+		}
+		BitSet ids = new BitSet(nameCount);
+		for (int i = low; i < nameCount && compareStart(sortedNameIds[i], prefix) == 0; i++){
+			ids.set(sortedNameIds[i]);
+		}
+		return ids;
+	}
+
+	private void sortNames() {
+		int[] ids = new int[nameCount];
+		for (int i = 0; i < nameCount; i++){
+			ids[i] = i;
+		}
+		sortNameIds(ids, new int[nameCount], 0, nameCount);
+		sortedNameIds = ids;
+	}
+
+	/**
+	 * Merge sort a range of name ids by name, without boxing them
+	 */
+	private void sortNameIds(int[] ids, int[] scratch, int from, int to) {
+		if (to - from < 2){
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		sortNameIds(ids, scratch, from, middle);
+		sortNameIds(ids, scratch, middle, to);
+		if (compareNames(ids[middle - 1], ids[middle]) <= 0){
+			return;
+		}
+		System.arraycopy(ids, from, scratch, from, to - from);
+		int i = from;
+		int j = middle;
+		for (int k = from; k < to; k++){
+			if (j == to || (i < middle && compareNames(scratch[i], scratch[j]) <= 0)){
+				ids[k] = scratch[i++];
+			}
+			else{
+				ids[k] = scratch[j++];
+			}
+		}
+	}
+
+	/**
+	 * Compare two names, ignoring the case of ASCII letters
+	 */
+	private int compareNames(int a, int b) {
+		int i = nameOffsets[a];
+		int endA = nameOffsets[a + 1];
+		int j = nameOffsets[b];
+		int endB = nameOffsets[b + 1];
+		for (; i < endA && j < endB; i++, j++){
+			int c = fold(nameBytes[i]) - fold(nameBytes[j]);
+			if (c != 0){
+				return c;
+			}
+		}
+		return (endA - nameOffsets[a]) - (endB - nameOffsets[b]);
+	}
+
+	/**
+	 * Compare the start of a name with a prefix, ignoring the case of ASCII letters
+	 * @return 0 if the name starts with the prefix, otherwise the order of the name and the prefix
+	 */
+	private int compareStart(int id, byte[] prefix) {
+		int start = nameOffsets[id];
+		int length = nameOffsets[id + 1] - start;
+		for (int i = 0; i < prefix.length; i++){
+			if (i == length){
+				return -1;
+			}
+			int c = fold(nameBytes[start + i]) - fold(prefix[i]);
+			if (c != 0){
+				return c;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Lower case an ASCII letter, and order the bytes of other characters after ASCII
+	 */
+	private static int fold(byte b) {
+		return (b >= 'A' && b <= 'Z') ? b + ('a' - 'A') : b & 0xff;
+	}
+
+	/**
+	 * Drop the oldest results, passed and skipped ones first, and the names only they used
+	 * @param count the number of results to drop
+	 */
+	private void compact(int count) {
+		int passedToDrop = Math.min(count, size - failedCount);
+		int failedToDrop = count - passedToDrop;
+
+		// the kept results move down in place, a result is read before its position is written.  The
+		// names are interned again into new arrays
+		byte[] oldNameBytes = nameBytes;
+		int[] oldNameOffsets = nameOffsets;
+		nameBytes = new byte[oldNameBytes.length];
+		nameOffsets = new int[oldNameOffsets.length];
+		nameTable = new int[nameTable.length];
+		nameCount = 0;
+		sortedNameIds = null;
+
+		int oldSize = size;
+		size = 0;
+		failedCount = 0;
+		for (int position = 0; position < oldSize; position++){
+			boolean isFailed = failed.get(position);
+			boolean isSkipped = skipped.get(position);
+			failed.clear(position);
+			skipped.clear(position);
+			if (isFailed ? failedToDrop-- > 0 : passedToDrop-- > 0){
+				continue;
+			}
+			int id = nameIds[position];
+			nameIds[size] = intern(oldNameBytes, oldNameOffsets[id], oldNameOffsets[id + 1]);
+			elapsed[size] = elapsed[position];
+			if (isFailed){
+				failed.set(size);
+				failedPositions[failedCount++] = size;
+			}
+			else if (isSkipped){
+				skipped.set(size);
+			}
+			size++;
+		}
+		compactionCount++;
+		droppedCount += oldSize - size;
+	}
+
+	/**
+	 * Get the id of a name, storing the name if it is new
+	 * @param name the bytes holding the name as UTF-8
+	 * @param start the first byte of the name
+	 * @param end the byte after the last byte of the name
+	 */
+	private int intern(byte[] name, int start, int end) {
+		int length = end - start;
+		int hash = hash(name, start, end);
+		int mask = nameTable.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask){
+			int id = nameTable[slot] - 1;
+			if (id < 0){
+				break;
+			}
+			if (equalsName(id, name, start, end)){
+				return id;
+			}
+		}
+
+		int id = nameCount;
+		if (nameOffsets[id] + length > nameBytes.length){
+			nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length * 2, nameOffsets[id] + length));
+		}
+		System.arraycopy(name, start, nameBytes, nameOffsets[id], length);
+		if (id + 2 > nameOffsets.length){
+			nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+		}
+		nameOffsets[id + 1] = nameOffsets[id] + length;
+		nameCount++;
+		sortedNameIds = null;
+
+		if (nameCount * 2 > nameTable.length){
+			rehash();
+		}
+		else{
+			insert(nameTable, hash, id);
+		}
+		return id;
+	}
+
+	private void rehash() {
+		int[] table = new int[nameTable.length * 2];
+		for (int id = 0; id < nameCount; id++){
+			insert(table, hash(nameBytes, nameOffsets[id], nameOffsets[id + 1]), id);
+		}
+		nameTable = table;
+	}
+
+	private static void insert(int[] table, int hash, int id) {
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		while (table[slot] != 0){
+			slot = (slot + 1) & mask;
+		}
+		table[slot] = id + 1;
+	}
+
+	private boolean equalsName(int id, byte[] name, int start, int end) {
+		int offset = nameOffsets[id];
+		if (nameOffsets[id + 1] - offset != end - start){
+			return false;
+		}
+		for (int i = start; i < end; i++){
+			if (nameBytes[offset + i - start] != name[i]){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(byte[] bytes, int start, int end) {
+		int h = 1;
+		for (int i = start; i < end; i++){
+			h = 31 * h + bytes[i];
+		}
+		// spread the bits, the table index uses the low ones
+		return h ^ (h >>> 16);
+	}
+
+	private void checkPosition(int position) {
+		if (position < 0 || position >= size){
+			throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+public class AhoCorasickAutomatonTest {
+
+	/**
+	 * Get the lowest id of all literals found in a text
+	 */
+	private static int lowest(AhoCorasickAutomaton automaton, String text) {
+		BitSet found = new BitSet();
+		automaton.findAll(text, found);
+		return found.isEmpty() ? AhoCorasickAutomaton.NO_MATCH : found.nextSetBit(0);
+	}
+
+	@Test
+	public void testNoLiteralFound() {
+		AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("he", "she"), new int[] {0, 1});
+		assertEquals(AhoCorasickAutomaton.NO_MATCH, lowest(automaton, "Log To Console"));
+		assertEquals(AhoCorasickAutomaton.NO_MATCH, lowest(automaton, ""));
+	}
+
+	@Test
+	public void testLowestIdIsReported() {
+		AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(
+				Arrays.asList("she", "he", "hers", "his"), new int[] {3, 1, 0, 2});
+		// "ushers" contains she (3), he (1) and hers (0)
+		assertEquals(0, lowest(automaton, "ushers"));
+		assertEquals(1, lowest(automaton, "ushe"));
+		assertEquals(2, lowest(automaton, "this"));
+	}
+
+	@Test
+	public void testMatchThroughFailureLink() {
+		// "abcd" fails out of the abce branch and must still find "bcd"
+		AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("abce", "bcd"), new int[] {0, 1});
+		assertEquals(1, lowest(automaton, "xabcdx"));
+		assertEquals(0, lowest(automaton, "abce"));
+	}
+
+	@Test
+	public void testSharedPrefixesShareStates() {
+		AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("Open", "Open Connection"), new int[] {0, 1});
+		// root + "Open Connection"
+		assertEquals(16, automaton.getStateCount());
+		assertEquals(0, lowest(automaton, "Open Connection"));
+	}
+
+	@Test
+	public void testFindAllReportsEveryLiteral() {
+		AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(
+				Arrays.asList("she", "he", "hers", "his", "e", "x"), new int[] {3, 1, 0, 2, 4, 5});
+		BitSet found = new BitSet();
+		automaton.findAll("ushers", found);
+		// she, he and e through the dictionary links of the she state
+		assertEquals(new BitSet() {{ set(0); set(1); set(3); set(4); }}, found);
+
+		found.clear();
+		automaton.findAll("Log", found);
+		assertTrue(found.isEmpty());
+	}
+
+	@Test
+	public void testFindAllWithDuplicateLiterals() {
+		AhoCorasickAutomaton automaton = new AhoCorasickAutomaton(Arrays.asList("Log", "Log", "og"), new int[] {0, 1, 2});
+		BitSet found = new BitSet();
+		automaton.findAll("Log Many", found);
+		assertEquals(3, found.cardinality());
+	}
+}
@@ -0,0 +1,75 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class ArgumentConditionTest {
+
+	private static final List<String> ARGS = Arrays.asList("host=db-replica-7", "port=5432", "${timeout}");
+
+	private static ItemAttributes attrs(List<String> args) {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("args", args);
+		return ItemAttributes.of(attrs);
+	}
+
+	@Test
+	public void testAnyArgument() {
+		assertTrue(new ArgumentCondition(ArgumentCondition.ANY, "db-replica-7").matches(ARGS));
+		assertTrue(new ArgumentCondition(ArgumentCondition.ANY, "\\$\\{timeout\\}").matches(ARGS));
+		assertFalse(new ArgumentCondition(ArgumentCondition.ANY, "db-replica-8").matches(ARGS));
+		assertFalse(new ArgumentCondition(ArgumentCondition.ANY, "db").matches(null));
+	}
+
+	@Test
+	public void testArgumentAtPosition() {
+		assertTrue(new ArgumentCondition(2, "port=5432").matches(ARGS));
+		assertFalse(new ArgumentCondition(1, "port=5432").matches(ARGS));
+		assertFalse(new ArgumentCondition(4, "port").matches(ARGS));
+	}
+
+	@Test
+	public void testRegexArguments() {
+		assertTrue(new ArgumentCondition(2, "^port=54\\d\\d$").matches(ARGS));
+		assertFalse(new ArgumentCondition(ArgumentCondition.ANY, "^replica").matches(ARGS));
+		assertTrue(new ArgumentCondition(ArgumentCondition.ANY, "replica-[0-9]+").matches(ARGS));
+	}
+
+	@Test
+	public void testBreakpointWithArguments() {
+		Breakpoint breakpoint = new Breakpoint(1, "Open Connection | args: db-replica-7 | arg2: 5432");
+		assertEquals("Open Connection", breakpoint.getPattern());
+		assertEquals(2, breakpoint.getArgumentConditions().size());
+		assertEquals("args: db-replica-7", breakpoint.getArgumentConditions().get(0).toString());
+		assertEquals("arg2: 5432", breakpoint.getArgumentConditions().get(1).toString());
+
+		// every argument condition must hold, otherwise the hit is not counted
+		assertTrue(breakpoint.registerHit(attrs(ARGS), null));
+		assertFalse(breakpoint.registerHit(attrs(Arrays.asList("host=db-replica-7", "port=1")), null));
+		assertFalse(breakpoint.registerHit(null, null));
+		assertEquals(1, breakpoint.getHitCount());
+
+		assertTrue(new Breakpoint(2, "Open Connection").getArgumentConditions().isEmpty());
+	}
+
+	@Test
+	public void testInvalidArgumentQualifiersRejected() {
+		String[] invalid = {"Kw | args:", "Kw | arg0: x", "Kw | args: (x", "Kw | arg1: a | arg1: b", "Kw | args: a | args: b"};
+		for (String text : invalid){
+			try {
+				new Breakpoint(1, text);
+				fail("accepted '" + text + "'");
+			}
+			catch (PatternSyntaxException e){
+				// expected
+			}
+		}
+	}
+}
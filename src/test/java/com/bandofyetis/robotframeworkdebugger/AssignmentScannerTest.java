@@ -0,0 +1,54 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AssignmentScannerTest {
+
+	private final AssignmentScanner scanner = new AssignmentScanner();
+
+	private void assertAssignment(String message, String name, String value) {
+		assertTrue(message, scanner.scan(message));
+		assertEquals(name, scanner.name());
+		assertEquals(value, scanner.value());
+	}
+
+	@Test
+	public void testAssignmentForms() {
+		assertAssignment("${count} = 42", "${count}", "42");
+		assertAssignment("@{items} = [ a | b | c ]", "@{items}", "[ a | b | c ]");
+		assertAssignment("&{user} = { name=admin | role=ops }", "&{user}", "{ name=admin | role=ops }");
+		assertAssignment("${test2}=value2", "${test2}", "value2");
+		assertAssignment("${empty} = ", "${empty}", "");
+	}
+
+	@Test
+	public void testValuesContainingEquals() {
+		assertAssignment("${url} = http://host/path?a=1&b=2", "${url}", "http://host/path?a=1&b=2");
+		assertAssignment("${sql} = SELECT * FROM t WHERE id = 5", "${sql}", "SELECT * FROM t WHERE id = 5");
+		assertAssignment("${token} = dGVzdA==", "${token}", "dGVzdA==");
+	}
+
+	@Test
+	public void testNestedAndSpacedNames() {
+		assertAssignment("${row_${i}} = x", "${row_${i}}", "x");
+		assertAssignment("${my var}   =   padded value  \t", "${my var}", "padded value");
+	}
+
+	@Test
+	public void testNotAssignments() {
+		String[] messages = {null, "", "${", "${}", "${} = 1", "Not a var", "$x = 1", "{x} = 1", "%{HOME} = /root",
+				"${unterminated = 1", "${a} is 1", "${a}", "${a}[0] = 1", "Log ${a} = 1"};
+		for (String message : messages){
+			assertFalse(String.valueOf(message), scanner.scan(message));
+		}
+	}
+
+	@Test(expected=IllegalStateException.class)
+	public void testNoPartsAfterRejectedMessage() {
+		scanner.scan("${a} = 1");
+		scanner.scan("Not a var");
+		scanner.name();
+	}
+}
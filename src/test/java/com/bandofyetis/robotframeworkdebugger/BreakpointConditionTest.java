@@ -0,0 +1,129 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BreakpointConditionTest {
+
+	private Map<String, String> values;
+	private BreakpointCondition.Variables variables;
+
+	@Before
+	public void setUp() {
+		values = new HashMap<String, String>();
+		values.put("${retries}", "5");
+		values.put("${status}", "ERROR");
+		values.put("${ratio}", "0.50");
+		values.put("${empty}", "");
+		values.put("${flag}", "False");
+		variables = new BreakpointCondition.Variables() {
+			public String get(String name) {
+				return values.get(name);
+			}
+		};
+	}
+
+	private boolean evaluate(String expression) {
+		return BreakpointCondition.parse(expression, "Kw | if: " + expression).evaluate(variables);
+	}
+
+	@Test
+	public void testNumericComparisons() {
+		assertTrue(evaluate("${retries} > 3"));
+		assertFalse(evaluate("${retries} < 3"));
+		assertTrue(evaluate("${retries} >= 5"));
+		assertTrue(evaluate("${retries} <= 5.0"));
+		assertTrue(evaluate("${retries} == 5.0"));
+		assertTrue(evaluate("${ratio} == 0.5"));
+		assertTrue(evaluate("${retries} != 4"));
+
+		// numbers compare by value, not as text
+		assertTrue(evaluate("${retries} < 10"));
+	}
+
+	@Test
+	public void testStringComparisons() {
+		assertTrue(evaluate("${status} == 'ERROR'"));
+		assertTrue(evaluate("'${status}' == \"ERROR\""));
+		assertFalse(evaluate("${status} == 'error'"));
+		assertTrue(evaluate("${status} != 'PASS'"));
+		assertTrue(evaluate("'${status}: ${retries}' == 'ERROR: 5'"));
+		assertTrue(evaluate("'it\\'s' == \"it's\""));
+	}
+
+	@Test
+	public void testBooleanOperators() {
+		assertTrue(evaluate("${retries} > 3 and ${status} == 'ERROR'"));
+		assertFalse(evaluate("${retries} > 3 and ${status} == 'PASS'"));
+		assertTrue(evaluate("${retries} > 10 or ${status} == 'ERROR'"));
+		assertTrue(evaluate("not ${retries} > 10"));
+		assertTrue(evaluate("NOT (${retries} > 10 OR ${status} == 'PASS')"));
+
+		// and binds tighter than or
+		assertTrue(evaluate("${retries} > 10 and ${status} == 'PASS' or ${retries} == 5"));
+		assertFalse(evaluate("${retries} > 10 and (${status} == 'PASS' or ${retries} == 5)"));
+	}
+
+	@Test
+	public void testTruthOfSingleValues() {
+		assertTrue(evaluate("${status}"));
+		assertFalse(evaluate("${empty}"));
+		assertFalse(evaluate("${flag}"));
+		assertTrue(evaluate("not ${flag}"));
+		assertTrue(evaluate("true"));
+		assertFalse(evaluate("0"));
+	}
+
+	@Test
+	public void testUndefinedVariables() {
+		assertFalse(evaluate("${missing} == 1"));
+		assertFalse(evaluate("${missing} != 1"));
+		assertFalse(evaluate("'${missing}' == ''"));
+		assertFalse(evaluate("${missing}"));
+	}
+
+	@Test
+	public void testInvalidConditionsRejected() {
+		String[] invalid = {"", "${a} >", "${a} > 3 and", "(${a} > 3", "${a} > 3)", "'open", "${a", "status == 'ERROR'",
+				"${a} = 3", "${a} > 3 ${b}"};
+		for (String expression : invalid){
+			try {
+				BreakpointCondition.parse(expression, "Kw | if: " + expression);
+				fail("accepted '" + expression + "'");
+			}
+			catch (PatternSyntaxException e){
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testBreakpointWithCondition() {
+		Breakpoint breakpoint = new Breakpoint(1, "Retry Request | if: ${retries} > 3 | hit: 2");
+		assertEquals("Retry Request", breakpoint.getPattern());
+		assertEquals("${retries} > 3", breakpoint.getCondition().toString());
+		assertNotNull(breakpoint.getHitCondition());
+
+		// only hits for which the condition holds are counted
+		values.put("${retries}", "1");
+		assertFalse(breakpoint.registerHit(null, variables));
+		assertEquals(0, breakpoint.getHitCount());
+		values.put("${retries}", "4");
+		assertFalse(breakpoint.registerHit(null, variables));
+		assertTrue(breakpoint.registerHit(null, variables));
+		assertEquals(2, breakpoint.getHitCount());
+
+		assertNull(new Breakpoint(2, "Retry Request").getCondition());
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testInvalidConditionRejectedByBreakpoint() {
+		new Breakpoint(1, "Retry | if: ${retries} >");
+	}
+}
@@ -0,0 +1,62 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BreakpointDecisionCacheTest {
+
+	private static final Breakpoint[] NONE = new Breakpoint[0];
+	private static final Breakpoint[] LOG = {new Breakpoint(1, "Log")};
+	private static final Breakpoint[] OPEN = {new Breakpoint(2, "Open")};
+	private static final Breakpoint[] CLOSE = {new Breakpoint(3, "Close")};
+
+	// symbols of keyword names, as SymbolTable.NAMES gives them
+	private static final int LOG_SYMBOL = 1;
+	private static final int SLEEP_SYMBOL = 2;
+
+	@Test
+	public void testMissThenHit() {
+		BreakpointDecisionCache cache = new BreakpointDecisionCache();
+		assertNull(cache.lookup(LOG_SYMBOL));
+		cache.store(LOG_SYMBOL, CLOSE, cache.getGeneration());
+		cache.store(SLEEP_SYMBOL, NONE, cache.getGeneration());
+		assertSame(CLOSE, cache.lookup(LOG_SYMBOL));
+		assertSame(NONE, cache.lookup(SLEEP_SYMBOL));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testInvalidate() {
+		BreakpointDecisionCache cache = new BreakpointDecisionCache();
+		cache.store(LOG_SYMBOL, CLOSE, cache.getGeneration());
+		cache.invalidate();
+		assertNull(cache.lookup(LOG_SYMBOL));
+		cache.store(LOG_SYMBOL, LOG, cache.getGeneration());
+		assertSame(LOG, cache.lookup(LOG_SYMBOL));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testDecisionFromOldGenerationIsNotServed() {
+		BreakpointDecisionCache cache = new BreakpointDecisionCache();
+		int generation = cache.getGeneration();
+		// breakpoints change while the decision is being computed
+		cache.invalidate();
+		cache.store(LOG_SYMBOL, CLOSE, generation);
+		assertNull(cache.lookup(LOG_SYMBOL));
+	}
+
+	@Test
+	public void testGrowsWithSymbols() {
+		BreakpointDecisionCache cache = new BreakpointDecisionCache();
+		assertNull(cache.lookup(100000));
+		cache.store(100000, OPEN, cache.getGeneration());
+		cache.store(LOG_SYMBOL, LOG, cache.getGeneration());
+		assertSame(OPEN, cache.lookup(100000));
+		assertSame(LOG, cache.lookup(LOG_SYMBOL));
+		assertNull(cache.lookup(99999));
+		assertEquals(2, cache.size());
+	}
+}
@@ -0,0 +1,57 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BreakpointFileTest {
+
+	@Test
+	public void testReadSkipsCommentsAndBlankLines() throws IOException {
+		String contents = "# nightly breakpoints\n"
+				+ "Open Connection\n"
+				+ "\n"
+				+ "   \n"
+				+ "Close.*\r\n"
+				+ "\\#not a comment\n";
+		List<String> breakpoints = BreakpointFile.read(new StringReader(contents));
+		assertEquals(Arrays.asList("Open Connection", "Close.*", "#not a comment"), breakpoints);
+	}
+
+	@Test
+	public void testWriteEscapesSpecialBreakpoints() throws IOException {
+		List<String> breakpoints = Arrays.asList("Log", "#tag", "\\d+ items", "");
+		StringWriter writer = new StringWriter();
+		BreakpointFile.write(writer, breakpoints);
+		assertTrue(writer.toString().contains("\\#tag"));
+		assertEquals(breakpoints, BreakpointFile.read(new StringReader(writer.toString())));
+	}
+
+	@Test
+	public void testFileRoundTrip() throws IOException {
+		Path dir = Files.createTempDirectory("breakpoints");
+		Path file = dir.resolve("breakpoints.txt");
+		try {
+			List<String> breakpoints = Arrays.asList("Open Conn", "\u00dcn\u00efcode", "Close.*");
+			BreakpointFile.write(file, breakpoints);
+			assertEquals(breakpoints, BreakpointFile.read(file));
+
+			// writing again replaces the file and leaves no temporary files behind
+			BreakpointFile.write(file, Arrays.asList("Log"));
+			assertEquals(Arrays.asList("Log"), BreakpointFile.read(file));
+			assertEquals(1, dir.toFile().list().length);
+		}
+		finally {
+			Files.deleteIfExists(file);
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BreakpointFileWatcherTest {
+
+	private RobotFrameworkDebugger debugger;
+	private Path dir;
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		debugger = new RobotFrameworkDebugger(false);
+		dir = Files.createTempDirectory("breakpoints");
+		file = dir.resolve("breakpoints.txt");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (File child : dir.toFile().listFiles()){
+			Files.delete(child.toPath());
+		}
+		Files.delete(dir);
+	}
+
+	@Test
+	public void testReloadAppliesDifference() throws IOException {
+		BreakpointFileWatcher watcher = new BreakpointFileWatcher(debugger, file);
+		BreakpointFile.write(file, Arrays.asList("Open", "Close"));
+		assertTrue(watcher.reload());
+		assertEquals(Arrays.asList("Close", "Open"), debugger.getBreakpoints());
+		long openId = debugger.getBreakpoint(1).getId();
+
+		// breakpoints added in the gui are not touched by the file
+		debugger.addBreakpoint("Log");
+		BreakpointFile.write(file, Arrays.asList("Open", "Sleep"));
+		assertTrue(watcher.reload());
+		assertEquals(Arrays.asList("Log", "Open", "Sleep"), debugger.getBreakpoints());
+		assertEquals(openId, debugger.getBreakpoint(1).getId());
+
+		// a deleted file removes everything it added
+		Files.delete(file);
+		assertTrue(watcher.reload());
+		assertEquals(Arrays.asList("Log"), debugger.getBreakpoints());
+	}
+
+	@Test
+	public void testInvalidFileIsNotApplied() throws IOException {
+		BreakpointFileWatcher watcher = new BreakpointFileWatcher(debugger, file);
+		BreakpointFile.write(file, Arrays.asList("Open"));
+		assertTrue(watcher.reload());
+
+		BreakpointFile.write(file, Arrays.asList("Close", "(x)\\1"));
+		assertFalse(watcher.reload());
+		assertEquals(Arrays.asList("Open"), debugger.getBreakpoints());
+
+		// once fixed, the difference to the last applied contents is used
+		BreakpointFile.write(file, Arrays.asList("Close"));
+		assertTrue(watcher.reload());
+		assertEquals(Arrays.asList("Close"), debugger.getBreakpoints());
+	}
+
+	@Test
+	public void testWatchedFileChanges() throws Exception {
+		BreakpointFile.write(file, Arrays.asList("Open"));
+		debugger.watchBreakpointFile(file);
+		assertEquals(Arrays.asList("Open"), debugger.getBreakpoints());
+
+		BreakpointFile.write(file, Arrays.asList("Open", "Close"));
+		long deadline = System.currentTimeMillis() + 10000;
+		while (debugger.getBreakpoints().size() != 2 && System.currentTimeMillis() < deadline){
+			Thread.sleep(20);
+		}
+		assertEquals(Arrays.asList("Close", "Open"), debugger.getBreakpoints());
+	}
+
+	@Test
+	public void testImportAndExport() throws Exception {
+		debugger.addBreakpoint("Log");
+		debugger.addBreakpoint("#hash");
+		debugger.exportBreakpoints(file);
+
+		RobotFrameworkDebugger other = new RobotFrameworkDebugger(false);
+		other.addBreakpoint("Sleep");
+		other.importBreakpoints(file);
+		assertEquals(Arrays.asList("#hash", "Log", "Sleep"), other.getBreakpoints());
+	}
+}
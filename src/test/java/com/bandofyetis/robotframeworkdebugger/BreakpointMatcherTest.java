@@ -0,0 +1,178 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class BreakpointMatcherTest {
+
+	/**
+	 * Create breakpoints for a list of texts, in the order given
+	 */
+	static List<Breakpoint> breakpoints(String... texts) {
+		List<Breakpoint> breakpoints = new ArrayList<Breakpoint>();
+		for (String text : texts){
+			breakpoints.add(new Breakpoint(breakpoints.size() + 1, text));
+		}
+		return breakpoints;
+	}
+
+	/**
+	 * Get the index of the first breakpoint that matches a name
+	 * @return the index, or -1 if no breakpoint matches
+	 */
+	static int firstMatch(BreakpointMatcher matcher, String name) {
+		Breakpoint[] matches = matcher.findAllMatches(name);
+		for (int i = 0; matches.length > 0 && i < matcher.size(); i++){
+			if (matcher.getBreakpoint(i) == matches[0]){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Test
+	public void testEmptyMatcher() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints(), null);
+		assertEquals(0, matcher.size());
+		assertEquals(-1, firstMatch(matcher, "Any Keyword"));
+	}
+
+	@Test
+	public void testLiteralMatchesSubstring() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("Open Connection"), null);
+		assertTrue(matcher.isLiteral(0));
+		assertEquals(0, firstMatch(matcher, "${conn} = Open Connection"));
+		assertEquals(0, firstMatch(matcher, "Open Connection"));
+		assertEquals(-1, firstMatch(matcher, "Close Connection"));
+	}
+
+	@Test
+	public void testRegexMatchesUnanchored() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("Open .*ion"), null);
+		assertFalse(matcher.isLiteral(0));
+		assertEquals(0, firstMatch(matcher, "${conn} = Open Connection"));
+		assertEquals(-1, firstMatch(matcher, "Close Connection"));
+		// the same compiled breakpoint is reused between calls
+		assertEquals(0, firstMatch(matcher, "Open Session Now"));
+	}
+
+	@Test
+	public void testFirstMatchingIndexIsReturned() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("Close", "Conn.ct", "Open"), null);
+		assertEquals(1, firstMatch(matcher, "Open Connection"));
+		assertEquals(0, firstMatch(matcher, "Close Connection"));
+		assertEquals(2, firstMatch(matcher, "Open File"));
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testInvalidRegexRejected() {
+		new BreakpointMatcher(breakpoints("Value [unclosed"), null);
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testBacktrackingRegexRejected() {
+		BreakpointMatcher.checkSyntax("(a)\\1");
+	}
+
+	@Test
+	public void testCheckSyntaxAcceptsValidBreakpoints() {
+		BreakpointMatcher.checkSyntax("Open Connection");
+		BreakpointMatcher.checkSyntax("(a+)+b");
+		BreakpointMatcher.checkSyntax("");
+	}
+
+	@Test
+	public void testRebuildKeepsMatches() {
+		BreakpointMatcher first = new BreakpointMatcher(breakpoints("aa", "b.1"), null);
+		BreakpointMatcher second = new BreakpointMatcher(breakpoints("a", "aa", "b.1"), first);
+		assertEquals(3, second.size());
+		assertEquals(0, firstMatch(second, "xaa"));
+		assertEquals(2, firstMatch(second, "bb1"));
+	}
+
+	@Test
+	public void testIsLiteral() {
+		assertTrue(BreakpointMatcher.isLiteral("Open Connection"));
+		assertTrue(BreakpointMatcher.isLiteral(""));
+		assertFalse(BreakpointMatcher.isLiteral("Open.Connection"));
+		assertFalse(BreakpointMatcher.isLiteral("${a}"));
+		assertFalse(BreakpointMatcher.isLiteral("a|b"));
+	}
+
+	@Test
+	public void testLowestIndexAcrossLiteralsAndRegexes() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("Clos.", "Connection", "Open.*", "Open"), null);
+		assertEquals(1, firstMatch(matcher, "Open Connection"));
+		assertEquals(0, firstMatch(matcher, "Close Connection"));
+		assertEquals(2, firstMatch(matcher, "Open File"));
+		assertEquals(0, firstMatch(matcher, "Close File"));
+		assertEquals(-1, firstMatch(matcher, "Log"));
+	}
+
+	@Test
+	public void testRegexesAreMatchedInOnePass() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("\\QOpen(\\E", "x+y", "(?i)^log"), null);
+		assertEquals(0, firstMatch(matcher, "Open(File)"));
+		assertEquals(1, firstMatch(matcher, "xxy"));
+		assertEquals(2, firstMatch(matcher, "LOG Many"));
+		assertEquals(-1, firstMatch(matcher, "BuiltIn.Log"));
+		assertEquals(-1, firstMatch(matcher, "Open File"));
+	}
+
+	@Test(timeout=5000)
+	public void testPathologicalRegexDoesNotStall() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("(a+)+b"), null);
+		StringBuilder name = new StringBuilder("${result} = ");
+		for (int i = 0; i < 5000; i++){
+			name.append('a');
+		}
+		assertEquals(-1, firstMatch(matcher, name.toString()));
+		assertEquals(0, firstMatch(matcher, name.append('b').toString()));
+	}
+
+	@Test
+	public void testEmptyBreakpointMatchesEverything() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("", "Log"), null);
+		assertEquals(0, firstMatch(matcher, "Log"));
+		assertEquals(0, firstMatch(matcher, "Anything"));
+	}
+
+	@Test
+	public void testFindAllMatches() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("Clos.", "Connection", "Open.*", "Open", "pen"), null);
+		Breakpoint[] matches = matcher.findAllMatches("Open Connection");
+		assertEquals(4, matches.length);
+		assertSame(matcher.getBreakpoint(1), matches[0]);
+		assertSame(matcher.getBreakpoint(2), matches[1]);
+		assertSame(matcher.getBreakpoint(3), matches[2]);
+		assertSame(matcher.getBreakpoint(4), matches[3]);
+		assertSame(BreakpointMatcher.NO_MATCHES, matcher.findAllMatches("Log"));
+	}
+
+	@Test
+	public void testFindAllMatchesIncludesEmptyBreakpoints() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("", "Log"), null);
+		assertEquals(2, matcher.findAllMatches("Log Many").length);
+		assertEquals(1, matcher.findAllMatches("Sleep").length);
+	}
+
+	@Test
+	public void testQualifiersAreNotMatched() {
+		BreakpointMatcher matcher = new BreakpointMatcher(breakpoints("Open | hit: 3", "Open | Close"), null);
+		assertTrue(matcher.isLiteral(0));
+		assertEquals(0, firstMatch(matcher, "Open File"));
+		assertEquals(-1, firstMatch(matcher, "hit"));
+		// a regular expression alternative is not a qualifier
+		assertEquals(1, firstMatch(matcher, " Close"));
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testUnknownQualifierRejected() {
+		BreakpointMatcher.checkSyntax("Open | when: later");
+	}
+}
@@ -0,0 +1,163 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class BreakpointRegistryTest {
+
+	@Test
+	public void testAddKeepsDisplayOrder() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		registry.add("cp1");
+		registry.add("Bp1");
+		registry.add("aa");
+		registry.add("bp1");
+		assertEquals(Arrays.asList("aa", "Bp1", "bp1", "cp1"), registry.getTexts());
+		assertEquals(2, registry.indexOf("bp1"));
+		assertEquals(-1, registry.indexOf("dp1"));
+	}
+
+	@Test
+	public void testAddDuplicateReturnsExistingBreakpoint() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		Breakpoint first = registry.add("Log");
+		assertSame(first, registry.add("Log"));
+		assertEquals(1, registry.size());
+	}
+
+	@Test
+	public void testDuplicateTextsAreMerged() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		Breakpoint log = registry.add("Log");
+		List<Breakpoint> added = registry.addAll(Arrays.asList("Close", "Log", "Close"));
+		assertSame(log, added.get(1));
+		assertSame(added.get(0), added.get(2));
+		assertEquals(Arrays.asList("Close", "Log"), registry.getTexts());
+	}
+
+	@Test
+	public void testFailedUpdateChangesNothing() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		Breakpoint log = registry.add("Log");
+		try {
+			registry.update(Arrays.asList("Close", "Open | when: 3", "Archive"), Arrays.asList(log));
+			fail("invalid breakpoint accepted");
+		}
+		catch (PatternSyntaxException e){
+			// expected
+		}
+		assertEquals(Arrays.asList("Log"), registry.getTexts());
+		assertSame(log, registry.getById(log.getId()));
+		assertNull(registry.getById(log.getId() + 1));
+
+		// ids are not used up by the failed update
+		assertEquals(log.getId() + 1, registry.add("Close").getId());
+	}
+
+	@Test
+	public void testIdsAreStable() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		Breakpoint log = registry.add("Log");
+		assertEquals(0, registry.indexOf(log));
+		registry.addAll(Arrays.asList("Close", "Archive"));
+		assertEquals(2, registry.indexOf(log));
+		assertSame(log, registry.getById(log.getId()));
+		assertSame(log, registry.find("Log"));
+
+		assertSame(log, registry.remove(log.getId()));
+		assertNull(registry.getById(log.getId()));
+		assertEquals(-1, registry.indexOf(log));
+		assertNull(registry.remove(log.getId()));
+
+		// the same text added again is a new breakpoint
+		Breakpoint again = registry.add("Log");
+		assertTrue(again.getId() != log.getId());
+		assertEquals(-1, registry.indexOf(log));
+	}
+
+	@Test
+	public void testSnapshotsDoNotChange() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		registry.add("aa");
+		List<String> snapshot = registry.getTexts();
+		registry.add("bb");
+		registry.removeAt(new int[] {0});
+		assertEquals(Arrays.asList("aa"), snapshot);
+		assertEquals(Arrays.asList("bb"), registry.getTexts());
+	}
+
+	@Test
+	public void testBulkAddAndRemove() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		List<String> texts = new ArrayList<String>();
+		for (int i = 9999; i >= 0; i--){
+			texts.add("Keyword " + i);
+		}
+		texts.add("Keyword 5");
+		List<Breakpoint> added = registry.addAll(texts);
+		assertEquals(texts.size(), added.size());
+		assertSame(added.get(texts.size() - 1), registry.find("Keyword 5"));
+		assertEquals(10000, registry.size());
+		assertEquals("Keyword 0", registry.getAt(0).getText());
+		assertEquals("Keyword 9999", registry.getAt(9999).getText());
+
+		// remove every other breakpoint, in no particular order
+		int[] indices = new int[5000];
+		for (int i = 0; i < indices.length; i++){
+			indices[i] = 9998 - 2 * i;
+		}
+		List<Breakpoint> removed = registry.removeAt(indices);
+		assertEquals(5000, removed.size());
+		assertEquals(5000, registry.size());
+		for (Breakpoint breakpoint : removed){
+			assertNull(registry.getById(breakpoint.getId()));
+		}
+		for (int i = 0; i < registry.size(); i++){
+			assertSame(registry.getAt(i), registry.getById(registry.getAt(i).getId()));
+		}
+	}
+
+	@Test
+	public void testRemoveFew() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 100; i++){
+			texts.add("kw" + i);
+		}
+		registry.addAll(texts);
+		String third = registry.getAt(3).getText();
+		String fiftieth = registry.getAt(50).getText();
+		registry.removeAt(new int[] {50, 3});
+		assertEquals(98, registry.size());
+		assertEquals(-1, registry.indexOf(third));
+		assertEquals(-1, registry.indexOf(fiftieth));
+	}
+
+	@Test
+	public void testUpdateAddsAndRemovesTogether() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		Breakpoint open = registry.add("Open");
+		Breakpoint close = registry.add("Close");
+		List<String> before = registry.getTexts();
+
+		List<Breakpoint> added = registry.update(Arrays.asList("Log", "Open"), Arrays.asList(close, open));
+		assertEquals(Arrays.asList("Close", "Open"), before);
+		assertEquals(Arrays.asList("Log", "Open"), registry.getTexts());
+		// text removed and added again keeps its breakpoint
+		assertSame(open, added.get(1));
+		assertNull(registry.getById(close.getId()));
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testRemoveAtOutOfBounds() {
+		BreakpointRegistry registry = new BreakpointRegistry();
+		registry.add("aa");
+		registry.removeAt(new int[] {1});
+	}
+}
@@ -0,0 +1,138 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class BreakpointScopeIndexTest {
+
+	private static List<Breakpoint> breakpoints(String... texts) {
+		List<Breakpoint> list = new ArrayList<Breakpoint>();
+		for (int i = 0; i < texts.length; i++){
+			list.add(new Breakpoint(i, texts[i]));
+		}
+		return list;
+	}
+
+	private static List<String> texts(List<Breakpoint> breakpoints) {
+		List<String> texts = new ArrayList<String>();
+		for (Breakpoint breakpoint : breakpoints){
+			texts.add(breakpoint.getText());
+		}
+		return texts;
+	}
+
+	private static Set<String> tags(String... tags) {
+		return new HashSet<String>(Arrays.asList(tags));
+	}
+
+	@Test
+	public void testParseScopeQualifiers() {
+		Breakpoint breakpoint = new Breakpoint(1, "Open Connection | suite: Top.Database | tag: Smoke Test | lib: DatabaseLibrary");
+		assertEquals("Open Connection", breakpoint.getPattern());
+		BreakpointScope scope = breakpoint.getScope();
+		assertEquals("top.database", scope.getSuite());
+		assertNull(scope.getTest());
+		assertEquals("smoketest", scope.getTag());
+		assertEquals("databaselibrary", scope.getLibrary());
+		assertTrue(scope.isTestScoped());
+		assertFalse(new BreakpointScope(null, null, null, "BuiltIn").isTestScoped());
+		assertNull(new Breakpoint(2, "Log").getScope());
+	}
+
+	@Test
+	public void testInvalidScopeQualifiersRejected() {
+		String[] invalid = {"Kw | suite:", "Kw | tag:  ", "Kw | tag: a | tag: b"};
+		for (String text : invalid){
+			try {
+				new Breakpoint(1, text);
+				fail("accepted '" + text + "'");
+			}
+			catch (PatternSyntaxException e){
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testSelect() {
+		BreakpointScopeIndex index = new BreakpointScopeIndex(breakpoints("Everywhere", "Kw | suite: Database",
+				"Kw | suite: Top", "Kw | test: Failover", "Kw | tag: smoke", "Kw | tag: smoke | suite: Other",
+				"Kw | lib: BuiltIn"));
+		assertTrue(index.hasTestScoped());
+
+		// between tests only suite qualifiers can hold, a suite applies to the suites below it
+		assertEquals(Arrays.asList("Everywhere", "Kw | suite: Database", "Kw | suite: Top", "Kw | lib: BuiltIn"),
+				texts(index.select("database", "top.database", null, null, Collections.<String>emptySet())));
+
+		assertEquals(Arrays.asList("Everywhere", "Kw | suite: Top", "Kw | test: Failover", "Kw | tag: smoke", "Kw | lib: BuiltIn"),
+				texts(index.select("web", "top.web", "failover", "top.web.failover", tags("smoke", "web"))));
+
+		// the test can also be given by its full name
+		assertEquals(Arrays.asList("Everywhere", "Kw | test: Failover", "Kw | tag: smoke", "Kw | tag: smoke | suite: Other", "Kw | lib: BuiltIn"),
+				texts(new BreakpointScopeIndex(breakpoints("Everywhere", "Kw | test: Failover", "Kw | tag: smoke",
+						"Kw | tag: smoke | suite: Other", "Kw | lib: BuiltIn", "Kw | test: Other.Failover Two"))
+						.select("other", "other", "failover", "other.failover", tags("smoke"))));
+	}
+
+	@Test
+	public void testSuitePrefixMustEndAtDot() {
+		BreakpointScopeIndex index = new BreakpointScopeIndex(breakpoints("Kw | suite: Top.Data"));
+		assertTrue(index.select("database", "top.database", null, null, Collections.<String>emptySet()).isEmpty());
+		assertEquals(1, index.select("data", "top.data", null, null, Collections.<String>emptySet()).size());
+	}
+
+	@Test
+	public void testIsSelected() {
+		List<Breakpoint> all = breakpoints("Everywhere", "Kw | test: Failover", "Kw | test: Login");
+		BreakpointScopeIndex index = new BreakpointScopeIndex(all);
+		BitSet selected = new BitSet();
+		index.select("web", "top.web", "login", "top.web.login", Collections.<String>emptySet(), selected);
+		assertTrue(index.isSelected(all.get(0), selected));
+		assertFalse(index.isSelected(all.get(1), selected));
+		assertTrue(index.isSelected(all.get(2), selected));
+
+		// the same bitset is reused for the next test
+		index.select("web", "top.web", "failover", "top.web.failover", Collections.<String>emptySet(), selected);
+		assertTrue(index.isSelected(all.get(1), selected));
+		assertFalse(index.isSelected(all.get(2), selected));
+	}
+
+	@Test
+	public void testSelectionIsNotChangedByLaterSelections() {
+		List<Breakpoint> all = breakpoints("Everywhere", "Kw | test: Failover", "Kw | test: Login");
+		BreakpointScopeIndex index = new BreakpointScopeIndex(all);
+		BreakpointScopeIndex.Selection login = index.selection("web", "top.web", "login", "top.web.login", Collections.<String>emptySet());
+		BreakpointScopeIndex.Selection failover = index.selection("web", "top.web", "failover", "top.web.failover", Collections.<String>emptySet());
+		assertTrue(login.isSelected(all.get(2)));
+		assertFalse(login.isSelected(all.get(1)));
+		assertTrue(failover.isSelected(all.get(1)));
+		assertEquals(Arrays.asList(all.get(0), all.get(2)), login.toList());
+		// breakpoints of another index are not restricted
+		assertTrue(login.isSelected(new Breakpoint(9, "Kw | test: Failover")));
+	}
+
+	@Test
+	public void testNoScopedBreakpoints() {
+		BreakpointScopeIndex index = new BreakpointScopeIndex(breakpoints("A", "B | lib: BuiltIn"));
+		assertFalse(index.hasTestScoped());
+		assertEquals(2, index.select(null, null, null, null, Collections.<String>emptySet()).size());
+	}
+
+	@Test
+	public void testLibraryQualifier() {
+		BreakpointScope scope = new Breakpoint(1, "Log | lib: builtin").getScope();
+		assertTrue(scope.matchesLibrary("BuiltIn"));
+		assertFalse(scope.matchesLibrary("Collections"));
+		assertFalse(scope.matchesLibrary(null));
+	}
+}
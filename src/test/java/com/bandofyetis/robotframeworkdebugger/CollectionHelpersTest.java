@@ -2,6 +2,7 @@ package com.bandofyetis.robotframeworkdebugger;
 
 import static org.junit.Assert.*;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -13,7 +14,9 @@ import org.junit.Test;
 
 public class CollectionHelpersTest {
 	
+	// sortMapByKey is deprecated, its tests stay until it is removed
 	@Test
+	@SuppressWarnings("deprecation")
 	public void testSortMapByKeyNullList(){
 		Map<String,String> map = null;
 		List<Set<Entry<String, Object>>> sortedKeys = CollectionHelpers.sortMapByKey(map);
@@ -21,13 +24,14 @@ public class CollectionHelpersTest {
 	}
 	
 	@Test
+	@SuppressWarnings("deprecation")
 	public void testSortMapByKeyZeroElementList(){
 		Map<String,String> map = new HashMap<String,String>();
 		List<Set<Entry<String, Object>>> sortedKeys = CollectionHelpers.sortMapByKey(map);
 		assertTrue (sortedKeys.size() == 0);
 	}
 	
-	@Test public void testSortMapByKey(){
+	@Test @SuppressWarnings("deprecation") public void testSortMapByKey(){
 		Map<String,Integer> map = new HashMap<String, Integer>();
 		map.put("b", 2);
 		map.put("c", 4);
@@ -39,7 +43,7 @@ public class CollectionHelpersTest {
 		}
 	}
 	
-	@Test public void testSortMapByKeyAlreadySorted(){
+	@Test @SuppressWarnings("deprecation") public void testSortMapByKeyAlreadySorted(){
 		Map<String,Integer> map = new HashMap<String, Integer>();
 		map.put("a", 111);
 		map.put("b", 2);
@@ -51,4 +55,86 @@ public class CollectionHelpersTest {
 			assertTrue(((String)((Map.Entry)sortedKeys.get(i)).getKey()).compareTo ((String)((Map.Entry)sortedKeys.get(i+1)).getKey()) < 0);
 		}
 	}
+
+	@Test
+	public void testSortedMapKeepsOrder(){
+		CollectionHelpers.RankedMap<String, Integer> map = CollectionHelpers.newSortedMap();
+		map.put("c", 3);
+		map.put("a", 1);
+		map.put("b", 2);
+		assertEquals("{a=1, b=2, c=3}", map.toString());
+		assertEquals(Integer.valueOf(2), map.put("b", 20));
+		assertEquals("{a=1, b=20, c=3}", map.toString());
+		assertEquals(Integer.valueOf(1), map.remove("a"));
+		assertNull(map.remove("x"));
+		assertNull(map.remove(42));
+		assertNull(map.get(42));
+		assertFalse(map.containsKey(42));
+		assertEquals("{b=20, c=3}", map.toString());
+	}
+
+	@Test
+	public void testSortedMapRanks(){
+		CollectionHelpers.RankedMap<Integer, String> map = CollectionHelpers.newSortedMap();
+		for (int i = 999; i >= 0; i--){
+			map.put(i * 2, "v" + i);
+		}
+		assertEquals(1000, map.size());
+		assertEquals(Integer.valueOf(500), map.keyAt(250));
+		assertEquals("v250", map.valueAt(250));
+		assertEquals(250, map.indexOf(500));
+		assertEquals(-1, map.indexOf(501));
+	}
+
+	@Test
+	public void testCaseInsensitiveSortedMap(){
+		CollectionHelpers.RankedMap<String, String> map = CollectionHelpers.newCaseInsensitiveSortedMap();
+		map.put("beta", "1");
+		map.put("Alpha", "2");
+		map.put("alpha", "3");
+		map.put("Gamma", "4");
+		// case only breaks ties, so keys that differ in case are kept apart
+		assertEquals("[Alpha, alpha, beta, Gamma]", map.keySet().toString());
+		assertTrue(CollectionHelpers.caseInsensitiveOrder().compare("ALPHA", "beta") < 0);
+	}
+
+	@Test
+	public void testSortedMapSnapshotAndIteratorRemove(){
+		CollectionHelpers.RankedMap<String, Integer> map = CollectionHelpers.newSortedMap();
+		map.put("a", 1);
+		map.put("b", 2);
+		PersistentSortedMap<String, Integer> before = map.snapshot();
+		for (Iterator<String> it = map.keySet().iterator(); it.hasNext(); ){
+			if (it.next().equals("a")){
+				it.remove();
+			}
+		}
+		assertEquals("{b=2}", map.toString());
+		assertEquals(2, before.size());
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertEquals(2, before.size());
+	}
+
+	@Test
+	public void testSortedMapChangeHooks(){
+		final StringBuilder changes = new StringBuilder();
+		CollectionHelpers.RankedMap<String, String> map = new CollectionHelpers.RankedMap<String, String>(CollectionHelpers.<String>naturalOrder()) {
+			@Override
+			protected void entryChanged(String key) {
+				changes.append(key);
+			}
+
+			@Override
+			protected void entriesCleared() {
+				changes.append('!');
+			}
+		};
+		map.put("x", "1");
+		map.put("y", "2");
+		map.remove("x");
+		map.remove("z");
+		map.clear();
+		assertEquals("xyx!", changes.toString());
+	}
 }
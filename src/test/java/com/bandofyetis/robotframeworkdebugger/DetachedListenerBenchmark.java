@@ -0,0 +1,189 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A micro benchmark for the listener calls of RobotFrameworkDebugger.  Not a unit test - run it by hand with
+ *
+ *   java -cp target/classes:target/test-classes:log4j.jar com.bandofyetis.robotframeworkdebugger.DetachedListenerBenchmark
+ *
+ * It replays the startKeyword, endKeyword and logMessage calls of a synthetic suite, with attribute
+ * maps like the ones Robot Framework passes, and prints the average cost of one keyword:
+ *
+ *   no-op     a listener whose methods do nothing, the cost of the replay itself
+ *   detached  running to a breakpoint with no breakpoints set, see RobotFrameworkDebugger.isDetached()
+ *   attached  running to a breakpoint that never matches, so every keyword is matched and its
+ *             attributes and variables are kept
+ *
+ * Detached minus no-op is what the debugger costs a run when it cannot stop: the names, line numbers
+ * and frames of the stack.  It should be a small fraction of attached minus no-op, about a tenth on a
+ * single core.
+ *
+ * @author nspilka
+ *
+ */
+public class DetachedListenerBenchmark {
+
+	private static final int TESTS = 200;
+	private static final int KEYWORDS_PER_TEST = 50;
+	private static final int ROUNDS = 20;
+
+	/**
+	 * The listener calls the replay makes
+	 */
+	private interface Listener {
+		void startSuite(String name, Map<String, Object> attrs);
+		void endSuite(String name, Map<String, Object> attrs);
+		void startTest(String name, Map<String, Object> attrs);
+		void endTest(String name, Map<String, Object> attrs) throws InterruptedException;
+		void startKeyword(String name, Map<String, Object> attrs) throws InterruptedException;
+		void endKeyword(String name, Map<String, Object> attrs);
+		void logMessage(Map<String, Object> msg);
+	}
+
+	/**
+	 * The baseline, a listener that does nothing
+	 */
+	private static class NoOpListener implements Listener {
+		public void startSuite(String name, Map<String, Object> attrs) {}
+		public void endSuite(String name, Map<String, Object> attrs) {}
+		public void startTest(String name, Map<String, Object> attrs) {}
+		public void endTest(String name, Map<String, Object> attrs) {}
+		public void startKeyword(String name, Map<String, Object> attrs) {}
+		public void endKeyword(String name, Map<String, Object> attrs) {}
+		public void logMessage(Map<String, Object> msg) {}
+	}
+
+	/**
+	 * Forwards the calls to a debugger
+	 */
+	private static class DebuggerListener implements Listener {
+		private final RobotFrameworkDebugger debugger;
+		DebuggerListener(RobotFrameworkDebugger debugger) { this.debugger = debugger; }
+		public void startSuite(String name, Map<String, Object> attrs) { debugger.startSuite(name, attrs); }
+		public void endSuite(String name, Map<String, Object> attrs) { debugger.endSuite(name, attrs); }
+		public void startTest(String name, Map<String, Object> attrs) { debugger.startTest(name, attrs); }
+		public void endTest(String name, Map<String, Object> attrs) throws InterruptedException { debugger.endTest(name, attrs); }
+		public void startKeyword(String name, Map<String, Object> attrs) throws InterruptedException { debugger.startKeyword(name, attrs); }
+		public void endKeyword(String name, Map<String, Object> attrs) { debugger.endKeyword(name, attrs); }
+		public void logMessage(Map<String, Object> msg) { debugger.logMessage(msg); }
+	}
+
+	public static void main(String[] args) throws InterruptedException, IOException {
+		Replay replay = new Replay();
+
+		// stopping at the end of a test would put the debuggers back into step into mode
+		RobotFrameworkDebugger detached = new RobotFrameworkDebugger(false);
+		detached.stopAtTestEnd = false;
+		detached.setRunToBreakpoint();
+
+		RobotFrameworkDebugger attached = new RobotFrameworkDebugger(false);
+		attached.stopAtTestEnd = false;
+		attached.addBreakpoint("Never Called Keyword");
+		attached.setRunToBreakpoint();
+
+		// warm up the JIT on all paths before timing any of them
+		replay.measure(new NoOpListener());
+		replay.measure(new DebuggerListener(detached));
+		replay.measure(new DebuggerListener(attached));
+
+		double noOpCost = replay.measure(new NoOpListener());
+		double detachedCost = replay.measure(new DebuggerListener(detached));
+		double attachedCost = replay.measure(new DebuggerListener(attached));
+		System.out.println("no-op ns/keyword   detached ns/keyword   attached ns/keyword");
+		System.out.println(String.format("%16.1f   %19.1f   %19.1f", noOpCost, detachedCost, attachedCost));
+	}
+
+	/**
+	 * A synthetic suite: every test runs keywords that assign a variable and call a library keyword
+	 */
+	private static class Replay {
+		private final Map<String, Object> suiteAttrs = attributes("Suite", "Suite documentation", null, null);
+		private final Map<String, Object> suiteEndAttrs = ended(suiteAttrs);
+		private final List<String> testNames = new ArrayList<String>();
+		private final List<Map<String, Object>> testAttrs = new ArrayList<Map<String, Object>>();
+		private final List<Map<String, Object>> testEndAttrs = new ArrayList<Map<String, Object>>();
+		private final String[] keywordNames = new String[KEYWORDS_PER_TEST];
+		private final List<Map<String, Object>> keywordAttrs = new ArrayList<Map<String, Object>>();
+		private final List<Map<String, Object>> keywordEndAttrs = new ArrayList<Map<String, Object>>();
+		private final Map<String, Object> libraryAttrs = attributes("BuiltIn.Should Be Equal", "Fails if the given objects are unequal.", "BuiltIn", null);
+		private final Map<String, Object> libraryEndAttrs = ended(libraryAttrs);
+		private final List<Map<String, Object>> messages = new ArrayList<Map<String, Object>>();
+
+		Replay() {
+			for (int t = 0; t < TESTS; t++){
+				testNames.add("Test " + t);
+				Map<String, Object> attrs = attributes("Suite.Test " + t, "Test documentation", null, Arrays.asList("smoke", "tag" + t % 5));
+				testAttrs.add(attrs);
+				testEndAttrs.add(ended(attrs));
+			}
+			for (int k = 0; k < KEYWORDS_PER_TEST; k++){
+				keywordNames[k] = "${result" + k + "} = Resource.Compute Value " + k;
+				Map<String, Object> attrs = attributes("Resource.Compute Value " + k, "Computes a value.", "Resource", null);
+				attrs.put(ItemAttributes.ARGS, Arrays.asList("arg" + k, "${value}"));
+				keywordAttrs.add(attrs);
+				keywordEndAttrs.add(ended(attrs));
+				Map<String, Object> msg = new HashMap<String, Object>();
+				msg.put("message", "${result" + k + "} = " + k * 31);
+				msg.put("level", "INFO");
+				messages.add(msg);
+			}
+		}
+
+		/**
+		 * Replay the suite through a listener
+		 * @return nanoseconds per keyword, best of all rounds
+		 */
+		double measure(Listener listener) throws InterruptedException {
+			long best = Long.MAX_VALUE;
+			for (int round = 0; round < ROUNDS; round++){
+				long start = System.nanoTime();
+				run(listener);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			return (double) best / (TESTS * KEYWORDS_PER_TEST * 2);
+		}
+
+		private void run(Listener listener) throws InterruptedException {
+			listener.startSuite("Suite", suiteAttrs);
+			for (int t = 0; t < TESTS; t++){
+				listener.startTest(testNames.get(t), testAttrs.get(t));
+				for (int k = 0; k < KEYWORDS_PER_TEST; k++){
+					listener.startKeyword(keywordNames[k], keywordAttrs.get(k));
+					listener.startKeyword("BuiltIn.Should Be Equal", libraryAttrs);
+					listener.endKeyword("BuiltIn.Should Be Equal", libraryEndAttrs);
+					listener.logMessage(messages.get(k));
+					listener.endKeyword(keywordNames[k], keywordEndAttrs.get(k));
+				}
+				listener.endTest(testNames.get(t), testEndAttrs.get(t));
+			}
+			listener.endSuite("Suite", suiteEndAttrs);
+		}
+
+		private static Map<String, Object> attributes(String longName, String doc, String libName, List<String> tags) {
+			Map<String, Object> attrs = new HashMap<String, Object>();
+			attrs.put(ItemAttributes.LONGNAME, longName);
+			attrs.put(ItemAttributes.DOC, doc);
+			if (libName != null){
+				attrs.put(ItemAttributes.LIBNAME, libName);
+			}
+			if (tags != null){
+				attrs.put(ItemAttributes.TAGS, tags);
+			}
+			attrs.put(ItemAttributes.ARGS, new ArrayList<String>());
+			return attrs;
+		}
+
+		private static Map<String, Object> ended(Map<String, Object> attrs) {
+			Map<String, Object> end = new HashMap<String, Object>(attrs);
+			end.put(ItemAttributes.STATUS, "PASS");
+			end.put(ItemAttributes.ELAPSED_TIME, 3);
+			return end;
+		}
+	}
+}
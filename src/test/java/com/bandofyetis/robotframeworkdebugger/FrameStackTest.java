@@ -0,0 +1,241 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.EmptyStackException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.bandofyetis.robotframeworkdebugger.RobotFrameworkDebugContext.ContextType;
+
+public class FrameStackTest {
+
+	@Test
+	public void testPushPopPeek() {
+		FrameStack stack = new FrameStack();
+		assertTrue(stack.isEmpty());
+		RobotFrameworkDebugContext suite = stack.pushFrame(ContextType.TEST_SUITE);
+		RobotFrameworkDebugContext test = stack.pushFrame(ContextType.TEST_CASE);
+		assertEquals(2, stack.size());
+		assertSame(test, stack.peek());
+		assertSame(suite, stack.frameAt(0));
+		assertSame(test, stack.frameAt(1));
+		assertEquals(ContextType.TEST_CASE, test.getContextType());
+		assertSame(test, stack.pop());
+		assertSame(suite, stack.peek());
+	}
+
+	@Test
+	public void testPoppedFramesAreReused() {
+		FrameStack stack = new FrameStack();
+		stack.pushFrame(ContextType.TEST_SUITE);
+		RobotFrameworkDebugContext first = stack.pushFrame(ContextType.KEYWORD);
+		first.setItemName("Log");
+		first.updateVariable("${a}", "1");
+		stack.pop();
+
+		RobotFrameworkDebugContext second = stack.pushFrame(ContextType.TEST_CASE);
+		assertSame(first, second);
+		assertEquals("", second.getItemName());
+		assertEquals(ContextType.TEST_CASE, second.getContextType());
+		assertFalse(second.hasVariables());
+		assertEquals(2, stack.getAllocated());
+		assertEquals(3, stack.getPushed());
+	}
+
+	@Test
+	public void testPushedFrameReplacesKeptFrame() {
+		FrameStack stack = new FrameStack();
+		stack.pushFrame(ContextType.KEYWORD);
+		stack.pop();
+		RobotFrameworkDebugContext own = new RobotFrameworkDebugContext();
+		stack.push(own);
+		assertSame(own, stack.pop());
+		assertSame(own, stack.pushFrame(ContextType.KEYWORD));
+	}
+
+	@Test
+	public void testGrows() {
+		FrameStack stack = new FrameStack();
+		for (int i = 0; i < 1000; i++){
+			stack.pushFrame(ContextType.KEYWORD).setItemName("kw" + i);
+		}
+		assertEquals(1000, stack.size());
+		assertEquals("kw0", stack.frameAt(0).getItemName());
+		assertEquals("kw999", stack.peek().getItemName());
+	}
+
+	@Test
+	public void testSnapshotIsIndependent() {
+		FrameStack stack = new FrameStack();
+		stack.pushFrame(ContextType.TEST_SUITE).setItemName("Suite");
+		RobotFrameworkDebugContext keyword = stack.pushFrame(ContextType.KEYWORD);
+		keyword.setItemName("Log");
+		keyword.updateVariable("${a}", "1");
+
+		StackSnapshot snapshot = stack.publish();
+		keyword.updateVariable("${a}", "2");
+		stack.pop();
+		stack.pushFrame(ContextType.KEYWORD).setItemName("Other");
+
+		List<FrameSnapshot> frames = snapshot.frames();
+		assertEquals(2, snapshot.size());
+		assertEquals("Suite", frames.get(0).getItemName());
+		assertEquals("Log", frames.get(1).getItemName());
+		assertEquals("1", frames.get(1).getVariables().get("${a}"));
+		assertEquals(ContextType.KEYWORD, snapshot.top().getContextType());
+	}
+
+	@Test
+	public void testPublishCopiesOnlyChangedFrames() {
+		FrameStack stack = new FrameStack();
+		stack.pushFrame(ContextType.TEST_SUITE).setItemName("Suite");
+		stack.pushFrame(ContextType.TEST_CASE).setItemName("Test");
+		RobotFrameworkDebugContext keyword = stack.pushFrame(ContextType.KEYWORD);
+		StackSnapshot first = stack.publish();
+
+		// nothing changed: the same frames are shared
+		StackSnapshot second = stack.publish();
+		assertSame(first.top(), second.top());
+
+		// a step changes the top frame only
+		keyword.setItemName("Log");
+		keyword.incrementLineNumber();
+		stack.pushFrame(ContextType.KEYWORD);
+		StackSnapshot third = stack.publish();
+		assertEquals(4, third.size());
+		assertSame(first.top().getParent(), third.frames().get(1));
+		assertNotSame(first.top(), third.frames().get(2));
+		assertEquals("Log", third.frames().get(2).getItemName());
+		assertEquals("", first.top().getItemName());
+
+		// a change lower down copies everything above it
+		stack.frameAt(1).updateVariable("${a}", "1");
+		StackSnapshot fourth = stack.publish();
+		assertSame(third.frames().get(0), fourth.frames().get(0));
+		assertNotSame(third.frames().get(1), fourth.frames().get(1));
+		assertEquals("1", fourth.frames().get(1).getVariables().get("${a}"));
+		assertNull(third.frames().get(1).getVariables().get("${a}"));
+
+		// popping and pushing a reused frame is seen as a change
+		stack.pop();
+		stack.pop();
+		stack.pushFrame(ContextType.KEYWORD).setItemName("Again");
+		StackSnapshot fifth = stack.publish();
+		assertEquals(3, fifth.size());
+		assertEquals("Again", fifth.top().getItemName());
+		assertSame(fourth.frames().get(1), fifth.top().getParent());
+	}
+
+	@Test
+	public void testVisibleVariables() {
+		FrameStack stack = new FrameStack();
+		RobotFrameworkDebugContext suite = stack.pushFrame(ContextType.TEST_SUITE);
+		suite.updateVariable("${host}", "db1");
+		suite.updateVariable("${port}", "5432");
+		RobotFrameworkDebugContext test = stack.pushFrame(ContextType.TEST_CASE);
+		test.updateVariable("${host}", "db2");
+		test.updateVariable("${user}", "admin");
+		stack.pushFrame(ContextType.KEYWORD);
+		StackSnapshot first = stack.publish();
+
+		// the closest frame shadows variables of the same name, in name order
+		PersistentSortedMap<String, String> visible = first.top().getVisibleVariables();
+		assertEquals("[${host}, ${port}, ${user}]", visible.keys().toString());
+		assertEquals("[db2, 5432, admin]", visible.values().toString());
+		assertEquals("[${host}, ${port}]", first.frames().get(0).getVisibleVariables().keys().toString());
+
+		// a frame without variables shares the visible variables of its parent
+		assertSame(first.frames().get(1).getVisibleVariables(), visible);
+
+		// changing one variable updates the previous visible variables
+		test.updateVariable("${user}", "guest");
+		StackSnapshot second = stack.publish();
+		assertEquals("[db2, 5432, guest]", second.top().getVisibleVariables().values().toString());
+		assertEquals("admin", first.top().getVisibleVariables().get("${user}"));
+
+		// removing a shadowing variable shows the inherited value again
+		test.getVariables().remove("${host}");
+		test.getVariables().remove("${user}");
+		StackSnapshot third = stack.publish();
+		assertEquals("[${host}, ${port}]", third.top().getVisibleVariables().keys().toString());
+		assertEquals("db1", third.top().getVisibleVariables().get("${host}"));
+
+		// a change lower down is seen by the frames above
+		suite.updateVariable("${port}", "6543");
+		suite.updateVariable("${debug}", "True");
+		StackSnapshot fourth = stack.publish();
+		assertEquals("[${debug}, ${host}, ${port}]", fourth.top().getVisibleVariables().keys().toString());
+		assertEquals("6543", fourth.top().getVisibleVariables().get("${port}"));
+
+		// a cleared frame starts over
+		suite.clearVariables();
+		assertTrue(stack.publish().top().getVisibleVariables().isEmpty());
+		assertTrue(fourth.top().getVisibleVariables().isValid());
+	}
+
+	@Test
+	public void testFullVariable() {
+		FrameStack stack = new FrameStack();
+		char[] chars = new char[OffHeapValue.DEFAULT_THRESHOLD + 1];
+		Arrays.fill(chars, 'x');
+		String large = new String(chars);
+		RobotFrameworkDebugContext suite = stack.pushFrame(ContextType.TEST_SUITE);
+		suite.updateVariable("${body}", large);
+		suite.updateVariable("${host}", "db1");
+		RobotFrameworkDebugContext test = stack.pushFrame(ContextType.TEST_CASE);
+		test.updateVariable("${host}", "db2");
+		FrameSnapshot top = stack.publish().top();
+
+		// the visible variables hold the preview, the full value is read back from the frame defining it
+		assertEquals(OffHeapValue.preview(large), top.getVisibleVariables().get("${body}"));
+		assertEquals(large, top.getFullVariable("${body}"));
+		assertEquals("db2", top.getFullVariable("${host}"));
+		assertNull(top.getFullVariable("${missing}"));
+
+		// a small value in a frame above shadows the large one
+		test.updateVariable("${body}", "{}");
+		assertEquals("{}", stack.publish().top().getFullVariable("${body}"));
+		assertEquals(large, top.getFullVariable("${body}"));
+	}
+
+	@Test
+	public void testVisibleVariablesOfReusedFrame() {
+		FrameStack stack = new FrameStack();
+		stack.pushFrame(ContextType.TEST_SUITE).updateVariable("${a}", "1");
+		stack.pushFrame(ContextType.KEYWORD).updateVariable("${b}", "2");
+		stack.publish();
+		stack.pop();
+		stack.pushFrame(ContextType.KEYWORD).updateVariable("${c}", "3");
+		assertEquals("[${a}, ${c}]", stack.publish().top().getVisibleVariables().keys().toString());
+
+		RobotFrameworkDebugContext own = new RobotFrameworkDebugContext();
+		own.updateVariable("${d}", "4");
+		stack.pop();
+		stack.push(own);
+		assertEquals("[${a}, ${d}]", stack.publish().top().getVisibleVariables().keys().toString());
+	}
+
+	@Test
+	public void testPublishEmpty() {
+		FrameStack stack = new FrameStack();
+		assertEquals(0, stack.publish().size());
+		assertNull(stack.publish().top());
+		assertTrue(stack.publish().frames().isEmpty());
+	}
+
+	@Test(expected=EmptyStackException.class)
+	public void testPopEmpty() {
+		new FrameStack().pop();
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testFrameAtAboveTop() {
+		FrameStack stack = new FrameStack();
+		stack.pushFrame(ContextType.KEYWORD);
+		stack.pop();
+		stack.frameAt(0);
+	}
+}
@@ -0,0 +1,75 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class HitConditionTest {
+
+	@Test
+	public void testOnNthHit() {
+		HitCondition condition = HitCondition.parse("3", "Log | hit: 3");
+		assertEquals(HitCondition.Kind.ON, condition.getKind());
+		assertFalse(condition.isMet(2));
+		assertTrue(condition.isMet(3));
+		assertFalse(condition.isMet(6));
+	}
+
+	@Test
+	public void testEveryNthHit() {
+		HitCondition condition = HitCondition.parse(" every  10 ", "Log | hit: every 10");
+		assertEquals(HitCondition.Kind.EVERY, condition.getKind());
+		assertFalse(condition.isMet(5));
+		assertTrue(condition.isMet(10));
+		assertTrue(condition.isMet(20));
+		assertEquals("every 10", condition.toString());
+	}
+
+	@Test
+	public void testAfterN() {
+		HitCondition condition = HitCondition.parse("AFTER 2", "Log | hit: after 2");
+		assertEquals(HitCondition.Kind.AFTER, condition.getKind());
+		assertFalse(condition.isMet(2));
+		assertTrue(condition.isMet(3));
+		assertTrue(HitCondition.parse("after 0", "").isMet(1));
+	}
+
+	@Test
+	public void testInvalidConditionsRejected() {
+		String[] invalid = {"", "0", "-1", "every 0", "ten", "every", "before 3", "1 2 3"};
+		for (String value : invalid){
+			try {
+				HitCondition.parse(value, "Log | hit: " + value);
+				fail("accepted '" + value + "'");
+			}
+			catch (PatternSyntaxException e){
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testBreakpointTextWithHitCondition() {
+		Breakpoint breakpoint = new Breakpoint(1, "Open Connection | hit: every 2");
+		assertEquals("Open Connection", breakpoint.getPattern());
+		assertEquals(HitCondition.Kind.EVERY, breakpoint.getHitCondition().getKind());
+		assertFalse(breakpoint.registerHit(null, null));
+		assertTrue(breakpoint.registerHit(null, null));
+		assertEquals(2, breakpoint.getHitCount());
+		breakpoint.resetHitCount();
+		assertEquals(0, breakpoint.getHitCount());
+
+		// a regular expression alternative is not mistaken for a qualifier
+		Breakpoint alternative = new Breakpoint(2, "Open | Close");
+		assertEquals("Open | Close", alternative.getPattern());
+		assertNull(alternative.getHitCondition());
+		assertTrue(alternative.registerHit(null, null));
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testRepeatedQualifierRejected() {
+		new Breakpoint(1, "Log | hit: 2 | hit: 3");
+	}
+}
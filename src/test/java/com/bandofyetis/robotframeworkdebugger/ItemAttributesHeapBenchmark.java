@@ -0,0 +1,85 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the heap a frame keeps for the attributes of its keyword.  Not a unit test - run it by hand with
+ *
+ *   java -cp target/classes:target/test-classes com.bandofyetis.robotframeworkdebugger.ItemAttributesHeapBenchmark
+ *
+ * It keeps FRAMES attribute maps like the ones Robot Framework passes to startKeyword, then the
+ * ItemAttributes copied out of FRAMES more of them, and prints the heap used per frame after a full
+ * collection:
+ *
+ *   map     keeping the attribute map, as the frames did before ItemAttributes
+ *   struct  keeping ItemAttributes.of() of the map
+ *
+ * Every map is built from fresh strings, as the listener receives them.  The documentation and library
+ * name repeat and are shared through SymbolTable.NAMES; the arguments are kept per frame.  struct
+ * should be a small fraction of map, about an eighth on a 64 bit JVM with compressed pointers.
+ *
+ * @author nspilka
+ *
+ */
+public class ItemAttributesHeapBenchmark {
+
+	private static final int FRAMES = 200000;
+
+	public static void main(String[] args) {
+		long base = used();
+		List<Object> maps = new ArrayList<Object>(FRAMES);
+		for (int i = 0; i < FRAMES; i++){
+			maps.add(attributes(i));
+		}
+		double mapCost = (double) (used() - base) / FRAMES;
+		// keep the maps reachable until they were measured
+		int kept = maps.size();
+		maps = null;
+
+		base = used();
+		List<Object> structs = new ArrayList<Object>(FRAMES);
+		for (int i = 0; i < FRAMES; i++){
+			structs.add(ItemAttributes.of(attributes(i)));
+		}
+		double structCost = (double) (used() - base) / FRAMES;
+
+		System.out.println("map B/frame   struct B/frame");
+		System.out.println(String.format("%11.0f   %14.0f", mapCost, structCost));
+		System.out.println((kept + structs.size()) + " frames kept");
+	}
+
+	/**
+	 * Build the attributes of a library keyword call, with new strings as a Jython dict would give them
+	 */
+	private static Map<String, Object> attributes(int i) {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put(new String("type"), new String("Keyword"));
+		attrs.put(new String("kwname"), new String("Connect To Database"));
+		attrs.put(new String(ItemAttributes.LIBNAME), new String("DatabaseLibrary"));
+		attrs.put(new String(ItemAttributes.DOC), new String("Connects to the database with the given host and port. The connection is kept until the suite ends."));
+		attrs.put(new String(ItemAttributes.ARGS), new ArrayList<String>(Arrays.asList("host=db" + (i % 10), new String("port=5432"))));
+		attrs.put(new String("assign"), new ArrayList<String>());
+		attrs.put(new String(ItemAttributes.TAGS), new ArrayList<String>());
+		attrs.put(new String("timeout"), new String(""));
+		attrs.put(new String("source"), new String("/home/robot/tests/resources/database.robot"));
+		attrs.put(new String("lineno"), Integer.valueOf(42));
+		attrs.put(new String("starttime"), "20240101 12:00:00." + (i % 1000));
+		attrs.put(new String("originalname"), new String("Connect To Database"));
+		return attrs;
+	}
+
+	/**
+	 * Get the heap in use after collecting what can be collected
+	 */
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++){
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
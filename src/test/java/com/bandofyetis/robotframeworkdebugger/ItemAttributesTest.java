@@ -0,0 +1,89 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ItemAttributesTest {
+
+	private static Map<String, Object> keywordAttrs() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("args", Arrays.asList("host", Integer.valueOf(5432)));
+		attrs.put("doc", new String("Connects to the database"));
+		attrs.put("libname", new String("DatabaseLibrary"));
+		attrs.put("kwname", "Connect");
+		attrs.put("assign", Arrays.asList("${connection}"));
+		return attrs;
+	}
+
+	@Test
+	public void testKeywordAttributes() {
+		ItemAttributes attrs = ItemAttributes.of(keywordAttrs());
+		assertEquals(Arrays.asList("host", "5432"), attrs.getArgs());
+		assertEquals("Connects to the database", attrs.getDoc());
+		assertEquals("DatabaseLibrary", attrs.getLibName());
+		assertNull(attrs.getLongName());
+		assertNull(attrs.getStatus());
+		assertEquals(-1, attrs.getElapsedMillis());
+		assertTrue(attrs.getTags().isEmpty());
+	}
+
+	@Test
+	public void testTestAttributes() {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("longname", "Suite.Login");
+		map.put("tags", Arrays.asList("smoke", "db"));
+		map.put("status", "FAIL");
+		map.put("elapsedtime", Integer.valueOf(1234));
+		ItemAttributes attrs = ItemAttributes.ofSuiteOrTest(map);
+		assertEquals("Suite.Login", attrs.getLongName());
+		assertEquals(Arrays.asList("smoke", "db"), attrs.getTags());
+		assertEquals("FAIL", attrs.getStatus());
+		assertEquals(1234, attrs.getElapsedMillis());
+		assertTrue(attrs.getArgs().isEmpty());
+	}
+
+	@Test
+	public void testNullMap() {
+		assertNull(ItemAttributes.of(null));
+		assertNull(ItemAttributes.ofSuiteOrTest(null));
+		assertNull(ItemAttributes.statusOf(null));
+		assertEquals(-1, ItemAttributes.elapsedMillisOf(null));
+	}
+
+	@Test
+	public void testSuiteAndTestDocsAreNotInterned() {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("doc", new String("Logs in as a user that only this test has"));
+		ItemAttributes attrs = ItemAttributes.ofSuiteOrTest(map);
+		assertEquals("Logs in as a user that only this test has", attrs.getDoc());
+		assertEquals(-1, SymbolTable.NAMES.lookup("Logs in as a user that only this test has"));
+	}
+
+	@Test
+	public void testStatusAndElapsedReadFromMap() {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("status", "PASS");
+		map.put("elapsedtime", Long.valueOf(42));
+		assertEquals("PASS", ItemAttributes.statusOf(map));
+		assertEquals(42, ItemAttributes.elapsedMillisOf(map));
+		assertEquals(-1, ItemAttributes.elapsedMillisOf(new HashMap<String, Object>()));
+	}
+
+	@Test
+	public void testRepeatedStringsAreShared() {
+		ItemAttributes first = ItemAttributes.of(keywordAttrs());
+		ItemAttributes second = ItemAttributes.of(keywordAttrs());
+		assertSame(first.getDoc(), second.getDoc());
+		assertSame(first.getLibName(), second.getLibName());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testArgsAreReadOnly() {
+		ItemAttributes.of(keywordAttrs()).getArgs().set(0, "other");
+	}
+}
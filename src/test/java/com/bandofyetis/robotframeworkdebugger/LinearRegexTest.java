@@ -0,0 +1,221 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.junit.Test;
+
+public class LinearRegexTest {
+
+	private static final String[] PATTERNS = {
+		"Open", "Open.*ion", "^Open", "ion$", "^$", "a|b|", "(ab)+c", "(?:ab){2,3}", "x{2}", "x{2,}",
+		"[a-c]+d", "[^a-z ]", "[-x]", "\\d+", "\\w+\\s\\w+", "\\bLog\\b", "\\BLog", "(?i)open", "(?i:O)pen",
+		"\\$\\{[a-z]+\\}", "a*?b", "(a|ab)(c|bcd)(d*)", "\\Q${x}\\E", "[\\d.]+", "\\x41", "\\u0042", "(?<kw>Log)",
+		"colou?r", "Log.", "\\.", "[\\]]", "\\D\\W\\S", "(a*)*b", "(x+x+)+y", "ion\\Z", "ion\\z", "^.$", "^..$",
+		"^.*$", "x\\r$", "a.b\\z", "\\0101", "\\0101\\00", "\\011", "\\0400", "[\\0101-\\0132]+d"
+	};
+
+	private static final String[] TEXTS = {
+		"", "Open Connection", "${result} = Open Connection", "Close Session", "ababc", "abababc", "xx", "x",
+		"abcd", "A", "-", "123", "Log To Console", "BuiltIn.Log", "Catalog", "OPEN", "${abc}", "aab", "abcd",
+		"${x}", "1.5", "AB", "color", "colour", "Log", "a.b", "]", "a b", "xxxxxxxxxxxxxxxxxxxxxxxy", "!a",
+		"Open Connection\n", "Open Connection\r\n", "Open Connection\r", "Open Connection\u0085", "Open Connection\u2028",
+		"Open Connection\n\n", "x\r\n", "\n", "\r\n", "a\u0085b", "a\u2028b", "a\u2029b", "a\nb", "a\rb",
+		"ABCd", "A\0", "\t", " 0", "\u00200"
+	};
+
+	@Test
+	public void testAgreesWithJavaRegex() {
+		for (String pattern : PATTERNS){
+			LinearRegex regex = LinearRegex.compile(pattern);
+			Pattern reference = Pattern.compile(pattern);
+			for (String text : TEXTS){
+				assertEquals("/" + pattern + "/ on \"" + text + "\"", reference.matcher(text).find(), regex.find(text));
+			}
+		}
+	}
+
+	@Test
+	public void testLineTerminators() {
+		// $ and \\Z also match before a line terminator that ends the text, \\z only at its very end
+		assertTrue(LinearRegex.compile("ion$").find("Open Connection\n"));
+		assertTrue(LinearRegex.compile("ion\\Z").find("Open Connection\r\n"));
+		assertTrue(LinearRegex.compile("ion$").find("Open Connection\u2029"));
+		assertFalse(LinearRegex.compile("ion\\z").find("Open Connection\n"));
+		assertFalse(LinearRegex.compile("ion$").find("Open Connection\n\n"));
+		// \r\n is one terminator
+		assertFalse(LinearRegex.compile("\\r$").find("x\r\n"));
+		// . matches no line terminator
+		for (String terminator : new String[] {"\n", "\r", "\u0085", "\u2028", "\u2029"}){
+			assertFalse(LinearRegex.compile("a.b").find("a" + terminator + "b"));
+		}
+	}
+
+	@Test
+	public void testCombinedReportsLowestId() {
+		LinearRegex combined = LinearRegex.combine(Arrays.asList(
+				LinearRegex.compile("Con+ect"), LinearRegex.compile("^Open"), LinearRegex.compile("File$")),
+				new int[] {2, 5, 9});
+		assertEquals(2, combined.findLowest("Open Connection", LinearRegex.NO_MATCH));
+		assertEquals(5, combined.findLowest("Open File", LinearRegex.NO_MATCH));
+		assertEquals(9, combined.findLowest("Close File", LinearRegex.NO_MATCH));
+		assertEquals(LinearRegex.NO_MATCH, combined.findLowest("Close", LinearRegex.NO_MATCH));
+		// patterns at or above the limit are ignored
+		assertEquals(LinearRegex.NO_MATCH, combined.findLowest("Close File", 9));
+		assertEquals(5, combined.findLowest("Open File", 9));
+	}
+
+	@Test
+	public void testCombinedFindsAllMatchingPatterns() {
+		List<LinearRegex> regexes = new ArrayList<LinearRegex>();
+		int[] ids = new int[PATTERNS.length];
+		for (int i = 0; i < PATTERNS.length; i++){
+			regexes.add(LinearRegex.compile(PATTERNS[i]));
+			ids[i] = i;
+		}
+		LinearRegex combined = LinearRegex.combine(regexes, ids);
+		for (String text : TEXTS){
+			BitSet expected = new BitSet();
+			for (int i = 0; i < PATTERNS.length; i++){
+				if (Pattern.compile(PATTERNS[i]).matcher(text).find()){
+					expected.set(i);
+				}
+			}
+			BitSet found = new BitSet();
+			combined.findAll(text, found);
+			assertEquals("\"" + text + "\"", expected, found);
+		}
+	}
+
+	@Test
+	public void testCachedStepsAgreeWithJavaRegex() {
+		List<LinearRegex> regexes = new ArrayList<LinearRegex>();
+		int[] ids = new int[PATTERNS.length];
+		for (int i = 0; i < PATTERNS.length; i++){
+			regexes.add(LinearRegex.compile(PATTERNS[i]));
+			ids[i] = i;
+		}
+		LinearRegex cached = LinearRegex.combine(regexes, ids);
+		LinearRegex dropped = LinearRegex.combine(regexes, ids);
+		// a cache this small is dropped on nearly every new transition
+		dropped.setDfaCacheLimit(50);
+		for (int round = 0; round < 3; round++){
+			for (String text : TEXTS){
+				BitSet expected = new BitSet();
+				for (int i = 0; i < PATTERNS.length; i++){
+					if (Pattern.compile(PATTERNS[i]).matcher(text).find()){
+						expected.set(i);
+					}
+				}
+				BitSet found = new BitSet();
+				cached.findAll(text, found);
+				assertEquals("\"" + text + "\" round " + round, expected, found);
+				found.clear();
+				dropped.findAll(text, found);
+				assertEquals("\"" + text + "\" round " + round, expected, found);
+			}
+		}
+		assertTrue(cached.getDfaStateCount() > 1);
+		assertTrue(dropped.getDfaStateCount() < cached.getDfaStateCount());
+	}
+
+	@Test
+	public void testCachedStepsDoNotGrowWithRepeatedTexts() {
+		LinearRegex combined = LinearRegex.combine(Arrays.asList(
+				LinearRegex.compile("Open.*ion"), LinearRegex.compile("\\bLog\\b"), LinearRegex.compile("^\\$\\{")),
+				new int[] {0, 1, 2});
+		BitSet found = new BitSet();
+		combined.findAll("${result} = Open Connection", found);
+		combined.findAll("BuiltIn.Log", found);
+		int states = combined.getDfaStateCount();
+		for (int i = 0; i < 100; i++){
+			combined.findAll("${result} = Open Connection", found);
+			combined.findAll("BuiltIn.Log", found);
+		}
+		assertEquals(states, combined.getDfaStateCount());
+		assertEquals(3, found.cardinality());
+	}
+
+	@Test(timeout=5000)
+	public void testNestedQuantifiersRunInLinearTime() {
+		StringBuilder text = new StringBuilder("${result} = Some Very Long Keyword ");
+		for (int i = 0; i < 20000; i++){
+			text.append('a');
+		}
+		assertFalse(LinearRegex.compile("(a+)+b").find(text));
+		assertFalse(LinearRegex.compile("(a|aa)*c").find(text));
+		assertTrue(LinearRegex.compile("(a+)+$").find(text));
+	}
+
+	@Test
+	public void testBacktrackingFeaturesRejected() {
+		String[] rejected = {"(a)\\1", "\\k<x>", "a(?=b)", "a(?!b)", "(?<=a)b", "(?<!a)b", "(?>ab)", "a*+", "a++", "a?+",
+				"(?s)a", "[a&&[b]]", "\\p{Alpha}"};
+		for (String pattern : rejected){
+			try {
+				LinearRegex.compile(pattern);
+				fail("expected " + pattern + " to be rejected");
+			}
+			catch (PatternSyntaxException e){
+				assertEquals(pattern, e.getPattern());
+			}
+		}
+	}
+
+	@Test
+	public void testInvalidPatternsRejected() {
+		String[] invalid = {"(", ")", "[a", "*a", "a{", "a{3,1}", "[z-a]", "\\", "\\0", "\\08", "[\\0]"};
+		for (String pattern : invalid){
+			try {
+				LinearRegex.compile(pattern);
+				fail("expected " + pattern + " to be rejected");
+			}
+			catch (PatternSyntaxException e){
+				assertNotNull(e.getDescription());
+			}
+		}
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testRepetitionExpansionIsBounded() {
+		LinearRegex.compile("((a{1000}){1000}){1000}");
+	}
+
+	@Test
+	public void testOctalEscapes() {
+		assertTrue(LinearRegex.compile("\\0101").find("A"));
+		// a third digit is only read after a first digit of at most 3
+		assertTrue(LinearRegex.compile("\\0400").find(" 0"));
+		try {
+			LinearRegex.compile("\\1");
+			fail("expected \\1 to be rejected");
+		}
+		catch (PatternSyntaxException e){
+			assertTrue(e.getDescription().startsWith("Back references"));
+		}
+	}
+
+	@Test(expected=PatternSyntaxException.class)
+	public void testCombinedSizeIsBounded() {
+		List<LinearRegex> regexes = new ArrayList<LinearRegex>();
+		LinearRegex large = LinearRegex.compile("a{" + (LinearRegex.MAX_PROGRAM_SIZE / 3) + "}");
+		int[] ids = new int[LinearRegex.MAX_COMBINED_PROGRAM_SIZE / large.getProgramSize() + 1];
+		for (int i = 0; i < ids.length; i++){
+			regexes.add(large);
+			ids[i] = i;
+		}
+		LinearRegex.combine(regexes, ids);
+	}
+
+	@Test
+	public void testProgramSize() {
+		// a, b, MATCH
+		assertEquals(3, LinearRegex.compile("ab").getProgramSize());
+	}
+}
@@ -0,0 +1,112 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class OffHeapValueTest {
+
+	private static String repeat(String s, int times) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < times; i++){
+			builder.append(s);
+		}
+		return builder.toString();
+	}
+
+	@Test
+	public void testIsLarge() {
+		assertFalse(OffHeapValue.isLarge(null));
+		assertFalse(OffHeapValue.isLarge("short"));
+		assertFalse(OffHeapValue.isLarge(repeat("x", OffHeapValue.DEFAULT_THRESHOLD)));
+		assertTrue(OffHeapValue.isLarge(repeat("x", OffHeapValue.DEFAULT_THRESHOLD + 1)));
+	}
+
+	@Test
+	public void testRoundTrip() {
+		String value = repeat("{\"key\": \"value\"}, ", 1000);
+		OffHeapValue stored = OffHeapValue.store(value);
+		assertEquals(value, stored.read());
+		assertEquals(value.length(), stored.length());
+		assertEquals(value.length(), stored.byteSize());
+		// can be read again
+		assertEquals(value, stored.read());
+	}
+
+	@Test
+	public void testRoundTripNonAscii() {
+		String value = repeat("a\u00e9\u20ac\ud83d\ude00", 100);
+		OffHeapValue stored = OffHeapValue.store(value);
+		assertEquals(value, stored.read());
+		assertEquals(100 * (1 + 2 + 3 + 4), stored.byteSize());
+	}
+
+	@Test
+	public void testUnpairedSurrogateIsReplaced() {
+		OffHeapValue stored = OffHeapValue.store("a\ud83db");
+		assertEquals("a?b", stored.read());
+	}
+
+	@Test
+	public void testPreview() {
+		char[] chars = new char[OffHeapValue.PREVIEW_LENGTH * 2];
+		Arrays.fill(chars, 'x');
+		String value = new String(chars);
+		OffHeapValue stored = OffHeapValue.store(value);
+		assertEquals(value.substring(0, OffHeapValue.PREVIEW_LENGTH) + "... (" + value.length() + " characters)", stored.getPreview());
+	}
+
+	@Test
+	public void testPreviewKeepsSurrogatePair() {
+		String value = repeat("x", OffHeapValue.PREVIEW_LENGTH - 1) + "\ud83d\ude00" + repeat("x", 10);
+		String preview = OffHeapValue.preview(value);
+		assertTrue(preview.startsWith(repeat("x", OffHeapValue.PREVIEW_LENGTH - 1) + "..."));
+	}
+
+	@Test
+	public void testMemoryLimit() {
+		OffHeapValue.Memory memory = new OffHeapValue.Memory(25000);
+		OffHeapValue first = memory.store(repeat("x", 10000));
+		assertNotNull(first);
+		assertNotNull(memory.store(repeat("y", 10000)));
+		assertEquals(20000, memory.getUsed());
+		// does not fit next to the others
+		assertNull(memory.store(repeat("z", 10000)));
+		assertEquals(repeat("x", 10000), first.read());
+	}
+
+	@Test
+	public void testNoDirectMemoryLeft() {
+		// as with -XX:MaxDirectMemorySize set below the limit
+		OffHeapValue.Memory memory = new OffHeapValue.Memory(25000) {
+			@Override
+			ByteBuffer allocate(int byteSize) {
+				throw new OutOfMemoryError("Direct buffer memory");
+			}
+		};
+		assertNull(memory.store(repeat("x", 10000)));
+		assertEquals(0, memory.getUsed());
+	}
+
+	@Test
+	public void testCollectedValuesAreReleased() throws InterruptedException {
+		OffHeapValue.Memory memory = new OffHeapValue.Memory(15000);
+		assertNotNull(memory.store(repeat("x", 10000)));
+		for (int i = 0; i < 100 && memory.getUsed() > 0; i++){
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertEquals(0, memory.getUsed());
+		assertNotNull(memory.store(repeat("y", 10000)));
+	}
+
+	@Test
+	public void testDroppedPreview() {
+		String value = repeat("x", OffHeapValue.PREVIEW_LENGTH * 2);
+		assertEquals(repeat("x", OffHeapValue.PREVIEW_LENGTH) + "... (" + value.length() + " characters, too large to keep)",
+				OffHeapValue.droppedPreview(value));
+	}
+}
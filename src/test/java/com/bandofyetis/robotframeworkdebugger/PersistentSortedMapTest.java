@@ -0,0 +1,142 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class PersistentSortedMapTest {
+
+	private static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+		public int compare(Integer a, Integer b) {
+			return a.compareTo(b);
+		}
+	};
+
+	@Test
+	public void testPutGetAndRank() {
+		PersistentSortedMap<Integer, String> map = new PersistentSortedMap<Integer, String>(NATURAL);
+		map = map.put(5, "five").put(1, "one").put(3, "three");
+		assertEquals(3, map.size());
+		assertEquals("three", map.get(3));
+		assertNull(map.get(4));
+		assertEquals(0, map.indexOf(1));
+		assertEquals(2, map.indexOf(5));
+		assertEquals(-1, map.indexOf(2));
+		assertEquals(Integer.valueOf(3), map.keyAt(1));
+		assertEquals("five", map.valueAt(2));
+		assertEquals(Arrays.asList(1, 3, 5), map.keys());
+		assertEquals(Arrays.asList("one", "three", "five"), map.values());
+	}
+
+	@Test
+	public void testOldVersionsAreUnchanged() {
+		PersistentSortedMap<Integer, String> empty = new PersistentSortedMap<Integer, String>(NATURAL);
+		PersistentSortedMap<Integer, String> one = empty.put(1, "one");
+		PersistentSortedMap<Integer, String> two = one.put(2, "two");
+		List<Integer> keys = one.keys();
+		PersistentSortedMap<Integer, String> removed = two.remove(1);
+
+		assertTrue(empty.isEmpty());
+		assertEquals(Arrays.asList(1), keys);
+		assertEquals(2, two.size());
+		assertEquals(Arrays.asList(2), removed.keys());
+		assertSame(removed, removed.remove(7));
+	}
+
+	@Test
+	public void testReplaceValue() {
+		PersistentSortedMap<Integer, String> map = new PersistentSortedMap<Integer, String>(NATURAL);
+		map = map.put(1, "one").put(1, "uno");
+		assertEquals(1, map.size());
+		assertEquals("uno", map.get(1));
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testKeyAtOutOfBounds() {
+		new PersistentSortedMap<Integer, String>(NATURAL).put(1, "one").keyAt(1);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testFromSortedRejectsUnsortedKeys() {
+		PersistentSortedMap.fromSorted(NATURAL, Arrays.asList(2, 1), Arrays.asList("two", "one"));
+	}
+
+	@Test
+	public void testFromSorted() {
+		List<Integer> keys = new ArrayList<Integer>();
+		List<String> values = new ArrayList<String>();
+		for (int i = 0; i < 1000; i++){
+			keys.add(i * 2);
+			values.add("v" + i);
+		}
+		PersistentSortedMap<Integer, String> map = PersistentSortedMap.fromSorted(NATURAL, keys, values);
+		assertTrue(map.isValid());
+		assertEquals(1000, map.size());
+		assertEquals(500, map.indexOf(1000));
+		assertEquals("v500", map.get(1000));
+		assertTrue(map.put(1, "odd").isValid());
+	}
+
+	@Test
+	public void testRandomOperationsAgainstTreeMap() {
+		Random random = new Random(42);
+		TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+		PersistentSortedMap<Integer, String> map = new PersistentSortedMap<Integer, String>(NATURAL);
+		for (int step = 0; step < 20000; step++){
+			int key = random.nextInt(500);
+			if (random.nextInt(3) == 0){
+				expected.remove(key);
+				map = map.remove(key);
+			}
+			else{
+				expected.put(key, "v" + step);
+				map = map.put(key, "v" + step);
+			}
+			if (step % 500 == 0){
+				assertTrue(map.isValid());
+				assertEquals(new ArrayList<Integer>(expected.keySet()), map.keys());
+				assertEquals(new ArrayList<String>(expected.values()), map.values());
+			}
+		}
+		assertTrue(map.isValid());
+		int index = 0;
+		for (Map.Entry<Integer, String> entry : expected.entrySet()){
+			assertEquals(index, map.indexOf(entry.getKey()));
+			assertEquals(entry.getKey(), map.keyAt(index));
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+			index++;
+		}
+	}
+
+	@Test
+	public void testAsMap() {
+		PersistentSortedMap<Integer, String> map = new PersistentSortedMap<Integer, String>(NATURAL).put(3, "c").put(1, "a").put(2, "b");
+		Map<Integer, String> view = map.asMap();
+		assertEquals(3, view.size());
+		assertEquals("b", view.get(2));
+		assertNull(view.get(4));
+		assertNull(view.get("2"));
+		assertTrue(view.containsKey(1));
+		assertFalse(view.containsKey("1"));
+		assertEquals("{1=a, 2=b, 3=c}", view.toString());
+		TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+		expected.put(1, "a");
+		expected.put(2, "b");
+		expected.put(3, "c");
+		assertEquals(expected, view);
+		assertEquals(expected.hashCode(), view.hashCode());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testAsMapIsReadOnly() {
+		new PersistentSortedMap<Integer, String>(NATURAL).put(1, "a").asMap().put(2, "b");
+	}
+}
@@ -0,0 +1,117 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefreshSchedulerTest {
+
+	// The refreshes waiting to run, and the delays they were scheduled with
+	private LinkedList<Runnable> queue;
+	private List<Integer> delays;
+	private List<String> renderedValues;
+	private long now;
+	private RefreshScheduler<String> scheduler;
+
+	@Before
+	public void setUp() {
+		queue = new LinkedList<Runnable>();
+		delays = new ArrayList<Integer>();
+		renderedValues = new ArrayList<String>();
+		now = 10000;
+		scheduler = new RefreshScheduler<String>(10) {
+			protected void schedule(int delayMillis, Runnable refresh) {
+				delays.add(delayMillis);
+				queue.add(refresh);
+			}
+
+			protected void render(String value) {
+				renderedValues.add(value);
+			}
+
+			protected long currentTimeMillis() {
+				return now;
+			}
+		};
+	}
+
+	@Test
+	public void testAtMostOnePendingRefresh() {
+		for (int i = 0; i < 1000; i++){
+			scheduler.submit("snapshot " + i);
+			assertEquals(1, queue.size());
+		}
+		queue.poll().run();
+
+		// only the latest value is rendered
+		assertEquals(1, renderedValues.size());
+		assertEquals("snapshot 999", renderedValues.get(0));
+		assertEquals(1000, scheduler.getSubmitted());
+		assertEquals(999, scheduler.getCoalesced());
+		assertEquals(1, scheduler.getRendered());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testRateIsCapped() {
+		scheduler.submit("a");
+		assertEquals(Integer.valueOf(0), delays.get(0));
+		queue.poll().run();
+
+		// 10 Hz: the next refresh waits for the rest of the 100 ms frame
+		now += 30;
+		scheduler.submit("b");
+		assertEquals(Integer.valueOf(70), delays.get(1));
+		queue.poll().run();
+
+		now += 150;
+		scheduler.submit("c");
+		assertEquals(Integer.valueOf(0), delays.get(2));
+		queue.poll().run();
+		assertEquals("[a, b, c]", renderedValues.toString());
+		assertEquals(0, scheduler.getCoalesced());
+	}
+
+	@Test
+	public void testSubmitWhileRendering() {
+		scheduler = new RefreshScheduler<String>(30) {
+			protected void schedule(int delayMillis, Runnable refresh) {
+				queue.add(refresh);
+			}
+
+			protected void render(String value) {
+				renderedValues.add(value);
+				if (value.equals("a")){
+					// a value submitted during a refresh gets a refresh of its own
+					submit("b");
+				}
+			}
+		};
+		scheduler.submit("a");
+		queue.poll().run();
+		assertEquals(1, queue.size());
+		queue.poll().run();
+		assertEquals("[a, b]", renderedValues.toString());
+		assertEquals(2, scheduler.getRefreshes());
+	}
+
+	@Test
+	public void testSetMaxRate() {
+		scheduler.setMaxRate(1000);
+		scheduler.submit("a");
+		queue.poll().run();
+		now += 1;
+		scheduler.submit("b");
+		assertEquals(Integer.valueOf(0), delays.get(1));
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidRateRejected() {
+		scheduler.setMaxRate(0);
+	}
+}
@@ -2,6 +2,7 @@ package com.bandofyetis.robotframeworkdebugger;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -95,22 +96,22 @@ public class RobotFrameworkDebugContextTest {
 		assertEquals(2,kdc.getLineNumber());
 	}
 	@Test
-	public void testGetAndSetItemAttribs() {
+	public void testGetAndSetItemAttributes() {
 		RobotFrameworkDebugContext kdc = new RobotFrameworkDebugContext();
-		Map<String, Object> attrs = kdc.getItemAttribs();
-		assertNull(attrs);
-		Map<String, Object> attrMapIn = createAttrMap();
-		kdc.setItemAttribs(attrMapIn);
-		Map<String, Object> attrMapOut = kdc.getItemAttribs();
-		assertEquals(value1, (String)attrMapOut.get(name1));
-		assertEquals(value2, (String)attrMapOut.get(name2));
+		assertNull(kdc.getItemAttributes());
+		ItemAttributes attrsIn = createAttributes();
+		kdc.setItemAttributes(attrsIn);
+		ItemAttributes attrsOut = kdc.getItemAttributes();
+		assertSame(attrsIn, attrsOut);
+		assertEquals(value1, attrsOut.getDoc());
+		assertEquals(value2, attrsOut.getLibName());
 	}
 	
-	private Map<String,Object> createAttrMap(){
+	private ItemAttributes createAttributes(){
 		Map<String,Object> returnMap = new HashMap<String,Object>();
-		returnMap.put(name1,value1);
-		returnMap.put(name2, value2);
-		return returnMap;
+		returnMap.put("doc", value1);
+		returnMap.put("libname", value2);
+		return ItemAttributes.of(returnMap);
 	}
 
 
@@ -151,8 +152,77 @@ public class RobotFrameworkDebugContextTest {
 		assertTrue(vars.containsKey(name1));
 		assertTrue(vars.containsKey(name2));
 	}
-}
 
+	@Test
+	public void testReset() {
+		RobotFrameworkDebugContext kdc = new RobotFrameworkDebugContext();
+		kdc.setItemName(name1);
+		kdc.incrementLineNumber();
+		kdc.setItemAttributes(createAttributes());
+		kdc.updateVariable(name1, value1);
+		Map<String,String> vars = kdc.getVariables();
 
+		kdc.reset(ContextType.TEST_CASE);
+		assertEquals("", kdc.getItemName());
+		assertEquals(0, kdc.getLineNumber());
+		assertNull(kdc.getItemAttributes());
+		assertEquals(ContextType.TEST_CASE, kdc.getContextType());
+		assertEquals(0, kdc.getVariables().size());
+
+		// the variable map is kept for reuse
+		kdc.updateVariable(name2, value2);
+		assertSame(vars, kdc.getVariables());
+	}
+
+	@Test
+	public void testVariableMapCreatedLazily() {
+		RobotFrameworkDebugContext kdc = new RobotFrameworkDebugContext();
+		assertFalse(kdc.hasVariables());
+		assertNull(kdc.getVariable(name1));
+		kdc.updateVariable(name1, value1);
+		assertTrue(kdc.hasVariables());
+		assertEquals(value1, kdc.getVariable(name1));
+	}
 
+	@Test
+	public void testVariablesViewWritesThrough() {
+		RobotFrameworkDebugContext kdc = new RobotFrameworkDebugContext();
+		Map<String,String> vars = kdc.getVariables();
+		vars.put(name2, value2);
+		vars.put(name1, value1);
+		assertEquals(value1, kdc.getVariable(name1));
+		assertEquals("[" + name2 + ", " + name1 + "]", vars.keySet().toString());
+		assertEquals(value1, vars.remove(name1));
+		assertNull(kdc.getVariable(name1));
+		vars.clear();
+		assertFalse(kdc.hasVariables());
+	}
 
+	@Test
+	public void testLargeValueIsStoredOffHeap() {
+		RobotFrameworkDebugContext kdc = new RobotFrameworkDebugContext();
+		char[] chars = new char[OffHeapValue.DEFAULT_THRESHOLD + 1];
+		Arrays.fill(chars, 'x');
+		String large = new String(chars);
+		kdc.updateVariable(name1, large);
+		assertEquals(OffHeapValue.preview(large), kdc.getVariable(name1));
+		assertEquals(large, kdc.getFullVariable(name1));
+		assertTrue(kdc.getLargeValueMap().containsKey(name1));
+
+		// a small value replaces the stored one
+		kdc.updateVariable(name1, value1);
+		assertEquals(value1, kdc.getFullVariable(name1));
+		assertTrue(kdc.getLargeValueMap().isEmpty());
+
+		// so does putting through the map view, removing and clearing
+		kdc.getVariables().put(name1, large);
+		assertEquals(large, kdc.getFullVariable(name1));
+		kdc.getVariables().remove(name1);
+		assertNull(kdc.getFullVariable(name1));
+		assertTrue(kdc.getLargeValueMap().isEmpty());
+		kdc.updateVariable(name2, large);
+		kdc.clearVariables();
+		assertNull(kdc.getFullVariable(name2));
+		assertTrue(kdc.getLargeValueMap().isEmpty());
+	}
+}
@@ -4,11 +4,13 @@ import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 import java.util.Vector;
+import java.util.regex.PatternSyntaxException;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.ConsoleAppender;
@@ -82,7 +84,7 @@ public class RobotFrameworkDebuggerTest {
         
 		debugger.startSuite("mySuite", null);
 		
-		Stack<RobotFrameworkDebugContext> ctxtStack = debugger.getContextStack();
+		FrameStack ctxtStack = debugger.getContextStack();
 		assertEquals(2,ctxtStack.size());
 		RobotFrameworkDebugContext kdc = ctxtStack.pop();
 		assertTrue(kdc.getContextType() == ContextType.TEST_CASE);
@@ -118,7 +120,7 @@ public class RobotFrameworkDebuggerTest {
         RobotFrameworkDebugContext tcContext = debugger.getContextStack().pop();
         assertEquals(ContextType.KEYWORD, kwContext.getContextType());
         assertEquals(0, tcContext.getVariables().size());
-        assertNull(tcContext.getItemAttribs());
+        assertNull(tcContext.getItemAttributes());
         assertEquals("test2", tcContext.getItemName());
 	}
 
@@ -159,6 +161,30 @@ public class RobotFrameworkDebuggerTest {
         assertEquals("test1", debugger.getContextStack().peek().getItemName());
         assertEquals(ContextType.TEST_CASE, debugger.getContextStack().peek().getContextType());
 	}
+
+	@Test
+	public void testEndTestStoresResult() throws InterruptedException, IOException {
+		debugger.stopAtTestEnd = false;
+		debugger.getContextStack().clear();
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		attrs.put("status", "FAIL");
+		attrs.put("elapsedtime", 1234);
+
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.TEST_CASE);
+		debugger.getContextStack().push(rootContext);
+		RobotFrameworkDebugContext kwContext = new RobotFrameworkDebugContext();
+		kwContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(kwContext);
+
+		debugger.endTest("Login Fails", attrs);
+		TestResultStore results = debugger.getTestResults();
+		assertEquals(1, results.size());
+		assertEquals("Login Fails", results.getName(0));
+		assertEquals("FAIL", results.getStatus(0));
+		assertEquals(1234, results.getElapsedMillis(0));
+	}
 	
 	@Test
 	public void testEndTestNoStopAtTestEndNotValid() throws InterruptedException, IOException {
@@ -209,7 +235,7 @@ public class RobotFrameworkDebuggerTest {
         assertEquals("test2", debugger.getContextStack().peek().getItemName());
         assertEquals(ContextType.TEST_CASE, debugger.getContextStack().peek().getContextType());
         assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
-        assertNull(debugger.getStepTarget());
+        assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
 	}
 	@Test
 	public void testEndSuite() throws InterruptedException, IOException {		
@@ -269,7 +295,7 @@ public class RobotFrameworkDebuggerTest {
         
         assertEquals(ContextType.KEYWORD, childKW.getContextType());
         assertEquals(ContextType.KEYWORD, rootKW.getContextType());
-        assertNull(rootKW.getItemAttribs());
+        assertNull(rootKW.getItemAttributes());
         assertEquals("rootKW2", rootKW.getItemName());
         assertEquals(1, rootKW.getLineNumber());
         
@@ -345,7 +371,7 @@ public class RobotFrameworkDebuggerTest {
         debugger.getContextStack().push(rootContext);
         
         debugger.setStepOver();
-        assertEquals("rootKeyword",debugger.getStepTarget());
+        assertEquals(1, debugger.getStepDepth());
         
         RobotFrameworkDebugContext kwContext = new RobotFrameworkDebugContext();
         kwContext.setContextType(ContextType.KEYWORD);
@@ -356,10 +382,146 @@ public class RobotFrameworkDebuggerTest {
         assertEquals(1, debugger.getContextStack().size());
         assertEquals("rootKeyword", debugger.getContextStack().peek().getItemName());
         assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
-        assertNull(debugger.getStepTarget());
+        assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
         
 	}
 
+	/**
+	 * Push keyword frames as startKeyword does after the pause: the frame of the keyword, named, and
+	 * an empty frame for its children
+	 */
+	private void pushKeyword(String name){
+		debugger.getContextStack().peek().setItemName(name);
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+	}
+
+	@Test
+	public void testStepOverRecursiveKeyword() throws InterruptedException, IOException {
+		debugger.stopAtTestEnd = false;
+		debugger.getContextStack().clear();
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+
+		// stopped at Retry, which calls itself
+		debugger.getContextStack().peek().setItemName("Retry");
+		debugger.setStepOver();
+		assertEquals(StepMode.STEP_OVER, debugger.getStepMode());
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+		pushKeyword("Retry");
+		pushKeyword("Log");
+
+		// the inner Retry ends first, the step goes on
+		debugger.endKeyword("Log", null);
+		debugger.endKeyword("Retry", null);
+		assertEquals(StepMode.STEP_OVER, debugger.getStepMode());
+
+		// the outer Retry ends the step
+		debugger.endKeyword("Retry", null);
+		assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
+		assertEquals(1, debugger.getContextStack().size());
+	}
+
+	@Test
+	public void testStepOut() throws InterruptedException, IOException {
+		debugger.stopAtTestEnd = false;
+		debugger.getContextStack().clear();
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+		pushKeyword("Outer");
+
+		// stopped at Inner, called by Outer
+		debugger.getContextStack().peek().setItemName("Inner");
+		debugger.setStepOut();
+		assertEquals(StepMode.STEP_OUT, debugger.getStepMode());
+		assertEquals(1, debugger.getStepDepth());
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+
+		// Inner ending is not enough, Outer has to end
+		debugger.endKeyword("Inner", null);
+		assertEquals(StepMode.STEP_OUT, debugger.getStepMode());
+		pushKeyword("Sibling");
+		debugger.endKeyword("Sibling", null);
+		assertEquals(StepMode.STEP_OUT, debugger.getStepMode());
+		debugger.endKeyword("Outer", null);
+		assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
+	}
+
+	@Test
+	public void testStepOutOfTestLevelKeyword() throws InterruptedException, IOException {
+		debugger.stopAtTestEnd = false;
+		debugger.getContextStack().clear();
+		debugger.getContextStack().pushFrame(ContextType.TEST_CASE).setItemName("test1");
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD).setItemName("Login");
+		debugger.setStepOut();
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+		debugger.endKeyword("Login", null);
+		assertEquals(StepMode.STEP_OUT, debugger.getStepMode());
+
+		// stepping out of a keyword of the test runs to the end of the test
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		attrs.put("status", "PASS");
+		debugger.endTest("test1", attrs);
+		assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
+	}
+
+	@Test
+	public void testRunToDepth() throws InterruptedException, IOException {
+		debugger.stopAtTestEnd = false;
+		debugger.getContextStack().clear();
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+		pushKeyword("Level0");
+		pushKeyword("Level1");
+		debugger.getContextStack().peek().setItemName("Level2");
+
+		debugger.setRunToDepth(0);
+		assertEquals(StepMode.RUN_TO_DEPTH, debugger.getStepMode());
+		assertEquals(1, debugger.getStepDepth());
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+		debugger.endKeyword("Level2", null);
+		debugger.endKeyword("Level1", null);
+		assertEquals(StepMode.RUN_TO_DEPTH, debugger.getStepMode());
+		debugger.endKeyword("Level0", null);
+		assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
+	}
+
+	@Test
+	public void testRunToDepthAboveTopStepsOver() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD);
+		pushKeyword("Level0");
+		debugger.getContextStack().peek().setItemName("Level1");
+		debugger.setRunToDepth(5);
+		assertEquals(2, debugger.getStepDepth());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRunToNegativeDepth() throws InterruptedException, IOException {
+		debugger.setRunToDepth(-1);
+	}
+
+	@Test
+	public void testStepOutWithoutCaller() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		debugger.getContextStack().pushFrame(ContextType.KEYWORD).setItemName("Only");
+		debugger.setStepOut();
+		assertEquals(StepMode.STEP_INTO, debugger.getStepMode());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
+	}
+
+	@Test
+	public void testLogMessageKeepsValueWithEquals() throws InterruptedException, IOException {
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		debugger.getContextStack().push(rootContext);
+		debugger.getContextStack().push(new RobotFrameworkDebugContext());
+
+		Map<String,Object> msg =  new HashMap<String,Object>();
+		msg.put("message","${url} = http://host/api?id=7&sort=name");
+		debugger.logMessage(msg);
+		msg.put("message","&{headers} = { Accept=json }");
+		debugger.logMessage(msg);
+		assertEquals("http://host/api?id=7&sort=name", rootContext.getVariable("${url}"));
+		assertEquals("{ Accept=json }", rootContext.getVariable("&{headers}"));
+	}
+
 	@Test
 	public void testLogMessage() throws InterruptedException, IOException {
 		
@@ -413,7 +575,7 @@ public class RobotFrameworkDebuggerTest {
 		// With empty stack should give us STEP_INTO
 		debugger.setStepOver();
 		assertEquals(RobotFrameworkDebugger.StepMode.STEP_INTO, debugger.getStepMode());
-		assertNull(debugger.getStepTarget());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
 		
 		// With stack with unnamed keyword, should give us STEP_INTO
 		RobotFrameworkDebugContext childContext = new RobotFrameworkDebugContext();
@@ -422,7 +584,7 @@ public class RobotFrameworkDebuggerTest {
 		
 		debugger.setStepOver();
 		assertEquals(RobotFrameworkDebugger.StepMode.STEP_INTO, debugger.getStepMode());
-		assertNull(debugger.getStepTarget());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
 		
 		// With non-keyword on stack should give us STEP_INTO
 		debugger.getContextStack().clear();
@@ -432,7 +594,7 @@ public class RobotFrameworkDebuggerTest {
 		
 		debugger.setStepOver();
 		assertEquals(RobotFrameworkDebugger.StepMode.STEP_INTO, debugger.getStepMode());
-		assertNull(debugger.getStepTarget());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
 		
 		
 		// with keyord on stack with name, should give us STEP_OVER
@@ -444,7 +606,7 @@ public class RobotFrameworkDebuggerTest {
 		
 		debugger.setStepOver();
 		assertEquals(RobotFrameworkDebugger.StepMode.STEP_OVER, debugger.getStepMode());
-		assertEquals("testKW",debugger.getStepTarget());
+		assertEquals(1, debugger.getStepDepth());
 		
 	}
 	
@@ -453,17 +615,45 @@ public class RobotFrameworkDebuggerTest {
 	public void testSetStepInto() throws InterruptedException, IOException {			
 		debugger.setStepInto();
 		assertEquals(RobotFrameworkDebugger.StepMode.STEP_INTO, debugger.getStepMode());
-		assertNull(debugger.getStepTarget());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
 	}
 
 	@Test
 	public void testSetRunToBreakpoint() throws InterruptedException, IOException {			
 		debugger.setRunToBreakpoint();
 		assertEquals(RobotFrameworkDebugger.StepMode.RUN_TO_BREAKPOINT, debugger.getStepMode());
-		assertNull(debugger.getStepTarget());
+		assertEquals(RobotFrameworkDebugger.NO_STEP_DEPTH, debugger.getStepDepth());
 	}
 
 
+	@Test
+	public void testAddExistingBreakpointIsIgnored() {
+		debugger.addBreakpoint("aa");
+		debugger.addBreakpoints(Arrays.asList("bb", "aa", "bb"));
+		assertEquals(Arrays.asList("aa", "bb"), debugger.getBreakpoints());
+	}
+
+	@Test
+	public void testTooLargeRegexBreakpointsRejected() {
+		String large = "Open.{" + (LinearRegex.MAX_PROGRAM_SIZE / 4) + "}";
+		// the breakpoints only differ in a digit, so they all have the same size
+		int count = LinearRegex.MAX_COMBINED_PROGRAM_SIZE / LinearRegex.compile(large + 0).getProgramSize() + 1;
+		List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < count; i++){
+			texts.add(large + i);
+		}
+		try {
+			debugger.addBreakpoints(texts);
+			fail("expected the breakpoints to be rejected");
+		}
+		catch (PatternSyntaxException e){
+			assertTrue(debugger.getBreakpoints().isEmpty());
+		}
+		// without the last one they fit
+		debugger.addBreakpoints(texts.subList(0, count - 1));
+		assertEquals(count - 1, debugger.getBreakpoints().size());
+	}
+
 	@Test
 	public void testGetBreakpoints() throws InterruptedException, IOException {
 		
@@ -608,6 +798,398 @@ public class RobotFrameworkDebuggerTest {
 		assertEquals(2,debugger.findBreakpoint("ep1"));
 	}
 
+	@Test
+	public void testRemoveBreakpointsWithUnsortedIndices() throws InterruptedException, IOException {
+		debugger.addBreakpoint("aa");
+		debugger.addBreakpoint("bp1");
+		debugger.addBreakpoint("cp1");
+		debugger.addBreakpoint("dp1");
+
+		debugger.removeBreakpoints(new int[] {3, 0});
+
+		assertEquals(2, debugger.getBreakpoints().size());
+		assertEquals(0, debugger.findBreakpoint("bp1"));
+		assertEquals(1, debugger.findBreakpoint("cp1"));
+	}
+
+	@Test
+	public void testCurrentBreakpointFollowsChanges() throws InterruptedException, IOException {
+		debugger.addBreakpoints(Arrays.asList("cp1", "bp1", "bp1"));
+		assertEquals(2, debugger.getBreakpoints().size());
+		debugger.setCurrentBreakpointIndex(1);
+		long id = debugger.getBreakpoint(1).getId();
+
+		debugger.addBreakpoints(Arrays.asList("aa", "ab"));
+		assertEquals(3, debugger.getCurrentBreakpointIndex());
+		assertEquals("cp1", debugger.getCurrentBreakpointAsString());
+		assertEquals(id, debugger.getBreakpoint(3).getId());
+
+		debugger.removeBreakpoints(new int[] {3});
+		assertEquals(-1, debugger.getCurrentBreakpointIndex());
+	}
+
+	@Test
+	public void testAddBreakpointsRejectsAllOnBadPattern() throws InterruptedException, IOException {
+		try {
+			debugger.addBreakpoints(Arrays.asList("aa", "(x)\\1"));
+			fail("expected PatternSyntaxException");
+		}
+		catch (PatternSyntaxException e){
+			// expected
+		}
+		assertEquals(0, debugger.getBreakpoints().size());
+	}
+
+	@Test
+	public void testStartKeywordStopsOnBreakpoint() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+
+		debugger.addBreakpoint("Open Conn");
+		debugger.addBreakpoint("Close.*");
+		debugger.setRunToBreakpoint();
+
+		debugger.startKeyword("Log", null);
+		assertEquals(-1, debugger.getCurrentBreakpointIndex());
+		debugger.endKeyword("Log", null);
+
+		debugger.startKeyword("${conn} = Open Connection", null);
+		assertEquals(1, debugger.getCurrentBreakpointIndex());
+		assertEquals("Open Conn", debugger.getCurrentBreakpointAsString());
+		debugger.endKeyword("${conn} = Open Connection", null);
+
+		debugger.startKeyword("Close Connection", null);
+		assertEquals("Close.*", debugger.getCurrentBreakpointAsString());
+	}
+
+	@Test
+	public void testAddBreakpointRejectsBacktrackingPattern() throws InterruptedException, IOException {
+		debugger.addBreakpoint("aa");
+		try {
+			debugger.addBreakpoint("(x)\\1");
+			fail("back reference should have been rejected");
+		}
+		catch (PatternSyntaxException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("Back references"));
+		}
+		assertEquals(1, debugger.getBreakpoints().size());
+		assertEquals(-1, debugger.findBreakpoint("(x)\\1"));
+	}
+
+	@Test
+	public void testBreakpointDecisionsAreCachedAndInvalidated() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+		debugger.addBreakpoint("Open");
+		debugger.setRunToBreakpoint();
+
+		for (int i = 0; i < 3; i++){
+			debugger.startKeyword("Log", null);
+			debugger.endKeyword("Log", null);
+		}
+		assertEquals(1, debugger.getBreakpointCacheMisses());
+		assertEquals(2, debugger.getBreakpointCacheHits());
+
+		// a new breakpoint must be seen by a name that was cached as not matching
+		debugger.addBreakpoint("Log");
+		debugger.startKeyword("Log", null);
+		assertEquals("Log", debugger.getCurrentBreakpointAsString());
+		assertEquals(2, debugger.getBreakpointCacheMisses());
+	}
+
+	@Test
+	public void testDetachedWhileRunningWithoutBreakpoints() throws InterruptedException, IOException {
+		assertFalse(debugger.isDetached());
+		debugger.setRunToBreakpoint();
+		assertTrue(debugger.isDetached());
+
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		attrs.put("doc", "documentation");
+		debugger.startKeyword("Outer", attrs);
+		debugger.startKeyword("Inner", attrs);
+
+		// the stack can still be rebuilt, but attributes and variables are not captured
+		assertEquals(3, debugger.getContextStack().size());
+		assertEquals("Inner", debugger.getContextStack().frameAt(1).getItemName());
+		assertEquals(1, debugger.getContextStack().frameAt(1).getLineNumber());
+		assertNull(debugger.getContextStack().frameAt(1).getItemAttributes());
+		Map<String,Object> msg = new HashMap<String,Object>();
+		msg.put("message", "${a} = 1");
+		debugger.logMessage(msg);
+		assertEquals(0, debugger.getContextStack().frameAt(1).getVariables().size());
+
+		// adding a breakpoint re-attaches
+		debugger.addBreakpoint("Other");
+		assertFalse(debugger.isDetached());
+		debugger.startKeyword("Third", attrs);
+		assertEquals("documentation", debugger.getContextStack().frameAt(2).getItemAttributes().getDoc());
+		debugger.logMessage(msg);
+		assertEquals("1", debugger.getContextStack().frameAt(2).getVariables().get("${a}"));
+
+		debugger.removeBreakpoints(new int[] {0});
+		assertTrue(debugger.isDetached());
+		debugger.setStepInto();
+		assertFalse(debugger.isDetached());
+	}
+
+	@Test
+	public void testHitCountBreakpoints() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		debugger.addBreakpoint("Log | hit: 3");
+		debugger.addBreakpoint("Lo | hit: every 2");
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		int[] expected = {-1, 0, 1, 0, -1, 0};
+		for (int i = 0; i < expected.length; i++){
+			debugger.startKeyword("Log", attrs);
+			assertEquals("hit " + (i + 1), expected[i], debugger.getCurrentBreakpointIndex());
+			debugger.endKeyword("Log", attrs);
+		}
+		assertEquals(6, debugger.getBreakpoint(0).getHitCount());
+		assertEquals(6, debugger.getBreakpoint(1).getHitCount());
+
+		debugger.resetHitCounts();
+		assertEquals(0, debugger.getBreakpoint(0).getHitCount());
+	}
+
+	@Test
+	public void testConditionOnLargeValue() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		char[] chars = new char[OffHeapValue.DEFAULT_THRESHOLD + 1];
+		Arrays.fill(chars, 'x');
+		String large = new String(chars);
+		debugger.addBreakpoint("Check | if: ${body} == '" + large + "'");
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		Map<String,Object> msg = new HashMap<String,Object>();
+		debugger.startKeyword("${body} = Get Body", attrs);
+		msg.put("message", "${body} = " + large);
+		debugger.logMessage(msg);
+		debugger.endKeyword("${body} = Get Body", attrs);
+
+		// the condition sees the full value, not the preview, every time
+		for (int i = 0; i < 3; i++){
+			debugger.startKeyword("Check", attrs);
+			debugger.endKeyword("Check", attrs);
+		}
+		assertEquals(3, debugger.getBreakpoint(0).getHitCount());
+	}
+
+	@Test
+	public void testConditionalBreakpoints() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		debugger.addBreakpoint("Retry | if: ${retries} > 3");
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		Map<String,Object> msg = new HashMap<String,Object>();
+
+		// undefined variable: the condition does not hold and the hit is not counted
+		debugger.startKeyword("Retry", attrs);
+		debugger.endKeyword("Retry", attrs);
+		assertEquals(0, debugger.getBreakpoint(0).getHitCount());
+
+		debugger.startKeyword("${retries} = Get Count", attrs);
+		msg.put("message", "${retries} = 2");
+		debugger.logMessage(msg);
+		debugger.endKeyword("${retries} = Get Count", attrs);
+		debugger.startKeyword("Retry", attrs);
+		debugger.endKeyword("Retry", attrs);
+		assertEquals(0, debugger.getBreakpoint(0).getHitCount());
+		assertEquals(-1, debugger.getCurrentBreakpointIndex());
+
+		// the innermost value wins
+		debugger.startKeyword("Outer", attrs);
+		debugger.startKeyword("${retries} = Get Count", attrs);
+		msg.put("message", "${retries} = 10");
+		debugger.logMessage(msg);
+		debugger.endKeyword("${retries} = Get Count", attrs);
+		debugger.startKeyword("Retry", attrs);
+		assertEquals(1, debugger.getBreakpoint(0).getHitCount());
+		assertEquals(0, debugger.getCurrentBreakpointIndex());
+	}
+
+	@Test
+	public void testArgumentBreakpoints() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		debugger.addBreakpoint("Open Connection | args: db-replica-7");
+
+		String[] hosts = {"db-primary", "db-replica-6", "db-replica-7", "db-replica-8"};
+		for (String host : hosts){
+			Map<String,Object> attrs = new HashMap<String, Object>();
+			attrs.put("args", Arrays.asList("host=" + host, "port=5432"));
+			debugger.startKeyword("Open Connection", attrs);
+			assertEquals(host, host.equals("db-replica-7") ? 0 : -1, debugger.getCurrentBreakpointIndex());
+			debugger.endKeyword("Open Connection", attrs);
+		}
+		assertEquals(1, debugger.getBreakpoint(0).getHitCount());
+	}
+
+	@Test
+	public void testScopedBreakpoints() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.TEST_SUITE);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		debugger.addBreakpoint("Log");
+		debugger.addBreakpoint("Log | tag: smoke");
+		debugger.addBreakpoint("Log | test: Login");
+		debugger.addBreakpoint("Log | lib: BuiltIn");
+
+		Map<String,Object> suiteAttrs = new HashMap<String, Object>();
+		suiteAttrs.put("longname", "Top.Web");
+		debugger.startSuite("Web", suiteAttrs);
+		assertEquals(2, debugger.getActiveBreakpoints().size());
+
+		Map<String,Object> testAttrs = new HashMap<String, Object>();
+		testAttrs.put("longname", "Top.Web.Login");
+		testAttrs.put("tags", Arrays.asList("Smoke"));
+		testAttrs.put("status", "PASS");
+		debugger.startTest("Login", testAttrs);
+		assertEquals(4, debugger.getActiveBreakpoints().size());
+
+		// the library qualifier is checked per keyword
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		attrs.put("libname", "OperatingSystem");
+		debugger.startKeyword("Log", attrs);
+		debugger.endKeyword("Log", attrs);
+		assertEquals("Log | lib: BuiltIn", debugger.getBreakpoint(1).getText());
+		assertEquals(1, debugger.getBreakpoint(0).getHitCount());
+		assertEquals(0, debugger.getBreakpoint(1).getHitCount());
+		assertEquals(1, debugger.getBreakpoint(2).getHitCount());
+		assertEquals(1, debugger.getBreakpoint(3).getHitCount());
+
+		debugger.endTest("Login", testAttrs);
+		assertEquals(2, debugger.getActiveBreakpoints().size());
+
+		// breakpoints added while a test runs are selected for it too
+		testAttrs.put("longname", "Top.Web.Logout");
+		testAttrs.put("tags", Arrays.asList("regression"));
+		debugger.startTest("Logout", testAttrs);
+		assertEquals(2, debugger.getActiveBreakpoints().size());
+		debugger.addBreakpoint("Log | test: Logout");
+		assertEquals(3, debugger.getActiveBreakpoints().size());
+	}
+
+	@Test
+	public void testScopedBreakpointsKeepCachedDecisions() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.TEST_SUITE);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		debugger.stopAtTestEnd = false;
+		debugger.addBreakpoint("Log | test: Login");
+		debugger.startSuite("Web", null);
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		attrs.put("status", "PASS");
+		for (String test : new String[] {"Login", "Logout", "Login"}){
+			debugger.startTest(test, attrs);
+			debugger.startKeyword("Log", attrs);
+			debugger.endKeyword("Log", attrs);
+			debugger.endTest(test, attrs);
+		}
+		// starting a test selects other breakpoints but keeps the decision for the name
+		assertEquals(1, debugger.getBreakpointCacheMisses());
+		assertEquals(2, debugger.getBreakpointCacheHits());
+		assertEquals(2, debugger.getBreakpoint(0).getHitCount());
+	}
+
+	@Test
+	public void testSuiteScopeWithDotsInName() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.TEST_SUITE);
+		debugger.getContextStack().push(rootContext);
+		debugger.addBreakpoint("Log | suite: Release 1");
+		debugger.addBreakpoint("Log | suite: Release 1.2");
+
+		Map<String,Object> suiteAttrs = new HashMap<String, Object>();
+		suiteAttrs.put("longname", "Top");
+		debugger.startSuite("Top", suiteAttrs);
+		assertEquals(0, debugger.getActiveBreakpoints().size());
+		debugger.getContextStack().peek().setContextType(ContextType.TEST_SUITE);
+		suiteAttrs.put("longname", "Top.Release 1.2");
+		debugger.startSuite("Release 1.2", suiteAttrs);
+		assertEquals(Arrays.asList(debugger.getBreakpoint(1)), debugger.getActiveBreakpoints());
+
+		// back in the parent suite, not in a suite called "Release 1"
+		debugger.endSuite("Release 1.2", suiteAttrs);
+		assertEquals(0, debugger.getActiveBreakpoints().size());
+		debugger.endSuite("Top", suiteAttrs);
+		assertEquals(0, debugger.getActiveBreakpoints().size());
+	}
+
+	@Test
+	public void testContextsReusedAcrossKeywords() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.KEYWORD);
+		debugger.getContextStack().push(rootContext);
+		debugger.setRunToBreakpoint();
+		debugger.addBreakpoint("Never Called");
+
+		Map<String,Object> attrs = new HashMap<String, Object>();
+		Map<String,Object> msg = new HashMap<String,Object>();
+		msg.put("message", "${a} = 1");
+		for (int i = 0; i < 1000; i++){
+			debugger.startKeyword("Outer", attrs);
+			debugger.startKeyword("Inner", attrs);
+			debugger.logMessage(msg);
+			debugger.endKeyword("Inner", attrs);
+			debugger.endKeyword("Outer", attrs);
+		}
+
+		// one context per stack level, no matter how many keywords ran
+		assertEquals(1, debugger.getContextStack().size());
+		assertTrue(debugger.getContextAllocationsPerKeyword() < 0.01);
+	}
+
+	@Test
+	public void testSnapshotPublishedAtPausePoints() throws InterruptedException, IOException {
+		debugger.getContextStack().clear();
+		RobotFrameworkDebugContext rootContext = new RobotFrameworkDebugContext();
+		rootContext.setContextType(ContextType.TEST_SUITE);
+		debugger.getContextStack().push(rootContext);
+
+		debugger.startSuite("Suite", null);
+		StackSnapshot snapshot = debugger.getStackSnapshot();
+		assertEquals(2, snapshot.size());
+		assertEquals("Suite", snapshot.frames().get(0).getItemName());
+
+		// the published snapshot does not follow the live stack
+		debugger.startTest("Test", null);
+		assertEquals(2, snapshot.size());
+		assertEquals(3, debugger.getStackSnapshot().size());
+		assertEquals("Test", debugger.getStackSnapshot().frames().get(1).getItemName());
+	}
+
 	@Test
 	public void testSort() throws InterruptedException, IOException {
 		
@@ -0,0 +1,92 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.bandofyetis.robotframeworkdebugger.RobotFrameworkDebugContext.ContextType;
+
+public class SymbolTableTest {
+
+	@Test
+	public void testEmptyName() {
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(1, symbols.size());
+		assertEquals(SymbolTable.EMPTY, symbols.intern(""));
+		assertEquals("", symbols.name(SymbolTable.EMPTY));
+	}
+
+	@Test
+	public void testIdsAreDense() {
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(1, symbols.intern("Log"));
+		assertEquals(2, symbols.intern("${a} = Set Variable"));
+		assertEquals(1, symbols.intern(new String("Log")));
+		assertEquals(3, symbols.size());
+		assertEquals("${a} = Set Variable", symbols.name(2));
+	}
+
+	@Test
+	public void testLookup() {
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(-1, symbols.lookup("Log"));
+		int id = symbols.intern("Log");
+		assertEquals(id, symbols.lookup("Log"));
+		assertEquals(2, symbols.size());
+	}
+
+	@Test
+	public void testGrows() {
+		SymbolTable symbols = new SymbolTable();
+		for (int i = 1; i <= 10000; i++){
+			assertEquals(i, symbols.intern("Keyword " + i));
+		}
+		for (int i = 1; i <= 10000; i++){
+			assertEquals(i, symbols.intern("Keyword " + i));
+			assertEquals("Keyword " + i, symbols.name(i));
+		}
+		assertEquals(10001, symbols.size());
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testUnknownId() {
+		new SymbolTable().name(1);
+	}
+
+	@Test
+	public void testContextsShareSymbols() {
+		RobotFrameworkDebugContext first = new RobotFrameworkDebugContext();
+		RobotFrameworkDebugContext second = new RobotFrameworkDebugContext();
+		assertEquals(SymbolTable.EMPTY, first.getItemSymbol());
+		first.setItemName("Connect To Database");
+		second.setItemName(new String("Connect To Database"));
+		assertEquals(first.getItemSymbol(), second.getItemSymbol());
+		assertSame(first.getItemName(), second.getItemName());
+	}
+
+	@Test
+	public void testTestNamesAreNotInterned() {
+		int size = SymbolTable.NAMES.size();
+		RobotFrameworkDebugContext test = new RobotFrameworkDebugContext();
+		test.setContextType(ContextType.TEST_CASE);
+		test.setItemName("Test With A Name Of Its Own");
+		assertEquals("Test With A Name Of Its Own", test.getItemName());
+		assertEquals(SymbolTable.EMPTY, test.getItemSymbol());
+		assertEquals(size, SymbolTable.NAMES.size());
+		assertEquals(-1, SymbolTable.NAMES.lookup("Test With A Name Of Its Own"));
+		assertEquals("Test With A Name Of Its Own", new FrameSnapshot(test, null).getItemName());
+	}
+
+	@Test
+	public void testContextTypeChangeKeepsName() {
+		RobotFrameworkDebugContext context = new RobotFrameworkDebugContext();
+		context.setItemName("Open Browser");
+		int symbol = context.getItemSymbol();
+		context.setContextType(ContextType.TEST_SUITE);
+		assertEquals("Open Browser", context.getItemName());
+		assertEquals(SymbolTable.EMPTY, context.getItemSymbol());
+		context.setContextType(ContextType.KEYWORD);
+		assertEquals("Open Browser", context.getItemName());
+		assertEquals(symbol, context.getItemSymbol());
+	}
+}
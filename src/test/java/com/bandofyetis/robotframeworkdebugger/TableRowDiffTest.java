@@ -0,0 +1,79 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TableRowDiffTest {
+
+	private static final PersistentSortedMap<String, String> EMPTY = RobotFrameworkDebugContext.NO_VARIABLES;
+
+	@Test
+	public void testUnchangedCallStackClearsNothing() {
+		String[][] stack = {row("Test Suite", "Suite"), row("Test Case", "Login"), row("Keyword", "Open Browser")};
+		assertArrayEquals(new int[0], TableRowDiff.changedCallStackRows(stack, copy(stack)));
+	}
+
+	@Test
+	public void testPushMovesEveryRow() {
+		String[][] old = {row("Test Suite", "Suite"), row("Test Case", "Login")};
+		String[][] now = {row("Test Suite", "Suite"), row("Test Case", "Login"), row("Keyword", "Open Browser")};
+		// the top frame is the first row, so both shared rows now show another frame
+		assertArrayEquals(new int[] {0, 1}, TableRowDiff.changedCallStackRows(old, now));
+		assertArrayEquals(new int[] {0, 1}, TableRowDiff.changedCallStackRows(now, old));
+	}
+
+	@Test
+	public void testStepClearsOnlyTheTopRow() {
+		String[][] old = {row("Test Suite", "Suite"), row("Test Case", "Login"), row("Keyword", "Open Browser")};
+		String[][] now = {row("Test Suite", "Suite"), row("Test Case", "Login"), row("Keyword", "Input Text")};
+		assertArrayEquals(new int[] {0}, TableRowDiff.changedCallStackRows(old, now));
+	}
+
+	@Test
+	public void testChangedValueClearsItsRow() {
+		PersistentSortedMap<String, String> old = EMPTY.put("${a}", "1").put("${b}", "2").put("${c}", "3");
+		PersistentSortedMap<String, String> now = old.put("${b}", "4");
+		assertArrayEquals(new int[] {1}, TableRowDiff.changedVariableRows(EMPTY, old, now));
+	}
+
+	@Test
+	public void testInsertedVariableClearsTheRowsBelowIt() {
+		PersistentSortedMap<String, String> old = EMPTY.put("${a}", "1").put("${c}", "3").put("${d}", "4");
+		PersistentSortedMap<String, String> now = old.put("${b}", "2");
+		// ${b} takes row 1, ${c} and ${d} move down; the new last row is filled when it becomes visible
+		assertArrayEquals(new int[] {1, 2}, TableRowDiff.changedVariableRows(EMPTY, old, now));
+	}
+
+	@Test
+	public void testHighlightChangeClearsTheRow() {
+		PersistentSortedMap<String, String> first = EMPTY.put("${a}", "1").put("${b}", "2");
+		PersistentSortedMap<String, String> second = first.put("${b}", "3");
+		PersistentSortedMap<String, String> third = second.put("${a}", "5");
+		// ${b} stays at 3 but is no longer highlighted, ${a} changed
+		assertArrayEquals(new int[] {0, 1}, TableRowDiff.changedVariableRows(first, second, third));
+		// nothing changed value, but ${a} loses its highlight
+		assertArrayEquals(new int[] {0}, TableRowDiff.changedVariableRows(second, third, third));
+	}
+
+	@Test
+	public void testNothingIsChangedAfterAnEmptyTable() {
+		PersistentSortedMap<String, String> now = EMPTY.put("${a}", "1");
+		assertFalse(TableRowDiff.isChanged(EMPTY, "${a}", "1"));
+		assertTrue(TableRowDiff.isChanged(now, "${a}", "2"));
+		assertTrue(TableRowDiff.isChanged(now, "${b}", "1"));
+		assertFalse(TableRowDiff.isChanged(now, "${a}", "1"));
+	}
+
+	private static String[] row(String type, String name) {
+		return new String[] {type, name, ""};
+	}
+
+	private static String[][] copy(String[][] rows) {
+		String[][] copy = new String[rows.length][];
+		for (int i = 0; i < rows.length; i++){
+			copy[i] = rows[i].clone();
+		}
+		return copy;
+	}
+}
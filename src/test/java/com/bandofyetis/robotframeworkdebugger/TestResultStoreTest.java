@@ -0,0 +1,161 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResultStoreTest {
+
+	private TestResultStore store;
+
+	@Before
+	public void setUp() {
+		store = new TestResultStore();
+		store.add("Login Works", "PASS", 120);
+		store.add("Login Fails", "FAIL", 3400);
+		store.add("Logout", "PASS", 15);
+		store.add("login works", "SKIP", 0);
+		store.add("Login Fails", "FAIL", 3100);
+	}
+
+	@Test
+	public void testColumns() {
+		assertEquals(5, store.size());
+		assertEquals("Login Fails", store.getName(1));
+		assertEquals("FAIL", store.getStatus(1));
+		assertTrue(store.isFailed(1));
+		assertEquals(3400, store.getElapsedMillis(1));
+		assertEquals("SKIP", store.getStatus(3));
+		assertFalse(store.isFailed(3));
+		assertEquals("PASS", store.getStatus(2));
+		assertEquals(2, store.getFailedCount());
+	}
+
+	@Test
+	public void testNamesAreInterned() {
+		assertEquals(4, store.getNameCount());
+		assertEquals("Login Fails", store.getName(4));
+	}
+
+	@Test
+	public void testNonAsciiNames() {
+		store.add("R\u00e9sum\u00e9 \u4e2d\u6587", "PASS", 1);
+		assertEquals("R\u00e9sum\u00e9 \u4e2d\u6587", store.getName(5));
+		assertEquals("[5]", Arrays.toString(store.select(0, 6, false, "R\u00e9s")));
+	}
+
+	@Test
+	public void testFailedOnly() {
+		assertEquals("[1, 4]", Arrays.toString(store.select(0, 5, true, null)));
+		assertEquals("[4]", Arrays.toString(store.select(2, 5, true, "")));
+		assertEquals("[1]", Arrays.toString(store.select(0, 4, true, null)));
+	}
+
+	@Test
+	public void testNamePrefix() {
+		// prefixes ignore case
+		assertEquals("[0, 1, 3, 4]", Arrays.toString(store.select(0, 5, false, "login")));
+		assertEquals("[0, 3]", Arrays.toString(store.select(0, 5, false, "LOGIN W")));
+		assertEquals("[2]", Arrays.toString(store.select(0, 5, false, "Logo")));
+		assertEquals("[]", Arrays.toString(store.select(0, 5, false, "Logins")));
+		assertEquals("[4]", Arrays.toString(store.select(2, 5, true, "login f")));
+
+		// names added after a filter are found by the next one
+		store.add("Logging", "FAIL", 1);
+		assertEquals("[5]", Arrays.toString(store.select(0, 6, false, "logg")));
+	}
+
+	@Test
+	public void testIncrementalPulls() {
+		int[] first = store.select(0, 3, false, null);
+		store.add("Another", "PASS", 1);
+		int[] second = store.select(3, store.size(), false, null);
+		assertEquals("[0, 1, 2]", Arrays.toString(first));
+		assertEquals("[3, 4, 5]", Arrays.toString(second));
+	}
+
+	@Test
+	public void testManyResults() {
+		// the default keeps a run this large without dropping anything
+		store = new TestResultStore();
+		for (int i = 0; i < 500000; i++){
+			store.add("Data Driven Test " + (i % 1000), (i % 100 == 0) ? "FAIL" : "PASS", i % 5000);
+		}
+		assertEquals(500000, store.size());
+		assertEquals(1000, store.getNameCount());
+		assertEquals(5000, store.getFailedCount());
+		assertEquals(5000, store.select(0, store.size(), true, null).length);
+		assertEquals(500, store.select(0, store.size(), false, "data driven test 999").length);
+		assertEquals("Data Driven Test 123", store.getName(499123));
+		assertEquals(0, store.getCompactionCount());
+		assertEquals(0, store.getDroppedCount());
+	}
+
+	@Test
+	public void testOldestPassedResultsDropped() {
+		store = new TestResultStore(8);
+		for (int i = 0; i < 8; i++){
+			store.add("Test " + i, (i % 3 == 0) ? "FAIL" : "PASS", i);
+		}
+		assertEquals(0, store.getCompactionCount());
+
+		// full: the two oldest passed results go, the failed ones stay
+		store.add("Test 8", "PASS", 8);
+		assertEquals(1, store.getCompactionCount());
+		assertEquals(2, store.getDroppedCount());
+		assertEquals(7, store.size());
+		assertEquals("[Test 0, Test 3, Test 4, Test 5, Test 6, Test 7, Test 8]", names());
+		assertEquals("[0, 1, 4]", Arrays.toString(store.select(0, store.size(), true, null)));
+		assertEquals(3, store.getFailedCount());
+		assertEquals(4, store.getElapsedMillis(2));
+
+		// the names of dropped results are dropped too
+		assertEquals(7, store.getNameCount());
+		assertEquals("[]", Arrays.toString(store.select(0, store.size(), false, "Test 1")));
+	}
+
+	@Test
+	public void testFailedResultsDroppedWhenAllFailed() {
+		store = new TestResultStore(4);
+		for (int i = 0; i < 10; i++){
+			store.add("Test " + i, "FAIL", i);
+		}
+		assertTrue(store.size() <= 4);
+		assertEquals(store.size(), store.getFailedCount());
+		assertEquals(10 - store.size(), store.getDroppedCount());
+		assertEquals("Test 9", store.getName(store.size() - 1));
+		assertEquals(store.size(), store.select(0, store.size(), true, "test").length);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testMaxResultsChecked() {
+		new TestResultStore(3);
+	}
+
+	@Test
+	public void testSortedNames() {
+		store = new TestResultStore();
+		for (int i = 999; i >= 0; i--){
+			store.add(((i % 2 == 0) ? "Alpha " : "beta ") + i, "PASS", 1);
+		}
+		assertEquals(500, store.select(0, store.size(), false, "ALPHA").length);
+		assertEquals(56, store.select(0, store.size(), false, "beta 9").length);
+		assertEquals("[1]", Arrays.toString(store.select(0, store.size(), false, "alpha 998")));
+	}
+
+	private String names() {
+		String[] names = new String[store.size()];
+		for (int i = 0; i < names.length; i++){
+			names[i] = store.getName(i);
+		}
+		return Arrays.toString(names);
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testPositionChecked() {
+		store.getName(5);
+	}
+}
@@ -0,0 +1,110 @@
+package com.bandofyetis.robotframeworkdebugger;
+
+/**
+ * Measures what the virtual tables of the ui cost for a large run.  Not a unit test - run it by hand with
+ *
+ *   java -cp target/classes:target/test-classes com.bandofyetis.robotframeworkdebugger.TestResultsTableBenchmark
+ *
+ * It adds RESULTS test results to a TestResultStore, as endTest does, and prints:
+ *
+ *   append ms     the time to add all results
+ *   heap B/test   the heap the store keeps per result after a full collection
+ *   viewport us   the time to read the VIEWPORT rows the results table fills when it is scrolled,
+ *                 what its SetData listener reads
+ *   filter ms     the time of select() for the "failed only" filter and for a name prefix
+ *   diff us       the time of TableRowDiff.changedVariableRows() for a step that changes one of
+ *                 VARIABLES variables
+ *
+ * The ui keeps no row objects of its own: a native row exists only for the rows scrolled into view.
+ * The native side of the tables is not measured, it needs a display.  On a current desktop with test
+ * names of about 35 characters: about 25 ms to append, 70 B per test (the names, their index and the
+ * slack of grown columns), 5 us for the viewport, about 1 ms per filter and 150 us for the diff.
+ *
+ * @author nspilka
+ *
+ */
+public class TestResultsTableBenchmark {
+
+	private static final int RESULTS = 100000;
+	private static final int VIEWPORT = 25;
+	private static final int VARIABLES = 1000;
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) {
+		long appendNanos = Long.MAX_VALUE;
+		TestResultStore store = null;
+		for (int round = 0; round < ROUNDS; round++){
+			store = null;
+			long start = System.nanoTime();
+			store = fill();
+			appendNanos = Math.min(appendNanos, System.nanoTime() - start);
+		}
+
+		store = null;
+		long base = used();
+		store = fill();
+		double heapPerTest = (double) (used() - base) / RESULTS;
+
+		long viewportNanos = Long.MAX_VALUE;
+		long checksum = 0;
+		for (int round = 0; round < ROUNDS * 100; round++){
+			int first = (round * 997) % (RESULTS - VIEWPORT);
+			long start = System.nanoTime();
+			synchronized (store){
+				for (int row = first; row < first + VIEWPORT; row++){
+					checksum += store.getName(row).length() + store.getStatus(row).length() + store.getElapsedMillis(row);
+				}
+			}
+			viewportNanos = Math.min(viewportNanos, System.nanoTime() - start);
+		}
+
+		long filterNanos = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++){
+			long start = System.nanoTime();
+			checksum += store.select(0, store.size(), true, "").length;
+			checksum += store.select(0, store.size(), false, "Login 12").length;
+			filterNanos = Math.min(filterNanos, System.nanoTime() - start);
+		}
+
+		PersistentSortedMap<String, String> previous = RobotFrameworkDebugContext.NO_VARIABLES;
+		for (int i = 0; i < VARIABLES; i++){
+			previous = previous.put("${var" + i + "}", "value " + i);
+		}
+		long diffNanos = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS * 100; round++){
+			PersistentSortedMap<String, String> shown = previous.put("${var" + (round % VARIABLES) + "}", "step " + round);
+			PersistentSortedMap<String, String> next = shown.put("${var" + ((round + 1) % VARIABLES) + "}", "step " + round);
+			long start = System.nanoTime();
+			checksum += TableRowDiff.changedVariableRows(previous, shown, next).length;
+			diffNanos = Math.min(diffNanos, System.nanoTime() - start);
+			previous = shown;
+		}
+
+		System.out.println("append ms   heap B/test   viewport us   filter ms   diff us");
+		System.out.println(String.format("%9.1f   %11.0f   %11.1f   %9.2f   %7.1f",
+				appendNanos / 1e6, heapPerTest, viewportNanos / 1e3, filterNanos / 1e6, diffNanos / 1e3));
+		System.out.println(store.size() + " results, checksum " + checksum);
+	}
+
+	/**
+	 * Add the results of a run where every test has a name of its own and one test in twenty fails
+	 */
+	private static TestResultStore fill() {
+		TestResultStore store = new TestResultStore(RESULTS);
+		for (int i = 0; i < RESULTS; i++){
+			store.add("Login " + i + " With Valid Credentials", (i % 20 == 0) ? TestResultStore.FAIL : TestResultStore.PASS, i % 5000);
+		}
+		return store;
+	}
+
+	/**
+	 * Get the heap in use after collecting what can be collected
+	 */
+	private static long used() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++){
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}